@@ -2,6 +2,10 @@ package com.example.rtcclient;
 
 import android.content.Context;
 
+import com.example.rtcclient.integration.mediasoup.CodecFactories;
+import com.example.rtcclient.network.OkHttpProvider;
+import com.example.rtcclient.prefs.API;
+
 import org.mediasoup.droid.Logger;
 import org.mediasoup.droid.MediasoupClient;
 
@@ -22,5 +26,15 @@ public class Application extends android.app.Application {
         Logger.setDefaultHandler();
 
         MediasoupClient.initialize(context);
+
+        /**
+         * Probing the hardware codecs is the slow part of building a PeerConnectionFactory
+         */
+        CodecFactories.prewarm();
+
+        /**
+         * Have a connection to the signaling server ready by the time we join
+         */
+        OkHttpProvider.prewarm(API.getHost());
     }
 }
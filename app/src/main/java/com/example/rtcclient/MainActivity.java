@@ -16,9 +16,12 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.rtcclient.network.ISignalingStrategy;
+import com.example.rtcclient.network.InstrumentedSignalingStrategy;
+import com.example.rtcclient.network.ResilientSignalingStrategy;
 import com.example.rtcclient.network.http.HttpClient;
 import com.example.rtcclient.prefs.API;
 import com.example.rtcclient.prefs.SettingsActivity;
+import com.example.rtcclient.view.PeerGridView;
 import com.nabinbhandari.android.permissions.PermissionHandler;
 import com.nabinbhandari.android.permissions.Permissions;
 
@@ -75,9 +78,22 @@ public class MainActivity extends AppCompatActivity {
         // Stop the screen from auto-dimming
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
 
-        ISignalingStrategy httpClient = HttpClient.getSharedInstance();
+        /**
+         * Retries what is safe to retry, within each call's deadline. Every attempt is recorded in
+         * the endpoint metrics, which are logged on leave
+         */
+        ISignalingStrategy httpClient = new ResilientSignalingStrategy(
+                new InstrumentedSignalingStrategy(HttpClient.getSharedInstance()));
         mRoomClient = new RoomClient(httpClient, this);
 
+        /**
+         * Video of peers whose tile can't be seen is paused until it can, small tiles get small
+         * layers
+         */
+        PeerGridView grid = findViewById(R.id.remote);
+        grid.setOnTileVisibilityListener(mRoomClient::setTileVisible);
+        grid.setOnTileSizeListener(mRoomClient::setTileSize);
+
         try {
             checkPermissions();
         } catch (Exception e) {
@@ -91,16 +107,19 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onStart() {
         super.onStart();
+        mRoomClient.setUiVisible(true);
         mRoomClient.startCamera();
     }
 
     /**
-     * Stop the camera feed when the app is backgrounded. Keep audio going
+     * Stop the camera feed when the app is backgrounded, and the remote video nobody sees. Keep
+     * audio going
      */
     @Override
     protected void onStop() {
         super.onStop();
         mRoomClient.stopCamera();
+        mRoomClient.setUiVisible(false);
     }
 
     @Override
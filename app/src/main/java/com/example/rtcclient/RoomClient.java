@@ -1,15 +1,42 @@
 package com.example.rtcclient;
 
 import android.app.Activity;
+import android.content.Context;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
 import android.util.Log;
-import org.junit.Assert;
 import androidx.annotation.WorkerThread;
 
+import com.example.rtcclient.integration.mediasoup.CameraEncodings;
+import com.example.rtcclient.integration.mediasoup.CodecFactories;
 import com.example.rtcclient.integration.mediasoup.PeerConnectionUtils;
+import com.example.rtcclient.join.FirstFrameSink;
+import com.example.rtcclient.join.JoinOrchestrator;
+import com.example.rtcclient.join.JoinTimeline;
+import com.example.rtcclient.media.AudioLevels;
+import com.example.rtcclient.media.DecodeCounters;
+import com.example.rtcclient.media.LayerController;
+import com.example.rtcclient.media.PauseSavings;
+import com.example.rtcclient.media.SimulcastProfile;
+import com.example.rtcclient.media.SpeakerPolicy;
+import com.example.rtcclient.media.StatsReport;
+import com.example.rtcclient.model.ConsumerBudget;
+import com.example.rtcclient.model.PeerIds;
+import com.example.rtcclient.model.Roster;
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.model.RtpCapabilitiesCache;
+import com.example.rtcclient.model.SubscriptionRegistry;
+import com.example.rtcclient.model.TrackSubscriber;
+import com.example.rtcclient.network.BatchRequest;
 import com.example.rtcclient.network.ISignalingStrategy;
+import com.example.rtcclient.network.SignalingException;
+import com.example.rtcclient.network.SignalingRequests;
+import com.example.rtcclient.prefs.API;
+import com.example.rtcclient.prefs.MediaConfig;
+import com.example.rtcclient.prefs.RtpCapabilitiesStore;
+import com.example.rtcclient.view.PeerGridView;
+import com.example.rtcclient.view.ProxyVideoSink;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -27,33 +54,121 @@ import org.webrtc.RendererCommon;
 import org.webrtc.SurfaceViewRenderer;
 import org.webrtc.VideoTrack;
 
-import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.DisposableSingleObserver;
 
 /**
  * RoomClient contains all the meeting control logic ported from client.js with the following differences
  * - The client auto-joins the room
- * - The client auto-subscribes to any peer sending data (at a time)
+ * - The client auto-subscribes to the peers sending data, as many as the consumer budget allows
  */
 public class RoomClient {
 
     private static final String TAG = "RoomClient";
-    private static final String mMyPeerId = uuidv4();
-    private static String mMediaPeerId;
+    /**
+     * Deadline for a single signaling call, batches included
+     */
+    private static final long SIGNALING_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long JOIN_RETRY_MS = 1000;
+    /**
+     * How often the receive stats are read for audio levels
+     */
+    private static final long AUDIO_LEVEL_INTERVAL_MS = 500;
+    private static final String mMyPeerId = PeerIds.uuidv4();
     private boolean mJoined;
+    /**
+     * Join is in flight
+     */
+    private boolean mJoining;
     private boolean mCamEnabled;
     private boolean mMicEnabled;
     private Handler mWorkHandler;
     private Handler mMainHandler;
-    private JSONObject mLastPollSyncData;
+    /**
+     * Signaling results are handled here, same thread as mWorkHandler
+     */
+    private Scheduler mWorkScheduler;
+    /**
+     * Camera and mic. PeerConnectionUtils lives on this thread so capture can start while the
+     * worker is busy with mediasoup
+     */
+    private Handler mMediaHandler;
+    private Scheduler mMediaScheduler;
+    /**
+     * How long each step of the last join took, first frames included
+     */
+    private final JoinTimeline mJoinTimeline = new JoinTimeline();
+    /**
+     * Router capabilities from earlier joins, to load the device before the server answers
+     */
+    private final RtpCapabilitiesCache mCapabilitiesCache = new RtpCapabilitiesCache(new RtpCapabilitiesStore());
+    /**
+     * What mMediasoupDevice was loaded with, null if it isn't
+     */
+    private String mDeviceCapabilities;
+    /**
+     * In-flight signaling, dropped when leaving
+     */
+    private CompositeDisposable mDisposables;
+    private Roster mRoster;
+    /**
+     * Subscriptions still in flight, so roster updates don't ask for the same track twice
+     */
+    private SubscriptionRegistry mSubscriptions;
+    private TrackSubscriber<Consumer> mSubscriber;
     private Map<String, Producer> mProducers;
     private Map<String, Consumer> mConsumers;
     private Map<String, Consumer> mPeerVideoConsumerMap;
     private Map<String, Consumer> mPeerAudioConsumerMap;
+    /**
+     * Which peers we consume from, the rest of the room is only in the roster
+     */
+    private ConsumerBudget mBudget;
+    /**
+     * Whose video is resumed. The other video consumers stay paused, server side too
+     */
+    private SpeakerPolicy mSpeakers;
+    /**
+     * Whether the app is in the foreground, set from the activity's onStart()/onStop()
+     */
+    private volatile boolean mUiVisible = true;
+    /**
+     * Peers whose tile is laid out off screen or under something. Worker
+     */
+    private Set<String> mHiddenTiles;
+    /**
+     * What pausing the active speakers' video while nobody could see it saved
+     */
+    private PauseSavings mHiddenSavings;
+    /**
+     * The camera's spatial and temporal layers, the SFU picks among them per consumer
+     */
+    private SimulcastProfile mSimulcastProfile;
+    /**
+     * Which layer of a simulcast peer each video consumer asks for, from its tile's size
+     */
+    private LayerController mLayers;
+    /**
+     * Roster changed since the budget was last updated
+     */
+    private boolean mRosterChanged;
+    /**
+     * Per peer, what its video track renders to. The grid tile behind it is made on the main thread
+     */
+    private Map<String, ProxyVideoSink> mRemoteSinks;
     private ISignalingStrategy.ISignalListener mListener;
 
     /**
@@ -90,18 +205,14 @@ public class RoomClient {
             Logger.d(listenerTAG, "onProduce() ");
 
             String producerId = "";
-            JSONObject params = new JSONObject();
-            String endpoint = "send-track";
 
             try {
-                params.putOpt("transportId", transport.getId());
-                params.putOpt("kind", kind);
-                params.putOpt("rtpParameters", new JSONObject(rtpParameters));
-                params.putOpt("paused", false);
-                params.putOpt("appData", new JSONObject().put("mediaTag", kind.equals("video") ? "cam-video" : "cam-audio"));
+                JSONObject params = SignalingRequests.sendTrack(transport.getId(), kind, rtpParameters);
 
-                JSONObject objresult = syncSig(endpoint, params);
-                producerId = objresult.optString("id");
+                JSONObject objresult = syncSig(SignalingRequests.SEND_TRACK, params);
+                if (objresult != null) {
+                    producerId = objresult.optString("id");
+                }
 
             } catch (JSONException e) {
                 e.printStackTrace();
@@ -117,14 +228,10 @@ public class RoomClient {
 //
             Logger.d(listenerTAG + "_send", "onConnect()");
 
-            JSONObject params = new JSONObject();
-            String endpoint = "connect-transport";
-
             try {
-                params.putOpt("transportId", transport.getId());
-                params.putOpt("dtlsParameters", new JSONObject(dtlsParameters));
+                JSONObject params = SignalingRequests.connectTransport(transport.getId(), dtlsParameters);
 
-                syncSig(endpoint, params);
+                syncSig(SignalingRequests.CONNECT_TRANSPORT, params);
 
             } catch (JSONException e) {
                 e.printStackTrace();
@@ -149,14 +256,10 @@ public class RoomClient {
 //                    }
             Logger.d(listenerTAG, "onConnect()");
 
-            JSONObject params = new JSONObject();
-            String endpoint = "connect-transport";
-
             try {
-                params.putOpt("transportId", transport.getId());
-                params.putOpt("dtlsParameters", new JSONObject(dtlsParameters));
+                JSONObject params = SignalingRequests.connectTransport(transport.getId(), dtlsParameters);
 
-                syncSig(endpoint, params);
+                syncSig(SignalingRequests.CONNECT_TRANSPORT, params);
 
             } catch (JSONException e) {
                 e.printStackTrace();
@@ -171,6 +274,255 @@ public class RoomClient {
 //                    }
         }
     };
+
+    /**
+     * What TrackSubscriber does with mediasoup. Worker
+     */
+    private final TrackSubscriber.Consumers<Consumer> mSubscriberConsumers = new TrackSubscriber.Consumers<Consumer>() {
+
+        @Override
+        public JSONObject getRtpCapabilities() throws Exception {
+            return new JSONObject(mMediasoupDevice.getRtpCapabilities());
+        }
+
+        @Override
+        public Consumer consume(String peerId, JSONObject data) throws Exception {
+            return RoomClient.this.consume(peerId, data);
+        }
+
+        @Override
+        public String getId(Consumer consumer) {
+            return consumer.getId();
+        }
+
+        /**
+         * Video of a peer that isn't an active speaker, or can't be seen, stays paused
+         */
+        @Override
+        public boolean shouldPlay(String peerId, Consumer consumer) {
+            return !consumer.getKind().equals("video") || RoomClient.this.shouldPlay(peerId);
+        }
+
+        @Override
+        public void pause(Consumer consumer) {
+            consumer.pause();
+        }
+
+        @Override
+        public void resume(Consumer consumer) {
+            consumer.resume();
+        }
+
+        @Override
+        public void onFinished(String peerId) {
+            Roster.Peer peer = mRoster != null ? mRoster.get(peerId) : null;
+            if (peer != null) {
+                closeUnwanted(peer);
+            }
+        }
+    };
+
+    /**
+     * Reacts to roster changes only. Called on the worker thread from pollAndUpdate
+     */
+    private final Roster.Listener mRosterListener = new Roster.Listener() {
+        @Override
+        public void onPeerJoined(Roster.Peer peer) {
+            Logger.d(TAG, "New peer " + peer.getId() + " has joined");
+            mRosterChanged = true;
+        }
+
+        @Override
+        public void onPeerLeft(Roster.Peer peer) {
+            String peerId = peer.getId();
+            Logger.d(TAG, "peer " + peerId + " has left the room");
+
+            if (mSubscriptions.cancel(peerId)) {
+                Logger.d(TAG, "dropped in-flight subscription to " + peerId);
+            }
+
+            Consumer videoConsumer = mPeerVideoConsumerMap.get(peerId);
+            Consumer audioConsumer = mPeerAudioConsumerMap.get(peerId);
+            if (videoConsumer != null) {
+                closeConsumer(videoConsumer, peerId);
+            }
+            if (audioConsumer != null) {
+                closeConsumer(audioConsumer, peerId);
+            }
+
+            /**
+             * Its slots go to whoever is next in line
+             */
+            mSpeakers.remove(peerId);
+            mRosterChanged = true;
+        }
+
+        @Override
+        public void onPeerMediaChanged(Roster.Peer peer) {
+            mRosterChanged = true;
+        }
+    };
+    /**
+     * The steps of joining, see JoinOrchestrator for what runs in parallel
+     */
+    private final JoinOrchestrator.Steps mJoinSteps = new JoinOrchestrator.Steps() {
+
+        @Override
+        public Single<List<JSONObject>> signal() {
+            try {
+                /**
+                 * The transports don't depend on the device so ask for them in the same round trip as
+                 * the join. The server runs a batch in order so we exist by the time they're created
+                 */
+                BatchRequest batch = new BatchRequest().add("join-as-new-peer", new JSONObject());
+                /**
+                 * A retried join keeps the transports the last attempt got. Asking again would have the
+                 * server open new ones (and their ICE/DTLS ports) that we'd never use
+                 */
+                boolean needSend = mSendTransport == null;
+                boolean needRecv = mRecvTransport == null;
+                if (needSend) {
+                    batch.add("create-transport", new JSONObject().put("direction", "send"));
+                }
+                if (needRecv) {
+                    batch.add("create-transport", new JSONObject().put("direction", "recv"));
+                }
+
+                return deferredBatchSig(batch).map(responses -> Arrays.asList(responses.get(0),
+                        needSend ? responses.get(1) : null,
+                        needRecv ? responses.get(responses.size() - 1) : null));
+            } catch (JSONException e) {
+                return Single.error(e);
+            }
+        }
+
+        /**
+         * Opening the camera takes longer than the join round trip, so it starts with it. Local video
+         * shows as soon as the camera does
+         */
+        @Override
+        public void warmUpCapture() {
+            Context context = Application.context.getApplicationContext();
+
+            if (mLocalAudioTrack == null) {
+                mLocalAudioTrack = mPeerConnectionUtils.createAudioTrack(context, "mic");
+                mLocalAudioTrack.setEnabled(true);
+            }
+
+            if (mLocalVideoTrack == null) {
+                VideoTrack videoTrack = mPeerConnectionUtils.createVideoTrack(context, "cam");
+                videoTrack.setEnabled(true);
+                videoTrack.addSink(new FirstFrameSink(mJoinTimeline, JoinTimeline.Milestone.FIRST_LOCAL_FRAME, mWorkScheduler));
+                mLocalVideoTrack = videoTrack;
+
+                /**
+                 * Render local video
+                 */
+                mMainHandler.post(() -> {
+                    SurfaceViewRenderer renderer = mContext.findViewById(R.id.video_renderer);
+                    videoTrack.addSink(renderer);
+                });
+            }
+
+            mJoinTimeline.setWarmUpMs(mPeerConnectionUtils.getWarmUpMs());
+        }
+
+        @Override
+        public boolean preloadDevice() throws MediasoupException {
+            /**
+             * Already loaded if a previous join got this far
+             */
+            if (mMediasoupDevice.isLoaded()) {
+                return false;
+            }
+
+            String capabilities = mCapabilitiesCache.get(API.getHost());
+            if (capabilities == null) {
+                return false;
+            }
+
+            mMediasoupDevice.load(capabilities);
+            mDeviceCapabilities = capabilities;
+            return true;
+        }
+
+        @Override
+        public void loadDevice(JSONObject join) throws MediasoupException {
+            String capabilities = join.optString("routerRtpCapabilities");
+            if (mMediasoupDevice.isLoaded() && capabilities.equals(mDeviceCapabilities)) {
+                return;
+            }
+
+            /**
+             * The router changed since they were cached. A Device only loads once, start over with
+             * a new one
+             */
+            if (mMediasoupDevice.isLoaded()) {
+                Logger.w(TAG, "loadDevice() | router capabilities changed, reloading the device");
+                disposeTransports();
+                mMediasoupDevice.dispose();
+                mMediasoupDevice = new Device();
+            }
+
+            mMediasoupDevice.load(capabilities);
+            mDeviceCapabilities = capabilities;
+            mCapabilitiesCache.put(API.getHost(), capabilities);
+        }
+
+        @Override
+        public void createRecvTransport(JSONObject response) throws JSONException, MediasoupException, SignalingException {
+            RoomClient.this.createRecvTransport(response);
+        }
+
+        /**
+         * Long-poll so joins/leaves are picked up as they happen. Strategies that can't long-poll fall
+         * back on their own
+         */
+        @Override
+        public void onReceiving() {
+            JSONObject data = new JSONObject();
+
+            try {
+                data.putOpt("peerId", mMyPeerId);
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+
+            mRtcClient.register(data, mListener, ISignalingStrategy.SyncMode.LONG_POLL);
+
+            mWorkHandler.removeCallbacks(mAudioLevelTask);
+            mWorkHandler.postDelayed(mAudioLevelTask, AUDIO_LEVEL_INTERVAL_MS);
+        }
+
+        @Override
+        public void createSendTransport(JSONObject response) throws JSONException, MediasoupException, SignalingException {
+            RoomClient.this.createSendTransport(response);
+        }
+
+        @Override
+        public void produce() {
+            enableMic();
+            enableCam();
+        }
+    };
+    /**
+     * Samples the audio level of everyone we listen to and moves video to whoever is talking. Also
+     * what each video costs, for PauseSavings, and the size of its frames, for the LayerController
+     */
+    private final Runnable mAudioLevelTask = new Runnable() {
+        @Override
+        public void run() {
+            if (mWorkHandler == null || mRoster == null) {
+                return;
+            }
+
+            sampleStats();
+            if (updateSpeakers()) {
+                rebalance();
+            }
+            mWorkHandler.postDelayed(this, AUDIO_LEVEL_INTERVAL_MS);
+        }
+    };
     private Device mMediasoupDevice;
     private SendTransport mSendTransport;
     private RecvTransport mRecvTransport;
@@ -178,7 +530,6 @@ public class RoomClient {
     private Producer mMicProducer;
     private Producer mCamProducer;
     private VideoTrack mLocalVideoTrack;
-    private VideoTrack mRemoteVideoTrack;
 
     //region Interface
 
@@ -211,6 +562,12 @@ public class RoomClient {
      */
     public void leaveRoom() {
 
+        /**
+         * Anything still in flight would land on a torn down room
+         */
+        mDisposables.dispose();
+        mSubscriptions.clear();
+
         asyncSig("leave", new JSONObject());
 
         mWorkHandler.post(() -> mRtcClient.unRegister());
@@ -257,16 +614,31 @@ public class RoomClient {
         mLocalVideoTrack = null;
         mLocalAudioTrack = null;
 
+        mMainHandler.post(() -> {
+            PeerGridView grid = mContext.findViewById(R.id.remote);
+            grid.clear();
+        });
+
         mConsumers = null;
         mProducers = null;
         mPeerAudioConsumerMap = null;
         mPeerVideoConsumerMap = null;
-        mLastPollSyncData = null;
+        Logger.d(TAG, "leaveRoom() | while hidden: " + mHiddenSavings.describe(mWorkScheduler.now(TimeUnit.MILLISECONDS)));
+
+        mBudget = null;
+        mSpeakers = null;
+        mHiddenTiles = null;
+        mHiddenSavings = null;
+        mLayers = null;
+        mRemoteSinks = null;
+        mRoster = null;
         mListener = null;
 
         mMediasoupDevice.dispose();
-        mWorkHandler.post(()->mPeerConnectionUtils.dispose());
+        mMediaHandler.post(()->mPeerConnectionUtils.dispose());
 
+        mMediaHandler.getLooper().quitSafely();
+        mMediaHandler = null;
         mWorkHandler.getLooper().quitSafely();
         mWorkHandler = null;
         mMainHandler = null;
@@ -279,8 +651,8 @@ public class RoomClient {
         Logger.d(TAG, "startCamera()");
 
             if (mPeerConnectionUtils != null) {
-                if (mWorkHandler != null) {
-                    mWorkHandler.post(() -> {
+                if (mMediaHandler != null) {
+                    mMediaHandler.post(() -> {
                         mPeerConnectionUtils.startCamCapture();
                     });
                 }
@@ -294,15 +666,79 @@ public class RoomClient {
         Logger.d(TAG, "stopCamera()");
 
             if (mPeerConnectionUtils != null) {
-                if (mWorkHandler != null) {
-                    mWorkHandler.post(() -> mPeerConnectionUtils.stopCamCapture());
+                if (mMediaHandler != null) {
+                    mMediaHandler.post(() -> mPeerConnectionUtils.stopCamCapture());
                 }
             }
     }
 
+    /**
+     * The app came to the foreground or went to the background. Remote video is paused while
+     * nobody can see it and resumed when the app is back
+     */
+    public void setUiVisible(boolean visible) {
+        Logger.d(TAG, "setUiVisible() " + visible);
+
+        if (mUiVisible == visible) {
+            return;
+        }
+        mUiVisible = visible;
+        if (mWorkHandler == null) {
+            return;
+        }
+        mWorkHandler.post(() -> {
+            if (mRoster == null) {
+                return;
+            }
+
+            updateVideoPauses();
+            if (visible) {
+                Logger.d(TAG, "setUiVisible() | while hidden: " + mHiddenSavings.describe(mWorkScheduler.now(TimeUnit.MILLISECONDS)));
+            }
+        });
+    }
+
+    /**
+     * A tile moved on or off screen, from PeerGridView
+     */
+    public void setTileVisible(String peerId, boolean visible) {
+        if (mWorkHandler == null) {
+            return;
+        }
+        mWorkHandler.post(() -> {
+            if (mRoster == null) {
+                return;
+            }
+            if (visible ? mHiddenTiles.remove(peerId) : mHiddenTiles.add(peerId)) {
+                updateVideoPauses();
+            }
+        });
+    }
+
+    /**
+     * A tile was laid out at a new size, from PeerGridView. A new tile is laid out after its
+     * consumer is made, so there's one to size
+     */
+    public void setTileSize(String peerId, int width, int height) {
+        if (mWorkHandler == null) {
+            return;
+        }
+        mWorkHandler.post(() -> {
+            if (mRoster == null) {
+                return;
+            }
+
+            Consumer consumer = mPeerVideoConsumerMap.get(peerId);
+            if (consumer != null) {
+                mLayers.setTile(consumer.getId(), width, height);
+                updateLayers();
+            }
+        });
+    }
+
     public void switchCamera(CameraVideoCapturer.CameraSwitchHandler handler) {
         Logger.d(TAG, "switchCamera()");
-        mWorkHandler.post(() -> mPeerConnectionUtils.switchCam(handler));
+        mMediaHandler.post(() -> mPeerConnectionUtils.switchCam(handler));
     }
 
     public void muteMic() {
@@ -325,314 +761,300 @@ public class RoomClient {
         // this.mRtcClient = rtcClient;
     }
 
+    /**
+     * @return when each step of the last join finished, time to first local and remote frame included
+     */
+    public JoinTimeline getJoinTimeline() {
+        return mJoinTimeline;
+    }
+
     //endregion Interface
 
     //region Control
 
     @WorkerThread
     private void joinRoomImpl() {
-        if (mJoined) {
+        if (mJoined || mJoining) {
             return;
         }
 
         Log.d(TAG, "joinRoomImpl()");
 
-        JSONObject params = new JSONObject();
-        String endpoint = "join-as-new-peer";
-
-        try {
-            JSONObject response = syncSig(endpoint, params);
-            if (response instanceof JSONObject) {
-
-                String routerRtpCapabilities = response.optString("routerRtpCapabilities");
-                mMediasoupDevice.load(routerRtpCapabilities);
-
-                boolean canSendMic = mMicEnabled;
-                boolean canSendCam = mCamEnabled;
-
-//                if (!mMicEnabled) {
-                    canSendMic = mMediasoupDevice.canProduce("audio");
-//                }
-//                if (!mCamEnabled) {
-                    canSendCam = mMediasoupDevice.canProduce("video");
-//                }
-
-                /**
-                 * Create video/audio
-                 */
-//                if (canSendMic && !mMicEnabled) {
-//                    mMicEnabled = true;
-                    mWorkHandler.post(() -> enableMic());
-//                }
-//                if (canSendCam && !mCamEnabled) {
-//                    mCamEnabled = true;
-                    mWorkHandler.post(() -> enableCam());
-//                }
-
-                /**
-                 * Automatically (no user interaction) create send and recv transport
-                  */
-                createSendTransport();
-                createRecvTransport();
-            } else {
-                /**
-                 * Server error? Try again
-                 * TODO (mohamed): Implement exponential backoff
-                 */
-                mJoined = false;
-                mMainHandler.post(() -> joinRoom());
-                return;
-            }
-
-        } catch (JSONException e) {
-            e.printStackTrace();
-        } catch (MediasoupException e) {
-            e.printStackTrace();
-        }
-
-        mJoined = true;
-
-        JSONObject data = new JSONObject();
+        mJoining = true;
+
+        JoinOrchestrator orchestrator = new JoinOrchestrator(mJoinSteps, mWorkScheduler, mMediaScheduler, mJoinTimeline);
+        launch(orchestrator.join(), timeline -> {
+            mJoining = false;
+            mJoined = true;
+            Logger.d(TAG, "joinRoomImpl() | joined: " + timeline);
+        }, throwable -> {
+            Logger.e(TAG, "joinRoomImpl() | failed:", throwable);
+            mJoining = false;
+            retryJoin();
+        });
+    }
 
-        try {
-            data.putOpt("peerId", mMyPeerId);
-        } catch (JSONException e) {
-            e.printStackTrace();
+    /**
+     * TODO (mohamed): Implement exponential backoff
+     */
+    private void retryJoin() {
+        mJoined = false;
+        if (mMainHandler != null) {
+            mMainHandler.postDelayed(() -> joinRoom(), JOIN_RETRY_MS);
         }
-
-        mRtcClient.register(data, mListener);
     }
 
     /**
-     * Update logic. Compare the peer list with the cached list from last poll and determine
-     * if we want to subscribe, remove peers, or close consumers
+     * Update logic. Apply the sync reply to the roster and determine if we want to subscribe, remove
+     * peers, or close consumers for the peers that changed
      * TODO: Rename this to something more protocol-agnostic
      */
     @WorkerThread
-    private void pollAndUpdate(JSONObject response) {
+    private void pollAndUpdate(RosterUpdate update) {
 
-        if (response == null) {
+        if (mRoster == null) {
+            update.recycle();
             return;
         }
 
-        JSONObject peers = response.optJSONObject("peers");
+        mRoster.apply(update, mRosterListener);
+        update.recycle();
 
-        if (peers == null) {
-            return;
+        /**
+         * Once per update rather than per peer, a snapshot of a full room is one pass
+         */
+        if (mRosterChanged) {
+            mRosterChanged = false;
+            rebalance();
         }
+    }
 
-        // Logger.d(TAG, "lastPollSyncData:");
+    /**
+     * Hand the consumer budget out again and bring every peer's consumers in line with it
+     */
+    @WorkerThread
+    private void rebalance() {
         /**
-         * Go through the updated list of peers
+         * The active speakers are pinned so they always have a video consumer to resume
          */
-        for (Iterator<String> it = peers.keys(); it.hasNext();) {
-            String peerId = it.next();
+        updateSpeakers();
+        if (mBudget.update(mRoster.getPeers(), mSpeakers.getActive())) {
+            Logger.d(TAG, "rebalance() | video " + mBudget.getVideo() + ", audio " + mBudget.getAudio().size()
+                    + "/" + mBudget.getMaxAudio() + " of " + mRoster.getPeers().size() + " peers");
+        }
 
-            Logger.d(TAG, "Peer : " + peerId + " is me : " + peerId.equals(mMyPeerId));
-            if (mLastPollSyncData != null && !(mLastPollSyncData.opt(peerId) instanceof JSONObject)) {
-                Logger.d(TAG, "New peer " + peerId + " has joined");
-            }
+        for (Roster.Peer peer : mRoster.getPeers()) {
+            updateSubscriptions(peer);
+        }
 
-            /**
-             * Ignore Me
-             */
-            if (peerId.equals(mMyPeerId)) {
-                continue;
+        updateVideoPauses();
+    }
+
+    /**
+     * Resume the video consumers that should play and pause the others, on both sides
+     */
+    @WorkerThread
+    private void updateVideoPauses() {
+        long nowMs = mWorkScheduler.now(TimeUnit.MILLISECONDS);
+        for (Map.Entry<String, Consumer> entry : mPeerVideoConsumerMap.entrySet()) {
+            Consumer consumer = entry.getValue();
+            boolean play = shouldPlay(entry.getKey());
+            if (play && consumer.isPaused()) {
+                resumeConsumer(consumer);
+            } else if (!play && !consumer.isPaused()) {
+                pauseConsumer(consumer);
             }
 
             /**
-             * Check if this peer is sending video/audio
+             * Only the pauses hiding caused count, the other speakers would be paused anyway
              */
-            boolean isSendingVideo = peers.optJSONObject(peerId).optJSONObject("media").opt("cam-video") instanceof JSONObject;
-            boolean isSendingAudio = peers.optJSONObject(peerId).optJSONObject("media").opt("cam-audio") instanceof JSONObject;
+            mHiddenSavings.setPaused(consumer.getId(), !play && mSpeakers.isActive(entry.getKey()), nowMs);
+            mLayers.setPlaying(consumer.getId(), play);
+        }
+        updateLayers();
+    }
 
-            /**
-             * mMediaPeerId is the peer id we're currently subscribed/subscribing to
-             * Auto subscribe to the first peer on the list that is streaming. Ignore other peers
-              */
-            if (mMediaPeerId == null) {
-                if (isSendingVideo || isSendingAudio) {
-                    Assert.assertEquals(mPeerVideoConsumerMap.isEmpty(), mPeerAudioConsumerMap.isEmpty());
-                    mMediaPeerId = peerId;
-                }
-            } else if (!peerId.equals(mMediaPeerId)) {
-                continue;
-            }
+    /**
+     * Ask the server for the layers the tiles and the decoder call for, where that changed
+     */
+    @WorkerThread
+    private void updateLayers() {
+        for (Map.Entry<String, Integer> change : mLayers.update().entrySet()) {
+            Logger.d(TAG, "updateLayers() | " + change.getKey() + " prefers spatial layer " + change.getValue());
 
-            /**
-             * mPeerVideoConsumerMap maintains our subscribed video consumer.
-             * Subscribe to video/audio if the peer is sending but we're not subscribed.
-             * On the other hand, unsubscribe if the peer stopped sending video/audio
-             */
-            if (isSendingVideo && !mPeerVideoConsumerMap.containsKey(peerId)) {
-                mWorkHandler.post(() -> subscribeToVideo(peerId));
-            }
-            else if (!isSendingVideo && mPeerVideoConsumerMap.containsKey(peerId)) {
-                Logger.d(TAG, "peer " + peerId + " has stopped transmitting video");
-                closeConsumer(mPeerVideoConsumerMap.get(peerId), peerId);
+            try {
+                JSONObject params = new JSONObject()
+                        .put("consumerId", change.getKey())
+                        .put("spatialLayer", change.getValue());
+                launch(deferredSig("set-consumer-preferred-layers", params), response -> {}, "updateLayers()");
+            } catch (JSONException e) {
+                e.printStackTrace();
             }
+        }
+    }
 
-            /**
-             * mPeerAudioConsumerMap maintains our subscribed audio consumer.
-             */
-            if (isSendingAudio && !mPeerAudioConsumerMap.containsKey(peerId)) {
-                mWorkHandler.post(() -> subscribeToAudio(peerId));
-            }
-            else if (!isSendingAudio && mPeerAudioConsumerMap.containsKey(peerId)) {
-                Logger.d(TAG, "peer " + peerId + " has stopped transmitting audio");
-                closeConsumer(mPeerAudioConsumerMap.get(peerId), peerId);
+    /**
+     * @return whether the peer's video should play: it's an active speaker and its tile can be seen
+     */
+    @WorkerThread
+    private boolean shouldPlay(String peerId) {
+        return mSpeakers.isActive(peerId) && mUiVisible && !mHiddenTiles.contains(peerId);
+    }
+
+    /**
+     * @return whether the active speakers changed
+     */
+    @WorkerThread
+    private boolean updateSpeakers() {
+        Set<String> candidates = new LinkedHashSet<>();
+        for (Roster.Peer peer : mRoster.getPeers()) {
+            if (peer.isSendingVideo()) {
+                candidates.add(peer.getId());
             }
         }
 
-        /**
-         * Check we're never in a wrong state
-         * TODO (mohamed): Add more checks when only one kind is subscribed
-         */
-        if (!mPeerVideoConsumerMap.isEmpty() && !mPeerAudioConsumerMap.isEmpty()) {
-            Assert.assertEquals(mPeerVideoConsumerMap.keySet(), mPeerAudioConsumerMap.keySet());
-            Assert.assertEquals(mPeerVideoConsumerMap.keySet().size(), 1);
-            Assert.assertEquals(mPeerAudioConsumerMap.keySet().size(), 1);
-            Assert.assertEquals((String)mPeerVideoConsumerMap.keySet().iterator().next(), mMediaPeerId);
-            Assert.assertEquals((String)mPeerAudioConsumerMap.keySet().iterator().next(), mMediaPeerId);
+        if (!mSpeakers.update(candidates, mWorkScheduler.now(TimeUnit.MILLISECONDS))) {
+            return false;
         }
+        Logger.d(TAG, "updateSpeakers() | showing " + mSpeakers.getActive());
+        return true;
+    }
 
-        /**
-         * Go through the cached list and detect if the peer we're subscribed to has
-         * left the room
-         */
-        if (mLastPollSyncData != null) {
-            for (Iterator<String> it = mLastPollSyncData.keys(); it.hasNext(); ) {
-                String cachedPeerId = it.next();
+    /**
+     * One getStats() on the recv transport covers every consumer
+     */
+    @WorkerThread
+    private void sampleStats() {
+        if (mRecvTransport == null || (mPeerAudioConsumerMap.isEmpty() && mPeerVideoConsumerMap.isEmpty())) {
+            return;
+        }
 
-                /**
-                 * Ignore Me
-                 */
-                if (cachedPeerId.equals(mMyPeerId)) {
-                    continue;
-                }
+        StatsReport report;
+        try {
+            report = StatsReport.parse(mRecvTransport.getStats());
+        } catch (MediasoupException e) {
+            Logger.w(TAG, "sampleStats() | getStats failed: " + e.getMessage());
+            return;
+        }
 
-                /**
-                 * If the cached peer is not in the updated list unsubscribe
-                 */
-                if (!(peers.opt(cachedPeerId) instanceof JSONObject)) {
-                    Logger.d(TAG, "peer " + cachedPeerId + " has left the room");
-                    Consumer videoConsumer = mPeerVideoConsumerMap.get(cachedPeerId);
-                    Consumer audioConsumer = mPeerAudioConsumerMap.get(cachedPeerId);
-                    if (videoConsumer != null) {
-                        closeConsumer(videoConsumer, cachedPeerId);
-                    }
-                    if (audioConsumer != null) {
-                        closeConsumer(audioConsumer, cachedPeerId);
-                    }
-                    /**
-                     * Reset the remote peer id so we can look for another next poll
-                     */
-                    mMediaPeerId = null;
-                }
+        long nowMs = mWorkScheduler.now(TimeUnit.MILLISECONDS);
+        Map<String, Double> levels = AudioLevels.fromStats(report);
+        for (Map.Entry<String, Consumer> entry : mPeerAudioConsumerMap.entrySet()) {
+            Double level = levels.get(entry.getValue().getTrack().id());
+            if (level != null) {
+                mSpeakers.onAudioLevel(entry.getKey(), AudioLevels.toDbov(level), nowMs);
             }
         }
 
-        mLastPollSyncData = peers;
+        Map<String, DecodeCounters> counters = DecodeCounters.fromStats(report);
+        for (Consumer consumer : mPeerVideoConsumerMap.values()) {
+            DecodeCounters sample = counters.get(consumer.getTrack().id());
+            if (sample != null) {
+                mHiddenSavings.onStats(consumer.getId(), sample, nowMs);
+                mLayers.onFrameSize(consumer.getId(), sample.frameWidth, sample.frameHeight);
+            }
+        }
+        updateLayers();
     }
 
+    /**
+     * Subscribe to video/audio if the peer has a slot for it but we're not subscribed. On the other
+     * hand, unsubscribe if it lost the slot, e.g. it stopped sending
+     */
     @WorkerThread
-    private void subscribeToVideo(String mediaPeerId) {
-
-        JSONObject params = new JSONObject();
-        String endpoint = "recv-track";
-
-        try {
-
-            params.putOpt("rtpCapabilities", new JSONObject(mMediasoupDevice.getRtpCapabilities()));
-            params.putOpt("mediaTag", "cam-video");
-            params.putOpt("mediaPeerId", mediaPeerId);
+    private void updateSubscriptions(Roster.Peer peer) {
+        String peerId = peer.getId();
 
-            JSONObject data = syncSig(endpoint, params);
+        /**
+         * mPeerVideoConsumerMap/mPeerAudioConsumerMap maintain our subscribed consumers. Both kinds
+         * are subscribed to together when the peer gets both slots. Tracks already being
+         * subscribed to are left alone, their consumers only show up once recv-track answers
+         */
+        boolean subscribeVideo = mBudget.hasVideo(peerId) && !mPeerVideoConsumerMap.containsKey(peerId)
+                && mSubscriptions.begin(peerId, Roster.CAM_VIDEO);
+        boolean subscribeAudio = mBudget.hasAudio(peerId) && !mPeerAudioConsumerMap.containsKey(peerId)
+                && mSubscriptions.begin(peerId, Roster.CAM_AUDIO);
 
-            String peerId = mediaPeerId;
-            String producerId = data.optString("producerId");
-            String id = data.optString("id");
-            String kind = data.optString("kind");
-            String rtpParameters = data.optString("rtpParameters");
+        if (subscribeVideo || subscribeAudio) {
+            mWorkHandler.post(() -> subscribe(peerId, subscribeVideo, subscribeAudio));
+        }
 
-            /**
-             * mRecvTransport doesn't like it when we pass appData
-              */
-            Consumer consumer = mRecvTransport.consume(
-                    c -> {
-                        mConsumers.remove(c.getId());
-                        Logger.w(TAG, "onTransportClose for consume");
-                    },
-                    id,
-                    producerId,
-                    kind,
-                    rtpParameters);
+        closeUnwanted(peer);
+    }
 
-            mConsumers.put(consumer.getId(), consumer);
-            mPeerVideoConsumerMap.put(peerId, consumer);
+    /**
+     * Subscribe to a peer's video and/or audio, see TrackSubscriber. The tracks must have been begun
+     * in mSubscriptions
+     */
+    @WorkerThread
+    private void subscribe(String mediaPeerId, boolean video, boolean audio) {
+        if (mSubscriber != null) {
+            mSubscriber.subscribe(mediaPeerId, video, audio);
+        }
+    }
 
-            /**
-             * We just subscribed. Update the rendering UI if needed
-             */
-            if (kind.equals("video")) {
-                mMainHandler.post(() -> {
-                        SurfaceViewRenderer renderer = mContext.findViewById(R.id.remote_video_renderer);
-                        mRemoteVideoTrack = (VideoTrack) consumer.getTrack();
-                        mRemoteVideoTrack.addSink(renderer);
-                });
-            }
+    @WorkerThread
+    private void closeUnwanted(Roster.Peer peer) {
+        String peerId = peer.getId();
 
-            resumeConsumer(consumer);
+        if (!mBudget.hasVideo(peerId) && mPeerVideoConsumerMap.containsKey(peerId)) {
+            Logger.d(TAG, "peer " + peerId + " has no video slot, sending video: " + peer.isSendingVideo());
+            closeConsumer(mPeerVideoConsumerMap.get(peerId), peerId);
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            Logger.e(TAG, "\"newConsumer\" request failed:", e);
+        if (!mBudget.hasAudio(peerId) && mPeerAudioConsumerMap.containsKey(peerId)) {
+            Logger.d(TAG, "peer " + peerId + " has no audio slot, sending audio: " + peer.isSendingAudio());
+            closeConsumer(mPeerAudioConsumerMap.get(peerId), peerId);
         }
     }
 
+    /**
+     * Create the local consumer for a recv-track response and keep track of it
+     */
     @WorkerThread
-    private void subscribeToAudio(String mediaPeerId) {
+    private Consumer consume(String peerId, JSONObject data) throws MediasoupException {
+        String producerId = data.optString("producerId");
+        String id = data.optString("id");
+        String kind = data.optString("kind");
+        String rtpParameters = data.optString("rtpParameters");
 
-        JSONObject params = new JSONObject();
-        String endpoint = "recv-track";
-
-        try {
+        /**
+         * mRecvTransport doesn't like it when we pass appData
+         */
+        Consumer consumer = mRecvTransport.consume(
+                c -> {
+                    mConsumers.remove(c.getId());
+                    Logger.w(TAG, "onTransportClose for consume");
+                },
+                id,
+                producerId,
+                kind,
+                rtpParameters);
+
+        mConsumers.put(consumer.getId(), consumer);
+
+        if (kind.equals("video")) {
+            mPeerVideoConsumerMap.put(peerId, consumer);
+            mLayers.add(consumer.getId(), LayerController.spatialLayersOf(rtpParameters));
 
-            params.putOpt("rtpCapabilities", new JSONObject(mMediasoupDevice.getRtpCapabilities()));
-            params.putOpt("mediaTag", "cam-audio");
-            params.putOpt("mediaPeerId", mediaPeerId);
-
-            JSONObject data = syncSig(endpoint, params);
-
-            String peerId = mediaPeerId;
-            String producerId = data.optString("producerId");
-            String id = data.optString("id");
-            String kind = data.optString("kind");
-            String rtpParameters = data.optString("rtpParameters");
-            String type = data.optString("type");
-            String appData = data.optString("appData");
-            boolean producerPaused = data.optBoolean("producerPaused");
-
-            Consumer consumer = mRecvTransport.consume(
-                    c -> {
-                        mConsumers.remove(c.getId());
-                        Logger.w(TAG, "onTransportClose for consume");
-                    },
-                    id,
-                    producerId,
-                    kind,
-                    rtpParameters);
+            VideoTrack track = (VideoTrack) consumer.getTrack();
+            ProxyVideoSink sink = new ProxyVideoSink();
+            track.addSink(sink);
+            track.addSink(new FirstFrameSink(mJoinTimeline, JoinTimeline.Milestone.FIRST_REMOTE_FRAME, mWorkScheduler));
+            mRemoteSinks.put(peerId, sink);
 
-            mConsumers.put(consumer.getId(), consumer);
-            Logger.d(TAG, consumer.getAppData());
+            /**
+             * We just subscribed. Give the peer a tile
+             */
+            mMainHandler.post(() -> {
+                PeerGridView grid = mContext.findViewById(R.id.remote);
+                sink.setTarget(grid.addTile(peerId));
+            });
+        } else {
             mPeerAudioConsumerMap.put(peerId, consumer);
-
-            resumeConsumer(consumer);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            Logger.e(TAG, "\"newConsumer\" request failed:", e);
         }
+
+        return consumer;
     }
 
     @WorkerThread
@@ -656,18 +1078,10 @@ public class RoomClient {
             }
 
             if (mLocalVideoTrack == null) {
-                mLocalVideoTrack = mPeerConnectionUtils.createVideoTrack(Application.context.getApplicationContext(), "cam");
-                mLocalVideoTrack.setEnabled(true);
+                Logger.w(TAG, "enableCam() | no camera track");
+                return;
             }
 
-            /**
-             * Render local video
-             */
-            mMainHandler.post(() -> {
-                SurfaceViewRenderer renderer = mContext.findViewById(R.id.video_renderer);
-                mLocalVideoTrack.addSink(renderer);
-            });
-
             mCamProducer = mSendTransport.produce(
                     producer -> {
                         Logger.e(TAG, "onTransportClose(), camProducer");
@@ -677,10 +1091,11 @@ public class RoomClient {
                         }
                     },
                     mLocalVideoTrack,
-                    null,
+                    CameraEncodings.of(mSimulcastProfile),
                     null);
 
             mProducers.put(mCamProducer.getId(), mCamProducer);
+            Logger.d(TAG, "enableCam() | sending " + mSimulcastProfile);
         } catch (MediasoupException e) {
             e.printStackTrace();
             Logger.e(TAG, "enableWebcam() | failed:", e);
@@ -710,8 +1125,8 @@ public class RoomClient {
                 return;
             }
             if (mLocalAudioTrack == null) {
-                mLocalAudioTrack = mPeerConnectionUtils.createAudioTrack(Application.context.getApplicationContext(), "mic");
-                mLocalAudioTrack.setEnabled(true);
+                Logger.w(TAG, "enableMic() | no mic track");
+                return;
             }
             mMicProducer = mSendTransport.produce(
                     producer -> {
@@ -744,15 +1159,35 @@ public class RoomClient {
 
         try {
             params.putOpt("consumerId", consumer.getId());
-            syncSig(endpoint, params);
+
+            /**
+             * Off the track before it closes, then the tile goes
+             */
+            boolean video = consumer.getKind().equals("video");
+            if (video) {
+                mHiddenSavings.remove(consumer.getId(), mWorkScheduler.now(TimeUnit.MILLISECONDS));
+                mHiddenTiles.remove(peerId);
+                mLayers.remove(consumer.getId());
+                ProxyVideoSink sink = mRemoteSinks.remove(peerId);
+                if (sink != null) {
+                    ((VideoTrack) consumer.getTrack()).removeSink(sink);
+                    sink.setTarget(null);
+                }
+                mMainHandler.post(() -> {
+                    PeerGridView grid = mContext.findViewById(R.id.remote);
+                    grid.removeTile(peerId);
+                });
+            }
+
+            /**
+             * Nothing to wait for, the consumer is gone on our side whatever the server says
+             */
             consumer.close();
+            launch(deferredSig(endpoint, params), response -> {}, "closeConsumer()");
 
             try {
-                if (consumer.getKind().equals("video")) {
+                if (video) {
                     mPeerVideoConsumerMap.remove(peerId);
-                    SurfaceViewRenderer renderer = mContext.findViewById(R.id.remote_video_renderer);
-                    mRemoteVideoTrack.removeSink(renderer);
-                    renderer.clearImage();
                 }
                 else
                     mPeerAudioConsumerMap.remove(peerId);
@@ -772,6 +1207,11 @@ public class RoomClient {
         }
     }
 
+    /**
+     * Resumed on our side right away so the next rebalance() doesn't ask again while this is in
+     * flight. Frames start once the server has it, mediasoup asks the producer for a keyframe when
+     * a video consumer resumes so the tile doesn't wait for the next one
+     */
     @WorkerThread
     private void resumeConsumer(Consumer consumer) {
         Logger.d(TAG, "resumeConsumer() " + consumer.getId());
@@ -781,14 +1221,34 @@ public class RoomClient {
 
         try {
             params.putOpt("consumerId", consumer.getId());
-            syncSig(endpoint, params);
             consumer.resume();
+            launch(deferredSig(endpoint, params), response -> {}, "resumeConsumer()");
         } catch (Exception e) {
             e.printStackTrace();
             Logger.e(TAG, "resumeConsumer() | failed:", e);
         }
     }
 
+    /**
+     * The server stops forwarding, which is what saves downlink and decoding
+     */
+    @WorkerThread
+    private void pauseConsumer(Consumer consumer) {
+        Logger.d(TAG, "pauseConsumer() " + consumer.getId());
+
+        JSONObject params = new JSONObject();
+        String endpoint = "pause-consumer";
+
+        try {
+            params.putOpt("consumerId", consumer.getId());
+            consumer.pause();
+            launch(deferredSig(endpoint, params), response -> {}, "pauseConsumer()");
+        } catch (Exception e) {
+            e.printStackTrace();
+            Logger.e(TAG, "pauseConsumer() | failed:", e);
+        }
+    }
+
     @WorkerThread
     private void muteMicImpl() {
         Logger.d(TAG, "muteMicImpl()");
@@ -798,8 +1258,8 @@ public class RoomClient {
 
         try {
             params.putOpt("producerId", mMicProducer.getId());
-            syncSig(endpoint, params);
             mMicProducer.pause();
+            launch(deferredSig(endpoint, params), response -> {}, "muteMicImpl()");
         } catch (Exception e) {
             e.printStackTrace();
             Logger.e(TAG, "muteMicImpl() | failed:", e);
@@ -815,8 +1275,8 @@ public class RoomClient {
 
         try {
             params.putOpt("producerId", mMicProducer.getId());
-            syncSig(endpoint, params);
             mMicProducer.resume();
+            launch(deferredSig(endpoint, params), response -> {}, "unMuteMicImpl()");
         } catch (Exception e) {
             e.printStackTrace();
             Logger.e(TAG, "unmuteMicImpl() | failed:", e);
@@ -828,26 +1288,44 @@ public class RoomClient {
     //region Signaling
 
     /**
-     * Synchronous signaling oblivious of actual protocol
+     * Synchronous signaling oblivious of actual protocol. Only for the mediasoup transport callbacks,
+     * which have to answer before returning. mediasoup-client 3.0.4's Listener takes the producer id
+     * as onProduce()'s return value and has no callback to hand it over later, so these can't be made
+     * async. They block the work or media thread that called produce()/consume(), never the main one. Everything
+     * else goes through deferredSig()
      * @param endpoint path
      * @param data parameters
-     * @return blocking
+     * @return blocking, for SIGNALING_TIMEOUT_MS at most. null on failure
      */
     private JSONObject syncSig(String endpoint, JSONObject data) {
-
         try {
             /**
-             * All signaling should send peer id
+             * This will block
              */
-            data.putOpt("peerId", mMyPeerId);
-        } catch (JSONException e) {
-            e.printStackTrace();
+            return deferredSig(endpoint, data).blockingGet();
+        } catch (RuntimeException e) {
+            Logger.e(TAG, "syncSig() " + endpoint + " | failed:", e);
+            return null;
         }
+    }
 
-        /**
-         * This will block
-         */
-        return mRtcClient.fetch(endpoint, data);
+    /**
+     * Signaling oblivious of actual protocol. Nothing is sent until subscribed to
+     * @param endpoint path
+     * @param data parameters
+     * @return fails once SIGNALING_TIMEOUT_MS passes
+     */
+    private Single<JSONObject> deferredSig(String endpoint, JSONObject data) {
+        return mRtcClient.fetchSingle(endpoint, SignalingRequests.withPeerId(data, mMyPeerId), SIGNALING_TIMEOUT_MS);
+    }
+
+    /**
+     * Batch of operations sent in a single round trip. Nothing is sent until subscribed to
+     * @param batch operations, run by the server in order
+     * @return one response per operation, null for those that failed. Fails once SIGNALING_TIMEOUT_MS passes
+     */
+    private Single<List<JSONObject>> deferredBatchSig(BatchRequest batch) {
+        return mRtcClient.fetchBatchSingle(SignalingRequests.withPeerId(batch, mMyPeerId), SIGNALING_TIMEOUT_MS);
     }
 
     /**
@@ -856,15 +1334,49 @@ public class RoomClient {
      * @param data parameters
      */
     private void asyncSig(String endpoint, JSONObject data) {
-        try {
-            /**
-             * All signaling should send peer id
-             */
-            data.putOpt("peerId", mMyPeerId);
-        } catch (JSONException e) {
-            e.printStackTrace();
-        }
-        mRtcClient.fetchAsync(endpoint, data);
+        mRtcClient.fetchAsync(endpoint, SignalingRequests.withPeerId(data, mMyPeerId));
+    }
+
+    /**
+     * Run a signaling call and handle its result on the worker thread. It is cancelled by leaveRoom()
+     * and forgotten once done
+     * @param what logged on failure
+     * @return disposing it cancels the call, neither callback runs afterwards
+     */
+    private <T> Disposable launch(Single<T> call, io.reactivex.functions.Consumer<T> onSuccess, String what) {
+        return launch(call, onSuccess, throwable -> Logger.e(TAG, what + " | failed:", throwable));
+    }
+
+    private <T> Disposable launch(Single<T> call, io.reactivex.functions.Consumer<T> onSuccess,
+                                  io.reactivex.functions.Consumer<Throwable> onError) {
+        DisposableSingleObserver<T> observer = new DisposableSingleObserver<T>() {
+            @Override
+            public void onSuccess(T result) {
+                mDisposables.delete(this);
+                try {
+                    onSuccess.accept(result);
+                } catch (Exception e) {
+                    onError(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                mDisposables.delete(this);
+                try {
+                    onError.accept(throwable);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+
+        /**
+         * Added first so a leaveRoom() that already happened cancels it right away
+         */
+        mDisposables.add(observer);
+        call.observeOn(mWorkScheduler).subscribe(observer);
+        return observer;
     }
 
     //endregion Signaling
@@ -878,6 +1390,15 @@ public class RoomClient {
         mConsumers = new HashMap<>();
         mPeerVideoConsumerMap = new HashMap<>();
         mPeerAudioConsumerMap = new HashMap<>();
+        mBudget = new ConsumerBudget(MediaConfig.getMaxVideoConsumers(), MediaConfig.getMaxAudioConsumers());
+        mSpeakers = new SpeakerPolicy(Math.min(MediaConfig.getMaxActiveVideo(), mBudget.getMaxVideo()));
+        mHiddenTiles = new HashSet<>();
+        mHiddenSavings = new PauseSavings();
+        mSimulcastProfile = MediaConfig.getSimulcastProfile();
+        mLayers = new LayerController(CodecFactories.getDecodePixels());
+        mRemoteSinks = new HashMap<>();
+        mRoster = new Roster(mMyPeerId);
+        mSubscriptions = new SubscriptionRegistry();
 
         /**
          * Initialize the worker handler
@@ -885,25 +1406,54 @@ public class RoomClient {
         HandlerThread handlerThread = new HandlerThread("worker");
         handlerThread.start();
         mWorkHandler = new Handler(handlerThread.getLooper());
+        mWorkScheduler = AndroidSchedulers.from(handlerThread.getLooper());
+        mDisposables = new CompositeDisposable();
+        mSubscriber = new TrackSubscriber<>(mRtcClient, mMyPeerId, SIGNALING_TIMEOUT_MS, mWorkScheduler,
+                mSubscriptions, mSubscriberConsumers);
+
+        /**
+         * Initialize the media handler
+         */
+        HandlerThread mediaThread = new HandlerThread("media");
+        mediaThread.start();
+        mMediaHandler = new Handler(mediaThread.getLooper());
+        mMediaScheduler = AndroidSchedulers.from(mediaThread.getLooper());
 
         /**
          * Initialize the main thread handler
          */
         mMainHandler = new Handler(Looper.getMainLooper());
 
-        mWorkHandler.post(() -> {
+        mMediaHandler.post(() -> {
             mPeerConnectionUtils = new PeerConnectionUtils();
             /**
              * TODO: don't hardcode default values
              */
             PeerConnectionUtils.setPreferCameraFace("front");
+
+            /**
+             * Runs while the permissions are asked for, so the capture step of the join only has
+             * to create the tracks and open the camera
+             */
+            mPeerConnectionUtils.warmUp(Application.context.getApplicationContext());
         });
 
         mListener = new ISignalingStrategy.ISignalListener() {
             @Override
-            public void onResponse(JSONObject response) {
+            public void onRosterUpdate(RosterUpdate update) {
+                if (mWorkHandler != null) {
+                    mWorkHandler.post(() -> pollAndUpdate(update));
+                }
+            }
+
+            @Override
+            public void onActiveSpeaker(String peerId, double volumeDbov) {
                 if (mWorkHandler != null) {
-                    mWorkHandler.post(() -> pollAndUpdate(response));
+                    mWorkHandler.post(() -> {
+                        if (mSpeakers != null) {
+                            mSpeakers.onAudioLevel(peerId, volumeDbov, mWorkScheduler.now(TimeUnit.MILLISECONDS));
+                        }
+                    });
                 }
             }
         };
@@ -912,18 +1462,23 @@ public class RoomClient {
     /**
      * Utility function to create a transport and hook up signaling logic
      * appropriate to the transport's direction
+     * @param response the server's answer to create-transport
      */
     @WorkerThread
-    private void createSendTransport() throws JSONException, MediasoupException {
+    private void createSendTransport(JSONObject response) throws JSONException, MediasoupException, SignalingException {
         Logger.d(TAG, "createSendTransport()");
 
-        JSONObject params = new JSONObject();
-        String endpoint = "create-transport";
+        if (mSendTransport != null) {
+            /**
+             * A retried join, signal() didn't ask for another one
+             */
+            return;
+        }
+        if (response == null) {
+            throw new SignalingException("create-transport failed", SignalingException.NO_STATUS, null);
+        }
 
         try {
-            params.putOpt("direction", "send");
-
-            JSONObject response = syncSig(endpoint, params);
             JSONObject info = null;
             info = response.getJSONObject("transportOptions");
             Logger.d(TAG, "device#createSendTransport() " + info);
@@ -940,22 +1495,24 @@ public class RoomClient {
     }
 
     @WorkerThread
-    private void createRecvTransport() throws JSONException, MediasoupException {
+    private void createRecvTransport(JSONObject response) throws JSONException, MediasoupException, SignalingException {
         Logger.d(TAG, "createRecvTransport()");
 
-        JSONObject params = new JSONObject();
-        String endpoint = "create-transport";
+        if (mRecvTransport != null) {
+            /**
+             * A retried join, signal() didn't ask for another one
+             */
+            return;
+        }
+        if (response == null) {
+            throw new SignalingException("create-transport failed", SignalingException.NO_STATUS, null);
+        }
 
         try {
-            params.putOpt("direction", "recv");
-
-            JSONObject response = syncSig(endpoint, params);
-
             JSONObject info = null;
             info = response.getJSONObject("transportOptions");
             Logger.d(TAG, "device#createRecvTransport() " + info);
             String id = info.optString("id");
-            String appData = info.optString("appData");
             String iceParameters = info.optString("iceParameters");
             String iceCandidates = info.optString("iceCandidates");
             String dtlsParameters = info.optString("dtlsParameters");
@@ -968,21 +1525,20 @@ public class RoomClient {
     }
 
     /**
-     * Ported from client.js
-     * @return
+     * Transports belong to the device that created them, they go when it does
      */
-    private static String uuidv4() {
-        Pattern pattern = Pattern.compile("[018]");
-        Matcher matcher = pattern.matcher("111-111-1111");
-        StringBuffer buffer = new StringBuffer();
-        while (matcher.find()) {
-            SecureRandom random = new SecureRandom();
-            byte[] bytes = new byte[1];
-            random.nextBytes(bytes);
-            matcher.appendReplacement(buffer, Integer.toString(bytes[0] & 15, 16));
+    @WorkerThread
+    private void disposeTransports() {
+        if (mSendTransport != null) {
+            mSendTransport.close();
+            mSendTransport.dispose();
+            mSendTransport = null;
+        }
+        if (mRecvTransport != null) {
+            mRecvTransport.close();
+            mRecvTransport.dispose();
+            mRecvTransport = null;
         }
-        matcher.appendTail(buffer);
-        return buffer.toString();
     }
 
     //endregion Utilities
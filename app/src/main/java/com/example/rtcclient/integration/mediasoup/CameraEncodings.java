@@ -0,0 +1,47 @@
+package com.example.rtcclient.integration.mediasoup;
+
+import androidx.annotation.Nullable;
+
+import com.example.rtcclient.media.SimulcastProfile;
+
+import org.mediasoup.droid.Logger;
+import org.webrtc.RtpParameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a SimulcastProfile into the encodings the camera producer is made with
+ */
+public class CameraEncodings {
+
+    private static final String TAG = "CameraEncodings";
+
+    /**
+     * This WebRTC's RtpParameters.Encoding has no scalabilityMode, so SVC can't be asked for. An
+     * "L" mode is sent as simulcast of the same layers instead, which the SFU switches between
+     * just as well at the cost of an encoder per layer
+     * @return one encoding per spatial layer, lowest first. Null for a single layer, WebRTC then
+     * picks the bitrate as it did before profiles
+     */
+    @Nullable
+    public static List<RtpParameters.Encoding> of(SimulcastProfile profile) {
+        if (profile.isSingleLayer()) {
+            return null;
+        }
+        if (profile.isSvc() && profile.getSpatialLayers() > 1) {
+            Logger.w(TAG, "of() | no SVC in this WebRTC, sending " + profile.getScalabilityMode() + " as simulcast");
+        }
+
+        List<RtpParameters.Encoding> encodings = new ArrayList<>();
+        List<SimulcastProfile.Layer> layers = profile.getLayers();
+        for (int i = 0; i < layers.size(); i++) {
+            SimulcastProfile.Layer layer = layers.get(i);
+            RtpParameters.Encoding encoding = new RtpParameters.Encoding("r" + i, true, layer.scaleResolutionDownBy);
+            encoding.maxBitrateBps = layer.maxBitrateBps;
+            encoding.numTemporalLayers = profile.getTemporalLayers();
+            encodings.add(encoding);
+        }
+        return encodings;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.rtcclient.integration.mediasoup;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Range;
+
+import androidx.annotation.Nullable;
+
+import org.mediasoup.droid.Logger;
+import org.webrtc.DefaultVideoDecoderFactory;
+import org.webrtc.DefaultVideoEncoderFactory;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.VideoDecoder;
+import org.webrtc.VideoDecoderFactory;
+import org.webrtc.VideoEncoder;
+import org.webrtc.VideoEncoderFactory;
+
+import java.util.Arrays;
+
+/**
+ * The video encoder and decoder factories, shared by every PeerConnectionFactory in the process.
+ * getSupportedCodecs() walks MediaCodecList each time it's asked, so the answers are probed once,
+ * ahead of the first join, and kept
+ */
+public class CodecFactories {
+
+    private static final String TAG = "CodecFactories";
+
+    /**
+     * Two 1080p streams, about what a mid-range phone's hardware VP8 decoder keeps up with
+     */
+    public static final long DEFAULT_DECODE_PIXELS = 2L * 1920 * 1080;
+
+    private static VideoEncoderFactory sEncoderFactory;
+    private static VideoDecoderFactory sDecoderFactory;
+    private static volatile long sProbeMs = -1;
+    private static volatile long sDecodePixels = -1;
+
+    public static synchronized VideoEncoderFactory getEncoderFactory() {
+        if (sEncoderFactory == null) {
+            sEncoderFactory = new CachingEncoderFactory(new DefaultVideoEncoderFactory(
+                    PeerConnectionUtils.getEglContext(), true /* enableIntelVp8Encoder */, true));
+        }
+        return sEncoderFactory;
+    }
+
+    public static synchronized VideoDecoderFactory getDecoderFactory() {
+        if (sDecoderFactory == null) {
+            sDecoderFactory = new CachingDecoderFactory(new DefaultVideoDecoderFactory(PeerConnectionUtils.getEglContext()));
+        }
+        return sDecoderFactory;
+    }
+
+    /**
+     * Probe the hardware codecs on a background thread. Doesn't block, whoever asks first while it
+     * runs waits for it instead of probing again
+     */
+    public static void prewarm() {
+        new Thread(CodecFactories::probe, "codec-probe").start();
+    }
+
+    /**
+     * @return how long probing took, -1 if it hasn't finished
+     */
+    public static long getProbeMs() {
+        return sProbeMs;
+    }
+
+    /**
+     * @return most pixels a frame, summed over every video, the VP8 decoder handles at 30 fps.
+     * DEFAULT_DECODE_PIXELS if the platform doesn't say
+     */
+    public static long getDecodePixels() {
+        if (sDecodePixels < 0) {
+            sDecodePixels = probeDecodePixels();
+        }
+        return sDecodePixels;
+    }
+
+    private static void probe() {
+        long startMs = SystemClock.elapsedRealtime();
+        try {
+            int encoders = getEncoderFactory().getSupportedCodecs().length;
+            int decoders = getDecoderFactory().getSupportedCodecs().length;
+            long decodePixels = getDecodePixels();
+            sProbeMs = SystemClock.elapsedRealtime() - startMs;
+            Logger.d(TAG, "probe() | " + encoders + " encoders, " + decoders + " decoders, decoding "
+                    + decodePixels + " px a frame in " + sProbeMs + "ms");
+        } catch (RuntimeException e) {
+            /**
+             * The factories probe again the first time they're used
+             */
+            Logger.e(TAG, "probe() | failed", e);
+        }
+    }
+
+    /**
+     * The biggest common size the VP8 decoder takes at 30 fps, scaled by how much faster than that
+     * it goes
+     */
+    private static long probeDecodePixels() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return DEFAULT_DECODE_PIXELS;
+        }
+
+        int[][] sizes = {{1920, 1080}, {1280, 720}, {640, 480}};
+        try {
+            for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                if (info.isEncoder() || !Arrays.asList(info.getSupportedTypes()).contains("video/x-vnd.on2.vp8")) {
+                    continue;
+                }
+
+                MediaCodecInfo.VideoCapabilities capabilities = info.getCapabilitiesForType("video/x-vnd.on2.vp8").getVideoCapabilities();
+                for (int[] size : sizes) {
+                    if (capabilities.areSizeAndRateSupported(size[0], size[1], 30)) {
+                        Range<Double> fps = capabilities.getSupportedFrameRatesFor(size[0], size[1]);
+                        return (long) (size[0] * size[1] * Math.min(fps.getUpper(), 120.0) / 30);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            Logger.w(TAG, "probeDecodePixels() | " + e.getMessage());
+        }
+        return DEFAULT_DECODE_PIXELS;
+    }
+
+    private static class CachingEncoderFactory implements VideoEncoderFactory {
+
+        private final VideoEncoderFactory mFactory;
+        private VideoCodecInfo[] mSupportedCodecs;
+
+        CachingEncoderFactory(VideoEncoderFactory factory) {
+            mFactory = factory;
+        }
+
+        @Nullable
+        @Override
+        public VideoEncoder createEncoder(VideoCodecInfo info) {
+            return mFactory.createEncoder(info);
+        }
+
+        @Override
+        public synchronized VideoCodecInfo[] getSupportedCodecs() {
+            if (mSupportedCodecs == null) {
+                mSupportedCodecs = mFactory.getSupportedCodecs();
+            }
+            return mSupportedCodecs;
+        }
+    }
+
+    private static class CachingDecoderFactory implements VideoDecoderFactory {
+
+        private final VideoDecoderFactory mFactory;
+        private VideoCodecInfo[] mSupportedCodecs;
+
+        CachingDecoderFactory(VideoDecoderFactory factory) {
+            mFactory = factory;
+        }
+
+        @Nullable
+        @Override
+        public VideoDecoder createDecoder(VideoCodecInfo info) {
+            return mFactory.createDecoder(info);
+        }
+
+        @Override
+        public synchronized VideoCodecInfo[] getSupportedCodecs() {
+            if (mSupportedCodecs == null) {
+                mSupportedCodecs = mFactory.getSupportedCodecs();
+            }
+            return mSupportedCodecs;
+        }
+    }
+}
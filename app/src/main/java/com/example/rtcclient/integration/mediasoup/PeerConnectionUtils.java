@@ -1,6 +1,7 @@
 package com.example.rtcclient.integration.mediasoup;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -13,8 +14,6 @@ import org.webrtc.Camera1Enumerator;
 import org.webrtc.Camera2Enumerator;
 import org.webrtc.CameraEnumerator;
 import org.webrtc.CameraVideoCapturer;
-import org.webrtc.DefaultVideoDecoderFactory;
-import org.webrtc.DefaultVideoEncoderFactory;
 import org.webrtc.EglBase;
 import org.webrtc.MediaConstraints;
 import org.webrtc.PeerConnectionFactory;
@@ -51,11 +50,44 @@ public class PeerConnectionUtils {
     private AudioSource mAudioSource;
     private VideoSource mVideoSource;
     private CameraVideoCapturer mCamCapture;
+    private long mWarmUpMs;
 
     public PeerConnectionUtils() {
         mThreadChecker = new ThreadUtils.ThreadChecker();
     }
 
+    /**
+     * Build the factory, the audio device module, the audio source and the camera capturer ahead of
+     * the first track, e.g. while the permission dialog is up. None of it needs the permissions yet.
+     * On failure the tracks build whatever is missing as before
+     */
+    public void warmUp(Context context) {
+        Logger.d(TAG, "warmUp()");
+        mThreadChecker.checkIsOnValidThread();
+        long startMs = SystemClock.elapsedRealtime();
+        try {
+            if (mAudioSource == null) {
+                createAudioSource(context);
+            }
+            if (mCamCapture == null) {
+                createCamCapture(context);
+            }
+        } catch (RuntimeException e) {
+            Logger.e(TAG, "warmUp() | failed", e);
+            return;
+        }
+        mWarmUpMs = SystemClock.elapsedRealtime() - startMs;
+        Logger.d(TAG, "warmUp() | done in " + mWarmUpMs + "ms");
+    }
+
+    /**
+     * @return how long warmUp() took, the time it takes off creating the first tracks. 0 if it
+     * didn't run or failed
+     */
+    public long getWarmUpMs() {
+        return mWarmUpMs;
+    }
+
     // PeerConnection factory creation.
     private void createPeerConnectionFactory(Context context) {
         Logger.d(TAG, "createPeerConnectionFactory()");
@@ -65,11 +97,8 @@ public class PeerConnectionUtils {
 
         AudioDeviceModule adm = createJavaAudioDevice(context);
         adm.setSpeakerMute(false);
-        VideoEncoderFactory encoderFactory =
-                new DefaultVideoEncoderFactory(
-                        mEglBase.getEglBaseContext(), true /* enableIntelVp8Encoder */, true);
-        VideoDecoderFactory decoderFactory =
-                new DefaultVideoDecoderFactory(mEglBase.getEglBaseContext());
+        VideoEncoderFactory encoderFactory = CodecFactories.getEncoderFactory();
+        VideoDecoderFactory decoderFactory = CodecFactories.getDecoderFactory();
 
         mPeerConnectionFactory =
                 builder
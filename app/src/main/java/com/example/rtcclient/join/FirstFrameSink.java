@@ -0,0 +1,44 @@
+package com.example.rtcclient.join;
+
+import org.mediasoup.droid.Logger;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+
+/**
+ * Marks a milestone when the first frame of a track is rendered. Stays attached afterwards: taking
+ * a sink off a track from inside onFrame() can deadlock, and looking at a flag per frame is free
+ */
+public class FirstFrameSink implements VideoSink {
+
+    private static final String TAG = "FirstFrameSink";
+
+    private final JoinTimeline mTimeline;
+    private final JoinTimeline.Milestone mMilestone;
+    private final Scheduler mClock;
+    private volatile boolean mSeen;
+
+    /**
+     * @param clock the one the timeline was started with
+     */
+    public FirstFrameSink(JoinTimeline timeline, JoinTimeline.Milestone milestone, Scheduler clock) {
+        mTimeline = timeline;
+        mMilestone = milestone;
+        mClock = clock;
+    }
+
+    @Override
+    public void onFrame(VideoFrame frame) {
+        if (mSeen) {
+            return;
+        }
+        mSeen = true;
+
+        if (mTimeline.mark(mMilestone, mClock.now(TimeUnit.MILLISECONDS))) {
+            Logger.d(TAG, mMilestone + " after " + mTimeline.get(mMilestone) + "ms | " + mTimeline);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.rtcclient.join;
+
+import com.example.rtcclient.join.JoinTimeline.Milestone;
+import com.example.rtcclient.network.SignalingException;
+
+import org.json.JSONObject;
+import org.mediasoup.droid.Logger;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+
+/**
+ * Joins a room running the steps that don't depend on each other at the same time
+ *
+ *  signaling (join + create-transport x2) --+--> load device --> recv transport --> send transport --+
+ *  preload device from cache ---------------+                                                        |
+ *  camera and mic warm-up ---------------------------------------------------------------------------+--> produce
+ *
+ * The server creates both transports in the same round trip as the join. Capture runs on its own
+ * thread while that is in flight and the device loads. With cached router capabilities the device
+ * is loaded before the join answers, and loading it again is skipped unless the answer differs.
+ * mediasoup objects aren't thread-safe so the device and transport steps run one after the other
+ * on the worker, receiving first so the roster is followed before we start sending. A failed
+ * capture still joins, receive-only
+ */
+public class JoinOrchestrator {
+
+    private static final String TAG = "JoinOrchestrator";
+
+    /**
+     * What joining is made of. Each step runs on the thread given in its description
+     */
+    public interface Steps {
+
+        /**
+         * join-as-new-peer, then create-transport for send and recv, in one round trip. A retry
+         * leaves out the transports the previous attempt created
+         * @return the three responses in that order, null for those that failed or weren't asked for
+         */
+        Single<List<JSONObject>> signal();
+
+        /**
+         * Create the local tracks and start the camera. Capture scheduler
+         */
+        void warmUpCapture() throws Exception;
+
+        /**
+         * Load the device with the capabilities the server had last time, if we know them. Worker
+         * @return false if there was nothing to load it with
+         */
+        boolean preloadDevice() throws Exception;
+
+        /**
+         * Worker. Cheap if preloadDevice() guessed right
+         * @param join the answer to join-as-new-peer
+         */
+        void loadDevice(JSONObject join) throws Exception;
+
+        /**
+         * Worker
+         */
+        void createRecvTransport(JSONObject response) throws Exception;
+
+        /**
+         * We can receive. Start following the roster. Worker
+         */
+        void onReceiving();
+
+        /**
+         * Worker
+         */
+        void createSendTransport(JSONObject response) throws Exception;
+
+        /**
+         * Capture is ready and so is the send transport. Worker
+         */
+        void produce();
+    }
+
+    private final Steps mSteps;
+    private final Scheduler mWorker;
+    private final Scheduler mCapture;
+    private final JoinTimeline mTimeline;
+
+    /**
+     * @param worker where mediasoup is used, also the clock of the timeline
+     * @param capture where warmUpCapture() runs
+     */
+    public JoinOrchestrator(Steps steps, Scheduler worker, Scheduler capture, JoinTimeline timeline) {
+        mSteps = steps;
+        mWorker = worker;
+        mCapture = capture;
+        mTimeline = timeline;
+    }
+
+    /**
+     * Nothing happens until subscribed to. Disposing it stops the steps that haven't started
+     * @return the timeline once producing (or receiving, if capture failed). Fails if signaling or
+     * a device or transport step does, in which case the join should be retried
+     */
+    public Single<JoinTimeline> join() {
+        return Single.defer(() -> {
+            mTimeline.start(now());
+
+            /**
+             * Never fails, so a camera error after a failed join was given up on has nowhere to go
+             */
+            Single<Boolean> capture = Single.fromCallable(() -> {
+                try {
+                    mSteps.warmUpCapture();
+                } catch (Exception e) {
+                    Logger.e(TAG, "join() | capture failed, joining receive-only", e);
+                    return false;
+                }
+                mark(Milestone.CAPTURE_READY);
+                return true;
+            }).subscribeOn(mCapture);
+
+            /**
+             * A wrong guess only costs a reload, so this never fails either
+             */
+            Single<Boolean> preload = Single.fromCallable(() -> {
+                try {
+                    if (mSteps.preloadDevice()) {
+                        mark(Milestone.DEVICE_PRELOADED);
+                    }
+                } catch (Exception e) {
+                    Logger.w(TAG, "join() | preloading the device failed: " + e);
+                }
+                return true;
+            }).subscribeOn(mWorker);
+
+            Single<Boolean> transports = Single.zip(mSteps.signal(), preload, (responses, preloaded) -> responses)
+                    .observeOn(mWorker)
+                    .map(responses -> {
+                        mark(Milestone.SIGNALED);
+
+                        JSONObject join = responses.get(0);
+                        if (join == null) {
+                            throw new SignalingException("join-as-new-peer failed", SignalingException.NO_STATUS, null);
+                        }
+
+                        mSteps.loadDevice(join);
+                        mark(Milestone.DEVICE_LOADED);
+
+                        mSteps.createRecvTransport(responses.get(2));
+                        mark(Milestone.RECV_TRANSPORT_CREATED);
+                        mSteps.onReceiving();
+
+                        mSteps.createSendTransport(responses.get(1));
+                        mark(Milestone.SEND_TRANSPORT_CREATED);
+                        return true;
+                    });
+
+            /**
+             * Both start right away. Whichever is last picks up produce()
+             */
+            return Single.zip(transports, capture, (ready, captured) -> captured)
+                    .observeOn(mWorker)
+                    .map(captured -> {
+                        if (captured) {
+                            mSteps.produce();
+                            mark(Milestone.PRODUCING);
+                        }
+                        return mTimeline;
+                    });
+        });
+    }
+
+    public JoinTimeline getTimeline() {
+        return mTimeline;
+    }
+
+    private void mark(Milestone milestone) {
+        mTimeline.mark(milestone, now());
+    }
+
+    private long now() {
+        return mWorker.now(TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.rtcclient.join;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * When each step of joining a room finished, relative to the start of the join. Only the first
+ * time a milestone is reached counts, so a later frame doesn't move it. A retried join calls
+ * start() again, which resets the timeline
+ */
+public class JoinTimeline {
+
+    public static final long NOT_YET = -1;
+
+    public enum Milestone {
+        /**
+         * join-as-new-peer and both create-transports answered
+         */
+        SIGNALED,
+        /**
+         * Loaded from cached capabilities, while signaling was in flight
+         */
+        DEVICE_PRELOADED,
+        DEVICE_LOADED,
+        RECV_TRANSPORT_CREATED,
+        SEND_TRANSPORT_CREATED,
+        /**
+         * Camera and mic tracks exist and the camera was started
+         */
+        CAPTURE_READY,
+        PRODUCING,
+        FIRST_LOCAL_FRAME,
+        FIRST_REMOTE_FRAME
+    }
+
+    private volatile long mStartMs = NOT_YET;
+    private volatile long mWarmUpMs;
+    private final AtomicLongArray mAtMs = new AtomicLongArray(Milestone.values().length);
+
+    public JoinTimeline() {
+        clear();
+    }
+
+    /**
+     * Forgets every milestone and starts over
+     */
+    public void start(long nowMs) {
+        clear();
+        mStartMs = nowMs;
+    }
+
+    /**
+     * @return false if it was reached before or the join hasn't started
+     */
+    public boolean mark(Milestone milestone, long nowMs) {
+        long startMs = mStartMs;
+        if (startMs == NOT_YET) {
+            return false;
+        }
+        return mAtMs.compareAndSet(milestone.ordinal(), NOT_YET, Math.max(0, nowMs - startMs));
+    }
+
+    /**
+     * @return ms from the start of the join, NOT_YET if it hasn't been reached
+     */
+    public long get(Milestone milestone) {
+        return mAtMs.get(milestone.ordinal());
+    }
+
+    /**
+     * Media setup done before the join started that capture would otherwise have waited for. Taken
+     * off CAPTURE_READY and, when capture is the long pole, off FIRST_LOCAL_FRAME and PRODUCING
+     */
+    public void setWarmUpMs(long warmUpMs) {
+        mWarmUpMs = warmUpMs;
+    }
+
+    public long getWarmUpMs() {
+        return mWarmUpMs;
+    }
+
+    private void clear() {
+        mStartMs = NOT_YET;
+        mWarmUpMs = 0;
+        for (int i = 0; i < mAtMs.length(); i++) {
+            mAtMs.set(i, NOT_YET);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Milestone milestone : Milestone.values()) {
+            long atMs = get(milestone);
+            if (atMs != NOT_YET) {
+                builder.append(builder.length() > 0 ? " " : "").append(milestone).append('=').append(atMs).append("ms");
+            }
+        }
+        if (builder.length() == 0) {
+            return "not started";
+        }
+        if (mWarmUpMs > 0) {
+            builder.append(" (").append(mWarmUpMs).append("ms of media setup done ahead)");
+        }
+        return builder.toString();
+    }
+}
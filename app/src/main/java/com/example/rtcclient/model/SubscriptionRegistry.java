@@ -0,0 +1,93 @@
+package com.example.rtcclient.model;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * SubscriptionRegistry keeps track of the subscriptions (recv-track and what follows) still in
+ * flight, per peer and media tag. A roster update that comes in before the consumer exists would
+ * otherwise ask for the same track again, so callers check begin() before sending anything
+ *
+ * In-flight calls are attached to their peer so they can be dropped when the peer leaves
+ */
+public class SubscriptionRegistry {
+
+    private static class Pending {
+        final Set<String> mediaTags = new HashSet<>();
+        final CompositeDisposable calls = new CompositeDisposable();
+    }
+
+    private final Map<String, Pending> mPending = new HashMap<>();
+
+    /**
+     * @return false if the track is already being subscribed to, there is nothing to send
+     */
+    public synchronized boolean begin(String peerId, String mediaTag) {
+        Pending pending = mPending.get(peerId);
+        if (pending == null) {
+            pending = new Pending();
+            mPending.put(peerId, pending);
+        }
+        return pending.mediaTags.add(mediaTag);
+    }
+
+    public synchronized boolean isPending(String peerId, String mediaTag) {
+        Pending pending = mPending.get(peerId);
+        return pending != null && pending.mediaTags.contains(mediaTag);
+    }
+
+    /**
+     * The call subscribing to the peer's tracks, disposed by cancel()
+     */
+    public synchronized void attach(String peerId, Disposable call) {
+        Pending pending = mPending.get(peerId);
+        if (pending == null) {
+            call.dispose();
+            return;
+        }
+        pending.calls.add(call);
+    }
+
+    /**
+     * The track is subscribed to, or failed to be. Cancelled calls never get here so this is always
+     * about the current begin()
+     */
+    public synchronized void finish(String peerId, String mediaTag) {
+        Pending pending = mPending.get(peerId);
+        if (pending == null) {
+            return;
+        }
+        pending.mediaTags.remove(mediaTag);
+        if (pending.mediaTags.isEmpty()) {
+            /**
+             * Whatever is left in calls is done
+             */
+            mPending.remove(peerId);
+        }
+    }
+
+    /**
+     * Drops everything in flight for the peer, i.e. it left
+     * @return whether anything was
+     */
+    public synchronized boolean cancel(String peerId) {
+        Pending pending = mPending.remove(peerId);
+        if (pending == null) {
+            return false;
+        }
+        pending.calls.dispose();
+        return true;
+    }
+
+    public synchronized void clear() {
+        for (Pending pending : mPending.values()) {
+            pending.calls.dispose();
+        }
+        mPending.clear();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.rtcclient.model;
+
+import com.example.rtcclient.network.BatchRequest;
+import com.example.rtcclient.network.ISignalingStrategy;
+import com.example.rtcclient.network.SignalingRequests;
+
+import org.json.JSONObject;
+import org.mediasoup.droid.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.observers.DisposableSingleObserver;
+
+/**
+ * TrackSubscriber subscribes to a peer's video and/or audio. The recv-track requests go out in one
+ * batch and so do the resume-consumer requests that follow, through whichever ISignalingStrategy
+ * it's given. The worker is free while either is in flight
+ *
+ * The tracks must have been begun in the SubscriptionRegistry, which is told when they're done and
+ * holds the call so a peer leaving cancels it. What the consumers are is up to Consumers, RoomClient
+ * makes mediasoup ones
+ *
+ * @param <C> the local consumer type
+ */
+public class TrackSubscriber<C> {
+
+    private static final String TAG = "TrackSubscriber";
+    private static final String RESUME_CONSUMER = "resume-consumer";
+
+    /**
+     * The local side of a subscription. Everything is called on the worker
+     */
+    public interface Consumers<C> {
+
+        JSONObject getRtpCapabilities() throws Exception;
+
+        /**
+         * Create the local consumer for a recv-track answer and keep track of it
+         */
+        C consume(String peerId, JSONObject data) throws Exception;
+
+        String getId(C consumer);
+
+        /**
+         * @return false to leave it paused, the server creates consumers that way
+         */
+        boolean shouldPlay(String peerId, C consumer);
+
+        void pause(C consumer);
+
+        /**
+         * The server resumed it
+         */
+        void resume(C consumer);
+
+        /**
+         * The tracks aren't in flight any more, whether they were subscribed to or not
+         */
+        void onFinished(String peerId);
+    }
+
+    private final ISignalingStrategy mSignaling;
+    private final String mMyPeerId;
+    private final long mTimeoutMs;
+    private final Scheduler mWorker;
+    private final SubscriptionRegistry mRegistry;
+    private final Consumers<C> mConsumers;
+
+    /**
+     * @param timeoutMs deadline for each batch
+     * @param worker where Consumers is called
+     */
+    public TrackSubscriber(ISignalingStrategy signaling, String myPeerId, long timeoutMs, Scheduler worker,
+                           SubscriptionRegistry registry, Consumers<C> consumers) {
+        mSignaling = signaling;
+        mMyPeerId = myPeerId;
+        mTimeoutMs = timeoutMs;
+        mWorker = worker;
+        mRegistry = registry;
+        mConsumers = consumers;
+    }
+
+    /**
+     * Worker
+     */
+    public void subscribe(String mediaPeerId, boolean video, boolean audio) {
+        if ((video && !mRegistry.isPending(mediaPeerId, Roster.CAM_VIDEO))
+                || (audio && !mRegistry.isPending(mediaPeerId, Roster.CAM_AUDIO))) {
+            /**
+             * The peer left before we got to it
+             */
+            return;
+        }
+
+        BatchRequest batch = new BatchRequest();
+        String endpoint = SignalingRequests.RECV_TRACK;
+
+        try {
+            JSONObject rtpCapabilities = mConsumers.getRtpCapabilities();
+
+            if (video) {
+                batch.add(endpoint, SignalingRequests.recvTrack(rtpCapabilities, Roster.CAM_VIDEO, mediaPeerId));
+            }
+            if (audio) {
+                batch.add(endpoint, SignalingRequests.recvTrack(rtpCapabilities, Roster.CAM_AUDIO, mediaPeerId));
+            }
+        } catch (Exception e) {
+            Logger.e(TAG, "\"newConsumer\" request failed:", e);
+            finish(mediaPeerId, video, audio);
+            return;
+        }
+
+        Single<List<C>> playing = send(batch)
+                .observeOn(mWorker)
+                .map(responses -> {
+                    List<C> consumers = new ArrayList<>();
+                    for (JSONObject data : responses) {
+                        if (data == null) {
+                            Logger.e(TAG, "\"newConsumer\" request failed");
+                            continue;
+                        }
+                        consumers.add(mConsumers.consume(mediaPeerId, data));
+                    }
+                    return consumers;
+                })
+                .flatMap(consumers -> {
+                    List<C> resumed = new ArrayList<>();
+                    BatchRequest resume = new BatchRequest();
+                    for (C consumer : consumers) {
+                        if (!mConsumers.shouldPlay(mediaPeerId, consumer)) {
+                            mConsumers.pause(consumer);
+                            continue;
+                        }
+                        resumed.add(consumer);
+                        resume.add(RESUME_CONSUMER, new JSONObject().put("consumerId", mConsumers.getId(consumer)));
+                    }
+                    if (resume.size() == 0) {
+                        return Single.just(resumed);
+                    }
+                    return send(resume).map(responses -> resumed);
+                })
+                .observeOn(mWorker);
+
+        DisposableSingleObserver<List<C>> call = new DisposableSingleObserver<List<C>>() {
+            @Override
+            public void onSuccess(List<C> consumers) {
+                for (C consumer : consumers) {
+                    Logger.d(TAG, "resumeConsumer() " + mConsumers.getId(consumer));
+                    mConsumers.resume(consumer);
+                }
+                finish(mediaPeerId, video, audio);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                Logger.e(TAG, "subscribe() | failed:", throwable);
+                finish(mediaPeerId, video, audio);
+            }
+        };
+
+        /**
+         * Attached first so a peer that already left cancels it right away
+         */
+        mRegistry.attach(mediaPeerId, call);
+        playing.subscribe(call);
+    }
+
+    private Single<List<JSONObject>> send(BatchRequest batch) {
+        return mSignaling.fetchBatchSingle(SignalingRequests.withPeerId(batch, mMyPeerId), mTimeoutMs);
+    }
+
+    private void finish(String mediaPeerId, boolean video, boolean audio) {
+        if (video) {
+            mRegistry.finish(mediaPeerId, Roster.CAM_VIDEO);
+        }
+        if (audio) {
+            mRegistry.finish(mediaPeerId, Roster.CAM_AUDIO);
+        }
+        mConsumers.onFinished(mediaPeerId);
+    }
+}
@@ -1,18 +1,96 @@
 package com.example.rtcclient.network;
 
+import com.example.rtcclient.model.RosterUpdate;
+
 import org.json.JSONObject;
 
+import java.util.List;
+
+import io.reactivex.Single;
+
 public interface ISignalingStrategy {
 
+    /**
+     * The endpoint polling transports pull the roster from
+     */
+    String SYNC_PATH = "sync";
+
     JSONObject fetch(String path, JSONObject params);
 
     void fetchAsync(String path, JSONObject params);
 
+    /**
+     * Send several operations in a single round trip. Blocks like fetch()
+     * @param batch operations, run by the server in order
+     * @return one response per operation in the same order. null for the operations that failed
+     */
+    List<JSONObject> fetchBatch(BatchRequest batch);
+
+    /**
+     * Non-blocking fetch. Nothing is sent until the Single is subscribed to and disposing it cancels
+     * the call. Fails with a SignalingException if the server or the transport fails and with a
+     * TimeoutException once the deadline passes
+     * @param timeoutMs deadline for this call
+     */
+    Single<JSONObject> fetchSingle(String path, JSONObject params, long timeoutMs);
+
+    /**
+     * Non-blocking fetchBatch(). Only the batch as a whole can fail (same as fetchSingle), failed
+     * operations are null entries in the list
+     * @param timeoutMs deadline for the whole batch
+     */
+    Single<List<JSONObject>> fetchBatchSingle(BatchRequest batch, long timeoutMs);
+
+    /**
+     * One SYNC_PATH request, the ones register() keeps sending on polling transports. Push-based
+     * protocols send one for the snapshot they start from. Fails the same way fetchSingle() does
+     * @param params what register() was given plus the loop's own (version, wait...)
+     * @param timeoutMs deadline for this call
+     * @return the roster or what changed in it, from RosterUpdate's pool. The subscriber owns it
+     */
+    Single<RosterUpdate> fetchSync(JSONObject params, long timeoutMs);
+
     void register(JSONObject params, ISignalListener listener);
 
+    /**
+     * Same as register(params, listener) but lets the caller pick how roster updates are pulled
+     * @param mode see SyncMode. Push-based protocols are free to ignore it
+     */
+    void register(JSONObject params, ISignalListener listener, SyncMode mode);
+
+    /**
+     * register() for decorators. Transports send their sync requests, or a push-based one its
+     * snapshot, through via.fetchSync() so the decorators in front of them retry, hedge and record
+     * those too
+     * @param via the outermost strategy
+     */
+    default void register(JSONObject params, ISignalListener listener, SyncMode mode, ISignalingStrategy via) {
+        register(params, listener, mode);
+    }
+
     void unRegister();
 
+    /**
+     * POLL asks the server for the roster at a fixed interval. LONG_POLL sends the last roster
+     * version we saw and the server holds the request until the roster changes or it times out,
+     * so updates are delivered as soon as they happen without a request every second
+     */
+    enum SyncMode {
+        POLL,
+        LONG_POLL
+    }
+
     interface ISignalListener {
-        void onResponse(JSONObject response);
+        /**
+         * A roster change. The listener owns the update and should recycle() it once applied
+         */
+        void onRosterUpdate(RosterUpdate update);
+
+        /**
+         * The server heard a peer speak. Only protocols with server pushes deliver these
+         * @param volumeDbov 0 is the loudest
+         */
+        default void onActiveSpeaker(String peerId, double volumeDbov) {
+        }
     }
 }
@@ -0,0 +1,249 @@
+package com.example.rtcclient.network;
+
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.network.metrics.EndpointMetrics;
+import com.example.rtcclient.network.metrics.SignalingMetrics;
+
+import org.json.JSONObject;
+import org.mediasoup.droid.Logger;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Single;
+
+/**
+ * InstrumentedSignalingStrategy wraps any ISignalingStrategy and records, per endpoint, how long
+ * calls take, how big requests and responses are, how many fail or time out and how many are in
+ * flight (see SignalingMetrics). Put it right around the transport so each attempt a
+ * ResilientSignalingStrategy makes is recorded on its own
+ *
+ * Payload sizes are the length of the JSON text, which is what the socket sends. HttpClient may
+ * put MessagePack on the wire, which is smaller. Writing the JSON out again only to measure it
+ * isn't free, so only one call in setSizeSampling() is measured. Sync replies are measured by
+ * RosterParser anyway and always recorded
+ */
+public class InstrumentedSignalingStrategy implements ISignalingStrategy {
+
+    private static final String TAG = "InstrumentedSignaling";
+    /**
+     * fetchAsync() goes through fetchSingle() so we see it end. Same budget ResilientSignalingStrategy
+     * gives calls that don't have one
+     */
+    private static final long ASYNC_TIMEOUT_MS = ResilientSignalingStrategy.DEFAULT_BUDGET_MS;
+    public static final int DEFAULT_SIZE_SAMPLING = 16;
+
+    private final ISignalingStrategy mDelegate;
+    private final SignalingMetrics mMetrics;
+    private final AtomicInteger mCalls = new AtomicInteger();
+    private volatile int mSizeSampling = DEFAULT_SIZE_SAMPLING;
+
+    public InstrumentedSignalingStrategy(ISignalingStrategy delegate) {
+        this(delegate, new SignalingMetrics());
+    }
+
+    /**
+     * @param metrics can be shared with other strategies, e.g. to keep counting after switching
+     */
+    public InstrumentedSignalingStrategy(ISignalingStrategy delegate, SignalingMetrics metrics) {
+        mDelegate = delegate;
+        mMetrics = metrics;
+    }
+
+    /**
+     * Poll snapshot() or export it, it's cheap
+     */
+    public SignalingMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * @param everyNth calls whose payload sizes are measured, 1 for all of them
+     */
+    public InstrumentedSignalingStrategy setSizeSampling(int everyNth) {
+        mSizeSampling = Math.max(1, everyNth);
+        return this;
+    }
+
+    //region ISignalingStrategy
+
+    /**
+     * The delegate returns null on failure, which can't tell a timeout from an error. Those are
+     * counted as errors
+     */
+    @Override
+    public JSONObject fetch(String path, JSONObject params) {
+        boolean sized = sampleSize();
+        EndpointMetrics.Call call = mMetrics.endpoint(path).start(now(), sized ? sizeOf(params) : -1);
+
+        try {
+            JSONObject response = mDelegate.fetch(path, params);
+            if (response != null) {
+                call.succeed(now(), sized ? sizeOf(response) : -1);
+            } else {
+                call.fail(now(), false);
+            }
+            return response;
+        } catch (RuntimeException e) {
+            call.fail(now(), isTimeout(e));
+            throw e;
+        }
+    }
+
+    @Override
+    public void fetchAsync(String path, JSONObject params) {
+        fetchSingle(path, params, ASYNC_TIMEOUT_MS).subscribe(
+                response -> {
+                },
+                throwable -> Logger.e(TAG, "fetchAsync() | " + path + " failed", throwable));
+    }
+
+    /**
+     * Recorded as one call to BatchRequest.PATH. It failed if every operation did
+     */
+    @Override
+    public List<JSONObject> fetchBatch(BatchRequest batch) {
+        boolean sized = sampleSize();
+        EndpointMetrics.Call call = mMetrics.endpoint(BatchRequest.PATH).start(now(), sized ? sizeOf(batch) : -1);
+
+        try {
+            List<JSONObject> responses = mDelegate.fetchBatch(batch);
+            if (failed(responses)) {
+                call.fail(now(), false);
+            } else {
+                call.succeed(now(), sized ? sizeOf(responses) : -1);
+            }
+            return responses;
+        } catch (RuntimeException e) {
+            call.fail(now(), isTimeout(e));
+            throw e;
+        }
+    }
+
+    @Override
+    public Single<JSONObject> fetchSingle(String path, JSONObject params, long timeoutMs) {
+        return Single.defer(() -> {
+            boolean sized = sampleSize();
+            EndpointMetrics.Call call = mMetrics.endpoint(path).start(now(), sized ? sizeOf(params) : -1);
+
+            return mDelegate.fetchSingle(path, params, timeoutMs)
+                    .doOnSuccess(response -> call.succeed(now(), sized ? sizeOf(response) : -1))
+                    .doOnError(throwable -> call.fail(now(), isTimeout(throwable)))
+                    .doOnDispose(call::cancel);
+        });
+    }
+
+    @Override
+    public Single<List<JSONObject>> fetchBatchSingle(BatchRequest batch, long timeoutMs) {
+        return Single.defer(() -> {
+            boolean sized = sampleSize();
+            EndpointMetrics.Call call = mMetrics.endpoint(BatchRequest.PATH).start(now(), sized ? sizeOf(batch) : -1);
+
+            return mDelegate.fetchBatchSingle(batch, timeoutMs)
+                    .doOnSuccess(responses -> call.succeed(now(), sized ? sizeOf(responses) : -1))
+                    .doOnError(throwable -> call.fail(now(), isTimeout(throwable)))
+                    .doOnDispose(call::cancel);
+        });
+    }
+
+    /**
+     * register() sends the sync loop's requests through here, they're recorded under SYNC_PATH
+     */
+    @Override
+    public Single<RosterUpdate> fetchSync(JSONObject params, long timeoutMs) {
+        return Single.defer(() -> {
+            EndpointMetrics.Call call = mMetrics.endpoint(SYNC_PATH).start(now(), sampleSize() ? sizeOf(params) : -1);
+
+            return mDelegate.fetchSync(params, timeoutMs)
+                    .doOnSuccess(update -> call.succeed(now(), update.getSizeBytes()))
+                    .doOnError(throwable -> call.fail(now(), isTimeout(throwable)))
+                    .doOnDispose(call::cancel);
+        });
+    }
+
+    /**
+     * POLL, as HttpClient does
+     */
+    @Override
+    public void register(JSONObject params, ISignalListener listener) {
+        register(params, listener, SyncMode.POLL);
+    }
+
+    @Override
+    public void register(JSONObject params, ISignalListener listener, SyncMode mode) {
+        mDelegate.register(params, listener, mode, this);
+    }
+
+    @Override
+    public void register(JSONObject params, ISignalListener listener, SyncMode mode, ISignalingStrategy via) {
+        mDelegate.register(params, listener, mode, via);
+    }
+
+    /**
+     * Leaving the room is a good time to look at how it went
+     */
+    @Override
+    public void unRegister() {
+        mDelegate.unRegister();
+        for (EndpointMetrics.Snapshot endpoint : mMetrics.snapshot()) {
+            Logger.d(TAG, endpoint.toString());
+        }
+    }
+
+    //endregion ISignalingStrategy
+
+    //region Helpers
+
+    /**
+     * Rx's timeout() and the transports' own socket timeouts
+     */
+    static boolean isTimeout(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean sampleSize() {
+        return mCalls.getAndIncrement() % mSizeSampling == 0;
+    }
+
+    private static boolean failed(List<JSONObject> responses) {
+        for (JSONObject response : responses) {
+            if (response != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int sizeOf(JSONObject json) {
+        return json != null ? json.toString().length() : -1;
+    }
+
+    private static int sizeOf(BatchRequest batch) {
+        int size = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            size += Math.max(0, sizeOf(batch.getParams(i)));
+        }
+        return size;
+    }
+
+    private static int sizeOf(List<JSONObject> responses) {
+        int size = 0;
+        for (JSONObject response : responses) {
+            size += Math.max(0, sizeOf(response));
+        }
+        return size;
+    }
+
+    private static long now() {
+        return System.nanoTime();
+    }
+
+    //endregion Helpers
+}
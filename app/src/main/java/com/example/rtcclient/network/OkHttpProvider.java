@@ -0,0 +1,155 @@
+package com.example.rtcclient.network;
+
+import java.io.IOException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * OkHttpProvider holds the one OkHttpClient every signaling strategy goes through, so HTTP and
+ * WebSocket signaling share the connection pool, dispatcher and TLS sessions
+ *
+ * - HTTP/2 is negotiated over TLS (ALPN) and multiplexes every request on one connection. Plain
+ *   http:// hosts stay on HTTP/1.1 with keep-alive
+ * - Idle connections are kept around long enough to outlive the gaps between polls
+ * - TLS sessions are cached so a new connection to the same host resumes instead of a full handshake
+ *
+ * Derive specialised clients with get().newBuilder(), which keeps sharing all of the above
+ */
+public final class OkHttpProvider {
+
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int TLS_SESSION_CACHE_SIZE = 32;
+    private static final int TLS_SESSION_TIMEOUT_S = (int) TimeUnit.HOURS.toSeconds(1);
+
+    private static OkHttpClient sClient;
+
+    private OkHttpProvider() {
+    }
+
+    public static synchronized OkHttpClient get() {
+        if (sClient == null) {
+            sClient = newClient();
+        }
+        return sClient;
+    }
+
+    /**
+     * Open a connection to the host ahead of the first signaling request (DNS, TCP and TLS). Doesn't
+     * block and failures are ignored, the first real request just pays for the setup instead
+     * @param url anything on the signaling host
+     */
+    public static void prewarm(String url) {
+        Request request;
+        try {
+            request = new Request.Builder().url(url).head().build();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+
+        get().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                /**
+                 * Closing the body hands the connection back to the pool
+                 */
+                response.close();
+            }
+        });
+    }
+
+    /**
+     * @return a client that trusts every certificate, for signaling servers with self-signed ones.
+     * Shares the pool with get() and keeps its own TLS session cache
+     */
+    public static OkHttpClient getUnsafe() {
+        return UnsafeHolder.CLIENT;
+    }
+
+    private static OkHttpClient newClient() {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .retryOnConnectionFailure(true);
+
+        try {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init((KeyStore) null);
+            X509TrustManager trustManager = (X509TrustManager) factory.getTrustManagers()[0];
+            builder.sslSocketFactory(cachingContext(trustManager).getSocketFactory(), trustManager);
+        } catch (Exception e) {
+            /**
+             * OkHttp's own defaults still work, just without the tuned session cache
+             */
+            e.printStackTrace();
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * One SSLContext per trust manager for the lifetime of the app. Sessions live in the context so
+     * reusing it is what makes resumption possible
+     */
+    private static SSLContext cachingContext(X509TrustManager trustManager) throws Exception {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, new TrustManager[]{trustManager}, null);
+        context.getClientSessionContext().setSessionCacheSize(TLS_SESSION_CACHE_SIZE);
+        context.getClientSessionContext().setSessionTimeout(TLS_SESSION_TIMEOUT_S);
+        return context;
+    }
+
+    private static class UnsafeHolder {
+
+        static final OkHttpClient CLIENT = newUnsafeClient();
+
+        private static OkHttpClient newUnsafeClient() {
+            X509TrustManager trustAll = new X509TrustManager() {
+                @Override
+                public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                // Called reflectively by X509TrustManagerExtensions.
+                public void checkServerTrusted(X509Certificate[] chain, String authType, String host) {
+                }
+
+                @Override
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[]{};
+                }
+            };
+
+            try {
+                return get().newBuilder()
+                        .sslSocketFactory(cachingContext(trustAll).getSocketFactory(), trustAll)
+                        .hostnameVerifier((hostname, session) -> true)
+                        .build();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
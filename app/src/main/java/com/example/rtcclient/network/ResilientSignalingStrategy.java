@@ -0,0 +1,321 @@
+package com.example.rtcclient.network;
+
+import com.example.rtcclient.model.RosterUpdate;
+
+import org.json.JSONObject;
+import org.mediasoup.droid.Logger;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.exceptions.CompositeException;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * ResilientSignalingStrategy wraps any ISignalingStrategy so a dropped connection or an overloaded
+ * server doesn't fail the call outright
+ *
+ * - The timeout given to fetchSingle()/fetchBatchSingle() is the budget for the whole operation.
+ *   Each attempt gets what is left of it and there's no retry once it runs out
+ * - Only idempotent operations are retried, the others could run twice on the server. Batches are
+ *   retried if all their operations are
+ * - Retries wait a random time up to an exponentially growing backoff (full jitter) so clients
+ *   that failed together don't come back together
+ * - Idempotent reads can be hedged: if the first attempt hasn't answered after a delay a second
+ *   one is sent and whichever answers first wins
+ * - register() hands the transport this strategy's fetchSync(), so a polling transport's sync
+ *   requests get all of the above too. Long-polls are held by the server on purpose and never hedged
+ *
+ * Retried: transport failures, timeouts, 5xx and 429. Other statuses are the server saying no
+ */
+public class ResilientSignalingStrategy implements ISignalingStrategy {
+
+    private static final String TAG = "ResilientSignalingStrategy";
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_BACKOFF_BASE_MS = 100;
+    public static final long DEFAULT_BACKOFF_CAP_MS = 2000;
+    /**
+     * Budget for the blocking calls, which don't take one
+     */
+    public static final long DEFAULT_BUDGET_MS = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * Safe to run more than once on the mediasoup demo server. Not "join-as-new-peer", the server
+     * resets the peer's producers and consumers every time. Servers that don't can addIdempotent() it
+     */
+    public static final Set<String> DEFAULT_IDEMPOTENT = new HashSet<>(Arrays.asList(
+            "sync", "leave",
+            "pause-producer", "resume-producer", "close-producer",
+            "pause-consumer", "resume-consumer", "close-consumer", "set-consumer-preferred-layers"));
+
+    private final ISignalingStrategy mDelegate;
+    private final Set<String> mIdempotent = new HashSet<>(DEFAULT_IDEMPOTENT);
+    /**
+     * path -> hedge delay
+     */
+    private final Map<String, Long> mHedged = new HashMap<>();
+    private int mMaxRetries = DEFAULT_MAX_RETRIES;
+    private long mBackoffBaseMs = DEFAULT_BACKOFF_BASE_MS;
+    private long mBackoffCapMs = DEFAULT_BACKOFF_CAP_MS;
+    private Scheduler mScheduler = Schedulers.computation();
+    private Random mRandom = new Random();
+
+    public ResilientSignalingStrategy(ISignalingStrategy delegate) {
+        mDelegate = delegate;
+    }
+
+    //region Configuration
+
+    /**
+     * @param maxRetries on top of the first attempt
+     */
+    public ResilientSignalingStrategy setMaxRetries(int maxRetries) {
+        mMaxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Retry n waits up to min(capMs, baseMs * 2^n)
+     */
+    public ResilientSignalingStrategy setBackoff(long baseMs, long capMs) {
+        mBackoffBaseMs = baseMs;
+        mBackoffCapMs = capMs;
+        return this;
+    }
+
+    public ResilientSignalingStrategy addIdempotent(String... paths) {
+        mIdempotent.addAll(Arrays.asList(paths));
+        return this;
+    }
+
+    /**
+     * Hedge an idempotent read. A delay around the usual p95 latency only costs a few percent more
+     * requests
+     */
+    public ResilientSignalingStrategy hedge(String path, long delayMs) {
+        addIdempotent(path);
+        mHedged.put(path, delayMs);
+        return this;
+    }
+
+    /**
+     * Where backoffs and hedge delays are waited on
+     */
+    public ResilientSignalingStrategy setScheduler(Scheduler scheduler) {
+        mScheduler = scheduler;
+        return this;
+    }
+
+    public ResilientSignalingStrategy setRandom(Random random) {
+        mRandom = random;
+        return this;
+    }
+
+    //endregion Configuration
+
+    //region ISignalingStrategy
+
+    /**
+     * @return null on failure, same as every other strategy
+     */
+    @Override
+    public JSONObject fetch(String path, JSONObject params) {
+        try {
+            /**
+             * This will block
+             */
+            return fetchSingle(path, params, DEFAULT_BUDGET_MS).blockingGet();
+        } catch (RuntimeException e) {
+            Logger.e(TAG, "fetch() | " + path + " failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * Idempotent operations are retried in the background, the others go straight to the delegate
+     */
+    @Override
+    public void fetchAsync(String path, JSONObject params) {
+        if (!mIdempotent.contains(path)) {
+            mDelegate.fetchAsync(path, params);
+            return;
+        }
+
+        fetchSingle(path, params, DEFAULT_BUDGET_MS).subscribe(
+                response -> {
+                },
+                throwable -> Logger.e(TAG, "fetchAsync() | " + path + " failed", throwable));
+    }
+
+    @Override
+    public List<JSONObject> fetchBatch(BatchRequest batch) {
+        /**
+         * This will block
+         */
+        return fetchBatchSingle(batch, DEFAULT_BUDGET_MS).onErrorReturnItem(batch.failed()).blockingGet();
+    }
+
+    @Override
+    public Single<JSONObject> fetchSingle(String path, JSONObject params, long timeoutMs) {
+        return withHedge(path, mHedged.get(path), timeoutMs,
+                remainingMs -> mDelegate.fetchSingle(path, params, remainingMs), response -> {
+                });
+    }
+
+    @Override
+    public Single<RosterUpdate> fetchSync(JSONObject params, long timeoutMs) {
+        Long hedgeDelayMs = params.has("wait") ? null : mHedged.get(SYNC_PATH);
+        return withHedge(SYNC_PATH, hedgeDelayMs, timeoutMs,
+                remainingMs -> mDelegate.fetchSync(params, remainingMs), RosterUpdate::recycle);
+    }
+
+    @Override
+    public Single<List<JSONObject>> fetchBatchSingle(BatchRequest batch, long timeoutMs) {
+        boolean idempotent = true;
+        for (int i = 0; i < batch.size(); i++) {
+            idempotent &= mIdempotent.contains(batch.getPath(i));
+        }
+
+        return withBudget(BatchRequest.PATH, idempotent, timeoutMs,
+                remainingMs -> mDelegate.fetchBatchSingle(batch, remainingMs));
+    }
+
+    /**
+     * POLL, as HttpClient does
+     */
+    @Override
+    public void register(JSONObject params, ISignalListener listener) {
+        register(params, listener, SyncMode.POLL);
+    }
+
+    @Override
+    public void register(JSONObject params, ISignalListener listener, SyncMode mode) {
+        mDelegate.register(params, listener, mode, this);
+    }
+
+    @Override
+    public void register(JSONObject params, ISignalListener listener, SyncMode mode, ISignalingStrategy via) {
+        mDelegate.register(params, listener, mode, via);
+    }
+
+    @Override
+    public void unRegister() {
+        mDelegate.unRegister();
+    }
+
+    //endregion ISignalingStrategy
+
+    //region Retries
+
+    /**
+     * withBudget() for a single call, hedged when a delay is given
+     * @param hedgeDelayMs null to not hedge
+     * @param discard given the loser's answer when both attempts answer before it's cancelled
+     */
+    private <T> Single<T> withHedge(String path, Long hedgeDelayMs, long budgetMs, Function<Long, Single<T>> call,
+                                    Consumer<? super T> discard) {
+        if (hedgeDelayMs == null) {
+            return withBudget(path, mIdempotent.contains(path), budgetMs, call);
+        }
+
+        return withBudget(path, true, budgetMs, remainingMs -> {
+            AtomicBoolean answered = new AtomicBoolean();
+            Single<T> first = firstAnswer(call.apply(remainingMs), answered, discard);
+            Single<T> second = Single.timer(hedgeDelayMs, TimeUnit.MILLISECONDS, mScheduler)
+                    .flatMap(ignored -> firstAnswer(call.apply(Math.max(1, remainingMs - hedgeDelayMs)), answered, discard));
+
+            /**
+             * The first answer wins and the other one is cancelled. Fails only once both have
+             */
+            return Single.mergeDelayError(first, second).firstOrError();
+        });
+    }
+
+    /**
+     * Lets only the first of the hedged answers through. The cancel can come too late for the other
+     * one, it's discarded instead of leaking
+     */
+    private static <T> Single<T> firstAnswer(Single<T> attempt, AtomicBoolean answered, Consumer<? super T> discard) {
+        return attempt.flatMap(value -> {
+            if (answered.compareAndSet(false, true)) {
+                return Single.just(value);
+            }
+            discard.accept(value);
+            return Single.never();
+        });
+    }
+
+    /**
+     * @param call one attempt, given the budget left
+     * @return fails with the last attempt's error, or a TimeoutException if the budget ran out first
+     */
+    private <T> Single<T> withBudget(String what, boolean retry, long budgetMs, Function<Long, Single<T>> call) {
+        return Single.defer(() -> attempt(what, retry, now() + budgetMs, 0, call));
+    }
+
+    private <T> Single<T> attempt(String what, boolean retry, long deadline, int retries, Function<Long, Single<T>> call) throws Exception {
+        long remainingMs = deadline - now();
+        if (remainingMs <= 0) {
+            return Single.error(new TimeoutException(what + " ran out of time"));
+        }
+
+        return call.apply(remainingMs).onErrorResumeNext(throwable -> {
+            if (!retry || retries >= mMaxRetries || !isRetryable(throwable)) {
+                return Single.error(throwable);
+            }
+
+            long backoffMs = backoffMs(retries);
+            if (now() + backoffMs >= deadline) {
+                return Single.error(throwable);
+            }
+
+            return Single.timer(backoffMs, TimeUnit.MILLISECONDS, mScheduler)
+                    .flatMap(ignored -> attempt(what, true, deadline, retries + 1, call));
+        });
+    }
+
+    /**
+     * @return a random wait up to min(cap, base * 2^retries)
+     */
+    long backoffMs(int retries) {
+        long ceiling = Math.min(mBackoffCapMs, mBackoffBaseMs << Math.min(retries, 30));
+        synchronized (mRandom) {
+            return (long) (mRandom.nextDouble() * ceiling);
+        }
+    }
+
+    static boolean isRetryable(Throwable throwable) {
+        if (throwable instanceof CompositeException) {
+            /**
+             * Both hedged attempts failed, the first one decides
+             */
+            return isRetryable(((CompositeException) throwable).getExceptions().get(0));
+        }
+        if (throwable instanceof TimeoutException) {
+            return true;
+        }
+        if (throwable instanceof SignalingException) {
+            int status = ((SignalingException) throwable).getStatusCode();
+            return status == SignalingException.NO_STATUS || status >= 500 || status == 429;
+        }
+        return false;
+    }
+
+    private long now() {
+        return mScheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    //endregion Retries
+}
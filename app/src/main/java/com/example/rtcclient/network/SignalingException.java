@@ -0,0 +1,23 @@
+package com.example.rtcclient.network;
+
+/**
+ * A signaling call failed, either on the server (statusCode is set) or on the way there
+ */
+public class SignalingException extends Exception {
+
+    /**
+     * The transport didn't get a status code i.e. the connection failed
+     */
+    public static final int NO_STATUS = -1;
+
+    private final int mStatusCode;
+
+    public SignalingException(String message, int statusCode, Throwable cause) {
+        super(message, cause);
+        mStatusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.rtcclient.network.http;
+
+/**
+ * The delay before the next poll. Roster changes and local actions (which usually change the
+ * roster) bring it down to the minimum for a few polls, every quiet poll after that multiplies it
+ * until it hits the maximum
+ */
+public class AdaptiveInterval {
+
+    static final double BACKOFF = 2;
+    /**
+     * Polls kept at the minimum after activity, changes tend to come in bursts (i.e. a peer joins
+     * then starts its camera and mic)
+     */
+    static final int FAST_POLLS = 3;
+
+    private long mMinMs;
+    private long mMaxMs;
+    private long mCurrentMs;
+    private int mFastPollsLeft;
+
+    public AdaptiveInterval(long minMs, long maxMs) {
+        setBounds(minMs, maxMs);
+    }
+
+    /**
+     * @param maxMs raised to minMs if lower
+     */
+    synchronized void setBounds(long minMs, long maxMs) {
+        mMinMs = minMs;
+        mMaxMs = Math.max(minMs, maxMs);
+        mCurrentMs = Math.min(Math.max(mCurrentMs, mMinMs), mMaxMs);
+    }
+
+    synchronized long getMinMs() {
+        return mMinMs;
+    }
+
+    synchronized long current() {
+        return mCurrentMs;
+    }
+
+    /**
+     * The roster changed or we did something that will probably change it
+     */
+    synchronized void onActivity() {
+        mCurrentMs = mMinMs;
+        mFastPollsLeft = FAST_POLLS;
+    }
+
+    /**
+     * A poll found nothing new (or failed)
+     */
+    synchronized void onQuiet() {
+        if (mFastPollsLeft > 0) {
+            mFastPollsLeft--;
+            return;
+        }
+        mCurrentMs = Math.min(mMaxMs, (long) (mCurrentMs * BACKOFF));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.rtcclient.network.http;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.example.rtcclient.network.codec.CodecNegotiator;
+import com.example.rtcclient.network.codec.SignalingCodec;
+import com.example.rtcclient.network.codec.SignalingCodecs;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JsonObjectRequest with the body encoded and the response decoded by whichever codec was negotiated
+ * (see SignalingCodecs)
+ */
+class CodecRequest extends Request<JSONObject> {
+
+    private final Object mLock = new Object();
+    private final CodecNegotiator mNegotiator;
+    private final SignalingCodec mRequestCodec;
+    private final JSONObject mParams;
+    private Response.Listener<JSONObject> mListener;
+
+    CodecRequest(String url, JSONObject params, CodecNegotiator negotiator,
+                 Response.Listener<JSONObject> listener, Response.ErrorListener errorListener) {
+        super(Method.POST, url, errorListener);
+        mNegotiator = negotiator;
+        mRequestCodec = negotiator.getRequestCodec();
+        mParams = params;
+        mListener = listener;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", SignalingCodecs.accept());
+        return headers;
+    }
+
+    @Override
+    public String getBodyContentType() {
+        return mRequestCodec.getContentType();
+    }
+
+    @Override
+    public byte[] getBody() {
+        try {
+            return mRequestCodec.encode(mParams);
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    protected Response<JSONObject> parseNetworkResponse(NetworkResponse response) {
+        SignalingCodec codec = mNegotiator.onResponse(response.headers != null ? response.headers.get("Content-Type") : null);
+
+        try {
+            return Response.success(codec.decode(response.data, 0, response.data.length),
+                    HttpHeaderParser.parseCacheHeaders(response));
+        } catch (JSONException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        synchronized (mLock) {
+            mListener = null;
+        }
+    }
+
+    @Override
+    protected void deliverResponse(JSONObject response) {
+        Response.Listener<JSONObject> listener;
+        synchronized (mLock) {
+            listener = mListener;
+        }
+        if (listener != null) {
+            listener.onResponse(response);
+        }
+    }
+}
@@ -2,31 +2,41 @@ package com.example.rtcclient.network.http;
 
 import android.util.Log;
 
-import com.android.volley.AuthFailureError;
+import com.android.volley.DefaultRetryPolicy;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.Response;
+import com.android.volley.TimeoutError;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonObjectRequest;
 import com.android.volley.toolbox.RequestFuture;
 import com.android.volley.toolbox.Volley;
 import com.example.rtcclient.Application;
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.network.BatchRequest;
 import com.example.rtcclient.network.ISignalingStrategy;
+import com.example.rtcclient.network.OkHttpProvider;
+import com.example.rtcclient.network.SignalingException;
+import com.example.rtcclient.network.codec.CodecNegotiator;
 import com.example.rtcclient.prefs.API;
+import com.example.rtcclient.prefs.SignalingConfig;
 
 import org.json.JSONObject;
 import org.mediasoup.droid.Logger;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
 
 /**
  * The signaling protocol is left to us to implement. HttpClient is a basic HTTP polling
- * client based on Volley against the webRTC server
+ * client based on Volley against the webRTC server. Requests go out over the shared OkHttp client
+ * (see OkHttpProvider)
  */
 public class HttpClient implements ISignalingStrategy {
 
@@ -39,8 +49,26 @@ public class HttpClient implements ISignalingStrategy {
      * Moved the polling logic inside the http client to make changing Signaling protocols easier
      */
     private final ScheduledThreadPoolExecutor mExecutor_ = new ScheduledThreadPoolExecutor(1);
-    private static ScheduledFuture<?> mPollingInterval;
+    private final AdaptiveInterval mSyncInterval = new AdaptiveInterval(
+            SignalingConfig.DEFAULT_SYNC_MIN_INTERVAL_MS, SignalingConfig.DEFAULT_SYNC_MAX_INTERVAL_MS);
+    /**
+     * Pointed at whatever register() was called through, see register(data, listener, mode, via)
+     */
+    private final SyncLoop mSyncLoop = new SyncLoop(mExecutor_, this::sync, mSyncInterval);
+    private volatile ISignalingStrategy mSyncVia = this;
     private RequestQueue mRequestQueue;
+    /**
+     * The server from the settings (API.getHost()) when null
+     */
+    private final String mHost;
+    /**
+     * Set once the server answered 404 to a batch
+     */
+    private volatile boolean mBatchUnsupported;
+    /**
+     * Which codec the server answers in, request bodies follow it. Sync stays JSON for RosterParser
+     */
+    private final CodecNegotiator mCodecs = new CodecNegotiator();
     /**
      * ISignalListener handles the result of a poll request to mimic other signaling protocols. Also to
      * make changing signaling protocols easier if needed
@@ -52,9 +80,20 @@ public class HttpClient implements ISignalingStrategy {
      */
     private HttpClient() {
         this.listener = null;
+        this.mHost = null;
         this.mRequestQueue = getRequestQueue();
     }
 
+    /**
+     * For local unit tests, which have no Application context to build a queue with
+     * @param host base url the paths are appended to
+     */
+    HttpClient(RequestQueue requestQueue, String host) {
+        this.listener = null;
+        this.mHost = host;
+        this.mRequestQueue = requestQueue;
+    }
+
     /**
      * TODO (mohamed): Replace Singleton with Factory
      *
@@ -68,25 +107,20 @@ public class HttpClient implements ISignalingStrategy {
     }
 
     /**
-     * Getter for the default headers. Handy when you want to modify them somewhere else
-     * @return HashMap
-     */
-    private static Map<String, String> defaultHeaders() {
-        HashMap<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        return headers;
-    }
-
-    /**
-     * @return Volley's default pool
+     * @return Volley queue running on the shared OkHttp client
      */
     public RequestQueue getRequestQueue() {
         if (mRequestQueue == null) {
-            mRequestQueue = Volley.newRequestQueue(Application.context.getApplicationContext());
+            mRequestQueue = Volley.newRequestQueue(Application.context.getApplicationContext(),
+                    new OkHttpStack(OkHttpProvider.get()));
         }
         return mRequestQueue;
     }
 
+    private String getHost() {
+        return mHost != null ? mHost : API.getHost();
+    }
+
     public <T> void addToRequestQueue(Request<T> req) {
         Log.e(TAG, req.toString());
         getRequestQueue().add(req);
@@ -99,20 +133,45 @@ public class HttpClient implements ISignalingStrategy {
      */
     @Override
     public void register(JSONObject data, ISignalListener listener) {
-        mPollingInterval = mExecutor_.scheduleWithFixedDelay(new Runnable() {
-            @Override
-            public void run() {
-                JSONObject response = fetch("sync", data);
-                listener.onResponse(response);
-            }
-        }, 0L, 1, TimeUnit.SECONDS);
+        register(data, listener, SyncMode.POLL);
+    }
+
+    /**
+     * Same as above but can long-poll. Falls back to polling if the server doesn't version the roster
+     * @param data parameters
+     * @param listener handles the response logic
+     * @param mode POLL or LONG_POLL
+     */
+    @Override
+    public void register(JSONObject data, ISignalListener listener, SyncMode mode) {
+        register(data, listener, mode, this);
+    }
+
+    /**
+     * Same as above, the sync requests go out through via.fetchSync()
+     * @param via the decorator in front of us, if any
+     */
+    @Override
+    public void register(JSONObject data, ISignalListener listener, SyncMode mode, ISignalingStrategy via) {
+        /**
+         * Picks up changes from the settings screen on the next join
+         */
+        mSyncInterval.setBounds(SignalingConfig.getSyncMinIntervalMs(), SignalingConfig.getSyncMaxIntervalMs());
+        mSyncVia = via;
+        mSyncLoop.start(data, listener, mode);
     }
 
     @Override
     public void unRegister() {
-        if (mPollingInterval != null) {
-            mPollingInterval.cancel(true);
-        }
+        mSyncLoop.stop();
+        Logger.d(TAG, "sync stats: " + getSyncStats());
+    }
+
+    /**
+     * @return how adaptive polling did compared to a fixed one-second poll
+     */
+    public SyncStats getSyncStats() {
+        return mSyncLoop.getStats();
     }
 
     /**
@@ -123,16 +182,165 @@ public class HttpClient implements ISignalingStrategy {
      */
     @Override
     public JSONObject fetch(String path, JSONObject params) {
+        mSyncLoop.nudge();
+        try {
+            return execute(path, params);
+        } catch (VolleyError volleyError) {
+            return null;
+        }
+    }
 
-        RequestFuture<JSONObject> future = RequestFuture.newFuture();
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.POST, API.getHost() + path, params, future, future) {
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                return defaultHeaders();
+    /**
+     * Send several operations in one POST to "batch". Servers without the endpoint answer 404, after
+     * which we stop trying and send the operations one by one
+     * @param batch operations, run by the server in order
+     * @return blocks until response
+     */
+    @Override
+    public List<JSONObject> fetchBatch(BatchRequest batch) {
+        mSyncLoop.nudge();
+        if (!mBatchUnsupported) {
+            try {
+                return batch.parseResponses(execute(BatchRequest.PATH, batch.toJson()));
+            } catch (VolleyError volleyError) {
+                if (volleyError.networkResponse == null || volleyError.networkResponse.statusCode != 404) {
+                    return batch.failed();
+                }
+                Logger.w(TAG, "fetchBatch() | no batch endpoint, sending operations one by one");
+                mBatchUnsupported = true;
             }
-        };
+        }
+
+        List<JSONObject> responses = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            responses.add(fetch(batch.getPath(i), batch.getParams(i)));
+        }
+        return responses;
+    }
+
+    /**
+     * Non-blocking POST. Volley delivers on the main thread so callers that touch mediasoup should
+     * observeOn their own thread
+     * @param timeoutMs used as the socket timeout too, with no retries so the deadline holds
+     */
+    @Override
+    public Single<JSONObject> fetchSingle(String path, JSONObject params, long timeoutMs) {
+        return Single.<JSONObject>create(emitter -> {
+            /**
+             * Our own actions tend to show up in the roster, look for them sooner
+             */
+            mSyncLoop.nudge();
+
+            CodecRequest request = new CodecRequest(getHost() + path, params, mCodecs,
+                    emitter::onSuccess,
+                    volleyError -> emitter.tryOnError(toSignalingException(path, volleyError)));
+
+            request.setRetryPolicy(new DefaultRetryPolicy((int) timeoutMs, 0, 1f));
+            emitter.setCancellable(request::cancel);
+
+            addToRequestQueue(request);
+        }).timeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The POST behind register(). The reply is parsed by SyncRequest, no JSONObject is built. Not
+     * retried by Volley, so a long-poll isn't parked on the server twice
+     * @param timeoutMs used as the socket timeout too
+     */
+    @Override
+    public Single<RosterUpdate> fetchSync(JSONObject params, long timeoutMs) {
+        return Single.<RosterUpdate>create(emitter -> {
+            SyncRequest request = new SyncRequest(getHost() + SyncLoop.PATH, params,
+                    emitter::onSuccess,
+                    volleyError -> emitter.tryOnError(toSignalingException(SyncLoop.PATH, volleyError)));
+
+            request.setRetryPolicy(new DefaultRetryPolicy((int) timeoutMs, 0, 1f));
+            /**
+             * unRegister() while waiting
+             */
+            emitter.setCancellable(request::cancel);
+
+            addToRequestQueue(request);
+        }).timeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * What the loop calls, through the strategy register() was called on
+     */
+    private Single<RosterUpdate> sync(JSONObject params, long timeoutMs) {
+        return mSyncVia.fetchSync(params, timeoutMs);
+    }
+
+    /**
+     * Non-blocking fetchBatch(). Falls back to sending the operations one after the other, still
+     * within the same deadline, when the server has no batch endpoint
+     */
+    @Override
+    public Single<List<JSONObject>> fetchBatchSingle(BatchRequest batch, long timeoutMs) {
+        return Single.defer(() -> {
+            long deadline = nowMs() + timeoutMs;
+
+            if (mBatchUnsupported) {
+                return oneByOne(batch, deadline);
+            }
+
+            return fetchSingle(BatchRequest.PATH, batch.toJson(), timeoutMs)
+                    .map(batch::parseResponses)
+                    .onErrorResumeNext(throwable -> {
+                        if (throwable instanceof SignalingException && ((SignalingException) throwable).getStatusCode() == 404) {
+                            Logger.w(TAG, "fetchBatchSingle() | no batch endpoint, sending operations one by one");
+                            mBatchUnsupported = true;
+                            return oneByOne(batch, deadline);
+                        }
+                        return Single.error(throwable);
+                    });
+        });
+    }
+
+    /**
+     * Each operation gets what is left until the deadline, not a timeout of its own
+     */
+    private Single<List<JSONObject>> oneByOne(BatchRequest batch, long deadline) {
+        return Observable.range(0, batch.size())
+                .concatMapSingle(i -> fetchSingle(batch.getPath(i), batch.getParams(i), remainingMs(deadline))
+                        .onErrorReturnItem(BatchRequest.FAILED))
+                .toList()
+                .map(BatchRequest::withNulls)
+                .timeout(remainingMs(deadline), TimeUnit.MILLISECONDS);
+    }
 
-        getSharedInstance().addToRequestQueue(request);
+    private static long remainingMs(long deadline) {
+        return Math.max(1, deadline - nowMs());
+    }
+
+    private static long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Volley's TimeoutError becomes a TimeoutException so the decorators don't need to know Volley
+     */
+    private static SignalingException toSignalingException(String path, VolleyError volleyError) {
+        Logger.e(TAG, path + " | Volley Error = " + volleyError.toString());
+        if (volleyError instanceof TimeoutError) {
+            TimeoutException timeout = new TimeoutException(path + " timed out");
+            timeout.initCause(volleyError);
+            return new SignalingException(path + " failed", SignalingException.NO_STATUS, timeout);
+        }
+        int statusCode = volleyError.networkResponse != null ? volleyError.networkResponse.statusCode : SignalingException.NO_STATUS;
+        return new SignalingException(path + " failed", statusCode, volleyError);
+    }
+
+    /**
+     * The blocking POST behind fetch() and fetchBatch()
+     * @throws VolleyError so callers can look at the status code
+     */
+    private JSONObject execute(String path, JSONObject params) throws VolleyError {
+
+        RequestFuture<JSONObject> future = RequestFuture.newFuture();
+        CodecRequest request = new CodecRequest(getHost() + path, params, mCodecs, future, future);
+
+        addToRequestQueue(request);
 
         JSONObject response = null;
 
@@ -157,6 +365,7 @@ public class HttpClient implements ISignalingStrategy {
                     Logger.e(TAG, "volleyError.networkResponse.statusCode = " + volleyError.networkResponse.statusCode);
                     Logger.e(TAG, "volleyError.networkResponse.data = " + new String(volleyError.networkResponse.data));
                 }
+                throw volleyError;
             }
         }
 
@@ -171,6 +380,7 @@ public class HttpClient implements ISignalingStrategy {
      */
     @Override
     public void fetchAsync(String path, JSONObject params) {
+        mSyncLoop.nudge();
 
         /**
          *  Override Success
@@ -197,13 +407,8 @@ public class HttpClient implements ISignalingStrategy {
             }
         };
 
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.POST, API.getHost() + path, params, success, failure) {
-            @Override
-            public Map<String, String> getHeaders() {
-                return defaultHeaders();
-            }
-        };
+        CodecRequest request = new CodecRequest(getHost() + path, params, mCodecs, success, failure);
 
-        getSharedInstance().addToRequestQueue(request);
+        addToRequestQueue(request);
     }
 }
@@ -0,0 +1,154 @@
+package com.example.rtcclient.network.http;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Header;
+import com.android.volley.Request;
+import com.android.volley.toolbox.BaseHttpStack;
+import com.android.volley.toolbox.HttpResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Runs Volley's requests on OkHttp instead of HttpURLConnection so they share OkHttpProvider's
+ * connection pool. Volley still does the queueing, retries and delivery
+ */
+public class OkHttpStack extends BaseHttpStack {
+
+    private final OkHttpClient mClient;
+
+    /**
+     * Volley's timeout for the attempt, carried on the OkHttp request as its tag
+     */
+    private static final class AttemptTimeout {
+        final int ms;
+
+        AttemptTimeout(int ms) {
+            this.ms = ms;
+        }
+    }
+
+    /**
+     * @param client shared by every request, newBuilder() keeps sharing its pool, dispatcher and TLS
+     * sessions
+     */
+    public OkHttpStack(OkHttpClient client) {
+        mClient = client.newBuilder().addInterceptor(OkHttpStack::applyTimeout).build();
+    }
+
+    @Override
+    public HttpResponse executeRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+
+        okhttp3.Request.Builder builder = new okhttp3.Request.Builder().url(request.getUrl());
+
+        Map<String, String> headers = new HashMap<>(request.getHeaders());
+        headers.putAll(additionalHeaders);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+
+        setMethodAndBody(builder, request);
+        builder.tag(AttemptTimeout.class, new AttemptTimeout(request.getTimeoutMs()));
+
+        Call call = mClient.newCall(builder.build());
+
+        Response response = call.execute();
+        ResponseBody body = response.body();
+
+        List<Header> responseHeaders = new ArrayList<>();
+        for (int i = 0; i < response.headers().size(); i++) {
+            responseHeaders.add(new Header(response.headers().name(i), response.headers().value(i)));
+        }
+
+        if (body == null) {
+            response.close();
+            return new HttpResponse(response.code(), responseHeaders);
+        }
+
+        /**
+         * -1 for chunked bodies. Volley only sizes its buffer with it, 0 lets it grow from the default
+         */
+        long length = body.contentLength();
+        int contentLength = length >= 0 && length <= Integer.MAX_VALUE ? (int) length : 0;
+
+        /**
+         * Volley closes the stream once it has read it, which returns the connection to the pool
+         */
+        return new HttpResponse(response.code(), responseHeaders, contentLength, body.byteStream());
+    }
+
+    /**
+     * Volley's timeout is per attempt and its retry policy grows it between attempts, like
+     * HurlStack's connect and read timeouts. A whole-call timeout would also cut off a slow but
+     * steady response
+     */
+    private static Response applyTimeout(Interceptor.Chain chain) throws IOException {
+        AttemptTimeout timeout = chain.request().tag(AttemptTimeout.class);
+        if (timeout == null || timeout.ms <= 0) {
+            return chain.proceed(chain.request());
+        }
+
+        return chain.withConnectTimeout(timeout.ms, TimeUnit.MILLISECONDS)
+                .withReadTimeout(timeout.ms, TimeUnit.MILLISECONDS)
+                .withWriteTimeout(timeout.ms, TimeUnit.MILLISECONDS)
+                .proceed(chain.request());
+    }
+
+    private static void setMethodAndBody(okhttp3.Request.Builder builder, Request<?> request) throws AuthFailureError {
+        switch (request.getMethod()) {
+            case Request.Method.DEPRECATED_GET_OR_POST:
+                byte[] postBody = request.getBody();
+                if (postBody != null) {
+                    builder.post(RequestBody.create(postBody, MediaType.parse(request.getBodyContentType())));
+                }
+                break;
+            case Request.Method.GET:
+                builder.get();
+                break;
+            case Request.Method.DELETE:
+                builder.delete(body(request));
+                break;
+            case Request.Method.POST:
+                builder.post(body(request));
+                break;
+            case Request.Method.PUT:
+                builder.put(body(request));
+                break;
+            case Request.Method.HEAD:
+                builder.head();
+                break;
+            case Request.Method.OPTIONS:
+                builder.method("OPTIONS", null);
+                break;
+            case Request.Method.TRACE:
+                builder.method("TRACE", null);
+                break;
+            case Request.Method.PATCH:
+                builder.patch(body(request));
+                break;
+            default:
+                throw new IllegalStateException("Unknown method type.");
+        }
+    }
+
+    private static RequestBody body(Request<?> request) throws AuthFailureError {
+        byte[] body = request.getBody();
+        if (body == null) {
+            body = new byte[0];
+        }
+        return RequestBody.create(body, MediaType.parse(request.getBodyContentType()));
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.rtcclient.network.http;
+
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.network.ISignalingStrategy;
+import com.example.rtcclient.network.ISignalingStrategy.ISignalListener;
+import com.example.rtcclient.network.ISignalingStrategy.SyncMode;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+
+/**
+ * SyncLoop drives the "sync" requests behind HttpClient.register(). It is kept free of Volley so the
+ * same loop can be pointed at any transport (i.e. a plain HttpURLConnection in tests). Requests go
+ * through the Fetcher it's given, register() hands it the outermost strategy's fetchSync() so
+ * decorators see every one of them
+ *
+ * POLL fires a request after a delay that adapts to the room (see AdaptiveInterval): short right after
+ * the roster changed or nudge() was called, growing while nothing happens. LONG_POLL also sends how long
+ * the server may "wait", and re-issues the request as soon as the server answers. Both send the last
+ * roster "version" so the server can answer with only what changed since
+ */
+public class SyncLoop {
+
+    public static final String PATH = ISignalingStrategy.SYNC_PATH;
+    /**
+     * The fixed interval polling used before it was adaptive. Stats are relative to it
+     */
+    public static final long POLL_INTERVAL_MS = 1000;
+    /**
+     * Deadline for a poll, which the server answers right away. About what Volley's default retry
+     * policy used to allow
+     */
+    static final long POLL_TIMEOUT_MS = 5 * 1000;
+    /**
+     * How long the server may hold a long-poll before answering with an unchanged roster
+     */
+    static final int LONG_POLL_WAIT_MS = 25 * 1000;
+    /**
+     * Extra time on top of the server wait before we give up on the request
+     */
+    static final int LONG_POLL_SLACK_MS = 5 * 1000;
+    /**
+     * Back off after a failed long-poll so a dead server isn't hammered in a tight loop
+     */
+    static final long LONG_POLL_RETRY_MS = 1000;
+
+    /**
+     * The transport used by the loop. POSTs params to PATH and parses the reply, see
+     * ISignalingStrategy.fetchSync()
+     */
+    public interface Fetcher {
+        Single<RosterUpdate> sync(JSONObject params, long timeoutMs);
+    }
+
+    private final ScheduledExecutorService mExecutor;
+    private final Fetcher mFetcher;
+    private final AdaptiveInterval mInterval;
+    private ScheduledFuture<?> mTask;
+    /**
+     * Bumped on every start/stop so a request that was in flight during stop() can't re-arm the loop
+     */
+    private int mGeneration;
+    private long mVersion = -1;
+    private SyncMode mMode;
+    private JSONObject mParams;
+    private ISignalListener mListener;
+
+    private final SyncStats.Recorder mStats = new SyncStats.Recorder();
+    private boolean mFirstPoll;
+    private Integer mSnapshotHash;
+
+    public SyncLoop(ScheduledExecutorService executor, Fetcher fetcher, AdaptiveInterval interval) {
+        mExecutor = executor;
+        mFetcher = fetcher;
+        mInterval = interval;
+    }
+
+    public synchronized void start(JSONObject params, ISignalListener listener, SyncMode mode) {
+        stop();
+
+        int generation = ++mGeneration;
+        mVersion = -1;
+        mMode = mode;
+        mParams = params;
+        mListener = listener;
+
+        if (mode == SyncMode.LONG_POLL) {
+            mTask = mExecutor.schedule(() -> longPoll(generation, params, listener), 0L, TimeUnit.MILLISECONDS);
+        } else {
+            mInterval.onActivity();
+            mFirstPoll = true;
+            mSnapshotHash = null;
+            mStats.onStarted(nowMs());
+            schedulePoll(generation, 0L);
+        }
+    }
+
+    public synchronized void stop() {
+        mGeneration++;
+        if (mTask != null) {
+            mTask.cancel(true);
+            mTask = null;
+        }
+        if (mMode == SyncMode.POLL) {
+            mStats.onStopped(nowMs());
+        }
+    }
+
+    /**
+     * Something happened locally that the roster will probably reflect soon. Polls sooner if the next
+     * one is further away than the minimum interval. LONG_POLL doesn't need it
+     */
+    synchronized void nudge() {
+        if (mMode != SyncMode.POLL || mTask == null) {
+            return;
+        }
+
+        mInterval.onActivity();
+
+        if (mTask.getDelay(TimeUnit.MILLISECONDS) > mInterval.current() && mTask.cancel(false)) {
+            schedulePoll(mGeneration, mInterval.current());
+        }
+    }
+
+    public synchronized SyncStats getStats() {
+        return mStats.get(nowMs());
+    }
+
+    /**
+     * @return the mode the loop is actually running in. LONG_POLL drops to POLL when the server
+     * doesn't version its roster
+     */
+    public synchronized SyncMode getMode() {
+        return mMode;
+    }
+
+    private synchronized void schedulePoll(int generation, long delayMs) {
+        mTask = mExecutor.schedule(() -> poll(generation), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(int generation) {
+        JSONObject params;
+        synchronized (this) {
+            if (generation != mGeneration) {
+                return;
+            }
+            params = mParams;
+        }
+
+        long sentMs = nowMs();
+        RosterUpdate update = fetch(request(params, 0), POLL_TIMEOUT_MS);
+
+        synchronized (this) {
+            if (generation != mGeneration) {
+                recycle(update);
+                return;
+            }
+
+            boolean changed = update != null && isChange(update);
+            mStats.onPoll(sentMs, changed && !mFirstPoll);
+
+            if (mFirstPoll) {
+                /**
+                 * The roster we start from, not an event
+                 */
+                mFirstPoll = false;
+            } else if (changed) {
+                mInterval.onActivity();
+            } else {
+                mInterval.onQuiet();
+            }
+
+            deliver(generation, update, mListener);
+            schedulePoll(generation, mInterval.current());
+        }
+    }
+
+    /**
+     * Servers without deltas answer every poll with the whole roster. Those only count as a change if
+     * the roster is not the same as last time
+     */
+    private boolean isChange(RosterUpdate update) {
+        switch (update.getKind()) {
+            case DELTA:
+                return true;
+            case SNAPSHOT:
+                int hash = update.contentHash();
+                boolean changed = mSnapshotHash == null || hash != mSnapshotHash;
+                mSnapshotHash = hash;
+                return changed;
+            default:
+                return false;
+        }
+    }
+
+    private void longPoll(int generation, JSONObject params, ISignalListener listener) {
+        RosterUpdate update = fetch(request(params, LONG_POLL_WAIT_MS), LONG_POLL_WAIT_MS + LONG_POLL_SLACK_MS);
+
+        synchronized (this) {
+            if (generation != mGeneration) {
+                recycle(update);
+                return;
+            }
+
+            if (update != null && !update.hasVersion()) {
+                /**
+                 * The server doesn't know about versions and answered right away. Long-polling it
+                 * would spin, so fall back to the fixed interval
+                 */
+                listener.onRosterUpdate(update);
+                mTask = null;
+                start(params, listener, SyncMode.POLL);
+                return;
+            }
+
+            boolean failed = update == null;
+            deliver(generation, update, listener);
+
+            long delay = failed ? LONG_POLL_RETRY_MS : 0L;
+            mTask = mExecutor.schedule(() -> longPoll(generation, params, listener), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Remember the version the update brings us to. "unchanged" replies (the server's 304) and
+     * failures are not worth waking the listener for. Otherwise the listener takes the update over
+     */
+    private synchronized void deliver(int generation, RosterUpdate update, ISignalListener listener) {
+        if (update == null) {
+            return;
+        }
+        if (generation != mGeneration) {
+            update.recycle();
+            return;
+        }
+
+        if (update.hasVersion()) {
+            mVersion = update.getVersion();
+        }
+
+        if (update.getKind() == RosterUpdate.Kind.UNCHANGED) {
+            update.recycle();
+            return;
+        }
+
+        listener.onRosterUpdate(update);
+    }
+
+    /**
+     * Blocks the loop's thread, which has nothing else to do meanwhile. stop() interrupts it, which
+     * disposes the call
+     * @return null on failure
+     */
+    private RosterUpdate fetch(JSONObject params, long timeoutMs) {
+        try {
+            return mFetcher.sync(params, timeoutMs).blockingGet();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long nowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static void recycle(RosterUpdate update) {
+        if (update != null) {
+            update.recycle();
+        }
+    }
+
+    /**
+     * The caller's parameters plus the roster version we have. "delta" tells the server we can apply
+     * joined/left/updated changes instead of needing the whole roster every time
+     * @param wait how long the server may hold the request, 0 to answer right away
+     */
+    private synchronized JSONObject request(JSONObject params, int wait) {
+        JSONObject request = new JSONObject();
+
+        try {
+            for (Iterator<String> it = params.keys(); it.hasNext(); ) {
+                String key = it.next();
+                request.put(key, params.get(key));
+            }
+            request.put("version", mVersion);
+            request.put("delta", true);
+            if (wait > 0) {
+                request.put("wait", wait);
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        return request;
+    }
+}
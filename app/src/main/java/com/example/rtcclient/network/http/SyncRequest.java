@@ -0,0 +1,58 @@
+package com.example.rtcclient.network.http;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Response;
+import com.android.volley.toolbox.JsonRequest;
+import com.example.rtcclient.model.RosterParser;
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.network.codec.SignalingCodecs;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * POST to "sync" whose reply goes through RosterParser into a pooled RosterUpdate instead of a
+ * JSONObject tree. Parsing happens on Volley's network thread like any other request
+ */
+class SyncRequest extends JsonRequest<RosterUpdate> {
+
+    private final String mMyPeerId;
+
+    /**
+     * @param params sent as is, must include "peerId" whose entry is skipped in the reply
+     */
+    SyncRequest(String url, JSONObject params, Response.Listener<RosterUpdate> listener, Response.ErrorListener errorListener) {
+        super(Method.POST, url, params.toString(), listener, errorListener);
+        mMyPeerId = params.optString("peerId");
+
+        /**
+         * A roster is stale as soon as it's answered
+         */
+        setShouldCache(false);
+    }
+
+    /**
+     * RosterParser only reads JSON, whatever codec the other requests negotiated
+     */
+    @Override
+    public Map<String, String> getHeaders() {
+        return Collections.singletonMap("Accept", SignalingCodecs.JSON.getContentType());
+    }
+
+    @Override
+    protected Response<RosterUpdate> parseNetworkResponse(NetworkResponse response) {
+        RosterUpdate update = RosterUpdate.obtain();
+
+        try {
+            new RosterParser(mMyPeerId).parse(response.data, 0, response.data.length, update);
+            return Response.success(update, null);
+        } catch (JSONException e) {
+            update.recycle();
+            return Response.error(new ParseError(e));
+        }
+    }
+}
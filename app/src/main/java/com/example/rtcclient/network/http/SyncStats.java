@@ -0,0 +1,124 @@
+package com.example.rtcclient.network.http;
+
+import static com.example.rtcclient.network.http.SyncLoop.POLL_INTERVAL_MS;
+
+/**
+ * What adaptive polling costs and saves compared to the fixed one-second poll it replaced
+ */
+public class SyncStats {
+
+    private final long mRequests;
+    private final long mRequestsSaved;
+    private final long mChanges;
+    private final long mMeanAddedLatencyMs;
+    private final long mMaxAddedLatencyMs;
+
+    SyncStats(long requests, long requestsSaved, long changes, long meanAddedLatencyMs, long maxAddedLatencyMs) {
+        mRequests = requests;
+        mRequestsSaved = requestsSaved;
+        mChanges = changes;
+        mMeanAddedLatencyMs = meanAddedLatencyMs;
+        mMaxAddedLatencyMs = maxAddedLatencyMs;
+    }
+
+    /**
+     * @return polls sent
+     */
+    public long getRequests() {
+        return mRequests;
+    }
+
+    /**
+     * @return polls a fixed one-second interval would have sent over the same time minus getRequests().
+     * Negative when a busy room was polled faster
+     */
+    public long getRequestsSaved() {
+        return mRequestsSaved;
+    }
+
+    /**
+     * @return polls that brought a roster change
+     */
+    public long getChanges() {
+        return mChanges;
+    }
+
+    /**
+     * @return for polls that brought a change, how much longer the gap since the previous poll was than
+     * one second on average. That's how much later than before the change could have been seen at worst.
+     * Negative when polling faster made changes show up sooner
+     */
+    public long getMeanAddedLatencyMs() {
+        return mMeanAddedLatencyMs;
+    }
+
+    public long getMaxAddedLatencyMs() {
+        return mMaxAddedLatencyMs;
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + mRequests + " saved=" + mRequestsSaved + " changes=" + mChanges
+                + " addedLatencyMs(mean=" + mMeanAddedLatencyMs + " max=" + mMaxAddedLatencyMs + ")";
+    }
+
+    /**
+     * Keeps the counts behind SyncStats while SyncLoop polls. Times are passed in so tests can run it
+     * on a made-up clock. Not thread-safe, SyncLoop calls it with itself locked
+     */
+    static class Recorder {
+
+        private long mRequests;
+        private long mChanges;
+        private long mAddedLatencyMsTotal;
+        private long mMaxAddedLatencyMs = Long.MIN_VALUE;
+        private long mPollingMs;
+        private boolean mPolling;
+        private long mPollingSinceMs;
+        private long mLastPollMs;
+
+        void onStarted(long nowMs) {
+            mPolling = true;
+            mPollingSinceMs = mLastPollMs = nowMs;
+        }
+
+        void onStopped(long nowMs) {
+            if (mPolling) {
+                mPollingMs += nowMs - mPollingSinceMs;
+                mPolling = false;
+            }
+        }
+
+        /**
+         * @param sentMs when the poll went out
+         * @param changed it brought a roster change. The first poll after onStarted() never does, that
+         * roster is where we start from
+         */
+        void onPoll(long sentMs, boolean changed) {
+            mRequests++;
+            if (changed) {
+                /**
+                 * The change happened at some point since the previous poll went out
+                 */
+                long addedLatencyMs = sentMs - mLastPollMs - POLL_INTERVAL_MS;
+                mChanges++;
+                mAddedLatencyMsTotal += addedLatencyMs;
+                mMaxAddedLatencyMs = Math.max(mMaxAddedLatencyMs, addedLatencyMs);
+            }
+            mLastPollMs = sentMs;
+        }
+
+        SyncStats get(long nowMs) {
+            long pollingMs = mPollingMs;
+            if (mPolling) {
+                pollingMs += nowMs - mPollingSinceMs;
+            }
+
+            return new SyncStats(mRequests,
+                    pollingMs / POLL_INTERVAL_MS - mRequests,
+                    mChanges,
+                    mChanges > 0 ? mAddedLatencyMsTotal / mChanges : 0,
+                    mChanges > 0 ? mMaxAddedLatencyMs : 0);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+/**
+ * The backoff WebSocketTransport came with: min * factor^attempt capped at max, the same for every
+ * client. Kept as the baseline jitter is measured against
+ */
+public class FixedReconnectPolicy implements ReconnectPolicy {
+
+    private final int mRetries;
+    private final int mFactor;
+    private final long mMinMs;
+    private final long mMaxMs;
+    private int mRetryCount = 1;
+
+    public FixedReconnectPolicy(int retries, int factor, long minMs, long maxMs) {
+        mRetries = retries;
+        mFactor = factor;
+        mMinMs = minMs;
+        mMaxMs = maxMs;
+    }
+
+    /**
+     * Server hints are ignored, as they were
+     */
+    @Override
+    public synchronized long nextDelayMs(long retryAfterMs, long nowMs) {
+        if (mRetryCount > mRetries) {
+            return NO_RETRY;
+        }
+        long delayMs = Math.min((long) (mMinMs * Math.pow(mFactor, mRetryCount)), mMaxMs);
+        mRetryCount++;
+        return delayMs;
+    }
+
+    @Override
+    public synchronized void reset() {
+        mRetryCount = 0;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter, so clients that lost the server at the same moment don't all
+ * come back at the same moment
+ *
+ * - FULL waits a random time up to min(cap, base * 2^attempt)
+ * - DECORRELATED waits a random time between base and three times the previous wait, capped. Spreads
+ *   about as well and grows less predictably
+ *
+ * A server Retry-After is a floor, with up to base added on top so the clients it was sent to don't
+ * line up on it. Attempts also need a token from the bucket when there is one
+ */
+public class JitteredReconnectPolicy implements ReconnectPolicy {
+
+    public enum Jitter {
+        FULL,
+        DECORRELATED
+    }
+
+    public static final long DEFAULT_BASE_MS = 1000;
+    public static final long DEFAULT_CAP_MS = 8 * 1000;
+    public static final int DEFAULT_MAX_RETRIES = 10;
+    public static final int DEFAULT_BUCKET_CAPACITY = 5;
+    public static final long DEFAULT_BUCKET_REFILL_MS = 10 * 1000;
+
+    private final Jitter mJitter;
+    private final long mBaseMs;
+    private final long mCapMs;
+    private final int mMaxRetries;
+    private final TokenBucket mBucket;
+    private final Random mRandom;
+    private int mAttempt;
+    private long mPreviousDelayMs;
+
+    /**
+     * @param bucket null for no rate limit
+     */
+    public JitteredReconnectPolicy(Jitter jitter, long baseMs, long capMs, int maxRetries, TokenBucket bucket, Random random) {
+        mJitter = jitter;
+        mBaseMs = baseMs;
+        mCapMs = capMs;
+        mMaxRetries = maxRetries;
+        mBucket = bucket;
+        mRandom = random;
+        mPreviousDelayMs = baseMs;
+    }
+
+    /**
+     * Same bounds as the fixed backoff it replaces, decorrelated, at most five attempts in a burst
+     * then one every ten seconds
+     */
+    public static JitteredReconnectPolicy createDefault() {
+        return new JitteredReconnectPolicy(Jitter.DECORRELATED, DEFAULT_BASE_MS, DEFAULT_CAP_MS, DEFAULT_MAX_RETRIES,
+                new TokenBucket(DEFAULT_BUCKET_CAPACITY, DEFAULT_BUCKET_REFILL_MS), new Random());
+    }
+
+    @Override
+    public synchronized long nextDelayMs(long retryAfterMs, long nowMs) {
+        if (mAttempt >= mMaxRetries) {
+            return NO_RETRY;
+        }
+
+        long delayMs;
+        if (mJitter == Jitter.FULL) {
+            delayMs = random(Math.min(mCapMs, mBaseMs << Math.min(mAttempt, 30)));
+        } else {
+            delayMs = Math.min(mCapMs, mBaseMs + random(mPreviousDelayMs * 3 - mBaseMs));
+            mPreviousDelayMs = delayMs;
+        }
+        mAttempt++;
+
+        if (retryAfterMs != NO_HINT) {
+            delayMs = Math.max(delayMs, retryAfterMs + random(mBaseMs));
+        }
+        if (mBucket != null) {
+            delayMs = mBucket.reserve(nowMs + delayMs) - nowMs;
+        }
+
+        return delayMs;
+    }
+
+    @Override
+    public synchronized void reset() {
+        mAttempt = 0;
+        mPreviousDelayMs = mBaseMs;
+    }
+
+    /**
+     * @return uniformly in [0, boundMs)
+     */
+    private long random(long boundMs) {
+        return boundMs <= 0 ? 0 : (long) (mRandom.nextDouble() * boundMs);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+import java.util.ArrayDeque;
+
+/**
+ * Application-level keepalive for WebSocketTransport. A ping goes out every interval and any
+ * response to it is the pong, an error response too since the server only has to be there to send
+ * it. Pongs feed a smoothed RTT (the TCP estimator, RFC 6298) and enough pings in a row without
+ * one mean the link is dead, long before TCP would give up on it
+ */
+class Keepalive {
+
+    static final long NO_RTT = -1;
+
+    private static class Ping {
+        final long id;
+        final long sentAtMs;
+
+        Ping(long id, long sentAtMs) {
+            this.id = id;
+            this.sentAtMs = sentAtMs;
+        }
+    }
+
+    private final int mMaxMissed;
+    /**
+     * Oldest first, at most mMaxMissed of them
+     */
+    private final ArrayDeque<Ping> mOutstanding = new ArrayDeque<>();
+    private double mSmoothedRttMs = NO_RTT;
+    private double mRttVarianceMs;
+
+    /**
+     * @param maxMissed pings in a row without a pong before the link is dead
+     */
+    Keepalive(int maxMissed) {
+        mMaxMissed = maxMissed;
+    }
+
+    /**
+     * Called before sending a ping. The previous ones still unanswered count as missed
+     * @return false if the link is dead, don't send it
+     */
+    synchronized boolean onPing(long id, long nowMs) {
+        if (mOutstanding.size() >= mMaxMissed) {
+            return false;
+        }
+        mOutstanding.addLast(new Ping(id, nowMs));
+        return true;
+    }
+
+    /**
+     * @return false if id isn't one of our pings, the response is somebody else's
+     */
+    synchronized boolean onResponse(long id, long nowMs) {
+        Ping answered = null;
+        for (Ping ping : mOutstanding) {
+            if (ping.id == id) {
+                answered = ping;
+                break;
+            }
+        }
+        if (answered == null) {
+            return false;
+        }
+
+        /**
+         * A late pong still proves the link is up, but only the latest ping is a clean RTT sample
+         */
+        if (answered == mOutstanding.peekLast()) {
+            sample(nowMs - answered.sentAtMs);
+        }
+        mOutstanding.clear();
+        return true;
+    }
+
+    private void sample(long rttMs) {
+        if (mSmoothedRttMs == NO_RTT) {
+            mSmoothedRttMs = rttMs;
+            mRttVarianceMs = rttMs / 2d;
+            return;
+        }
+        mRttVarianceMs = 0.75 * mRttVarianceMs + 0.25 * Math.abs(mSmoothedRttMs - rttMs);
+        mSmoothedRttMs = 0.875 * mSmoothedRttMs + 0.125 * rttMs;
+    }
+
+    /**
+     * New socket, nothing is outstanding. The RTT estimate is kept, it's the same path most likely
+     */
+    synchronized void reset() {
+        mOutstanding.clear();
+    }
+
+    synchronized int getMissed() {
+        return mOutstanding.size();
+    }
+
+    /**
+     * @return NO_RTT before the first pong
+     */
+    synchronized long getSmoothedRttMs() {
+        return Math.round(mSmoothedRttMs);
+    }
+
+    synchronized long getRttVarianceMs() {
+        return Math.round(mRttVarianceMs);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+import java.util.ArrayDeque;
+
+/**
+ * Frames WebSocketTransport couldn't send because the socket is reconnecting. They go out in order
+ * once it's back, from its flush(), minus the ones whose sender has given up on them by then
+ *
+ * Bounded. When full the oldest frame makes room, it's the closest to expiring anyway
+ */
+class OutboundQueue<T> {
+
+    static final int DEFAULT_CAPACITY = 64;
+
+    private static class Entry<T> {
+        final T frame;
+        final long expiresAtMs;
+
+        Entry(T frame, long expiresAtMs) {
+            this.frame = frame;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+
+    private final int mCapacity;
+    private final ArrayDeque<Entry<T>> mEntries = new ArrayDeque<>();
+    private long mDropped;
+    private long mExpired;
+
+    OutboundQueue(int capacity) {
+        mCapacity = capacity;
+    }
+
+    /**
+     * @param expiresAtMs not sent once this passes, same clock as peek()
+     */
+    synchronized void offer(T frame, long expiresAtMs) {
+        if (mEntries.size() == mCapacity) {
+            mEntries.removeFirst();
+            mDropped++;
+        }
+        mEntries.addLast(new Entry<>(frame, expiresAtMs));
+    }
+
+    /**
+     * Drops the expired frames at the head
+     * @return the oldest frame still worth sending, null if there's none
+     */
+    synchronized T peek(long nowMs) {
+        while (!mEntries.isEmpty() && mEntries.peekFirst().expiresAtMs <= nowMs) {
+            mEntries.removeFirst();
+            mExpired++;
+        }
+        return mEntries.isEmpty() ? null : mEntries.peekFirst().frame;
+    }
+
+    /**
+     * The frame from peek() was sent
+     */
+    synchronized void remove() {
+        mEntries.pollFirst();
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return frames pushed out by newer ones while the queue was full
+     */
+    synchronized long getDropped() {
+        return mDropped;
+    }
+
+    /**
+     * @return frames that expired before the socket came back
+     */
+    synchronized long getExpired() {
+        return mExpired;
+    }
+
+    synchronized void clear() {
+        mEntries.clear();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+import com.example.rtcclient.network.codec.SignalingCodec;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+
+import okio.ByteString;
+
+/**
+ * A message on its way to the socket, with the frame (String or ByteString) it was encoded to when
+ * sent. A reconnect can land on a server that picks another codec, the message is encoded again
+ * for that one instead of replaying the old frame
+ */
+class QueuedMessage {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private final JSONObject mMessage;
+    private final SignalingCodec mCodec;
+    private final Object mFrame;
+
+    /**
+     * @throws JSONException if codec can't encode the message
+     */
+    QueuedMessage(JSONObject message, SignalingCodec codec) throws JSONException {
+        mMessage = message;
+        mCodec = codec;
+        mFrame = encode(message, codec);
+    }
+
+    /**
+     * @return the frame for a socket speaking codec, the one from the constructor if it's the same
+     */
+    Object frameFor(SignalingCodec codec) throws JSONException {
+        return codec == mCodec ? mFrame : encode(mMessage, codec);
+    }
+
+    /**
+     * @return what protoo takes the message to be, its request timeout grows with the length
+     */
+    String payload() {
+        return mFrame instanceof ByteString ? ((ByteString) mFrame).string(ISO_8859_1) : (String) mFrame;
+    }
+
+    static Object encode(JSONObject message, SignalingCodec codec) throws JSONException {
+        return codec.isBinary() ? ByteString.of(codec.encode(message)) : message.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+/**
+ * When WebSocketTransport tries again after losing the socket. Called on the socket thread with
+ * the same clock for every call (SystemClock.elapsedRealtime() on the device)
+ */
+public interface ReconnectPolicy {
+
+    /**
+     * Give up
+     */
+    long NO_RETRY = -1;
+    /**
+     * The server didn't say when to come back
+     */
+    long NO_HINT = -1;
+
+    /**
+     * @param retryAfterMs the server's Retry-After, NO_HINT if it sent none
+     * @param nowMs current time
+     * @return how long to wait before the next attempt, NO_RETRY to give up
+     */
+    long nextDelayMs(long retryAfterMs, long nowMs);
+
+    /**
+     * The socket opened, the next failure starts over
+     */
+    void reset();
+}
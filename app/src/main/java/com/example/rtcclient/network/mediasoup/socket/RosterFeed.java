@@ -0,0 +1,216 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+import com.example.rtcclient.media.SpeakerPolicy;
+import com.example.rtcclient.model.Roster;
+import com.example.rtcclient.model.RosterParser;
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.network.ISignalingStrategy.ISignalListener;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RosterFeed turns the server's protoo notifications into the same RosterUpdates HTTP sync produces,
+ * so the socket delivers roster changes as they happen with no polling. Kept free of protoo and
+ * Android so it can be driven directly in tests
+ *
+ * The feed starts from a "sync" snapshot. Notifications that arrive before it are held back and
+ * replayed on top of it, they're all upserts/removals so replaying ones the snapshot already has is
+ * harmless
+ *
+ * Notifications, data always has "peerId"
+ * - peerJoined {media: {mediaTag: {...}}}
+ * - peerLeft
+ * - producerAdded / producerClosed {mediaTag}
+ * - producerPaused / producerResumed {mediaTag} a paused producer still counts as sent, same as sync
+ * - activeSpeaker {volume} passed straight on, it isn't part of the roster
+ */
+class RosterFeed {
+
+    static final String PEER_JOINED = "peerJoined";
+    static final String PEER_LEFT = "peerLeft";
+    static final String PRODUCER_ADDED = "producerAdded";
+    static final String PRODUCER_CLOSED = "producerClosed";
+    static final String PRODUCER_PAUSED = "producerPaused";
+    static final String PRODUCER_RESUMED = "producerResumed";
+    static final String ACTIVE_SPEAKER = "activeSpeaker";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Roster.Listener IGNORE = new Roster.Listener() {
+        @Override
+        public void onPeerJoined(Roster.Peer peer) {
+        }
+
+        @Override
+        public void onPeerLeft(Roster.Peer peer) {
+        }
+
+        @Override
+        public void onPeerMediaChanged(Roster.Peer peer) {
+        }
+    };
+
+    private final String mMyPeerId;
+    private final ISignalListener mListener;
+    /**
+     * What the listener has been told so far. Notifications only carry what changed, updates need
+     * the peer's whole media
+     */
+    private final Roster mMirror;
+    private List<Object[]> mPending = new ArrayList<>();
+    private boolean mClosed;
+
+    RosterFeed(String myPeerId, ISignalListener listener) {
+        mMyPeerId = myPeerId;
+        mListener = listener;
+        mMirror = new Roster(myPeerId);
+    }
+
+    /**
+     * @param body the "sync" response
+     */
+    void onSnapshot(String body) {
+        try {
+            onSnapshot(parseSnapshot(mMyPeerId, body));
+        } catch (JSONException e) {
+            e.printStackTrace();
+            onSnapshotFailed();
+        }
+    }
+
+    /**
+     * @param update the "sync" response from RosterUpdate's pool, handed on to the listener
+     */
+    synchronized void onSnapshot(RosterUpdate update) {
+        if (mClosed) {
+            update.recycle();
+            return;
+        }
+
+        deliver(update);
+        replay();
+    }
+
+    /**
+     * @return a "sync" answer as a RosterUpdate from the pool, the caller owns it
+     */
+    static RosterUpdate parseSnapshot(String myPeerId, String body) throws JSONException {
+        byte[] bytes = body.getBytes(UTF_8);
+        RosterUpdate update = RosterUpdate.obtain();
+
+        try {
+            new RosterParser(myPeerId).parse(bytes, 0, bytes.length, update);
+        } catch (JSONException e) {
+            update.recycle();
+            throw e;
+        }
+        return update;
+    }
+
+    /**
+     * No snapshot to start from, notifications still keep us up to date from here on
+     */
+    synchronized void onSnapshotFailed() {
+        replay();
+    }
+
+    synchronized void onNotification(String method, JSONObject data) {
+        if (mClosed) {
+            return;
+        }
+
+        if (ACTIVE_SPEAKER.equals(method)) {
+            /**
+             * Nothing to hold back for, and stale by the time a snapshot comes. peerId is null when
+             * the room went quiet
+             */
+            String peerId = data != null ? data.optString("peerId") : "";
+            if (!peerId.isEmpty() && !peerId.equals("null") && !peerId.equals(mMyPeerId)) {
+                mListener.onActiveSpeaker(peerId, data.optDouble("volume", SpeakerPolicy.SILENCE_DBOV));
+            }
+            return;
+        }
+
+        if (mPending != null) {
+            mPending.add(new Object[]{method, data});
+            return;
+        }
+
+        apply(method, data);
+    }
+
+    /**
+     * Nothing is delivered after this
+     */
+    synchronized void close() {
+        mClosed = true;
+        mPending = null;
+    }
+
+    private void replay() {
+        List<Object[]> pending = mPending;
+        mPending = null;
+
+        if (pending == null || mClosed) {
+            return;
+        }
+        for (Object[] notification : pending) {
+            apply((String) notification[0], (JSONObject) notification[1]);
+        }
+    }
+
+    private void apply(String method, JSONObject data) {
+        String peerId = data != null ? data.optString("peerId") : "";
+        if (peerId.isEmpty() || peerId.equals(mMyPeerId)) {
+            return;
+        }
+
+        Roster.Peer peer = mMirror.get(peerId);
+        boolean video = peer != null && peer.isSendingVideo();
+        boolean audio = peer != null && peer.isSendingAudio();
+        String mediaTag = data.optString("mediaTag");
+
+        RosterUpdate update = RosterUpdate.obtain();
+        update.setKind(RosterUpdate.Kind.DELTA);
+
+        switch (method) {
+            case PEER_JOINED:
+                JSONObject media = data.optJSONObject("media");
+                update.addPeer(peerId,
+                        media != null && media.opt(Roster.CAM_VIDEO) instanceof JSONObject,
+                        media != null && media.opt(Roster.CAM_AUDIO) instanceof JSONObject);
+                break;
+            case PEER_LEFT:
+                update.addLeft(peerId);
+                break;
+            case PRODUCER_ADDED:
+            case PRODUCER_CLOSED:
+                boolean sending = method.equals(PRODUCER_ADDED);
+                update.addPeer(peerId,
+                        mediaTag.equals(Roster.CAM_VIDEO) ? sending : video,
+                        mediaTag.equals(Roster.CAM_AUDIO) ? sending : audio);
+                break;
+            default:
+                /**
+                 * Paused/resumed and anything we don't know about don't change the roster
+                 */
+                update.recycle();
+                return;
+        }
+
+        deliver(update);
+    }
+
+    /**
+     * Mirror first, the listener owns the update afterwards
+     */
+    private void deliver(RosterUpdate update) {
+        mMirror.apply(update, IGNORE);
+        mListener.onRosterUpdate(update);
+    }
+}
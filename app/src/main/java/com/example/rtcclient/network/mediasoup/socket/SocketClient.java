@@ -3,30 +3,57 @@ package com.example.rtcclient.network.mediasoup.socket;
 import androidx.annotation.NonNull;
 import androidx.annotation.WorkerThread;
 
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.network.BatchRequest;
 import com.example.rtcclient.network.ISignalingStrategy;
+import com.example.rtcclient.network.SignalingException;
 
-import org.json.JSONException;
 import org.json.JSONObject;
 import org.mediasoup.droid.Logger;
+import org.protoojs.droid.Message;
 import org.protoojs.droid.ProtooException;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
 
 /**
  * Sockets over Protoo directly imported from mediasoup-demo-android. Renamed and partially modified
- * to implement ISignalingStrategy. Not tested yet
+ * to implement ISignalingStrategy. The roster is pushed by the server as notifications (see
+ * RosterFeed) so unlike HttpClient nothing is polled
  */
 @SuppressWarnings({"unused", "WeakerAccess"})
 public class SocketClient extends org.protoojs.droid.Peer implements ISignalingStrategy {
 
     private static final String TAG = "SocketClient";
+    /**
+     * Deadline for the blocking fetch() and fetchBatch(), and for register()'s snapshot. protoo's own
+     * request timer doesn't help once the socket is gone
+     */
+    private static final long BLOCKING_TIMEOUT_MS = 30 * 1000;
+
+    private RosterFeed mRosterFeed;
+    private Disposable mSnapshot;
 
     interface RequestGenerator {
         void request(JSONObject req);
     }
 
     public SocketClient(@NonNull WebSocketTransport transport, @NonNull Listener listener) {
-        super(transport, listener);
+        this(transport, new NotificationTap(listener));
+    }
+
+    /**
+     * super() can't be handed a listener that refers to this, so the tap learns about us right after.
+     * The transport only connects asynchronously, nothing arrives before that
+     */
+    private SocketClient(WebSocketTransport transport, NotificationTap tap) {
+        super(transport, tap);
+        tap.mClient = this;
     }
 
     public Observable<String> request(String method) {
@@ -63,38 +90,217 @@ public class SocketClient extends org.protoojs.droid.Peer implements ISignalingS
                                 }));
     }
 
+    /**
+     * @return blocks for BLOCKING_TIMEOUT_MS at most. null on failure
+     */
     @WorkerThread
     @Override
     public JSONObject fetch(String method, @NonNull JSONObject data) {
         Logger.d(TAG, "syncRequest(), method: " + method);
 
-        JSONObject response = null;
-        String result = request(method, data).blockingFirst(); // This will block
-
         try {
-            response = new JSONObject(result);
-        } catch (JSONException e) {
-            e.printStackTrace();
+            // This will block
+            return fetchSingle(method, data, BLOCKING_TIMEOUT_MS).blockingGet();
+        } catch (RuntimeException e) {
+            Logger.e(TAG, "fetch() | " + method + " failed", e);
+            return null;
         }
+    }
 
-        return response;
+    /**
+     * Non-blocking fetch over the socket. protoo has no way to take a request back so disposing only
+     * stops us from listening for the response
+     */
+    @Override
+    public Single<JSONObject> fetchSingle(String method, JSONObject data, long timeoutMs) {
+        return request(method, data)
+                .firstOrError()
+                .onErrorResumeNext(throwable -> Single.error(toSignalingException(method, throwable)))
+                .map(JSONObject::new)
+                .timeout(timeoutMs, TimeUnit.MILLISECONDS);
     }
 
-    //TODO (mohamed): Implement async
+    /**
+     * A "sync" snapshot of the roster, parsed the way HTTP sync is. register() takes its snapshot
+     * through here. Nothing needs to be polled after it, the feed keeps up from there
+     */
     @Override
-    public void fetchAsync(String path, JSONObject params) {
+    public Single<RosterUpdate> fetchSync(JSONObject params, long timeoutMs) {
+        String myPeerId = params.optString("peerId");
 
+        return request(SYNC_PATH, params)
+                .firstOrError()
+                .onErrorResumeNext(throwable -> Single.error(toSignalingException(SYNC_PATH, throwable)))
+                .map(body -> RosterFeed.parseSnapshot(myPeerId, body))
+                .timeout(timeoutMs, TimeUnit.MILLISECONDS);
     }
 
-    // TODO (mohamed): Consolidate listeners
+    @WorkerThread
+    @Override
+    public List<JSONObject> fetchBatch(BatchRequest batch) {
+        // This will block
+        return fetchBatchSingle(batch, BLOCKING_TIMEOUT_MS).onErrorReturnItem(batch.failed()).blockingGet();
+    }
+
+    /**
+     * protoo matches responses to requests by id, so a batch is simply every request written to the
+     * socket back to back. They share one round trip and no server support is needed
+     */
+    @Override
+    public Single<List<JSONObject>> fetchBatchSingle(BatchRequest batch, long timeoutMs) {
+        List<Single<JSONObject>> requests = new ArrayList<>(batch.size());
+
+        for (int i = 0; i < batch.size(); i++) {
+            String method = batch.getPath(i);
+            requests.add(request(method, batch.getParams(i))
+                    .firstOrError()
+                    .map(JSONObject::new)
+                    .onErrorReturn(throwable -> {
+                        Logger.e(TAG, "fetchBatch() | " + method + " failed", throwable);
+                        return BatchRequest.FAILED;
+                    }));
+        }
+
+        return Single.zip(requests, results -> {
+            List<JSONObject> responses = new ArrayList<>(results.length);
+            for (Object result : results) {
+                responses.add((JSONObject) result);
+            }
+            return BatchRequest.withNulls(responses);
+        }).timeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fire-and-forget over the socket, the response is only looked at for errors
+     */
+    @Override
+    public void fetchAsync(String path, JSONObject params) {
+        request(path, params).firstOrError().subscribe(
+                result -> {
+                },
+                throwable -> Logger.e(TAG, "fetchAsync() | " + path + " failed", throwable));
+    }
+
+    /**
+     * Starts from a "sync" snapshot, the server's notifications keep the listener up to date after
+     * that. The listener is called on the socket's thread
+     */
     @Override
     public void register(JSONObject params, ISignalListener listener) {
+        register(params, listener, SyncMode.POLL, this);
+    }
+
+    @Override
+    public void register(JSONObject params, ISignalListener listener, SyncMode mode) {
+        register(params, listener, mode, this);
+    }
+
+    /**
+     * @param mode ignored, sockets are pushed to so there is nothing to poll
+     * @param via asked for the snapshot, so it's retried and recorded like HttpClient's sync requests.
+     * The listener may get it on the decorators' threads
+     */
+    @Override
+    public void register(JSONObject params, ISignalListener listener, SyncMode mode, ISignalingStrategy via) {
+        Logger.d(TAG, "register() | " + mode + " ignored, the server pushes the roster");
+        unRegister();
+
+        RosterFeed feed = new RosterFeed(params.optString("peerId"), listener);
+        synchronized (this) {
+            mRosterFeed = feed;
+        }
 
+        mSnapshot = via.fetchSync(params, BLOCKING_TIMEOUT_MS).subscribe(
+                feed::onSnapshot,
+                throwable -> {
+                    Logger.e(TAG, "register() | snapshot failed", throwable);
+                    feed.onSnapshotFailed();
+                });
     }
 
-    //TODO (mohamed): Implement
     @Override
     public void unRegister() {
+        RosterFeed feed;
+        synchronized (this) {
+            feed = mRosterFeed;
+            mRosterFeed = null;
+        }
+
+        if (feed != null) {
+            feed.close();
+        }
+        if (mSnapshot != null) {
+            mSnapshot.dispose();
+            mSnapshot = null;
+        }
+    }
+
+    /**
+     * protoo rejections carry the server's status code, or one of its own for a request that never
+     * got an answer
+     */
+    private static Throwable toSignalingException(String method, Throwable throwable) {
+        if (throwable instanceof ProtooException) {
+            int statusCode = (int) ((ProtooException) throwable).getError();
+            return new SignalingException(method + " failed", statusCode, throwable);
+        }
+        return throwable;
+    }
+
+    private void onNotification(@NonNull Message.Notification notification) {
+        RosterFeed feed;
+        synchronized (this) {
+            feed = mRosterFeed;
+        }
+
+        if (feed != null) {
+            feed.onNotification(notification.getMethod(), notification.getData());
+        }
+    }
+
+    /**
+     * Hands notifications to the roster feed before the app's listener sees them
+     */
+    private static class NotificationTap implements Listener {
 
+        private final Listener mListener;
+        private SocketClient mClient;
+
+        NotificationTap(Listener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void onOpen() {
+            mListener.onOpen();
+        }
+
+        @Override
+        public void onFail() {
+            mListener.onFail();
+        }
+
+        @Override
+        public void onRequest(@NonNull Message.Request request, @NonNull ServerRequestHandler handler) {
+            mListener.onRequest(request, handler);
+        }
+
+        @Override
+        public void onNotification(@NonNull Message.Notification notification) {
+            if (mClient != null) {
+                mClient.onNotification(notification);
+            }
+            mListener.onNotification(notification);
+        }
+
+        @Override
+        public void onDisconnected() {
+            mListener.onDisconnected();
+        }
+
+        @Override
+        public void onClose() {
+            mListener.onClose();
+        }
     }
 }
@@ -0,0 +1,48 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+/**
+ * Rate limit for reconnect attempts. Holds up to capacity tokens and gains one every refillMs. A
+ * socket that opens and fails right away keeps resetting the backoff, the bucket is what stops it
+ * from hammering the server
+ */
+public class TokenBucket {
+
+    private final int mCapacity;
+    private final long mRefillMs;
+    private double mTokens;
+    private long mRefilledAtMs = Long.MIN_VALUE;
+
+    public TokenBucket(int capacity, long refillMs) {
+        mCapacity = capacity;
+        mRefillMs = refillMs;
+        mTokens = capacity;
+    }
+
+    /**
+     * Take a token for an attempt at atMs, or for the first moment after it there is one
+     * @return when the attempt may go ahead, never before atMs
+     */
+    public synchronized long reserve(long atMs) {
+        if (mRefilledAtMs == Long.MIN_VALUE) {
+            mRefilledAtMs = atMs;
+        }
+        if (atMs > mRefilledAtMs) {
+            mTokens = Math.min(mCapacity, mTokens + (double) (atMs - mRefilledAtMs) / mRefillMs);
+            mRefilledAtMs = atMs;
+        }
+
+        long at = Math.max(atMs, mRefilledAtMs);
+        if (mTokens >= 1) {
+            mTokens -= 1;
+            return at;
+        }
+
+        /**
+         * Borrow the token that is on its way
+         */
+        long waitMs = (long) Math.ceil((1 - mTokens) * mRefillMs);
+        mTokens = 0;
+        mRefilledAtMs = at + waitMs;
+        return at + waitMs;
+    }
+}
@@ -2,22 +2,22 @@ package com.example.rtcclient.network.mediasoup.socket;
 
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import com.example.rtcclient.network.OkHttpProvider;
+import com.example.rtcclient.network.codec.SignalingCodec;
+import com.example.rtcclient.network.codec.SignalingCodecs;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.mediasoup.droid.Logger;
 import org.protoojs.droid.Message;
 import org.protoojs.droid.transports.AbsWebSocketTransport;
 
-import java.security.cert.CertificateException;
 import java.util.concurrent.CountDownLatch;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -26,15 +26,25 @@ import okhttp3.WebSocketListener;
 import okhttp3.logging.HttpLoggingInterceptor;
 import okio.ByteString;
 
-import static org.apache.http.conn.ssl.SSLSocketFactory.SSL;
-
 /**
  * WebSocketTransport directly imported from mediasoup-demo-android required by SocketClient
+ *
+ * Messages sent while the socket is reconnecting wait in an OutboundQueue and go out in order once
+ * it's open again, so callers don't notice the reconnect unless it outlasts their request. They're
+ * encoded for the codec of the socket they finally go out on
+ *
+ * An open socket is pinged every few seconds (see Keepalive). The pongs give a smoothed RTT and a
+ * few missed ones in a row drop the socket and reconnect, instead of waiting for TCP to notice
  */
 public class WebSocketTransport extends AbsWebSocketTransport {
 
     // Log tag.
     private static final String TAG = "WebSocketTransport";
+    public static final long DEFAULT_PING_INTERVAL_MS = 5 * 1000;
+    public static final int DEFAULT_MAX_MISSED_PONGS = 3;
+    private static final String PING = "ping";
+    // Above the ids protoo gives its own requests (< 10^7), so pongs can't be mistaken for their responses.
+    private static final long FIRST_PING_ID = 1000L * 1000 * 1000;
     // Closed flag.
     private boolean mClosed;
     // Connected flag.
@@ -43,56 +53,45 @@ public class WebSocketTransport extends AbsWebSocketTransport {
     private final OkHttpClient mOkHttpClient;
     // Handler associate to current thread.
     private final Handler mHandler;
-    // Retry operation.
-    private final RetryStrategy mRetryStrategy;
+    // When to reconnect, see ReconnectPolicy.
+    private final ReconnectPolicy mReconnectPolicy;
     // WebSocket instance.
     private WebSocket mWebSocket;
+    // Latest WebSocket asked for, open or not.
+    private WebSocket mPendingWebSocket;
     // Listener.
     private Listener mListener;
+    // Codec the server accepted for the current socket, see SignalingCodecs.
+    private volatile SignalingCodec mCodec = SignalingCodecs.JSON;
+    // Messages waiting for the socket to come back. Filled and flushed on mHandler.
+    private final OutboundQueue<QueuedMessage> mOutbound = new OutboundQueue<>(OutboundQueue.DEFAULT_CAPACITY);
+    // Keepalive settings, 0 interval for none.
+    private long mPingIntervalMs = DEFAULT_PING_INTERVAL_MS;
+    private volatile Keepalive mKeepalive = new Keepalive(DEFAULT_MAX_MISSED_PONGS);
+    private long mNextPingId = FIRST_PING_ID;
+    private final Runnable mPingTask = this::ping;
 
-    private static class RetryStrategy {
-
-        private final int retries;
-        private final int factor;
-        private final int minTimeout;
-        private final int maxTimeout;
-
-        private int retryCount = 1;
-
-        RetryStrategy(int retries, int factor, int minTimeout, int maxTimeout) {
-            this.retries = retries;
-            this.factor = factor;
-            this.minTimeout = minTimeout;
-            this.maxTimeout = maxTimeout;
-        }
-
-        void retried() {
-            retryCount++;
-        }
-
-        int getReconnectInterval() {
-            if (retryCount > retries) {
-                return -1;
-            }
-            int reconnectInterval = (int) (minTimeout * Math.pow(factor, retryCount));
-            reconnectInterval = Math.min(reconnectInterval, maxTimeout);
-            return reconnectInterval;
-        }
-
-        void reset() {
-            if (retryCount != 0) {
-                retryCount = 0;
-            }
-        }
+    public WebSocketTransport(String url) {
+        this(url, JitteredReconnectPolicy.createDefault());
     }
 
-    public WebSocketTransport(String url) {
+    public WebSocketTransport(String url, ReconnectPolicy reconnectPolicy) {
         super(url);
         mOkHttpClient = getUnsafeOkHttpClient();
         HandlerThread handlerThread = new HandlerThread("socket");
         handlerThread.start();
         mHandler = new Handler(handlerThread.getLooper());
-        mRetryStrategy = new RetryStrategy(10, 2, 1000, 8 * 1000);
+        mReconnectPolicy = reconnectPolicy;
+    }
+
+    /**
+     * Call before connect()
+     * @param intervalMs between pings, 0 to turn the keepalive off
+     * @param maxMissedPongs pings in a row without an answer before the socket is dropped
+     */
+    public void setKeepalive(long intervalMs, int maxMissedPongs) {
+        mPingIntervalMs = intervalMs;
+        mKeepalive = new Keepalive(maxMissedPongs);
     }
 
     @Override
@@ -104,47 +103,206 @@ public class WebSocketTransport extends AbsWebSocketTransport {
 
     private void newWebSocket() {
         mWebSocket = null;
-        mOkHttpClient.newWebSocket(
-                new Request.Builder().url(mUrl).addHeader("Sec-WebSocket-Protocol", "protoo").build(),
+        mPendingWebSocket = mOkHttpClient.newWebSocket(
+                new Request.Builder().url(mUrl).addHeader("Sec-WebSocket-Protocol", SignalingCodecs.subprotocols()).build(),
                 new ProtooWebSocketListener());
     }
 
-    private boolean scheduleReconnect() {
-        int reconnectInterval = mRetryStrategy.getReconnectInterval();
-        if (reconnectInterval == -1) {
+    /**
+     * @param response the failed handshake's, if it got that far. Its Retry-After is passed on
+     */
+    private boolean scheduleReconnect(@Nullable Response response) {
+        long reconnectInterval = mReconnectPolicy.nextDelayMs(retryAfterMs(response), SystemClock.elapsedRealtime());
+        if (reconnectInterval == ReconnectPolicy.NO_RETRY) {
             return false;
         }
-        Logger.d(TAG, "scheduleReconnect() ");
+        Logger.d(TAG, "scheduleReconnect() in " + reconnectInterval + "ms");
         mHandler.postDelayed(
                 () -> {
                     if (mClosed) {
                         return;
                     }
-                    Logger.w(TAG, "doing reconnect job, retryCount: " + mRetryStrategy.retryCount);
-                    mOkHttpClient.dispatcher().cancelAll();
+                    Logger.w(TAG, "doing reconnect job");
+                    // The dispatcher is shared with HTTP signaling, only cancel our own socket.
+                    if (mPendingWebSocket != null) {
+                        mPendingWebSocket.cancel();
+                    }
                     newWebSocket();
-                    mRetryStrategy.retried();
                 },
                 reconnectInterval);
         return true;
     }
 
+    /**
+     * @return Retry-After in ms (only the delay-seconds form), NO_HINT if there's none
+     */
+    private static long retryAfterMs(@Nullable Response response) {
+        String retryAfter = response != null ? response.header("Retry-After") : null;
+        if (retryAfter == null) {
+            return ReconnectPolicy.NO_HINT;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return ReconnectPolicy.NO_HINT;
+        }
+    }
+
     @Override
     public String sendMessage(JSONObject message) {
         if (mClosed) {
             throw new IllegalStateException("transport closed");
         }
-        String payload = message.toString();
+        QueuedMessage queued;
+        try {
+            queued = new QueuedMessage(message, mCodec);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+        // protoo sizes the request timeout by the payload's length.
+        String payload = queued.payload();
+        post(queued, payload.length());
+        return payload;
+    }
+
+    private void post(QueuedMessage message, int length) {
+        long expiresAtMs = SystemClock.elapsedRealtime() + requestTimeoutMs(length);
         mHandler.post(
                 () -> {
                     if (mClosed) {
                         return;
                     }
-                    if (mWebSocket != null) {
-                        mWebSocket.send(payload);
+                    // Behind anything queued before it, order matters to the server.
+                    if (mWebSocket == null || mOutbound.size() > 0 || !send(mWebSocket, message)) {
+                        mOutbound.offer(message, expiresAtMs);
                     }
                 });
-        return payload;
+    }
+
+    /**
+     * In the codec of the socket that's open now, which isn't always the one it was sent in
+     * @return false if the socket is closing or gone, the message wasn't taken
+     */
+    private boolean send(WebSocket webSocket, QueuedMessage message) {
+        Object frame;
+        try {
+            frame = message.frameFor(mCodec);
+        } catch (JSONException e) {
+            // The new codec can't carry it, no socket of this server will.
+            Logger.e(TAG, "send() | unencodable message dropped", e);
+            return true;
+        }
+        return send(webSocket, frame);
+    }
+
+    /**
+     * @return false if the socket is closing or gone, the frame wasn't taken
+     */
+    private static boolean send(WebSocket webSocket, Object frame) {
+        return frame instanceof ByteString
+                ? webSocket.send((ByteString) frame)
+                : webSocket.send((String) frame);
+    }
+
+    /**
+     * Send what piled up while reconnecting. Runs on mHandler
+     */
+    private void flush(WebSocket webSocket) {
+        int queued = mOutbound.size();
+        long now = SystemClock.elapsedRealtime();
+        QueuedMessage message;
+
+        while ((message = mOutbound.peek(now)) != null) {
+            if (!send(webSocket, message)) {
+                // Lost it again already, the rest waits for the next socket.
+                break;
+            }
+            mOutbound.remove();
+        }
+
+        if (queued > 0) {
+            Logger.d(TAG, "flush() | " + queued + " queued, " + mOutbound.size() + " left. Dropped so far: "
+                    + mOutbound.getDropped() + ", expired so far: " + mOutbound.getExpired());
+        }
+    }
+
+    /**
+     * Runs on mHandler every mPingIntervalMs while a socket is open
+     */
+    private void ping() {
+        WebSocket webSocket = mWebSocket;
+        if (mClosed || webSocket == null) {
+            return;
+        }
+
+        long id = mNextPingId++;
+        if (!mKeepalive.onPing(id, SystemClock.elapsedRealtime())) {
+            Logger.w(TAG, "ping() | " + mKeepalive.getMissed() + " pongs missed, dropping the socket");
+            // Fails the socket, onFailure() reconnects.
+            webSocket.cancel();
+            return;
+        }
+
+        try {
+            JSONObject request = Message.createRequest(PING, new JSONObject());
+            request.put("id", id);
+            // Not queued, a ping only means something on the socket it was sent on.
+            send(webSocket, QueuedMessage.encode(request, mCodec));
+        } catch (JSONException e) {
+            Logger.e(TAG, "ping()", e);
+        }
+        mHandler.postDelayed(mPingTask, mPingIntervalMs);
+    }
+
+    /**
+     * @return true if message was the answer to a ping, it's ours and not for the listener
+     */
+    private boolean isPong(Message message) {
+        return message instanceof Message.Response
+                && mKeepalive.onResponse(((Message.Response) message).getId(), SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @return smoothed round trip to the server over the socket, -1 before the first pong
+     */
+    public long getSmoothedRttMs() {
+        return mKeepalive.getSmoothedRttMs();
+    }
+
+    /**
+     * @return how much the round trip varies around getSmoothedRttMs()
+     */
+    public long getRttVarianceMs() {
+        return mKeepalive.getRttVarianceMs();
+    }
+
+    /**
+     * How long protoo's Peer waits for a response to a request this long. Queued past that,
+     * nobody is waiting for the answer
+     */
+    private static long requestTimeoutMs(int length) {
+        return (long) (1500 * (15 + (0.1 * length)));
+    }
+
+    /**
+     * @return messages waiting for the socket to reconnect
+     */
+    public int getQueueDepth() {
+        return mOutbound.size();
+    }
+
+    /**
+     * @return messages lost because too many piled up while reconnecting
+     */
+    public long getDroppedCount() {
+        return mOutbound.getDropped();
+    }
+
+    /**
+     * @return messages not sent because the socket came back too late for them
+     */
+    public long getExpiredCount() {
+        return mOutbound.getExpired();
     }
 
     @Override
@@ -157,10 +315,12 @@ public class WebSocketTransport extends AbsWebSocketTransport {
         final CountDownLatch countDownLatch = new CountDownLatch(1);
         mHandler.post(
                 () -> {
+                    mHandler.removeCallbacks(mPingTask);
                     if (mWebSocket != null) {
                         mWebSocket.close(1000, "bye");
                         mWebSocket = null;
                     }
+                    mOutbound.clear();
                     countDownLatch.countDown();
                 });
         try {
@@ -183,12 +343,26 @@ public class WebSocketTransport extends AbsWebSocketTransport {
                 return;
             }
             Logger.d(TAG, "onOpen() ");
-            mWebSocket = webSocket;
+            mCodec = SignalingCodecs.forSubprotocol(response.header("Sec-WebSocket-Protocol"));
+            // On mHandler so the queued frames go out before anything sent from here on.
+            mHandler.post(
+                    () -> {
+                        if (mClosed) {
+                            return;
+                        }
+                        mWebSocket = webSocket;
+                        flush(webSocket);
+                        mKeepalive.reset();
+                        mHandler.removeCallbacks(mPingTask);
+                        if (mPingIntervalMs > 0) {
+                            mHandler.postDelayed(mPingTask, mPingIntervalMs);
+                        }
+                    });
             mConnected = true;
             if (mListener != null) {
                 mListener.onOpen();
             }
-            mRetryStrategy.reset();
+            mReconnectPolicy.reset();
         }
 
         @Override
@@ -199,7 +373,8 @@ public class WebSocketTransport extends AbsWebSocketTransport {
             }
             mClosed = true;
             mConnected = false;
-            mRetryStrategy.reset();
+            mHandler.removeCallbacks(mPingTask);
+            mReconnectPolicy.reset();
             if (mListener != null) {
                 mListener.onClose();
             }
@@ -217,7 +392,15 @@ public class WebSocketTransport extends AbsWebSocketTransport {
             if (mClosed) {
                 return;
             }
-            if (scheduleReconnect()) {
+            // Queue until the next socket opens.
+            mHandler.post(
+                    () -> {
+                        if (mWebSocket == webSocket) {
+                            mWebSocket = null;
+                            mHandler.removeCallbacks(mPingTask);
+                        }
+                    });
+            if (scheduleReconnect(response)) {
                 if (mListener != null) {
                     if (mConnected) {
                         mListener.onFail();
@@ -231,7 +414,7 @@ public class WebSocketTransport extends AbsWebSocketTransport {
                 if (mListener != null) {
                     mListener.onClose();
                 }
-                mRetryStrategy.reset();
+                mReconnectPolicy.reset();
             }
         }
 
@@ -242,7 +425,7 @@ public class WebSocketTransport extends AbsWebSocketTransport {
                 return;
             }
             Message message = Message.parse(text);
-            if (message == null) {
+            if (message == null || isPong(message)) {
                 return;
             }
             if (mListener != null) {
@@ -253,59 +436,39 @@ public class WebSocketTransport extends AbsWebSocketTransport {
         @Override
         public void onMessage(@NotNull WebSocket webSocket, @NotNull ByteString bytes) {
             Logger.d(TAG, "onMessage()");
+            if (mClosed) {
+                return;
+            }
+            Message message;
+            try {
+                byte[] frame = bytes.toByteArray();
+                // protoo only parses text, so the decoded message goes back through a String.
+                message = Message.parse(mCodec.decode(frame, 0, frame.length).toString());
+            } catch (JSONException e) {
+                Logger.e(TAG, "onMessage() | undecodable frame", e);
+                return;
+            }
+            if (message == null || isPong(message)) {
+                return;
+            }
+            if (mListener != null) {
+                mListener.onMessage(message);
+            }
         }
     }
 
+    /**
+     * Built on the shared client so the socket reuses the app's dispatcher, pool and TLS sessions.
+     * The demo server's certificate is self-signed, hence the unsafe variant
+     */
     private OkHttpClient getUnsafeOkHttpClient() {
-        try {
-            final TrustManager[] trustAllCerts =
-                    new TrustManager[]{
-                            new X509TrustManager() {
-
-                                @Override
-                                public void checkClientTrusted(
-                                        java.security.cert.X509Certificate[] chain, String authType)
-                                        throws CertificateException {
-                                }
-
-                                @Override
-                                public void checkServerTrusted(
-                                        java.security.cert.X509Certificate[] chain, String authType)
-                                        throws CertificateException {
-                                }
-
-                                // Called reflectively by X509TrustManagerExtensions.
-                                public void checkServerTrusted(
-                                        java.security.cert.X509Certificate[] chain, String authType, String host) {
-                                }
-
-                                @Override
-                                public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                                    return new java.security.cert.X509Certificate[]{};
-                                }
-                            }
-                    };
-
-            final SSLContext sslContext = SSLContext.getInstance(SSL);
-            sslContext.init(null, trustAllCerts, new java.security.SecureRandom());
-
-            final SSLSocketFactory sslSocketFactory = sslContext.getSocketFactory();
-
-            HttpLoggingInterceptor httpLoggingInterceptor =
-                    new HttpLoggingInterceptor(s -> Logger.d(TAG, s));
-            httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC);
-
-            OkHttpClient.Builder builder =
-                    new OkHttpClient.Builder()
-                            .addInterceptor(httpLoggingInterceptor)
-                            .retryOnConnectionFailure(true);
-            builder.sslSocketFactory(sslSocketFactory, (X509TrustManager) trustAllCerts[0]);
-
-            builder.hostnameVerifier((hostname, session) -> true);
-
-            return builder.build();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        HttpLoggingInterceptor httpLoggingInterceptor =
+                new HttpLoggingInterceptor(s -> Logger.d(TAG, s));
+        httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC);
+
+        return OkHttpProvider.getUnsafe()
+                .newBuilder()
+                .addInterceptor(httpLoggingInterceptor)
+                .build();
     }
 }
@@ -0,0 +1,87 @@
+package com.example.rtcclient.prefs;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.rtcclient.Application;
+import com.example.rtcclient.media.SimulcastProfile;
+
+import org.mediasoup.droid.Logger;
+
+/**
+ * Media knobs from the settings screen, with defaults for when they're unset or not numbers. Read
+ * when the room is reset
+ */
+public class MediaConfig {
+
+    private static final String TAG = "MediaConfig";
+
+    /**
+     * A 3x3 grid, about what a mid-range phone decodes at VGA without dropping frames
+     */
+    public static final int DEFAULT_MAX_VIDEO_CONSUMERS = 9;
+    /**
+     * Audio is cheap to decode but every stream is downlink, more than this rarely talk at once
+     */
+    public static final int DEFAULT_MAX_AUDIO_CONSUMERS = 16;
+    /**
+     * Tiles of the loudest speakers play, the rest of the grid is paused
+     */
+    public static final int DEFAULT_MAX_ACTIVE_VIDEO = 4;
+
+    /**
+     * @return most peers we take video from at once
+     */
+    public static int getMaxVideoConsumers() {
+        return Math.max(0, getInt("maxVideoConsumers", DEFAULT_MAX_VIDEO_CONSUMERS));
+    }
+
+    /**
+     * @return most peers we take audio from at once
+     */
+    public static int getMaxAudioConsumers() {
+        return Math.max(0, getInt("maxAudioConsumers", DEFAULT_MAX_AUDIO_CONSUMERS));
+    }
+
+    /**
+     * @return most videos resumed at once, the active speakers'. No more than getMaxVideoConsumers()
+     * is used
+     */
+    public static int getMaxActiveVideo() {
+        return Math.max(0, getInt("maxActiveVideo", DEFAULT_MAX_ACTIVE_VIDEO));
+    }
+
+    /**
+     * @return how the camera is encoded, the default S3T3 simulcast if the settings don't make a
+     * profile
+     */
+    public static SimulcastProfile getSimulcastProfile() {
+        SharedPreferences preferences = getPreferences();
+        String mode = preferences.getString("videoScalabilityMode", SimulcastProfile.DEFAULT_MODE);
+        String ladder = preferences.getString("videoLayers", SimulcastProfile.DEFAULT_LADDER);
+
+        try {
+            return SimulcastProfile.parse(mode, ladder);
+        } catch (IllegalArgumentException e) {
+            Logger.w(TAG, "getSimulcastProfile() | " + e.getMessage());
+            return SimulcastProfile.getDefault();
+        }
+    }
+
+    private static SharedPreferences getPreferences() {
+        return PreferenceManager.getDefaultSharedPreferences(Application.context.getApplicationContext());
+    }
+
+    private static int getInt(String key, int defaultValue) {
+        SharedPreferences preferences = getPreferences();
+
+        try {
+            /**
+             * EditTextPreference stores strings
+             */
+            return Integer.parseInt(preferences.getString(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            return defaultValue;
+        }
+    }
+}
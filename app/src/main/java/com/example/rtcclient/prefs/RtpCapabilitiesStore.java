@@ -0,0 +1,36 @@
+package com.example.rtcclient.prefs;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.rtcclient.Application;
+import com.example.rtcclient.model.RtpCapabilitiesCache;
+
+/**
+ * Keeps RtpCapabilitiesCache entries in their own preferences file, away from the settings screen
+ */
+public class RtpCapabilitiesStore implements RtpCapabilitiesCache.Store {
+
+    private static final String NAME = "rtpCapabilities";
+
+    private final SharedPreferences mPreferences =
+            Application.context.getApplicationContext().getSharedPreferences(NAME, Context.MODE_PRIVATE);
+
+    @Override
+    public String get(String key) {
+        return mPreferences.getString(key, null);
+    }
+
+    /**
+     * Written in the background, the next join is the earliest it's needed
+     */
+    @Override
+    public void put(String key, String value) {
+        mPreferences.edit().putString(key, value).apply();
+    }
+
+    @Override
+    public void remove(String key) {
+        mPreferences.edit().remove(key).apply();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.rtcclient.prefs;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.rtcclient.Application;
+
+/**
+ * Signaling knobs from the settings screen, with defaults for when they're unset or not numbers
+ */
+public class SignalingConfig {
+
+    public static final long DEFAULT_SYNC_MIN_INTERVAL_MS = 500;
+    public static final long DEFAULT_SYNC_MAX_INTERVAL_MS = 5000;
+    /**
+     * Polling faster than this is no better than long-polling and much worse for the battery
+     */
+    private static final long SYNC_INTERVAL_FLOOR_MS = 100;
+
+    /**
+     * @return how soon to poll after the roster changed or we did something
+     */
+    public static long getSyncMinIntervalMs() {
+        return Math.max(SYNC_INTERVAL_FLOOR_MS, getLong("syncMinIntervalMs", DEFAULT_SYNC_MIN_INTERVAL_MS));
+    }
+
+    /**
+     * @return the longest gap between polls in a quiet room
+     */
+    public static long getSyncMaxIntervalMs() {
+        return Math.max(getSyncMinIntervalMs(), getLong("syncMaxIntervalMs", DEFAULT_SYNC_MAX_INTERVAL_MS));
+    }
+
+    private static long getLong(String key, long defaultValue) {
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(Application.context.getApplicationContext());
+
+        try {
+            /**
+             * EditTextPreference stores strings
+             */
+            return Long.parseLong(preferences.getString(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            return defaultValue;
+        }
+    }
+}
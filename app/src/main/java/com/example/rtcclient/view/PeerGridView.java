@@ -0,0 +1,222 @@
+package com.example.rtcclient.view;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.rtcclient.integration.mediasoup.PeerConnectionUtils;
+
+import org.webrtc.RendererCommon;
+import org.webrtc.SurfaceViewRenderer;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PeerGridView renders the remote peers' video, one tile per peer we consume video from. Tiles
+ * are laid out in as square a grid as the view allows, in the order they were added. There are
+ * never more tiles than the video budget so renderers don't grow with the room either. Tells its
+ * listener when a tile can't be seen anymore, off screen or with the window hidden, and when it can
+ * again. Tile sizes are reported too, they decide which layer of a simulcast peer is worth receiving
+ */
+public class PeerGridView extends ViewGroup {
+
+    public interface OnTileVisibilityListener {
+        /**
+         * Main thread. A new tile is visible until told otherwise
+         */
+        void onTileVisibilityChanged(String peerId, boolean visible);
+    }
+
+    public interface OnTileSizeListener {
+        /**
+         * Main thread
+         * @param width in px
+         */
+        void onTileSizeChanged(String peerId, int width, int height);
+    }
+
+    private final Map<String, SurfaceViewRenderer> mTiles = new LinkedHashMap<>();
+    private final Map<String, Boolean> mVisible = new HashMap<>();
+    private final Rect mVisibleRect = new Rect();
+    private OnTileVisibilityListener mVisibilityListener;
+    private OnTileSizeListener mSizeListener;
+    private int mColumns = 1;
+    private int mRows = 1;
+    /**
+     * Scrolling or a sibling's layout can move tiles off screen without our own layout changing
+     */
+    private final ViewTreeObserver.OnScrollChangedListener mOnScroll = this::updateVisibility;
+    private final ViewTreeObserver.OnGlobalLayoutListener mOnLayout = this::updateVisibility;
+
+    /**
+     * When implementing a custom view these constructors are required
+     * @param context Activity level context
+     */
+    public PeerGridView(@NonNull Context context) {
+        super(context);
+    }
+
+    public PeerGridView(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public PeerGridView(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    public void setOnTileVisibilityListener(OnTileVisibilityListener listener) {
+        mVisibilityListener = listener;
+    }
+
+    public void setOnTileSizeListener(OnTileSizeListener listener) {
+        mSizeListener = listener;
+    }
+
+    /**
+     * Main thread
+     * @return the peer's renderer, a new one if it had none
+     */
+    public SurfaceViewRenderer addTile(String peerId) {
+        SurfaceViewRenderer renderer = mTiles.get(peerId);
+        if (renderer != null) {
+            return renderer;
+        }
+
+        renderer = new SurfaceViewRenderer(getContext());
+        renderer.init(PeerConnectionUtils.getEglContext(), null);
+        renderer.setZOrderMediaOverlay(true);
+        renderer.setScalingType(RendererCommon.ScalingType.SCALE_ASPECT_FILL);
+        /**
+         * Tiles are smaller than the frames, let the GPU scale them down
+         */
+        renderer.setEnableHardwareScaler(true);
+
+        mTiles.put(peerId, renderer);
+        addView(renderer);
+        return renderer;
+    }
+
+    /**
+     * Main thread. Releases the renderer, nothing should be sending it frames anymore
+     */
+    public void removeTile(String peerId) {
+        SurfaceViewRenderer renderer = mTiles.remove(peerId);
+        if (renderer == null) {
+            return;
+        }
+
+        removeView(renderer);
+        renderer.release();
+        mVisible.remove(peerId);
+    }
+
+    public void clear() {
+        for (SurfaceViewRenderer renderer : mTiles.values()) {
+            removeView(renderer);
+            renderer.release();
+        }
+        mTiles.clear();
+        mVisible.clear();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = MeasureSpec.getSize(heightMeasureSpec);
+        setMeasuredDimension(width, height);
+
+        int count = Math.max(1, getChildCount());
+        int longSide = (int) Math.ceil(Math.sqrt(count));
+        int shortSide = (int) Math.ceil(count / (double) longSide);
+        /**
+         * More columns than rows in landscape, the other way round in portrait
+         */
+        mColumns = width >= height ? longSide : shortSide;
+        mRows = width >= height ? shortSide : longSide;
+
+        int tileWidth = MeasureSpec.makeMeasureSpec(width / mColumns, MeasureSpec.EXACTLY);
+        int tileHeight = MeasureSpec.makeMeasureSpec(height / mRows, MeasureSpec.EXACTLY);
+        for (int i = 0; i < getChildCount(); i++) {
+            getChildAt(i).measure(tileWidth, tileHeight);
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        int tileWidth = (right - left) / mColumns;
+        int tileHeight = (bottom - top) / mRows;
+
+        /**
+         * Tiles are children in the order they were added
+         */
+        int i = 0;
+        for (Map.Entry<String, SurfaceViewRenderer> tile : mTiles.entrySet()) {
+            View child = tile.getValue();
+            boolean resized = child.getWidth() != tileWidth || child.getHeight() != tileHeight;
+            int x = (i % mColumns) * tileWidth;
+            int y = (i / mColumns) * tileHeight;
+            child.layout(x, y, x + tileWidth, y + tileHeight);
+            i++;
+
+            if (resized && mSizeListener != null) {
+                mSizeListener.onTileSizeChanged(tile.getKey(), tileWidth, tileHeight);
+            }
+        }
+        updateVisibility();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        getViewTreeObserver().addOnScrollChangedListener(mOnScroll);
+        getViewTreeObserver().addOnGlobalLayoutListener(mOnLayout);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnScrollChangedListener(mOnScroll);
+        getViewTreeObserver().removeOnGlobalLayoutListener(mOnLayout);
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateVisibility();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateVisibility();
+    }
+
+    /**
+     * A tile is visible when some of it is on screen and neither we nor the window are hidden
+     */
+    private void updateVisibility() {
+        /**
+         * The View constructor can change visibility before our fields are set
+         */
+        if (mTiles == null || mVisibilityListener == null) {
+            return;
+        }
+
+        boolean shown = isShown() && getWindowVisibility() == VISIBLE;
+        for (Map.Entry<String, SurfaceViewRenderer> tile : mTiles.entrySet()) {
+            boolean visible = shown && tile.getValue().getGlobalVisibleRect(mVisibleRect);
+            Boolean was = mVisible.put(tile.getKey(), visible);
+            if (was == null ? !visible : was != visible) {
+                mVisibilityListener.onTileVisibilityChanged(tile.getKey(), visible);
+            }
+        }
+    }
+}
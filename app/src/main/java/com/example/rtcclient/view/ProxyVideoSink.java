@@ -0,0 +1,24 @@
+package com.example.rtcclient.view;
+
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+/**
+ * Sits between a track and its renderer. The track is wired up on the worker and the renderer
+ * only exists once the main thread has made a tile for it, frames in between are dropped
+ */
+public class ProxyVideoSink implements VideoSink {
+
+    private VideoSink mTarget;
+
+    public synchronized void setTarget(VideoSink target) {
+        mTarget = target;
+    }
+
+    @Override
+    public synchronized void onFrame(VideoFrame frame) {
+        if (mTarget != null) {
+            mTarget.onFrame(frame);
+        }
+    }
+}
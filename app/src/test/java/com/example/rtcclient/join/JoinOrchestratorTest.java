@@ -0,0 +1,218 @@
+package com.example.rtcclient.join;
+
+import com.example.rtcclient.join.JoinTimeline.Milestone;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * JoinOrchestrator with steps that take as long as they do on a mid-range phone
+ */
+public class JoinOrchestratorTest {
+
+    private static final long SIGNAL_MS = 250;
+    private static final long CAPTURE_MS = 400;
+    private static final long LOAD_MS = 100;
+    private static final long TRANSPORT_MS = 20;
+    private static final long PRODUCE_MS = 30;
+
+    private final ExecutorService mWorkerThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "worker"));
+    private final ExecutorService mCaptureThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "capture"));
+    private final Scheduler mWorker = Schedulers.from(mWorkerThread);
+    private final Scheduler mCapture = Schedulers.from(mCaptureThread);
+
+    @After
+    public void tearDown() {
+        mWorkerThread.shutdownNow();
+        mCaptureThread.shutdownNow();
+    }
+
+    @Test
+    public void captureOverlapsSignalingAndDeviceLoad() {
+        FakeSteps steps = new FakeSteps();
+        JoinTimeline timeline = new JoinOrchestrator(steps, mWorker, mCapture, new JoinTimeline()).join().blockingGet();
+
+        long serialMs = SIGNAL_MS + LOAD_MS + 2 * TRANSPORT_MS + CAPTURE_MS + PRODUCE_MS;
+        long joinedMs = timeline.get(Milestone.PRODUCING);
+        System.out.println("serial ~" + serialMs + "ms, orchestrated " + joinedMs + "ms | " + timeline);
+
+        assertTrue(joinedMs < serialMs - LOAD_MS);
+        assertTrue(timeline.get(Milestone.CAPTURE_READY) < SIGNAL_MS + LOAD_MS + CAPTURE_MS);
+        /**
+         * Capture and preload start together, either can be first
+         */
+        assertTrue(steps.mCalls.remove("warmUpCapture@capture"));
+        assertEquals(Arrays.asList("signal", "preloadDevice@worker", "loadDevice@worker", "createRecvTransport@worker",
+                "onReceiving@worker", "createSendTransport@worker", "produce@worker"), steps.mCalls);
+    }
+
+    @Test
+    public void receivesBeforeCaptureIsReady() {
+        FakeSteps steps = new FakeSteps();
+        JoinTimeline timeline = new JoinOrchestrator(steps, mWorker, mCapture, new JoinTimeline()).join().blockingGet();
+
+        assertTrue(timeline.get(Milestone.RECV_TRANSPORT_CREATED) < timeline.get(Milestone.SEND_TRANSPORT_CREATED));
+        assertTrue(timeline.get(Milestone.SEND_TRANSPORT_CREATED) < timeline.get(Milestone.CAPTURE_READY));
+        assertTrue(timeline.get(Milestone.CAPTURE_READY) <= timeline.get(Milestone.PRODUCING));
+    }
+
+    @Test
+    public void failedCaptureJoinsReceiveOnly() {
+        FakeSteps steps = new FakeSteps();
+        steps.mCaptureFails = true;
+        JoinTimeline timeline = new JoinOrchestrator(steps, mWorker, mCapture, new JoinTimeline()).join().blockingGet();
+
+        assertTrue(steps.mCalls.contains("onReceiving@worker"));
+        assertFalse(steps.mCalls.contains("produce@worker"));
+        assertEquals(JoinTimeline.NOT_YET, timeline.get(Milestone.CAPTURE_READY));
+        assertEquals(JoinTimeline.NOT_YET, timeline.get(Milestone.PRODUCING));
+    }
+
+    @Test
+    public void failedJoinFailsWithoutTouchingTheDevice() {
+        FakeSteps steps = new FakeSteps();
+        steps.mResponses = Arrays.asList(null, null, null);
+
+        try {
+            new JoinOrchestrator(steps, mWorker, mCapture, new JoinTimeline()).join().blockingGet();
+            fail("expected a failure");
+        } catch (RuntimeException expected) {
+        }
+        assertFalse(steps.mCalls.contains("loadDevice@worker"));
+    }
+
+    @Test
+    public void cachedCapabilitiesLoadTheDeviceDuringSignaling() {
+        FakeSteps steps = new FakeSteps();
+        steps.mCached = true;
+        JoinTimeline timeline = new JoinOrchestrator(steps, mWorker, mCapture, new JoinTimeline()).join().blockingGet();
+
+        assertTrue(timeline.get(Milestone.DEVICE_PRELOADED) < timeline.get(Milestone.SIGNALED));
+        assertTrue(timeline.get(Milestone.DEVICE_LOADED) - timeline.get(Milestone.SIGNALED) < LOAD_MS);
+        assertTrue(steps.mCalls.indexOf("preloadDevice@worker") < steps.mCalls.indexOf("loadDevice@worker"));
+    }
+
+    @Test
+    public void failedPreloadStillJoins() {
+        FakeSteps steps = new FakeSteps();
+        steps.mPreloadFails = true;
+        JoinTimeline timeline = new JoinOrchestrator(steps, mWorker, mCapture, new JoinTimeline()).join().blockingGet();
+
+        assertEquals(JoinTimeline.NOT_YET, timeline.get(Milestone.DEVICE_PRELOADED));
+        assertTrue(timeline.get(Milestone.PRODUCING) != JoinTimeline.NOT_YET);
+    }
+
+    @Test
+    public void timelineKeepsTheFirstMark() {
+        JoinTimeline timeline = new JoinTimeline();
+        assertFalse(timeline.mark(Milestone.SIGNALED, 10));
+
+        timeline.start(1000);
+        assertTrue(timeline.mark(Milestone.FIRST_REMOTE_FRAME, 1500));
+        assertFalse(timeline.mark(Milestone.FIRST_REMOTE_FRAME, 1900));
+        assertEquals(500, timeline.get(Milestone.FIRST_REMOTE_FRAME));
+        assertEquals("FIRST_REMOTE_FRAME=500ms", timeline.toString());
+        timeline.setWarmUpMs(120);
+        assertEquals("FIRST_REMOTE_FRAME=500ms (120ms of media setup done ahead)", timeline.toString());
+
+        timeline.start(5000);
+        assertEquals(JoinTimeline.NOT_YET, timeline.get(Milestone.FIRST_REMOTE_FRAME));
+        assertEquals(0, timeline.getWarmUpMs());
+    }
+
+    /**
+     * Records which step ran on which thread
+     */
+    private static class FakeSteps implements JoinOrchestrator.Steps {
+
+        final List<String> mCalls = Collections.synchronizedList(new ArrayList<>());
+        List<JSONObject> mResponses = Arrays.asList(new JSONObject(), new JSONObject(), new JSONObject());
+        boolean mCaptureFails;
+        boolean mCached;
+        boolean mPreloadFails;
+        private boolean mLoaded;
+
+        @Override
+        public Single<List<JSONObject>> signal() {
+            mCalls.add("signal");
+            return Single.timer(SIGNAL_MS, TimeUnit.MILLISECONDS).map(ignored -> mResponses);
+        }
+
+        @Override
+        public void warmUpCapture() throws Exception {
+            run("warmUpCapture", CAPTURE_MS);
+            if (mCaptureFails) {
+                throw new IllegalStateException("Failed to create Camera Capture");
+            }
+        }
+
+        @Override
+        public boolean preloadDevice() throws Exception {
+            mCalls.add("preloadDevice@" + Thread.currentThread().getName());
+            if (mPreloadFails) {
+                throw new IllegalStateException("Failed to load the device");
+            }
+            if (!mCached) {
+                return false;
+            }
+            Thread.sleep(LOAD_MS);
+            mLoaded = true;
+            return true;
+        }
+
+        /**
+         * The cached capabilities are always right here
+         */
+        @Override
+        public void loadDevice(JSONObject join) throws Exception {
+            run("loadDevice", mLoaded ? 0 : LOAD_MS);
+        }
+
+        @Override
+        public void createRecvTransport(JSONObject response) throws Exception {
+            run("createRecvTransport", TRANSPORT_MS);
+        }
+
+        @Override
+        public void onReceiving() {
+            mCalls.add("onReceiving@" + Thread.currentThread().getName());
+        }
+
+        @Override
+        public void createSendTransport(JSONObject response) throws Exception {
+            run("createSendTransport", TRANSPORT_MS);
+        }
+
+        @Override
+        public void produce() {
+            try {
+                run("produce", PRODUCE_MS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void run(String step, long ms) throws InterruptedException {
+            mCalls.add(step + "@" + Thread.currentThread().getName());
+            Thread.sleep(ms);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.rtcclient.model;
+
+import com.example.rtcclient.mockserver.StandInSignalingServer;
+import com.example.rtcclient.network.UrlConnectionSignaling;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TrackSubscriber, RoomClient's subscribe path, against a server that takes longer to answer
+ * recv-track than the roster takes to update again. Consumers are the recv-track ids
+ */
+public class SubscriptionRegistryTest {
+
+    private static final long RECV_TRACK_DELAY_MS = 500;
+    private static final long UPDATE_INTERVAL_MS = 50;
+    private static final String PEER = "remote";
+
+    private StandInSignalingServer mServer;
+    private SubscriptionRegistry mRegistry;
+    private ExecutorService mWorker;
+    private TrackSubscriber<String> mSubscriber;
+    private final List<String> mConsumed = new CopyOnWriteArrayList<>();
+    private final AtomicInteger mResumed = new AtomicInteger();
+    private CountDownLatch mFinished;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new StandInSignalingServer();
+        mServer.setRecvTrackDelayMs(RECV_TRACK_DELAY_MS);
+        mServer.start();
+        mServer.join(PEER, Roster.CAM_VIDEO, Roster.CAM_AUDIO);
+        mRegistry = new SubscriptionRegistry();
+        mWorker = Executors.newSingleThreadExecutor();
+        mSubscriber = new TrackSubscriber<>(new UrlConnectionSignaling(mServer.getUrl()), "me", 5000,
+                Schedulers.from(mWorker), mRegistry, new TrackSubscriber.Consumers<String>() {
+                    @Override
+                    public JSONObject getRtpCapabilities() {
+                        return new JSONObject();
+                    }
+
+                    @Override
+                    public String consume(String peerId, JSONObject data) {
+                        String id = data.optString("id");
+                        mConsumed.add(id);
+                        return id;
+                    }
+
+                    @Override
+                    public String getId(String consumer) {
+                        return consumer;
+                    }
+
+                    @Override
+                    public boolean shouldPlay(String peerId, String consumer) {
+                        return true;
+                    }
+
+                    @Override
+                    public void pause(String consumer) {
+                    }
+
+                    @Override
+                    public void resume(String consumer) {
+                        mResumed.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onFinished(String peerId) {
+                        mFinished.countDown();
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        mRegistry.clear();
+        mWorker.shutdownNow();
+        mServer.stop();
+    }
+
+    @Test
+    public void updatesWhileRecvTrackIsInFlightDontAskAgain() throws Exception {
+        mFinished = new CountDownLatch(1);
+
+        /**
+         * Every update finds no consumer yet, which used to mean another recv-track. Same checks as
+         * RoomClient.updateSubscriptions()
+         */
+        for (long elapsed = 0; elapsed < RECV_TRACK_DELAY_MS; elapsed += UPDATE_INTERVAL_MS) {
+            boolean video = mRegistry.begin(PEER, Roster.CAM_VIDEO);
+            boolean audio = mRegistry.begin(PEER, Roster.CAM_AUDIO);
+            if (video || audio) {
+                mWorker.execute(() -> mSubscriber.subscribe(PEER, video, audio));
+            }
+            Thread.sleep(UPDATE_INTERVAL_MS);
+        }
+
+        assertTrue(mFinished.await(5, TimeUnit.SECONDS));
+        assertEquals(2, mServer.getRecvTrackCount());
+        assertEquals(2, mConsumed.size());
+        assertEquals(2, mResumed.get());
+        assertFalse(mRegistry.isPending(PEER, Roster.CAM_VIDEO));
+        assertFalse(mRegistry.isPending(PEER, Roster.CAM_AUDIO));
+    }
+
+    @Test
+    public void peerLeavingMidFlightCancelsItsSubscriptions() throws Exception {
+        mFinished = new CountDownLatch(1);
+
+        assertTrue(mRegistry.begin(PEER, Roster.CAM_VIDEO));
+        assertTrue(mRegistry.begin(PEER, Roster.CAM_AUDIO));
+        mWorker.execute(() -> mSubscriber.subscribe(PEER, true, true));
+
+        Thread.sleep(RECV_TRACK_DELAY_MS / 5);
+        mServer.leave(PEER);
+        assertTrue(mRegistry.cancel(PEER));
+        assertFalse(mRegistry.cancel(PEER));
+
+        /**
+         * Long enough for the batch to come back, nobody is listening for it any more
+         */
+        assertFalse(mFinished.await(RECV_TRACK_DELAY_MS * 3, TimeUnit.MILLISECONDS));
+        assertEquals(2, mServer.getRecvTrackCount());
+        assertTrue(mConsumed.isEmpty());
+        assertEquals(0, mResumed.get());
+        assertFalse(mRegistry.isPending(PEER, Roster.CAM_VIDEO));
+
+        /**
+         * Back in the room, subscribing starts over
+         */
+        assertTrue(mRegistry.begin(PEER, Roster.CAM_VIDEO));
+    }
+
+    @Test
+    public void peerGoneBeforeTheWorkerGetsToItSendsNothing() throws Exception {
+        mFinished = new CountDownLatch(1);
+
+        assertTrue(mRegistry.begin(PEER, Roster.CAM_VIDEO));
+        assertTrue(mRegistry.cancel(PEER));
+        mWorker.submit(() -> mSubscriber.subscribe(PEER, true, false)).get();
+
+        assertEquals(0, mServer.getRequestCount());
+        assertEquals(1, mFinished.getCount());
+    }
+}
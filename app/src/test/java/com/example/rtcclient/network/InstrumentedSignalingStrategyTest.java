@@ -0,0 +1,188 @@
+package com.example.rtcclient.network;
+
+import com.example.rtcclient.mockserver.FaultScript;
+import com.example.rtcclient.mockserver.StandInSignalingServer;
+import com.example.rtcclient.network.ISignalingStrategy.SyncMode;
+import com.example.rtcclient.network.metrics.EndpointMetrics;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * InstrumentedSignalingStrategy in front of a stand-in server with scripted latency and failures
+ */
+public class InstrumentedSignalingStrategyTest {
+
+    private static final long BUDGET_MS = 3000;
+    private static final long SYNC_INTERVAL_MS = 20;
+
+    private StandInSignalingServer mServer;
+    private InstrumentedSignalingStrategy mInstrumented;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new StandInSignalingServer();
+        mServer.start();
+        mInstrumented = new InstrumentedSignalingStrategy(new UrlConnectionSignaling(mServer.getUrl(), SYNC_INTERVAL_MS))
+                .setSizeSampling(1);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void recordsLatencyErrorsAndTimeoutsPerEndpoint() throws Exception {
+        mServer.setFaultScript(new FaultScript(7)
+                .latency("sync", 50, 60)
+                .fail("send-track", 1, 500)
+                .latency("recv-track", 1000, 1000));
+
+        for (int i = 0; i < 5; i++) {
+            mInstrumented.fetchSingle("sync", peer(), BUDGET_MS).blockingGet();
+        }
+        for (int i = 0; i < 3; i++) {
+            expectFailure(mInstrumented.fetchSingle("send-track", peer(), BUDGET_MS).toFuture());
+        }
+        for (int i = 0; i < 2; i++) {
+            JSONObject recvTrack = peer().put("mediaPeerId", "a").put("mediaTag", "cam-video");
+            expectFailure(mInstrumented.fetchSingle("recv-track", recvTrack, 100).toFuture());
+        }
+
+        EndpointMetrics.Snapshot sync = endpoint("sync");
+        assertEquals(5, sync.getCalls());
+        assertEquals(0, sync.getErrors() + sync.getTimeouts());
+        assertTrue(sync.getLatencyUs().toString(), sync.getLatencyUs().getMin() >= 50_000 * 15 / 16);
+        assertEquals(5, sync.getResponseBytes().getCount());
+        assertEquals(peer().toString().length(), sync.getRequestBytes().getMax(), 1);
+
+        EndpointMetrics.Snapshot sendTrack = endpoint("send-track");
+        assertEquals(3, sendTrack.getErrors());
+        assertEquals(0, sendTrack.getTimeouts());
+        assertEquals(0, sendTrack.getResponseBytes().getCount());
+
+        EndpointMetrics.Snapshot recvTrack = endpoint("recv-track");
+        assertEquals(0, recvTrack.getErrors());
+        assertEquals(2, recvTrack.getTimeouts());
+        assertEquals(0, recvTrack.getInFlight());
+        assertTrue(recvTrack.getLatencyUs().getMax() < 1_000_000);
+    }
+
+    @Test
+    public void tracksCallsInFlight() throws Exception {
+        mServer.setFaultScript(new FaultScript(7).latency("sync", 300, 300));
+
+        List<Future<JSONObject>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            calls.add(mInstrumented.fetchSingle("sync", peer(), BUDGET_MS).toFuture());
+        }
+        Disposable abandoned = mInstrumented.fetchSingle("sync", peer(), BUDGET_MS).subscribe(response -> {
+        }, Throwable::printStackTrace);
+
+        Thread.sleep(100);
+        assertEquals(9, endpoint("sync").getInFlight());
+        abandoned.dispose();
+
+        for (Future<JSONObject> call : calls) {
+            call.get();
+        }
+
+        EndpointMetrics.Snapshot sync = endpoint("sync");
+        assertEquals(9, sync.getCalls());
+        assertEquals(1, sync.getCancelled());
+        assertEquals(0, sync.getInFlight());
+        assertEquals(9, sync.getMaxInFlight());
+        assertEquals(8, sync.getLatencyUs().getCount());
+    }
+
+    @Test
+    public void recordsEveryAttemptBehindRetries() throws Exception {
+        mServer.setFaults(2, 0, 0);
+        ResilientSignalingStrategy resilient = new ResilientSignalingStrategy(mInstrumented).setBackoff(10, 100);
+
+        for (int i = 0; i < 10; i++) {
+            resilient.fetchSingle("sync", peer(), BUDGET_MS).blockingGet();
+        }
+
+        EndpointMetrics.Snapshot sync = endpoint("sync");
+        assertEquals(mServer.getRequestCount(), sync.getCalls());
+        assertEquals(10, sync.getCalls() - sync.getErrors());
+        assertTrue(sync.getErrors() > 0);
+    }
+
+    @Test
+    public void recordsTheSyncLoop() throws Exception {
+        mServer.join("a", "cam-video");
+        CountDownLatch updates = new CountDownLatch(1);
+
+        mInstrumented.register(peer(), update -> {
+            update.recycle();
+            updates.countDown();
+        }, SyncMode.POLL);
+        assertTrue(updates.await(5, TimeUnit.SECONDS));
+        Thread.sleep(10 * SYNC_INTERVAL_MS);
+        mInstrumented.unRegister();
+
+        EndpointMetrics.Snapshot sync = endpoint("sync");
+        // A poll in flight during unRegister() is cancelled from the loop's own thread
+        for (int i = 0; i < 100 && sync.getInFlight() > 0; i++) {
+            Thread.sleep(10);
+            sync = endpoint("sync");
+        }
+        assertTrue(sync.getCalls() > 1);
+        assertEquals(0, sync.getErrors() + sync.getTimeouts() + sync.getInFlight());
+        assertEquals(sync.getCalls() - sync.getCancelled(), sync.getLatencyUs().getCount());
+        assertEquals(sync.getLatencyUs().getCount(), sync.getResponseBytes().getCount());
+        assertTrue(sync.getResponseBytes().getMin() > 0);
+    }
+
+    @Test
+    public void samplesPayloadSizes() throws Exception {
+        mInstrumented.setSizeSampling(InstrumentedSignalingStrategy.DEFAULT_SIZE_SAMPLING);
+
+        for (int i = 0; i < 2 * InstrumentedSignalingStrategy.DEFAULT_SIZE_SAMPLING; i++) {
+            mInstrumented.fetchSingle("sync", peer(), BUDGET_MS).blockingGet();
+        }
+
+        EndpointMetrics.Snapshot sync = endpoint("sync");
+        assertEquals(2 * InstrumentedSignalingStrategy.DEFAULT_SIZE_SAMPLING, sync.getCalls());
+        assertEquals(2, sync.getRequestBytes().getCount());
+        assertEquals(2, sync.getResponseBytes().getCount());
+    }
+
+    private EndpointMetrics.Snapshot endpoint(String path) {
+        for (EndpointMetrics.Snapshot endpoint : mInstrumented.getMetrics().snapshot()) {
+            if (endpoint.getPath().equals(path)) {
+                return endpoint;
+            }
+        }
+        throw new AssertionError("no calls to " + path);
+    }
+
+    private static JSONObject peer() throws Exception {
+        return new JSONObject().put("peerId", "p");
+    }
+
+    private static void expectFailure(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("expected a failure");
+        } catch (java.util.concurrent.ExecutionException expected) {
+        }
+    }
+}
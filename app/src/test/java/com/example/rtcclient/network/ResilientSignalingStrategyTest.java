@@ -0,0 +1,191 @@
+package com.example.rtcclient.network;
+
+import com.example.rtcclient.mockserver.StandInSignalingServer;
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.network.ISignalingStrategy.SyncMode;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * ResilientSignalingStrategy in front of a stand-in server that drops and delays requests
+ */
+public class ResilientSignalingStrategyTest {
+
+    private static final long BUDGET_MS = 3000;
+    private static final int CALLS = 20;
+    private static final long SYNC_INTERVAL_MS = 20;
+
+    private StandInSignalingServer mServer;
+    private UrlConnectionSignaling mBare;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new StandInSignalingServer();
+        mServer.start();
+        mBare = new UrlConnectionSignaling(mServer.getUrl(), SYNC_INTERVAL_MS);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void idempotentCallsAreRetriedThroughDrops() throws Exception {
+        mServer.setFaults(3, 0, 0);
+        ResilientSignalingStrategy resilient = new ResilientSignalingStrategy(mBare).setBackoff(10, 100);
+
+        int bareFailures = 0;
+        for (int i = 0; i < CALLS; i++) {
+            try {
+                mBare.fetchSingle("sync", peer(), BUDGET_MS).blockingGet();
+            } catch (RuntimeException e) {
+                bareFailures++;
+            }
+        }
+
+        for (int i = 0; i < CALLS; i++) {
+            assertNotNull(resilient.fetchSingle("sync", peer(), BUDGET_MS).blockingGet());
+        }
+
+        System.out.println("sync with every third request dropped, failed calls bare: " + bareFailures + "/" + CALLS
+                + ", resilient: 0/" + CALLS);
+        assertTrue(bareFailures >= CALLS / 3 - 1);
+    }
+
+    @Test
+    public void nonIdempotentCallsAreNotRetried() throws Exception {
+        mServer.setFaults(1, 0, 0);
+        ResilientSignalingStrategy resilient = new ResilientSignalingStrategy(mBare).setBackoff(10, 100);
+
+        expectFailure(resilient.fetchSingle("send-track", peer(), BUDGET_MS).toFuture());
+        assertEquals(1, mServer.getRequestCount());
+
+        expectFailure(resilient.fetchSingle("sync", peer(), BUDGET_MS).toFuture());
+        assertEquals(1 + 1 + ResilientSignalingStrategy.DEFAULT_MAX_RETRIES, mServer.getRequestCount());
+    }
+
+    @Test
+    public void retriesStopWhenTheBudgetRunsOut() throws Exception {
+        // Every attempt takes 300ms and fails
+        mServer.setFaults(1, 1, 300);
+        ResilientSignalingStrategy resilient = new ResilientSignalingStrategy(mBare)
+                .setMaxRetries(10)
+                .setBackoff(10, 50);
+
+        long startedAt = System.nanoTime();
+        expectFailure(resilient.fetchSingle("sync", peer(), 1000).toFuture());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < 1300);
+        assertTrue(mServer.getRequestCount() <= 4);
+    }
+
+    @Test
+    public void hedgingCutsTheTailOfSlowReads() throws Exception {
+        mServer.setFaults(0, 4, 1000);
+        long bare = slowestOf(mBare);
+        int bareRequests = mServer.getRequestCount();
+
+        long hedged = slowestOf(new ResilientSignalingStrategy(mBare).hedge("sync", 100));
+        int hedgedRequests = mServer.getRequestCount() - bareRequests;
+
+        System.out.println("slowest of " + CALLS + " syncs with every fourth held 1s, bare: " + bare + "ms ("
+                + bareRequests + " requests), hedged: " + hedged + "ms (" + hedgedRequests + " requests)");
+
+        assertTrue(bare >= 1000);
+        assertTrue(hedged < 500);
+        // Only the slow ones were hedged
+        assertTrue(hedgedRequests <= CALLS + CALLS / 3);
+    }
+
+    @Test
+    public void registerHedgesTheSyncLoop() throws Exception {
+        mServer.setFaults(0, 4, 1000);
+        int bare = syncsIn(mBare, 1500);
+        int hedged = syncsIn(new ResilientSignalingStrategy(mBare).hedge("sync", 100), 1500);
+
+        System.out.println("sync requests in 1.5s polling every " + SYNC_INTERVAL_MS + "ms with every fourth held 1s, bare: "
+                + bare + ", hedged: " + hedged);
+
+        // A held request stalls the bare loop for a second, the hedged one moves on after 100ms
+        assertTrue(hedged > 2 * bare);
+    }
+
+    @Test
+    public void longPollsAreNotHedged() throws Exception {
+        mServer.setFaults(0, 1, 300);
+        ResilientSignalingStrategy resilient = new ResilientSignalingStrategy(mBare).hedge("sync", 50);
+
+        RosterUpdate update = resilient.fetchSync(peer().put("wait", 1000), BUDGET_MS).blockingGet();
+        update.recycle();
+        assertEquals(1, mServer.getRequestCount());
+
+        update = resilient.fetchSync(peer(), BUDGET_MS).blockingGet();
+        update.recycle();
+        assertEquals(1 + 2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void backoffIsJitteredUnderTheCap() {
+        ResilientSignalingStrategy resilient = new ResilientSignalingStrategy(mBare)
+                .setBackoff(100, 1000)
+                .setRandom(new Random(7));
+
+        long previous = -1;
+        boolean varies = false;
+        for (int retries = 0; retries < 10; retries++) {
+            long backoffMs = resilient.backoffMs(retries);
+            assertTrue(backoffMs >= 0 && backoffMs < Math.min(1000, 100L << retries));
+            varies |= previous >= 0 && backoffMs != previous;
+            previous = backoffMs;
+        }
+        assertTrue(varies);
+    }
+
+    private long slowestOf(ISignalingStrategy strategy) throws Exception {
+        long slowest = 0;
+        for (int i = 0; i < CALLS; i++) {
+            long startedAt = System.nanoTime();
+            assertNotNull(strategy.fetchSingle("sync", peer(), BUDGET_MS).blockingGet());
+            slowest = Math.max(slowest, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        }
+        return slowest;
+    }
+
+    /**
+     * @return sync requests the server got while registered
+     */
+    private int syncsIn(ISignalingStrategy strategy, long durationMs) throws Exception {
+        int before = mServer.getRequestCount();
+        strategy.register(peer(), RosterUpdate::recycle, SyncMode.POLL);
+        Thread.sleep(durationMs);
+        strategy.unRegister();
+        return mServer.getRequestCount() - before;
+    }
+
+    private static void expectFailure(Future<?> call) throws InterruptedException {
+        try {
+            call.get();
+            fail("expected the call to fail");
+        } catch (ExecutionException expected) {
+        }
+    }
+
+    private static JSONObject peer() throws Exception {
+        return new JSONObject().put("peerId", "me");
+    }
+}
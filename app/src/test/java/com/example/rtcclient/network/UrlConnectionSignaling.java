@@ -0,0 +1,202 @@
+package com.example.rtcclient.network;
+
+import com.example.rtcclient.model.RosterParser;
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.network.http.AdaptiveInterval;
+import com.example.rtcclient.network.http.SyncLoop;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * HttpClient on plain HttpURLConnection, failing the same way (a SignalingException with the
+ * status, a TimeoutException past the deadline). register() polls through a SyncLoop like HttpClient,
+ * at a fixed interval. Enough to put decorators in front of without Volley or Android
+ */
+public class UrlConnectionSignaling implements ISignalingStrategy {
+
+    /**
+     * Not Schedulers.io(), it hands a disposed call's worker to the next call while its thread is
+     * still blocked reading, so that call waits for the cancelled one
+     */
+    private static final Scheduler sBlockingIo = Schedulers.from(Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "signaling-io");
+        thread.setDaemon(true);
+        return thread;
+    }));
+
+    /**
+     * For the blocking calls, which don't take a deadline
+     */
+    private static final long BLOCKING_TIMEOUT_MS = 10000;
+
+    private interface Parser<T> {
+        T parse(byte[] body, JSONObject params) throws Exception;
+    }
+
+    private final String mBaseUrl;
+    private final long mSyncIntervalMs;
+    private ScheduledThreadPoolExecutor mSyncExecutor;
+    private SyncLoop mSyncLoop;
+
+    public UrlConnectionSignaling(String baseUrl) {
+        this(baseUrl, SyncLoop.POLL_INTERVAL_MS);
+    }
+
+    /**
+     * @param syncIntervalMs between polls
+     */
+    public UrlConnectionSignaling(String baseUrl, long syncIntervalMs) {
+        mBaseUrl = baseUrl;
+        mSyncIntervalMs = syncIntervalMs;
+    }
+
+    @Override
+    public Single<JSONObject> fetchSingle(String path, JSONObject params, long timeoutMs) {
+        return call(path, params, timeoutMs,
+                (body, ignored) -> new JSONObject(new String(body, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Parsed by RosterParser like HttpClient's SyncRequest
+     */
+    @Override
+    public Single<RosterUpdate> fetchSync(JSONObject params, long timeoutMs) {
+        return call(SYNC_PATH, params, timeoutMs, (body, request) -> {
+            RosterUpdate update = RosterUpdate.obtain();
+            try {
+                new RosterParser(request.optString("peerId")).parse(body, 0, body.length, update);
+                return update;
+            } catch (Exception e) {
+                update.recycle();
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    public Single<List<JSONObject>> fetchBatchSingle(BatchRequest batch, long timeoutMs) {
+        return fetchSingle(BatchRequest.PATH, batch.toJson(), timeoutMs).map(batch::parseResponses);
+    }
+
+    /**
+     * @return null on failure, same as HttpClient
+     */
+    @Override
+    public JSONObject fetch(String path, JSONObject params) {
+        try {
+            return fetchSingle(path, params, BLOCKING_TIMEOUT_MS).blockingGet();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void fetchAsync(String path, JSONObject params) {
+        fetchSingle(path, params, BLOCKING_TIMEOUT_MS).subscribe(response -> {
+        }, throwable -> {
+        });
+    }
+
+    @Override
+    public List<JSONObject> fetchBatch(BatchRequest batch) {
+        return fetchBatchSingle(batch, BLOCKING_TIMEOUT_MS).onErrorReturnItem(batch.failed()).blockingGet();
+    }
+
+    @Override
+    public void register(JSONObject params, ISignalListener listener) {
+        register(params, listener, SyncMode.POLL);
+    }
+
+    @Override
+    public void register(JSONObject params, ISignalListener listener, SyncMode mode) {
+        register(params, listener, mode, this);
+    }
+
+    @Override
+    public synchronized void register(JSONObject params, ISignalListener listener, SyncMode mode, ISignalingStrategy via) {
+        unRegister();
+        mSyncExecutor = new ScheduledThreadPoolExecutor(1);
+        mSyncLoop = new SyncLoop(mSyncExecutor, via::fetchSync, new AdaptiveInterval(mSyncIntervalMs, mSyncIntervalMs));
+        mSyncLoop.start(params, listener, mode);
+    }
+
+    @Override
+    public synchronized void unRegister() {
+        if (mSyncLoop != null) {
+            mSyncLoop.stop();
+            mSyncExecutor.shutdownNow();
+            mSyncLoop = null;
+        }
+    }
+
+    private <T> Single<T> call(String path, JSONObject params, long timeoutMs, Parser<T> parser) {
+        return Single.<T>create(emitter -> {
+            HttpURLConnection connection = open(path, timeoutMs);
+            // Unblocks the read once timeout() or the caller disposes, like Volley's request.cancel()
+            emitter.setCancellable(connection::disconnect);
+
+            try {
+                emitter.onSuccess(parser.parse(post(connection, path, params), params));
+            } catch (Exception e) {
+                // Nobody is listening anymore when the call was cancelled
+                emitter.tryOnError(e);
+            }
+        }).subscribeOn(sBlockingIo).timeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private HttpURLConnection open(String path, long timeoutMs) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mBaseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setConnectTimeout((int) timeoutMs);
+        connection.setReadTimeout((int) timeoutMs);
+        connection.setDoOutput(true);
+        return connection;
+    }
+
+    private static byte[] post(HttpURLConnection connection, String path, JSONObject params) throws Exception {
+        byte[] body = params.toString().getBytes(StandardCharsets.UTF_8);
+        // Otherwise the JDK quietly sends a POST again when the connection drops. Streamed ones it can't
+        connection.setFixedLengthStreamingMode(body.length);
+
+        int status;
+        try {
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            status = connection.getResponseCode();
+        } catch (IOException e) {
+            throw new SignalingException(path + " failed", SignalingException.NO_STATUS, e);
+        }
+
+        if (status != 200) {
+            throw new SignalingException(path + " failed", status, null);
+        }
+
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                response.write(buffer, 0, n);
+            }
+        }
+        return response.toByteArray();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.rtcclient.network.http;
+
+import com.example.rtcclient.model.RosterUpdate;
+import com.example.rtcclient.network.ISignalingStrategy.SyncMode;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Single;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * How the poll interval moves, and SyncLoop.nudge() bringing it back down
+ */
+public class AdaptiveIntervalTest {
+
+    private static final long MIN_MS = 100;
+    private static final long MAX_MS = 1000;
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void activityDropsToTheMinimumThenBacksOff() {
+        AdaptiveInterval interval = new AdaptiveInterval(MIN_MS, MAX_MS);
+        interval.onActivity();
+        assertEquals(MIN_MS, interval.current());
+
+        for (int i = 0; i < AdaptiveInterval.FAST_POLLS; i++) {
+            interval.onQuiet();
+            assertEquals(MIN_MS, interval.current());
+        }
+
+        long[] expected = {200, 400, 800, 1000, 1000};
+        for (long ms : expected) {
+            interval.onQuiet();
+            assertEquals(ms, interval.current());
+        }
+
+        // Back to the minimum at once, however far it had backed off
+        interval.onActivity();
+        assertEquals(MIN_MS, interval.current());
+        interval.onQuiet();
+        assertEquals(MIN_MS, interval.current());
+    }
+
+    @Test
+    public void boundsAreKept() {
+        AdaptiveInterval interval = new AdaptiveInterval(MIN_MS, MIN_MS / 2);
+        interval.onActivity();
+        for (int i = 0; i < 10; i++) {
+            interval.onQuiet();
+        }
+        assertEquals(MIN_MS, interval.current());
+
+        interval.setBounds(MIN_MS, MAX_MS);
+        for (int i = 0; i < 10; i++) {
+            interval.onQuiet();
+        }
+        assertEquals(MAX_MS, interval.current());
+
+        // Lowered from the settings screen, the next poll isn't an old maximum away
+        interval.setBounds(10, 300);
+        assertEquals(300, interval.current());
+    }
+
+    @Test
+    public void nudgeResetsTheInterval() throws Exception {
+        AdaptiveInterval interval = new AdaptiveInterval(MIN_MS, HOUR_MS);
+        CountDownLatch parked = new CountDownLatch(1);
+        CountDownLatch polledAgain = new CountDownLatch(1);
+        AtomicInteger polls = new AtomicInteger();
+
+        SyncLoop.Fetcher fetcher = (params, timeoutMs) -> {
+            int n = polls.incrementAndGet();
+            if (n == 2) {
+                // Quiet for long enough that the next poll is an hour away
+                for (int i = 0; i < 64; i++) {
+                    interval.onQuiet();
+                }
+                parked.countDown();
+            } else if (n == 3) {
+                polledAgain.countDown();
+            }
+            return Single.<RosterUpdate>error(new IOException("no server"));
+        };
+
+        ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1);
+        SyncLoop loop = new SyncLoop(executor, fetcher, interval);
+        try {
+            loop.start(new JSONObject(), update -> { }, SyncMode.POLL);
+            assertTrue(parked.await(5, TimeUnit.SECONDS));
+            // Queued behind the poll, so it has scheduled the next one by then
+            executor.submit(() -> { }).get();
+            assertEquals(HOUR_MS, interval.current());
+            assertEquals(2, polls.get());
+
+            loop.nudge();
+            assertEquals(MIN_MS, interval.current());
+            assertTrue(polledAgain.await(5, TimeUnit.SECONDS));
+        } finally {
+            loop.stop();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.rtcclient.network.http;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.JsonObjectRequest;
+import com.android.volley.toolbox.NoCache;
+import com.example.rtcclient.mockserver.FaultScript;
+import com.example.rtcclient.mockserver.StandInSignalingServer;
+import com.example.rtcclient.network.BatchRequest;
+import com.example.rtcclient.network.OkHttpProvider;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * HttpClient's non-blocking calls and batches on a real Volley queue against the stand-in server.
+ * Responses are delivered on the network thread instead of the main looper
+ */
+public class HttpClientTest {
+
+    private static final long SLOW_MS = 1000;
+
+    private StandInSignalingServer mServer;
+    private RequestQueue mQueue;
+    private HttpClient mClient;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new StandInSignalingServer();
+        mServer.setFaultScript(new FaultScript(1).latency("recv-track", SLOW_MS, SLOW_MS));
+        mServer.start();
+
+        mQueue = new RequestQueue(new NoCache(), new BasicNetwork(new OkHttpStack(OkHttpProvider.get())), 2,
+                new ExecutorDelivery(Runnable::run));
+        mQueue.start();
+        mClient = new HttpClient(mQueue, mServer.getUrl());
+    }
+
+    @After
+    public void tearDown() {
+        mQueue.stop();
+        mServer.stop();
+    }
+
+    @Test
+    public void deadlineFires() throws Exception {
+        long startedAt = System.nanoTime();
+        try {
+            mClient.fetchSingle("recv-track", slowCall(), 200).blockingGet();
+            fail("expected the deadline to pass");
+        } catch (RuntimeException expected) {
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < SLOW_MS / 2);
+    }
+
+    @Test
+    public void disposingCancelsTheRequest() throws Exception {
+        List<Request<?>> finished = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        mQueue.addRequestFinishedListener(request -> {
+            finished.add(request);
+            done.countDown();
+        });
+
+        TestObserver<JSONObject> call = mClient.fetchSingle("recv-track", slowCall(), 5000).test();
+        Thread.sleep(100);
+        call.dispose();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, finished.size());
+        assertTrue(finished.get(0).isCanceled());
+        call.assertNoValues();
+        call.assertNoErrors();
+    }
+
+    @Test
+    public void slowCallsDontHoldTheWorker() throws Exception {
+        ExecutorService workerThread = Executors.newSingleThreadExecutor();
+        Scheduler worker = Schedulers.from(workerThread);
+
+        try {
+            TestObserver<JSONObject> slow = mClient.fetchSingle("recv-track", slowCall(), 5000)
+                    .subscribeOn(worker)
+                    .test();
+
+            // The worker is free again as soon as the request is queued
+            CountDownLatch ran = new CountDownLatch(1);
+            worker.scheduleDirect(ran::countDown);
+            assertTrue(ran.await(SLOW_MS / 2, TimeUnit.MILLISECONDS));
+            slow.assertNotComplete();
+
+            assertTrue(slow.awaitTerminalEvent(5, TimeUnit.SECONDS));
+            slow.assertValueCount(1);
+        } finally {
+            workerThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void stackTimesOutTheAttempt() throws Exception {
+        JsonObjectRequest request = new JsonObjectRequest(Request.Method.POST, mServer.getUrl() + "recv-track",
+                slowCall(), response -> {}, error -> {});
+        request.setRetryPolicy(new DefaultRetryPolicy(200, 0, 1f));
+
+        long startedAt = System.nanoTime();
+        try {
+            new OkHttpStack(OkHttpProvider.get()).executeRequest(request, Collections.emptyMap());
+            fail("expected the read to time out");
+        } catch (SocketTimeoutException expected) {
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < SLOW_MS / 2);
+    }
+
+    @Test
+    public void batchesGoOutInOneRequest() throws Exception {
+        int before = mServer.getRequestCount();
+        assertBatchAnswered(mClient.fetchBatch(batch()));
+        assertEquals(before + 1, mServer.getRequestCount());
+
+        assertBatchAnswered(mClient.fetchBatchSingle(batch(), 5000).blockingGet());
+        assertEquals(before + 2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void serversWithoutBatchGetTheOperationsOneByOne() throws Exception {
+        mServer.setBatchSupported(false);
+        int before = mServer.getRequestCount();
+
+        // The 404, then one request per operation
+        assertBatchAnswered(mClient.fetchBatchSingle(batch(), 5000).blockingGet());
+        assertEquals(before + 4, mServer.getRequestCount());
+
+        // The batch endpoint isn't tried again
+        assertBatchAnswered(mClient.fetchBatchSingle(batch(), 5000).blockingGet());
+        assertEquals(before + 7, mServer.getRequestCount());
+        assertBatchAnswered(mClient.fetchBatch(batch()));
+        assertEquals(before + 10, mServer.getRequestCount());
+    }
+
+    @Test
+    public void oneByOneFallbackKeepsTheBatchDeadline() throws Exception {
+        mServer.setBatchSupported(false);
+        mServer.setFaultScript(new FaultScript(1)
+                .latency("batch", 400, 400)
+                .latency("recv-track", SLOW_MS, SLOW_MS));
+        BatchRequest batch = new BatchRequest().add("recv-track", slowCall());
+
+        long startedAt = System.nanoTime();
+        try {
+            mClient.fetchBatchSingle(batch, 600).blockingGet();
+            fail("expected the deadline to pass");
+        } catch (RuntimeException expected) {
+        }
+
+        // The 404 took 400ms of the 600, the fallback only gets what is left
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < 850);
+    }
+
+    @Test
+    public void blockingBatchFallsBackToo() throws Exception {
+        mServer.setBatchSupported(false);
+        int before = mServer.getRequestCount();
+
+        assertBatchAnswered(mClient.fetchBatch(batch()));
+        assertEquals(before + 4, mServer.getRequestCount());
+    }
+
+    /**
+     * join-as-new-peer, send-track and one the server doesn't know
+     */
+    private static BatchRequest batch() throws Exception {
+        return new BatchRequest()
+                .add("join-as-new-peer", new JSONObject().put("peerId", "me"))
+                .add("send-track", new JSONObject().put("peerId", "me").put("kind", "video")
+                        .put("appData", new JSONObject().put("mediaTag", "cam-video")))
+                .add("no-such-path", new JSONObject().put("peerId", "me"));
+    }
+
+    private static void assertBatchAnswered(List<JSONObject> responses) {
+        assertEquals(3, responses.size());
+        assertTrue(responses.get(0).has("routerRtpCapabilities"));
+        assertEquals("me-video", responses.get(1).optString("id"));
+        // Failed on its own, the others still answered at their position
+        assertNull(responses.get(2));
+    }
+
+    private static JSONObject slowCall() throws Exception {
+        return new JSONObject().put("peerId", "me").put("mediaPeerId", "a").put("mediaTag", "cam-video");
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.rtcclient.network.http;
+
+import com.example.rtcclient.mockserver.FaultScript;
+import com.example.rtcclient.mockserver.LoadGenerator;
+import com.example.rtcclient.mockserver.StandInSignalingServer;
+import com.example.rtcclient.model.Roster;
+import com.example.rtcclient.network.ISignalingStrategy.SyncMode;
+import com.example.rtcclient.network.UrlConnectionSignaling;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The long-polling sync loop and Roster against a room of 300 virtual peers that keep joining,
+ * leaving and toggling media, with 5-20ms of scripted latency on every request. Measures how fast
+ * roster changes go through and how long one takes to reach the client, then checks the client
+ * ends up with the same roster as the server
+ */
+public class RosterLoadBenchmarkTest {
+
+    private static final int PEERS = 300;
+    private static final double EVENTS_PER_SECOND = 500;
+    private static final long LOAD_MS = 3000;
+    private static final int PROBES = 20;
+
+    @Test
+    public void rosterKeepsUpWithAChurningRoom() throws Exception {
+        StandInSignalingServer server = new StandInSignalingServer();
+        server.setFaultScript(new FaultScript(1).latency(FaultScript.ANY, 5, 20));
+        server.start();
+
+        LoadGenerator load = new LoadGenerator(server, PEERS, 7);
+        load.populate(PEERS / 2);
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        SyncLoop loop = new SyncLoop(executor, new UrlConnectionSignaling(server.getUrl())::fetchSync,
+                new AdaptiveInterval(SyncLoop.POLL_INTERVAL_MS, SyncLoop.POLL_INTERVAL_MS));
+
+        Roster roster = new Roster("me");
+        Map<String, Long> probesJoinedAt = new ConcurrentHashMap<>();
+        long[] probeLatencyNs = new long[PROBES];
+        CountDownLatch probesSeen = new CountDownLatch(PROBES);
+        CountDownLatch started = new CountDownLatch(1);
+        long[] updates = new long[1];
+
+        Roster.Listener changes = new Roster.Listener() {
+            @Override
+            public void onPeerJoined(Roster.Peer peer) {
+                Long joinedAt = probesJoinedAt.remove(peer.getId());
+                if (joinedAt != null) {
+                    probeLatencyNs[Integer.parseInt(peer.getId().substring("probe-".length()))] = System.nanoTime() - joinedAt;
+                    probesSeen.countDown();
+                }
+            }
+
+            @Override
+            public void onPeerLeft(Roster.Peer peer) {
+            }
+
+            @Override
+            public void onPeerMediaChanged(Roster.Peer peer) {
+            }
+        };
+
+        loop.start(new JSONObject().put("peerId", "me"), update -> {
+            started.countDown();
+            synchronized (roster) {
+                updates[0]++;
+                roster.apply(update, changes);
+            }
+            update.recycle();
+        }, SyncMode.LONG_POLL);
+
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            int syncsBefore = server.getSyncCount();
+
+            long startedAt = System.nanoTime();
+            load.start(EVENTS_PER_SECOND);
+            for (int i = 0; i < PROBES; i++) {
+                Thread.sleep(LOAD_MS / PROBES);
+                probesJoinedAt.put("probe-" + i, System.nanoTime());
+                server.join("probe-" + i, Roster.CAM_VIDEO);
+            }
+            load.stop();
+            long loadMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+            assertTrue(probesSeen.await(5, TimeUnit.SECONDS));
+            long convergedMs = waitForRoster(server, roster);
+            int syncs = server.getSyncCount() - syncsBefore;
+
+            Arrays.sort(probeLatencyNs);
+            System.out.println(PEERS + " virtual peers, " + load.getEventCount() + " changes in " + loadMs + "ms ("
+                    + load.getEventCount() * 1000 / loadMs + "/s) over " + syncs + " long-polls, "
+                    + updates[0] + " updates applied");
+            System.out.println("change to client p50: " + toMs(probeLatencyNs[PROBES / 2]) + "ms, p95: "
+                    + toMs(probeLatencyNs[PROBES * 95 / 100]) + "ms, max: " + toMs(probeLatencyNs[PROBES - 1])
+                    + "ms. Same roster as the server " + convergedMs + "ms after the load stopped");
+
+            // Long-polling batches changes, far fewer requests than changes
+            assertTrue(syncs < load.getEventCount() / 2);
+            assertTrue(toMs(probeLatencyNs[PROBES / 2]) < 250);
+        } finally {
+            loop.stop();
+            executor.shutdownNow();
+            server.stop();
+        }
+    }
+
+    /**
+     * @return how long it took for the client's roster to match the server's
+     */
+    private static long waitForRoster(StandInSignalingServer server, Roster roster) throws Exception {
+        long startedAt = System.nanoTime();
+        Map<String, Set<String>> expected = server.getPeers();
+        expected.remove("me");
+
+        while (true) {
+            boolean same;
+            synchronized (roster) {
+                same = matches(roster, expected);
+            }
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            if (same) {
+                return elapsedMs;
+            }
+            assertTrue("roster didn't converge", elapsedMs < 5000);
+            Thread.sleep(10);
+        }
+    }
+
+    private static boolean matches(Roster roster, Map<String, Set<String>> expected) {
+        if (roster.getPeers().size() != expected.size()) {
+            return false;
+        }
+        for (Roster.Peer peer : roster.getPeers()) {
+            Set<String> media = expected.get(peer.getId());
+            if (media == null
+                    || peer.isSendingVideo() != media.contains(Roster.CAM_VIDEO)
+                    || peer.isSendingAudio() != media.contains(Roster.CAM_AUDIO)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long toMs(long ns) {
+        return TimeUnit.NANOSECONDS.toMillis(ns);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.rtcclient.network.http;
+
+import com.android.volley.Request;
+import com.android.volley.toolbox.BaseHttpStack;
+import com.android.volley.toolbox.HttpResponse;
+import com.android.volley.toolbox.HurlStack;
+import com.android.volley.toolbox.JsonObjectRequest;
+import com.example.rtcclient.mockserver.StandInSignalingServer;
+import com.example.rtcclient.network.OkHttpProvider;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Per-request latency of a signaling POST through Volley's default stack (HttpURLConnection) and
+ * through OkHttpStack on the shared client, against the stand-in server. Both stacks are driven
+ * directly so the numbers are the transport's and not Volley's queueing
+ *
+ * OkHttp comes out slower here. Before reusing an HTTP/1.1 connection for a POST it checks it with a
+ * read that waits up to 1ms, which is most of a loopback request. HTTP/2 doesn't, see the README
+ */
+public class SignalingTransportBenchmarkTest {
+
+    private static final int WARMUP = 100;
+    private static final int SAMPLES = 200;
+
+    @Test
+    public void sharedOkHttpClientReusesOneConnection() throws Exception {
+        StandInSignalingServer server = new StandInSignalingServer();
+        server.start();
+        server.join("remote", "cam-video", "cam-audio");
+
+        try {
+            OkHttpClient client = OkHttpProvider.get().newBuilder().build();
+            client.connectionPool().evictAll();
+
+            long[] hurl = sample(new HurlStack(), server.getUrl());
+            long[] okHttp = sample(new OkHttpStack(client), server.getUrl());
+
+            System.out.println("sync POST HurlStack: " + describe(hurl));
+            System.out.println("sync POST OkHttpStack: " + describe(okHttp));
+
+            /**
+             * Every request after the first went out on the same kept-alive connection
+             */
+            assertEquals(1, client.connectionPool().connectionCount());
+            assertTrue(percentile(okHttp, 50) < TimeUnit.MILLISECONDS.toNanos(50));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long[] sample(BaseHttpStack stack, String url) throws Exception {
+        long[] samples = new long[SAMPLES];
+
+        for (int i = 0; i < WARMUP + SAMPLES; i++) {
+            JsonObjectRequest request = new JsonObjectRequest(Request.Method.POST, url + "sync",
+                    new JSONObject().put("peerId", "me"), response -> {}, error -> {});
+
+            long start = System.nanoTime();
+            HttpResponse response = stack.executeRequest(request, Collections.emptyMap());
+            drain(response.getContent());
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(200, response.getStatusCode());
+            if (i >= WARMUP) {
+                samples[i - WARMUP] = elapsed;
+            }
+        }
+
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private static void drain(InputStream in) throws Exception {
+        try (InputStream content = in) {
+            byte[] buffer = new byte[4096];
+            while (content.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    private static String describe(long[] sorted) {
+        return "p50 " + TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 50)) + "us"
+                + ", p99 " + TimeUnit.NANOSECONDS.toMicros(percentile(sorted, 99)) + "us";
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.rtcclient.network.http;
+
+import com.example.rtcclient.mockserver.StandInSignalingServer;
+import com.example.rtcclient.model.Roster;
+import com.example.rtcclient.network.ISignalingStrategy.SyncMode;
+import com.example.rtcclient.network.UrlConnectionSignaling;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures how long it takes from a remote peer joining with media until the sync listener sees it,
+ * which is when RoomClient would start subscribing. Polling vs long-polling against the stand-in server
+ */
+public class SyncLatencyTest {
+
+    private static final int SAMPLES = 5;
+
+    @Test
+    public void longPollDeliversRosterChangesFasterThanPolling() throws Exception {
+        long poll = averageJoinToSubscribeMs(SyncMode.POLL);
+        long longPoll = averageJoinToSubscribeMs(SyncMode.LONG_POLL);
+
+        System.out.println("join-to-subscribe POLL: " + poll + "ms, LONG_POLL: " + longPoll + "ms");
+
+        assertTrue(longPoll < poll);
+        assertTrue(longPoll < 250);
+    }
+
+    /**
+     * @return the mean join-to-subscribe time of SAMPLES joins, SocketPushLatencyTest compares against it
+     */
+    public static long averageJoinToSubscribeMs(SyncMode mode) throws Exception {
+        StandInSignalingServer server = new StandInSignalingServer();
+        server.start();
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        // The fixed one-second poll, as the baseline long-polling is compared to
+        AdaptiveInterval fixed = new AdaptiveInterval(SyncLoop.POLL_INTERVAL_MS, SyncLoop.POLL_INTERVAL_MS);
+        SyncLoop loop = new SyncLoop(executor, new UrlConnectionSignaling(server.getUrl())::fetchSync, fixed);
+
+        final String[] expected = new String[1];
+        final CountDownLatch[] seen = new CountDownLatch[1];
+        CountDownLatch started = new CountDownLatch(1);
+
+        Roster roster = new Roster("me");
+        Roster.Listener changes = new Roster.Listener() {
+            @Override
+            public void onPeerJoined(Roster.Peer peer) {
+                synchronized (expected) {
+                    if (peer.getId().equals(expected[0]) && peer.isSendingVideo()) {
+                        seen[0].countDown();
+                    }
+                }
+            }
+
+            @Override
+            public void onPeerLeft(Roster.Peer peer) {
+            }
+
+            @Override
+            public void onPeerMediaChanged(Roster.Peer peer) {
+            }
+        };
+
+        loop.start(new JSONObject().put("peerId", "me"), update -> {
+            started.countDown();
+            roster.apply(update, changes);
+            update.recycle();
+        }, mode);
+
+        Random random = new Random(42);
+        long total = 0;
+
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals(mode, loop.getMode());
+
+            for (int i = 0; i < SAMPLES; i++) {
+                // Don't line up with the poll interval
+                Thread.sleep(random.nextInt((int) SyncLoop.POLL_INTERVAL_MS));
+
+                synchronized (expected) {
+                    expected[0] = "remote-" + i;
+                    seen[0] = new CountDownLatch(1);
+                }
+
+                long joinedAt = System.nanoTime();
+                server.join("remote-" + i, "cam-video", "cam-audio");
+                assertTrue(seen[0].await(5, TimeUnit.SECONDS));
+                total += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - joinedAt);
+            }
+        } finally {
+            loop.stop();
+            executor.shutdownNow();
+            server.stop();
+        }
+
+        return total / SAMPLES;
+    }
+}
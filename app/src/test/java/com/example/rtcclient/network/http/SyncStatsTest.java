@@ -0,0 +1,76 @@
+package com.example.rtcclient.network.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * SyncStats against the fixed one-second poll, on a made-up clock
+ */
+public class SyncStatsTest {
+
+    @Test
+    public void quietRoomSavesRequests() {
+        SyncStats.Recorder recorder = new SyncStats.Recorder();
+        recorder.onStarted(0);
+        // The snapshot we start from, then backing off
+        for (long sentMs : new long[] {0, 500, 1000, 2000, 4000, 8000}) {
+            recorder.onPoll(sentMs, false);
+        }
+
+        SyncStats stats = recorder.get(10000);
+        assertEquals(6, stats.getRequests());
+        // Ten one-second polls over the same time
+        assertEquals(4, stats.getRequestsSaved());
+        assertEquals(0, stats.getChanges());
+        assertEquals(0, stats.getMeanAddedLatencyMs());
+        assertEquals(0, stats.getMaxAddedLatencyMs());
+    }
+
+    @Test
+    public void changesAreMeasuredFromThePreviousPoll() {
+        SyncStats.Recorder recorder = new SyncStats.Recorder();
+        recorder.onStarted(0);
+        recorder.onPoll(0, false);
+        // Seen 3s after the previous poll, 2s later than a one-second poll could have
+        recorder.onPoll(3000, true);
+        // Seen 200ms after the previous poll, 800ms sooner
+        recorder.onPoll(3200, true);
+
+        SyncStats stats = recorder.get(4000);
+        assertEquals(3, stats.getRequests());
+        assertEquals(1, stats.getRequestsSaved());
+        assertEquals(2, stats.getChanges());
+        assertEquals(600, stats.getMeanAddedLatencyMs());
+        assertEquals(2000, stats.getMaxAddedLatencyMs());
+    }
+
+    @Test
+    public void busyRoomCostsRequests() {
+        SyncStats.Recorder recorder = new SyncStats.Recorder();
+        recorder.onStarted(0);
+        for (long sentMs = 0; sentMs < 2000; sentMs += 100) {
+            recorder.onPoll(sentMs, sentMs > 0);
+        }
+
+        SyncStats stats = recorder.get(2000);
+        assertEquals(20, stats.getRequests());
+        assertEquals(-18, stats.getRequestsSaved());
+        assertEquals(-900, stats.getMeanAddedLatencyMs());
+    }
+
+    @Test
+    public void onlyTimeSpentPollingCounts() {
+        SyncStats.Recorder recorder = new SyncStats.Recorder();
+        recorder.onStarted(0);
+        recorder.onPoll(0, false);
+        recorder.onStopped(3000);
+
+        // Not polling in between
+        assertEquals(2, recorder.get(60000).getRequestsSaved());
+
+        recorder.onStarted(60000);
+        recorder.onPoll(60000, false);
+        assertEquals(4, recorder.get(63000).getRequestsSaved());
+    }
+}
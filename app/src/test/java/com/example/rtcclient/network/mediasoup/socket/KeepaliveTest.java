@@ -0,0 +1,70 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Keepalive on a virtual clock, a ping every second
+ */
+public class KeepaliveTest {
+
+    private static final long INTERVAL_MS = 1000;
+
+    @Test
+    public void smoothedRttFollowsThePongs() {
+        Keepalive keepalive = new Keepalive(3);
+        assertEquals(Keepalive.NO_RTT, keepalive.getSmoothedRttMs());
+
+        long now = 0;
+        for (int id = 1; id <= 50; id++, now += INTERVAL_MS) {
+            assertTrue(keepalive.onPing(id, now));
+            // Every tenth pong is slow, the estimate shouldn't jump for it
+            assertTrue(keepalive.onResponse(id, now + (id % 10 == 0 ? 400 : 100)));
+        }
+
+        long rtt = keepalive.getSmoothedRttMs();
+        assertTrue("srtt " + rtt, rtt >= 100 && rtt < 200);
+        assertTrue(keepalive.getRttVarianceMs() > 0);
+    }
+
+    @Test
+    public void deadAfterMissedPongs() {
+        Keepalive keepalive = new Keepalive(3);
+
+        assertTrue(keepalive.onPing(1, 0));
+        assertTrue(keepalive.onPing(2, INTERVAL_MS));
+        assertTrue(keepalive.onPing(3, 2 * INTERVAL_MS));
+        assertEquals(3, keepalive.getMissed());
+        assertFalse(keepalive.onPing(4, 3 * INTERVAL_MS));
+
+        // Back on a new socket
+        keepalive.reset();
+        assertTrue(keepalive.onPing(5, 4 * INTERVAL_MS));
+    }
+
+    @Test
+    public void latePongKeepsTheLinkButIsNotSampled() {
+        Keepalive keepalive = new Keepalive(3);
+
+        keepalive.onPing(1, 0);
+        keepalive.onPing(2, INTERVAL_MS);
+        assertTrue(keepalive.onResponse(1, INTERVAL_MS + 50));
+
+        assertEquals(0, keepalive.getMissed());
+        assertEquals(Keepalive.NO_RTT, keepalive.getSmoothedRttMs());
+        // Cleared along with it, an answer to 2 is no longer ours
+        assertFalse(keepalive.onResponse(2, INTERVAL_MS + 60));
+    }
+
+    @Test
+    public void otherResponsesAreNotPongs() {
+        Keepalive keepalive = new Keepalive(3);
+
+        keepalive.onPing(1, 0);
+        assertFalse(keepalive.onResponse(42, 10));
+        assertEquals(1, keepalive.getMissed());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+import com.example.rtcclient.network.codec.SignalingCodecs;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import okio.ByteString;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * OutboundQueue on a virtual clock, and the messages WebSocketTransport queues in it
+ */
+public class OutboundQueueTest {
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    @Test
+    public void replaysInOrder() {
+        OutboundQueue<String> queue = new OutboundQueue<>(OutboundQueue.DEFAULT_CAPACITY);
+        for (int i = 0; i < 10; i++) {
+            queue.offer("m" + i, NEVER);
+        }
+        assertEquals(10, queue.size());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("m" + i, queue.peek(0));
+            // Not sent yet, stays at the head
+            assertEquals("m" + i, queue.peek(0));
+            queue.remove();
+        }
+        assertNull(queue.peek(0));
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.getDropped() + queue.getExpired());
+    }
+
+    @Test
+    public void dropsTheOldestWhenFull() {
+        OutboundQueue<String> queue = new OutboundQueue<>(OutboundQueue.DEFAULT_CAPACITY);
+        for (int i = 0; i < OutboundQueue.DEFAULT_CAPACITY + 5; i++) {
+            queue.offer("m" + i, NEVER);
+        }
+
+        assertEquals(OutboundQueue.DEFAULT_CAPACITY, queue.size());
+        assertEquals(5, queue.getDropped());
+        assertEquals("m5", queue.peek(0));
+    }
+
+    @Test
+    public void skipsExpiredMessages() {
+        OutboundQueue<String> queue = new OutboundQueue<>(OutboundQueue.DEFAULT_CAPACITY);
+        queue.offer("a", 100);
+        queue.offer("b", 300);
+        queue.offer("c", 200);
+        queue.offer("d", 1000);
+
+        assertEquals("a", queue.peek(99));
+        // Only the head is looked at, c waits behind b
+        assertEquals("b", queue.peek(250));
+        assertEquals(1, queue.getExpired());
+        queue.remove();
+
+        assertEquals("d", queue.peek(250));
+        assertEquals(2, queue.getExpired());
+        assertEquals(1, queue.size());
+
+        assertNull(queue.peek(1000));
+        assertEquals(3, queue.getExpired());
+        assertEquals(0, queue.getDropped());
+    }
+
+    @Test
+    public void clearKeepsTheCounters() {
+        OutboundQueue<String> queue = new OutboundQueue<>(2);
+        queue.offer("a", NEVER);
+        queue.offer("b", NEVER);
+        queue.offer("c", NEVER);
+        queue.clear();
+
+        assertEquals(0, queue.size());
+        assertEquals(1, queue.getDropped());
+    }
+
+    @Test
+    public void messagesAreEncodedForTheSocketTheyGoOutOn() throws Exception {
+        JSONObject message = new JSONObject().put("request", true).put("id", 7).put("method", "r\u00e9sum\u00e9");
+        QueuedMessage queued = new QueuedMessage(message, SignalingCodecs.JSON);
+
+        // Same codec, the frame from sendMessage() is reused
+        assertSame(queued.frameFor(SignalingCodecs.JSON), queued.frameFor(SignalingCodecs.JSON));
+        assertEquals(message.toString(), queued.payload());
+
+        // Reconnected to a server that picked MessagePack
+        Object frame = queued.frameFor(SignalingCodecs.MSGPACK);
+        assertTrue(frame instanceof ByteString);
+        byte[] bytes = ((ByteString) frame).toByteArray();
+        assertEquals(message.toString(), SignalingCodecs.MSGPACK.decode(bytes, 0, bytes.length).toString());
+
+        QueuedMessage binary = new QueuedMessage(message, SignalingCodecs.MSGPACK);
+        assertEquals(message.toString(), binary.frameFor(SignalingCodecs.JSON));
+        assertEquals(bytes.length, binary.payload().length());
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a signaling node restart: every client loses its socket at the same instant and keeps
+ * reconnecting, each by its own ReconnectPolicy, to a local server that refuses them until it's
+ * back up. Reports the busiest window of connection attempts, timed when the clients mean to make
+ * them so neither the test's threads nor the server's accept rate flatten the storm being measured
+ *
+ * Time is scaled down 5-10x from the defaults so a replay takes a second or two
+ */
+public class ReconnectStormTest {
+
+    private static final int CLIENTS = 300;
+    private static final long DOWNTIME_MS = 1000;
+    private static final long BASE_MS = 200;
+    private static final long CAP_MS = 800;
+    private static final long WINDOW_MS = 25;
+
+    @Test
+    public void jitterFlattensTheReconnectStorm() throws Exception {
+        Storm fixed = replay(seed -> new FixedReconnectPolicy(20, 2, BASE_MS, CAP_MS), false);
+        Storm full = replay(seed -> new JitteredReconnectPolicy(JitteredReconnectPolicy.Jitter.FULL,
+                BASE_MS, CAP_MS, 20, null, new Random(seed)), false);
+        Storm decorrelated = replay(seed -> new JitteredReconnectPolicy(JitteredReconnectPolicy.Jitter.DECORRELATED,
+                BASE_MS, CAP_MS, 20, null, new Random(seed)), false);
+        Storm hinted = replay(seed -> new JitteredReconnectPolicy(JitteredReconnectPolicy.Jitter.DECORRELATED,
+                BASE_MS, CAP_MS, 20, null, new Random(seed)), true);
+
+        System.out.println("peak attempts per " + WINDOW_MS + "ms, " + CLIENTS + " clients, server down "
+                + DOWNTIME_MS + "ms\n  fixed: " + fixed + "\n  full jitter: " + full
+                + "\n  decorrelated: " + decorrelated + "\n  decorrelated + retry-after: " + hinted);
+
+        assertEquals(CLIENTS, full.connected);
+        assertEquals(CLIENTS, decorrelated.connected);
+        assertEquals(CLIENTS, hinted.connected);
+        assertTrue(full.peak * 2 < fixed.peak);
+        assertTrue(decorrelated.peak * 2 < fixed.peak);
+        // Told when to come back, clients stop probing a server that's down
+        assertTrue(hinted.attempts < decorrelated.attempts);
+    }
+
+    @Test
+    public void bucketLimitsAttemptsOnceItsBurstIsSpent() {
+        TokenBucket bucket = new TokenBucket(3, 1000);
+
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(1000, bucket.reserve(0));
+        assertEquals(2000, bucket.reserve(500));
+        // Refilled meanwhile
+        assertEquals(10000, bucket.reserve(10000));
+    }
+
+    @Test
+    public void flappingSocketIsHeldToTheBucketRate() {
+        JitteredReconnectPolicy policy = new JitteredReconnectPolicy(JitteredReconnectPolicy.Jitter.FULL,
+                BASE_MS, CAP_MS, 20, new TokenBucket(2, 1000), new Random(1));
+
+        /**
+         * Opens and fails right away, so the backoff resets every time
+         */
+        long now = 0;
+        for (int i = 0; i < 6; i++) {
+            now += policy.nextDelayMs(ReconnectPolicy.NO_HINT, now);
+            policy.reset();
+        }
+        // Two in the burst, then about one per second
+        assertTrue("6 attempts by " + now + "ms", now >= 3000);
+    }
+
+    @Test
+    public void retryAfterIsAFloorWithSpread() {
+        JitteredReconnectPolicy policy = new JitteredReconnectPolicy(JitteredReconnectPolicy.Jitter.FULL,
+                BASE_MS, CAP_MS, 20, null, new Random(3));
+
+        long delayMs = policy.nextDelayMs(2000, 0);
+        assertTrue(delayMs >= 2000 && delayMs < 2000 + BASE_MS);
+        assertTrue(policy.nextDelayMs(ReconnectPolicy.NO_HINT, 0) <= CAP_MS);
+    }
+
+    private interface PolicyFactory {
+        ReconnectPolicy create(long seed);
+    }
+
+    private static class Storm {
+        int peak;
+        int attempts;
+        int connected;
+        long lastConnectedMs;
+
+        @Override
+        public String toString() {
+            return "peak " + peak + ", " + attempts + " attempts, " + connected + " connected by " + lastConnectedMs + "ms";
+        }
+    }
+
+    /**
+     * @param hint whether the server sends Retry-After while down
+     */
+    private static Storm replay(PolicyFactory policies, boolean hint) throws Exception {
+        long startedAt = System.nanoTime();
+        List<Long> attemptTimes = Collections.synchronizedList(new ArrayList<>());
+        Storm storm = new Storm();
+
+        try (ServerSocket server = new ServerSocket(0, CLIENTS, InetAddress.getLoopbackAddress())) {
+            ExecutorService handlers = Executors.newCachedThreadPool();
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket socket = server.accept();
+                        handlers.execute(() -> answer(socket, startedAt, hint));
+                    } catch (IOException e) {
+                        // Closed
+                    }
+                }
+            });
+            acceptor.start();
+
+            ScheduledThreadPoolExecutor clients = new ScheduledThreadPoolExecutor(64);
+            CountDownLatch done = new CountDownLatch(CLIENTS);
+            long[] connectedAt = new long[CLIENTS];
+
+            // Random(i) for consecutive i start out nearly the same, which would line the clients up
+            Random seeds = new Random(42);
+            for (int i = 0; i < CLIENTS; i++) {
+                Client client = new Client(i, policies.create(seeds.nextLong()), server.getLocalPort(), clients, startedAt, done,
+                        connectedAt, attemptTimes);
+                // Everybody lost the socket just now
+                client.schedule(ReconnectPolicy.NO_HINT);
+            }
+
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            clients.shutdownNow();
+            handlers.shutdownNow();
+
+            for (long at : connectedAt) {
+                if (at >= 0) {
+                    storm.connected++;
+                    storm.lastConnectedMs = Math.max(storm.lastConnectedMs, at);
+                }
+            }
+        }
+
+        synchronized (attemptTimes) {
+            storm.attempts = attemptTimes.size();
+            int[] windows = new int[(int) (storm.lastConnectedMs / WINDOW_MS) + 2];
+            for (long at : attemptTimes) {
+                windows[(int) Math.min(windows.length - 1, at / WINDOW_MS)]++;
+            }
+            for (int count : windows) {
+                storm.peak = Math.max(storm.peak, count);
+            }
+        }
+        return storm;
+    }
+
+    private static void answer(Socket socket, long startedAt, boolean hint) {
+        long at = elapsedMs(startedAt);
+        String answer = at >= DOWNTIME_MS ? "ok" : hint ? "retry-after " + (DOWNTIME_MS - at) : "down";
+        try (Socket closing = socket) {
+            OutputStream out = closing.getOutputStream();
+            out.write((answer + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            // Client gave up
+        }
+    }
+
+    private static class Client implements Runnable {
+
+        private final int mIndex;
+        private final ReconnectPolicy mPolicy;
+        private final int mPort;
+        private final ScheduledThreadPoolExecutor mExecutor;
+        private final long mStartedAt;
+        private final CountDownLatch mDone;
+        private final long[] mConnectedAt;
+        private final List<Long> mAttemptTimes;
+
+        Client(int index, ReconnectPolicy policy, int port, ScheduledThreadPoolExecutor executor, long startedAt,
+               CountDownLatch done, long[] connectedAt, List<Long> attemptTimes) {
+            mIndex = index;
+            mPolicy = policy;
+            mPort = port;
+            mExecutor = executor;
+            mStartedAt = startedAt;
+            mDone = done;
+            mConnectedAt = connectedAt;
+            mAttemptTimes = attemptTimes;
+        }
+
+        void schedule(long retryAfterMs) {
+            long delayMs = mPolicy.nextDelayMs(retryAfterMs, elapsedMs(mStartedAt));
+            if (delayMs == ReconnectPolicy.NO_RETRY) {
+                mConnectedAt[mIndex] = -1;
+                mDone.countDown();
+                return;
+            }
+            mAttemptTimes.add(elapsedMs(mStartedAt) + delayMs);
+            mExecutor.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            String answer;
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), mPort)) {
+                answer = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+            } catch (IOException e) {
+                answer = null;
+            }
+
+            if ("ok".equals(answer)) {
+                mPolicy.reset();
+                mConnectedAt[mIndex] = elapsedMs(mStartedAt);
+                mDone.countDown();
+            } else if (answer != null && answer.startsWith("retry-after ")) {
+                schedule(Long.parseLong(answer.substring("retry-after ".length())));
+            } else {
+                schedule(ReconnectPolicy.NO_HINT);
+            }
+        }
+    }
+
+    private static long elapsedMs(long startedAt) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.rtcclient.network.mediasoup.socket;
+
+import com.example.rtcclient.mockserver.StandInProtooServer;
+import com.example.rtcclient.mockserver.StandInSignalingServer;
+import com.example.rtcclient.model.Roster;
+import com.example.rtcclient.network.ISignalingStrategy.SyncMode;
+import com.example.rtcclient.network.http.SyncLatencyTest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Join-to-subscribe over the socket, with roster changes pushed as protoo notifications, against
+ * HttpClient's polling and long-polling. protoo's Peer needs a Looper so the socket side here is a
+ * bare protoo client on OkHttp feeding RosterFeed, which is all SocketClient adds on top of Peer
+ */
+public class SocketPushLatencyTest {
+
+    private static final int SAMPLES = 5;
+
+    @Test
+    public void pushDeliversRosterChangesFasterThanHttp() throws Exception {
+        long push = averageJoinToSubscribeMs();
+        long poll = SyncLatencyTest.averageJoinToSubscribeMs(SyncMode.POLL);
+        long longPoll = SyncLatencyTest.averageJoinToSubscribeMs(SyncMode.LONG_POLL);
+
+        System.out.println("join-to-subscribe socket push: " + push + "ms, HTTP POLL: " + poll
+                + "ms, HTTP LONG_POLL: " + longPoll + "ms");
+
+        assertTrue(push < poll);
+        assertTrue(push < 100);
+    }
+
+    @Test
+    public void notificationsBeforeTheSnapshotAreReplayedOnTopOfIt() throws Exception {
+        Roster roster = new Roster("me");
+        RosterFeed feed = new RosterFeed("me", update -> {
+            roster.apply(update, IGNORE);
+            update.recycle();
+        });
+
+        feed.onNotification(RosterFeed.PRODUCER_ADDED, peer("a").put("mediaTag", Roster.CAM_AUDIO));
+        feed.onNotification(RosterFeed.PEER_JOINED, peer("b"));
+        assertTrue(roster.getPeers().isEmpty());
+
+        // Already has a's audio
+        feed.onSnapshot("{\"peers\":{\"a\":{\"media\":{\"cam-video\":{},\"cam-audio\":{}}},\"me\":{\"media\":{}}}}");
+
+        assertEquals(2, roster.getPeers().size());
+        assertTrue(roster.get("a").isSendingVideo());
+        assertTrue(roster.get("a").isSendingAudio());
+        assertNotNull(roster.get("b"));
+
+        feed.onNotification(RosterFeed.PRODUCER_CLOSED, peer("a").put("mediaTag", Roster.CAM_VIDEO));
+        feed.onNotification(RosterFeed.PRODUCER_PAUSED, peer("a").put("mediaTag", Roster.CAM_AUDIO));
+        feed.onNotification(RosterFeed.PEER_LEFT, peer("b"));
+
+        assertFalse(roster.get("a").isSendingVideo());
+        assertTrue(roster.get("a").isSendingAudio());
+        assertEquals(1, roster.getPeers().size());
+
+        feed.close();
+        feed.onNotification(RosterFeed.PEER_JOINED, peer("c"));
+        assertEquals(1, roster.getPeers().size());
+    }
+
+    private static long averageJoinToSubscribeMs() throws Exception {
+        StandInSignalingServer room = new StandInSignalingServer();
+        StandInProtooServer server = new StandInProtooServer(room);
+        room.start();
+        server.start();
+
+        final String[] expected = new String[1];
+        final CountDownLatch[] seen = new CountDownLatch[1];
+        CountDownLatch started = new CountDownLatch(1);
+
+        Roster roster = new Roster("me");
+        Roster.Listener changes = new Roster.Listener() {
+            @Override
+            public void onPeerJoined(Roster.Peer peer) {
+                synchronized (expected) {
+                    if (peer.getId().equals(expected[0]) && peer.isSendingVideo()) {
+                        seen[0].countDown();
+                    }
+                }
+            }
+
+            @Override
+            public void onPeerLeft(Roster.Peer peer) {
+            }
+
+            @Override
+            public void onPeerMediaChanged(Roster.Peer peer) {
+            }
+        };
+
+        RosterFeed feed = new RosterFeed("me", update -> {
+            started.countDown();
+            roster.apply(update, changes);
+            update.recycle();
+        });
+
+        OkHttpClient client = new OkHttpClient();
+        WebSocket socket = client.newWebSocket(new Request.Builder().url(server.getUrl()).build(), new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, okhttp3.Response response) {
+                try {
+                    // What SocketClient.register() asks for
+                    webSocket.send(new JSONObject()
+                            .put("request", true)
+                            .put("id", 1)
+                            .put("method", "sync")
+                            .put("data", new JSONObject().put("peerId", "me"))
+                            .toString());
+                } catch (JSONException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                try {
+                    JSONObject message = new JSONObject(text);
+                    if (message.optBoolean("notification")) {
+                        feed.onNotification(message.getString("method"), message.optJSONObject("data"));
+                    } else if (message.optBoolean("response")) {
+                        feed.onSnapshot(message.getJSONObject("data").toString());
+                    }
+                } catch (JSONException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        Random random = new Random(42);
+        long total = 0;
+
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < SAMPLES; i++) {
+                // Same spacing as SyncLatencyTest, pushing doesn't care
+                Thread.sleep(random.nextInt(1000));
+
+                synchronized (expected) {
+                    expected[0] = "remote-" + i;
+                    seen[0] = new CountDownLatch(1);
+                }
+
+                long joinedAt = System.nanoTime();
+                room.join("remote-" + i, "cam-video", "cam-audio");
+                assertTrue(seen[0].await(5, TimeUnit.SECONDS));
+                total += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - joinedAt);
+            }
+        } finally {
+            feed.close();
+            socket.close(1000, null);
+            client.dispatcher().executorService().shutdown();
+            server.stop();
+            room.stop();
+        }
+
+        return total / SAMPLES;
+    }
+
+    private static JSONObject peer(String peerId) throws JSONException {
+        return new JSONObject().put("peerId", peerId);
+    }
+
+    private static final Roster.Listener IGNORE = new Roster.Listener() {
+        @Override
+        public void onPeerJoined(Roster.Peer peer) {
+        }
+
+        @Override
+        public void onPeerLeft(Roster.Peer peer) {
+        }
+
+        @Override
+        public void onPeerMediaChanged(Roster.Peer peer) {
+        }
+    };
+}
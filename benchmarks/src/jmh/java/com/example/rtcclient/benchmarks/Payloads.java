@@ -0,0 +1,97 @@
+package com.example.rtcclient.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Signaling payloads as libmediasoupclient produces them for a VP8 camera with three simulcast
+ * layers, and sync replies for rooms of any size
+ */
+final class Payloads {
+
+    static final String PEER_ID = "3f2-504-e04f";
+    static final String TRANSPORT_ID = "e1b0a0b4-6c4a-4b5b-8f0a-37c3c5f0b3a2";
+
+    static final String RTP_PARAMETERS = "{"
+            + "\"mid\":\"0\","
+            + "\"codecs\":[{\"mimeType\":\"video/VP8\",\"payloadType\":96,\"clockRate\":90000,\"parameters\":{},"
+            + "\"rtcpFeedback\":[{\"type\":\"goog-remb\",\"parameter\":\"\"},{\"type\":\"transport-cc\",\"parameter\":\"\"},"
+            + "{\"type\":\"ccm\",\"parameter\":\"fir\"},{\"type\":\"nack\",\"parameter\":\"\"},{\"type\":\"nack\",\"parameter\":\"pli\"}]},"
+            + "{\"mimeType\":\"video/rtx\",\"payloadType\":97,\"clockRate\":90000,\"parameters\":{\"apt\":96},\"rtcpFeedback\":[]}],"
+            + "\"headerExtensions\":["
+            + "{\"uri\":\"urn:ietf:params:rtp-hdrext:sdes:mid\",\"id\":4,\"encrypt\":false,\"parameters\":{}},"
+            + "{\"uri\":\"urn:ietf:params:rtp-hdrext:sdes:rtp-stream-id\",\"id\":5,\"encrypt\":false,\"parameters\":{}},"
+            + "{\"uri\":\"urn:ietf:params:rtp-hdrext:sdes:repaired-rtp-stream-id\",\"id\":6,\"encrypt\":false,\"parameters\":{}},"
+            + "{\"uri\":\"http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\",\"id\":2,\"encrypt\":false,\"parameters\":{}},"
+            + "{\"uri\":\"http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01\",\"id\":3,\"encrypt\":false,\"parameters\":{}},"
+            + "{\"uri\":\"urn:3gpp:video-orientation\",\"id\":13,\"encrypt\":false,\"parameters\":{}},"
+            + "{\"uri\":\"urn:ietf:params:rtp-hdrext:toffset\",\"id\":14,\"encrypt\":false,\"parameters\":{}}],"
+            + "\"encodings\":["
+            + "{\"active\":true,\"rid\":\"r0\",\"maxBitrate\":100000,\"scaleResolutionDownBy\":4,\"dtx\":false},"
+            + "{\"active\":true,\"rid\":\"r1\",\"maxBitrate\":300000,\"scaleResolutionDownBy\":2,\"dtx\":false},"
+            + "{\"active\":true,\"rid\":\"r2\",\"maxBitrate\":900000,\"scaleResolutionDownBy\":1,\"dtx\":false}],"
+            + "\"rtcp\":{\"cname\":\"kJ3mYvQ0/wPp5sE7\",\"reducedSize\":true}"
+            + "}";
+
+    static final String RTP_CAPABILITIES = "{"
+            + "\"codecs\":["
+            + "{\"kind\":\"audio\",\"mimeType\":\"audio/opus\",\"preferredPayloadType\":100,\"clockRate\":48000,\"channels\":2,"
+            + "\"parameters\":{\"minptime\":10,\"useinbandfec\":1},\"rtcpFeedback\":[{\"type\":\"transport-cc\",\"parameter\":\"\"}]},"
+            + "{\"kind\":\"video\",\"mimeType\":\"video/VP8\",\"preferredPayloadType\":101,\"clockRate\":90000,\"parameters\":{},"
+            + "\"rtcpFeedback\":[{\"type\":\"goog-remb\",\"parameter\":\"\"},{\"type\":\"transport-cc\",\"parameter\":\"\"},"
+            + "{\"type\":\"ccm\",\"parameter\":\"fir\"},{\"type\":\"nack\",\"parameter\":\"\"},{\"type\":\"nack\",\"parameter\":\"pli\"}]},"
+            + "{\"kind\":\"video\",\"mimeType\":\"video/rtx\",\"preferredPayloadType\":102,\"clockRate\":90000,\"parameters\":{\"apt\":101},\"rtcpFeedback\":[]},"
+            + "{\"kind\":\"video\",\"mimeType\":\"video/H264\",\"preferredPayloadType\":105,\"clockRate\":90000,"
+            + "\"parameters\":{\"level-asymmetry-allowed\":1,\"packetization-mode\":1,\"profile-level-id\":\"42e01f\"},"
+            + "\"rtcpFeedback\":[{\"type\":\"goog-remb\",\"parameter\":\"\"},{\"type\":\"transport-cc\",\"parameter\":\"\"},"
+            + "{\"type\":\"ccm\",\"parameter\":\"fir\"},{\"type\":\"nack\",\"parameter\":\"\"},{\"type\":\"nack\",\"parameter\":\"pli\"}]},"
+            + "{\"kind\":\"video\",\"mimeType\":\"video/rtx\",\"preferredPayloadType\":106,\"clockRate\":90000,\"parameters\":{\"apt\":105},\"rtcpFeedback\":[]}],"
+            + "\"headerExtensions\":["
+            + "{\"kind\":\"audio\",\"uri\":\"urn:ietf:params:rtp-hdrext:sdes:mid\",\"preferredId\":1,\"preferredEncrypt\":false,\"direction\":\"sendrecv\"},"
+            + "{\"kind\":\"video\",\"uri\":\"urn:ietf:params:rtp-hdrext:sdes:mid\",\"preferredId\":1,\"preferredEncrypt\":false,\"direction\":\"sendrecv\"},"
+            + "{\"kind\":\"video\",\"uri\":\"urn:ietf:params:rtp-hdrext:sdes:rtp-stream-id\",\"preferredId\":2,\"preferredEncrypt\":false,\"direction\":\"recvonly\"},"
+            + "{\"kind\":\"video\",\"uri\":\"urn:ietf:params:rtp-hdrext:sdes:repaired-rtp-stream-id\",\"preferredId\":3,\"preferredEncrypt\":false,\"direction\":\"recvonly\"},"
+            + "{\"kind\":\"audio\",\"uri\":\"http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\",\"preferredId\":4,\"preferredEncrypt\":false,\"direction\":\"sendrecv\"},"
+            + "{\"kind\":\"video\",\"uri\":\"http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\",\"preferredId\":4,\"preferredEncrypt\":false,\"direction\":\"sendrecv\"},"
+            + "{\"kind\":\"video\",\"uri\":\"http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01\",\"preferredId\":5,\"preferredEncrypt\":false,\"direction\":\"sendrecv\"},"
+            + "{\"kind\":\"audio\",\"uri\":\"urn:ietf:params:rtp-hdrext:ssrc-audio-level\",\"preferredId\":10,\"preferredEncrypt\":false,\"direction\":\"sendrecv\"},"
+            + "{\"kind\":\"video\",\"uri\":\"urn:3gpp:video-orientation\",\"preferredId\":11,\"preferredEncrypt\":false,\"direction\":\"sendrecv\"},"
+            + "{\"kind\":\"video\",\"uri\":\"urn:ietf:params:rtp-hdrext:toffset\",\"preferredId\":12,\"preferredEncrypt\":false,\"direction\":\"sendrecv\"}]"
+            + "}";
+
+    static final String DTLS_PARAMETERS = "{"
+            + "\"role\":\"client\","
+            + "\"fingerprints\":[{\"algorithm\":\"sha-256\",\"value\":"
+            + "\"82:5A:68:3D:36:C3:0A:DE:AF:E7:32:43:D2:88:83:57:AC:2D:65:E5:80:C4:B6:FB:AF:1A:A0:21:9F:6D:0C:AD\"}]"
+            + "}";
+
+    private Payloads() {
+    }
+
+    /**
+     * A full sync reply, the way the server sends it
+     * @param changed fraction of peers whose media differ from the seed-0 reply of the same size
+     */
+    static String snapshot(int peers, double changed, long seed) {
+        Random layout = new Random(0);
+        Random changes = new Random(seed);
+        StringBuilder builder = new StringBuilder("{\"version\":").append(seed).append(",\"peers\":{");
+
+        builder.append('"').append(PEER_ID).append("\":{\"media\":{\"cam-video\":{},\"cam-audio\":{}}}");
+        for (int i = 0; i < peers; i++) {
+            boolean video = layout.nextBoolean();
+            boolean audio = layout.nextBoolean();
+            if (changes.nextDouble() < changed) {
+                video = !video;
+            }
+            builder.append(",\"peer-").append(i).append("\":{\"media\":{");
+            if (video) {
+                builder.append("\"cam-video\":{}");
+            }
+            if (audio) {
+                builder.append(video ? "," : "").append("\"cam-audio\":{}");
+            }
+            builder.append("}}");
+        }
+        return builder.append("}}").toString();
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.rtcclient.benchmarks;
+
+import com.example.rtcclient.model.PeerIds;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+public class PeerIdBenchmark {
+
+    @Benchmark
+    public String uuidv4() {
+        return PeerIds.uuidv4();
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.rtcclient.benchmarks;
+
+import com.example.rtcclient.model.Roster;
+import com.example.rtcclient.model.RosterParser;
+import com.example.rtcclient.model.RosterUpdate;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * What RoomClient.pollAndUpdate() does with a sync reply, minus the subscribing: parse it into a
+ * RosterUpdate and diff it against the Roster. Consecutive replies alternate between two rosters
+ * that differ for 10% of the peers, the way a busy room looks between two polls
+ */
+@State(Scope.Thread)
+public class RosterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int peers;
+
+    private final RosterParser mParser = new RosterParser(Payloads.PEER_ID);
+    private final Roster mRoster = new Roster(Payloads.PEER_ID);
+    private byte[][] mReplies;
+    private RosterUpdate[] mUpdates;
+    private int mNext;
+    private Counter mCounter;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws JSONException {
+        mReplies = new byte[][]{
+                Payloads.snapshot(peers, 0, 0).getBytes(StandardCharsets.UTF_8),
+                Payloads.snapshot(peers, 0.1, 1).getBytes(StandardCharsets.UTF_8)};
+
+        mUpdates = new RosterUpdate[mReplies.length];
+        for (int i = 0; i < mReplies.length; i++) {
+            // Not from the pool, these are kept for the whole run
+            mUpdates[i] = new RosterUpdate();
+            mParser.parse(mReplies[i], 0, mReplies[i].length, mUpdates[i]);
+        }
+        mCounter = new Counter(blackhole);
+    }
+
+    @Benchmark
+    public int parse() throws JSONException {
+        byte[] reply = mReplies[mNext++ & 1];
+        RosterUpdate update = RosterUpdate.obtain();
+        mParser.parse(reply, 0, reply.length, update);
+        int count = update.getPeerCount();
+        update.recycle();
+        return count;
+    }
+
+    @Benchmark
+    public void apply() {
+        mRoster.apply(mUpdates[mNext++ & 1], mCounter);
+    }
+
+    @Benchmark
+    public void parseAndApply() throws JSONException {
+        byte[] reply = mReplies[mNext++ & 1];
+        RosterUpdate update = RosterUpdate.obtain();
+        mParser.parse(reply, 0, reply.length, update);
+        mRoster.apply(update, mCounter);
+        update.recycle();
+    }
+
+    /**
+     * Stands in for RoomClient's listener, which only looks at the peer
+     */
+    private static class Counter implements Roster.Listener {
+
+        private final Blackhole mBlackhole;
+
+        Counter(Blackhole blackhole) {
+            mBlackhole = blackhole;
+        }
+
+        @Override
+        public void onPeerJoined(Roster.Peer peer) {
+            mBlackhole.consume(peer.isSending());
+        }
+
+        @Override
+        public void onPeerLeft(Roster.Peer peer) {
+            mBlackhole.consume(peer);
+        }
+
+        @Override
+        public void onPeerMediaChanged(Roster.Peer peer) {
+            mBlackhole.consume(peer.isSending());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.rtcclient.benchmarks;
+
+import com.example.rtcclient.network.codec.SignalingCodecs;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * RTP parameters go back and forth between the strings libmediasoupclient deals in and JSONObjects
+ * on every produce and consume
+ */
+@State(Scope.Thread)
+public class RtpParametersBenchmark {
+
+    private JSONObject mRtpParameters;
+    private byte[] mMessagePack;
+
+    @Setup
+    public void setUp() throws JSONException {
+        mRtpParameters = new JSONObject(Payloads.RTP_PARAMETERS);
+        mMessagePack = SignalingCodecs.MSGPACK.encode(mRtpParameters);
+    }
+
+    /**
+     * onProduce() hands them over as a string
+     */
+    @Benchmark
+    public JSONObject decodeString() throws JSONException {
+        return new JSONObject(Payloads.RTP_PARAMETERS);
+    }
+
+    /**
+     * consume() hands them to the recv transport as a string
+     */
+    @Benchmark
+    public String encodeString() {
+        return mRtpParameters.toString();
+    }
+
+    @Benchmark
+    public JSONObject decodeMessagePack() throws JSONException {
+        return SignalingCodecs.MSGPACK.decode(mMessagePack, 0, mMessagePack.length);
+    }
+
+    @Benchmark
+    public byte[] encodeMessagePack() throws JSONException {
+        return SignalingCodecs.MSGPACK.encode(mRtpParameters);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.rtcclient.benchmarks;
+
+import com.example.rtcclient.network.BatchRequest;
+import com.example.rtcclient.network.SignalingRequests;
+import com.example.rtcclient.network.codec.SignalingCodec;
+import com.example.rtcclient.network.codec.SignalingCodecs;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building a signaling request up to the bytes that go on the wire, as RoomClient's syncSig() and
+ * the strategies do it: the parameters, the peer id, then the codec the server negotiated
+ */
+@State(Scope.Thread)
+public class SignalingRequestBenchmark {
+
+    @Param({"json", "msgpack"})
+    public String codec;
+
+    private SignalingCodec mCodec;
+    private JSONObject mRtpCapabilities;
+
+    @Setup
+    public void setUp() throws JSONException {
+        mCodec = "json".equals(codec) ? SignalingCodecs.JSON : SignalingCodecs.MSGPACK;
+        mRtpCapabilities = new JSONObject(Payloads.RTP_CAPABILITIES);
+    }
+
+    /**
+     * onProduce(), the biggest request the client sends
+     */
+    @Benchmark
+    public byte[] sendTrack() throws JSONException {
+        JSONObject params = SignalingRequests.sendTrack(Payloads.TRANSPORT_ID, "video", Payloads.RTP_PARAMETERS);
+        return mCodec.encode(SignalingRequests.withPeerId(params, Payloads.PEER_ID));
+    }
+
+    @Benchmark
+    public byte[] connectTransport() throws JSONException {
+        JSONObject params = SignalingRequests.connectTransport(Payloads.TRANSPORT_ID, Payloads.DTLS_PARAMETERS);
+        return mCodec.encode(SignalingRequests.withPeerId(params, Payloads.PEER_ID));
+    }
+
+    /**
+     * subscribe() to a peer's video and audio in one batch
+     */
+    @Benchmark
+    public byte[] recvTrackBatch() throws JSONException {
+        BatchRequest batch = new BatchRequest()
+                .add(SignalingRequests.RECV_TRACK, SignalingRequests.recvTrack(mRtpCapabilities, "cam-video", "peer-1"))
+                .add(SignalingRequests.RECV_TRACK, SignalingRequests.recvTrack(mRtpCapabilities, "cam-audio", "peer-1"));
+        return mCodec.encode(SignalingRequests.withPeerId(batch, Payloads.PEER_ID).toJson());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.rtcclient.media;
+
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the audio level of each received track out of a transport's getStats(). Older WebRTC
+ * reports it on "track" stats, newer on "inbound-rtp", both name the track by trackIdentifier
+ */
+public class AudioLevels {
+
+    /**
+     * @return linear level (0 to 1) by track id, empty if there are none or the report is unreadable
+     */
+    public static Map<String, Double> fromStats(String report) {
+        return fromStats(StatsReport.parse(report));
+    }
+
+    public static Map<String, Double> fromStats(StatsReport report) {
+        Map<String, Double> levels = new HashMap<>();
+        for (JSONObject stats : report.getStats()) {
+            read(stats, levels);
+        }
+        return levels;
+    }
+
+    /**
+     * @return the level in dBov, SpeakerPolicy.SILENCE_DBOV for 0
+     */
+    public static double toDbov(double linear) {
+        if (linear <= 0) {
+            return SpeakerPolicy.SILENCE_DBOV;
+        }
+        return Math.max(SpeakerPolicy.SILENCE_DBOV, 20 * Math.log10(Math.min(1, linear)));
+    }
+
+    private static void read(JSONObject stats, Map<String, Double> levels) {
+        if (!stats.has("audioLevel") || !stats.has("trackIdentifier")) {
+            return;
+        }
+
+        String kind = stats.optString("kind", stats.optString("mediaType"));
+        if (!kind.isEmpty() && !kind.equals("audio")) {
+            return;
+        }
+        /**
+         * Our own mic shows up in send-side track stats
+         */
+        if (stats.has("remoteSource") && !stats.optBoolean("remoteSource")) {
+            return;
+        }
+
+        levels.put(stats.optString("trackIdentifier"), stats.optDouble("audioLevel", 0));
+    }
+}
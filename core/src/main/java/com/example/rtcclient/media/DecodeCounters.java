@@ -0,0 +1,68 @@
+package com.example.rtcclient.media;
+
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What a received video track has cost so far, from the "inbound-rtp" stats of a transport's
+ * getStats(). The counters only grow while the track receives. Also the size of the frames it's
+ * receiving now
+ */
+public class DecodeCounters {
+
+    public final long bytesReceived;
+    /**
+     * NaN when WebRTC doesn't report totalDecodeTime
+     */
+    public final double decodeMs;
+    public final long framesDecoded;
+    /**
+     * 0 until a frame is decoded
+     */
+    public final int frameWidth;
+    public final int frameHeight;
+
+    public DecodeCounters(long bytesReceived, double decodeMs, long framesDecoded) {
+        this(bytesReceived, decodeMs, framesDecoded, 0, 0);
+    }
+
+    public DecodeCounters(long bytesReceived, double decodeMs, long framesDecoded, int frameWidth, int frameHeight) {
+        this.bytesReceived = bytesReceived;
+        this.decodeMs = decodeMs;
+        this.framesDecoded = framesDecoded;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+    }
+
+    /**
+     * @return counters by track id, video tracks only
+     */
+    public static Map<String, DecodeCounters> fromStats(StatsReport report) {
+        Map<String, DecodeCounters> counters = new HashMap<>();
+        for (JSONObject stats : report.getStats()) {
+            if (!stats.optString("type").equals("inbound-rtp")
+                    || !stats.optString("kind", stats.optString("mediaType")).equals("video")) {
+                continue;
+            }
+
+            String trackId = report.trackIdentifier(stats);
+            if (trackId == null) {
+                continue;
+            }
+            /**
+             * totalDecodeTime is in seconds
+             */
+            double decodeMs = stats.has("totalDecodeTime") ? stats.optDouble("totalDecodeTime") * 1000 : Double.NaN;
+            /**
+             * Older WebRTC has the frame size on the track stats only
+             */
+            JSONObject size = stats.has("frameWidth") ? stats : report.get(stats.optString("trackId"));
+            counters.put(trackId, new DecodeCounters(stats.optLong("bytesReceived"), decodeMs,
+                    stats.optLong("framesDecoded"), size != null ? size.optInt("frameWidth") : 0,
+                    size != null ? size.optInt("frameHeight") : 0));
+        }
+        return counters;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.rtcclient.media;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the spatial layer each simulcast video consumer should prefer: the smallest that covers
+ * its tile, then lower ones for the biggest streams until everything playing fits what the device
+ * decodes. Layers are taken to halve in size going down, as in SimulcastProfile.DEFAULT_LADDER.
+ *
+ * The sender's full size is learned from the frames received while the top layer is preferred,
+ * frames never exceed it so it's only ever underestimated, which picks a bigger layer than needed
+ * rather than a blurry one. Not thread-safe, used from the worker
+ */
+public class LayerController {
+
+    /**
+     * No preference sent yet, the SFU forwards the highest layer the link allows
+     */
+    public static final int NONE = -1;
+
+    private static final Pattern MODE = Pattern.compile("[LS]([1-9])T[1-9].*");
+
+    private static class Stream {
+        final int spatialLayers;
+        int tileWidth;
+        int tileHeight;
+        int topLong;
+        int topShort;
+        boolean portrait;
+        boolean playing = true;
+        int preferred = NONE;
+
+        Stream(int spatialLayers) {
+            this.spatialLayers = spatialLayers;
+        }
+
+        int top() {
+            return spatialLayers - 1;
+        }
+
+        int frameWidth(int layer) {
+            return (portrait ? topShort : topLong) >> (top() - layer);
+        }
+
+        int frameHeight(int layer) {
+            return (portrait ? topLong : topShort) >> (top() - layer);
+        }
+
+        long pixels(int layer) {
+            return (long) frameWidth(layer) * frameHeight(layer);
+        }
+    }
+
+    private final long mMaxDecodePixels;
+    private final Map<String, Stream> mStreams = new LinkedHashMap<>();
+
+    /**
+     * @param maxDecodePixels most pixels a frame, summed over the videos playing, the device decodes
+     * at frame rate
+     */
+    public LayerController(long maxDecodePixels) {
+        mMaxDecodePixels = maxDecodePixels;
+    }
+
+    /**
+     * @param spatialLayers what the consumer's producer sends, one means there's nothing to pick
+     */
+    public void add(String consumerId, int spatialLayers) {
+        mStreams.put(consumerId, new Stream(Math.max(1, spatialLayers)));
+    }
+
+    public void remove(String consumerId) {
+        mStreams.remove(consumerId);
+    }
+
+    /**
+     * @param width on screen, px
+     */
+    public void setTile(String consumerId, int width, int height) {
+        Stream stream = mStreams.get(consumerId);
+        if (stream != null) {
+            stream.tileWidth = width;
+            stream.tileHeight = height;
+        }
+    }
+
+    /**
+     * Paused streams cost nothing to decode and keep their preference
+     */
+    public void setPlaying(String consumerId, boolean playing) {
+        Stream stream = mStreams.get(consumerId);
+        if (stream != null) {
+            stream.playing = playing;
+        }
+    }
+
+    /**
+     * The size of the frames currently received, from the stats
+     */
+    public void onFrameSize(String consumerId, int width, int height) {
+        Stream stream = mStreams.get(consumerId);
+        if (stream == null || width <= 0 || height <= 0) {
+            return;
+        }
+
+        stream.portrait = height > width;
+        if (stream.preferred == NONE || stream.preferred == stream.top()) {
+            stream.topLong = Math.max(stream.topLong, Math.max(width, height));
+            stream.topShort = Math.max(stream.topShort, Math.min(width, height));
+        }
+    }
+
+    /**
+     * @return consumer id -> spatial layer, for the consumers whose preference changed
+     */
+    public Map<String, Integer> update() {
+        Map<String, Integer> wanted = new LinkedHashMap<>();
+        long pixels = 0;
+        for (Map.Entry<String, Stream> entry : mStreams.entrySet()) {
+            Stream stream = entry.getValue();
+            if (!stream.playing || stream.spatialLayers < 2 || stream.topLong == 0
+                    || stream.tileWidth <= 0 || stream.tileHeight <= 0) {
+                continue;
+            }
+
+            int layer = smallestCovering(stream);
+            wanted.put(entry.getKey(), layer);
+            pixels += stream.pixels(layer);
+        }
+
+        /**
+         * Over what the device decodes, step the biggest stream down until it fits
+         */
+        while (pixels > mMaxDecodePixels) {
+            String biggest = null;
+            long biggestPixels = 0;
+            for (Map.Entry<String, Integer> entry : wanted.entrySet()) {
+                Stream stream = mStreams.get(entry.getKey());
+                long streamPixels = stream.pixels(entry.getValue());
+                if (entry.getValue() > 0 && streamPixels > biggestPixels) {
+                    biggest = entry.getKey();
+                    biggestPixels = streamPixels;
+                }
+            }
+            if (biggest == null) {
+                break;
+            }
+
+            int layer = wanted.get(biggest) - 1;
+            wanted.put(biggest, layer);
+            pixels -= biggestPixels - mStreams.get(biggest).pixels(layer);
+        }
+
+        Map<String, Integer> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : wanted.entrySet()) {
+            Stream stream = mStreams.get(entry.getKey());
+            if (stream.preferred != entry.getValue()) {
+                stream.preferred = entry.getValue();
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the layer last returned by update(), NONE if there wasn't one
+     */
+    public int getPreferred(String consumerId) {
+        Stream stream = mStreams.get(consumerId);
+        return stream == null ? NONE : stream.preferred;
+    }
+
+    public void clear() {
+        mStreams.clear();
+    }
+
+    /**
+     * @param rtpParameters a consumer's, as mediasoup hands them out
+     * @return spatial layers the producer sends, from the scalability mode or else the number of
+     * encodings. One if there's no telling
+     */
+    public static int spatialLayersOf(String rtpParameters) {
+        if (rtpParameters == null || rtpParameters.isEmpty()) {
+            return 1;
+        }
+
+        try {
+            JSONArray encodings = new JSONObject(rtpParameters).optJSONArray("encodings");
+            if (encodings == null || encodings.length() == 0) {
+                return 1;
+            }
+
+            JSONObject encoding = encodings.optJSONObject(0);
+            Matcher matcher = MODE.matcher(encoding == null ? "" : encoding.optString("scalabilityMode"));
+            if (matcher.matches()) {
+                return Integer.parseInt(matcher.group(1));
+            }
+            return encodings.length();
+        } catch (JSONException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * Tiles crop to fill, so the frame has to cover both sides
+     */
+    private static int smallestCovering(Stream stream) {
+        for (int layer = 0; layer < stream.top(); layer++) {
+            if (stream.frameWidth(layer) >= stream.tileWidth && stream.frameHeight(layer) >= stream.tileHeight) {
+                return layer;
+            }
+        }
+        return stream.top();
+    }
+}
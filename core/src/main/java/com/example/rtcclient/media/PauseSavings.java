@@ -0,0 +1,152 @@
+package com.example.rtcclient.media;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Estimates what pausing video consumers saved: the bytes they would have received and the time
+ * they would have spent decoding had they kept going at the rate they ran at before the pause. Not
+ * thread-safe, used from the worker
+ */
+public class PauseSavings {
+
+    /**
+     * Weight of the newest sample in a stream's rates
+     */
+    private static final double SMOOTHING = 0.5;
+
+    private static class Stream {
+        DecodeCounters last;
+        long lastAtMs;
+        double bytesPerMs;
+        double decodeMsPerMs;
+        boolean paused;
+        long pausedAtMs;
+    }
+
+    private final Map<String, Stream> mStreams = new HashMap<>();
+    private double mSavedBytes;
+    private double mSavedDecodeMs;
+    private long mPausedMs;
+
+    /**
+     * Learn a stream's rates from its counters. Ignored while it's paused, it costs nothing then
+     */
+    public void onStats(String id, DecodeCounters counters, long nowMs) {
+        Stream stream = stream(id);
+        if (stream.paused) {
+            return;
+        }
+
+        DecodeCounters last = stream.last;
+        long elapsedMs = nowMs - stream.lastAtMs;
+        if (last != null && elapsedMs > 0 && counters.bytesReceived >= last.bytesReceived) {
+            stream.bytesPerMs = smooth(stream.bytesPerMs, (counters.bytesReceived - last.bytesReceived) / (double) elapsedMs);
+            if (!Double.isNaN(counters.decodeMs) && !Double.isNaN(last.decodeMs)) {
+                stream.decodeMsPerMs = smooth(stream.decodeMsPerMs, (counters.decodeMs - last.decodeMs) / elapsedMs);
+            }
+        }
+        stream.last = counters;
+        stream.lastAtMs = nowMs;
+    }
+
+    /**
+     * Idempotent, call it with the stream's state whenever it may have changed
+     */
+    public void setPaused(String id, boolean paused, long nowMs) {
+        Stream stream = stream(id);
+        if (stream.paused == paused) {
+            return;
+        }
+
+        if (paused) {
+            stream.pausedAtMs = nowMs;
+        } else {
+            accrue(stream, nowMs);
+            /**
+             * The counters stood still meanwhile, the next sample starts a new baseline
+             */
+            stream.last = null;
+        }
+        stream.paused = paused;
+    }
+
+    /**
+     * The stream is closed, what its pause saved so far is kept
+     */
+    public void remove(String id, long nowMs) {
+        Stream stream = mStreams.remove(id);
+        if (stream != null && stream.paused) {
+            accrue(stream, nowMs);
+        }
+    }
+
+    public long getSavedBytes(long nowMs) {
+        double saved = mSavedBytes;
+        for (Stream stream : mStreams.values()) {
+            if (stream.paused) {
+                saved += stream.bytesPerMs * (nowMs - stream.pausedAtMs);
+            }
+        }
+        return Math.round(saved);
+    }
+
+    public long getSavedDecodeMs(long nowMs) {
+        double saved = mSavedDecodeMs;
+        for (Stream stream : mStreams.values()) {
+            if (stream.paused) {
+                saved += stream.decodeMsPerMs * (nowMs - stream.pausedAtMs);
+            }
+        }
+        return Math.round(saved);
+    }
+
+    /**
+     * @return summed over streams, two streams paused for a second make two seconds
+     */
+    public long getPausedMs(long nowMs) {
+        long paused = mPausedMs;
+        for (Stream stream : mStreams.values()) {
+            if (stream.paused) {
+                paused += nowMs - stream.pausedAtMs;
+            }
+        }
+        return paused;
+    }
+
+    public void clear() {
+        mStreams.clear();
+        mSavedBytes = 0;
+        mSavedDecodeMs = 0;
+        mPausedMs = 0;
+    }
+
+    /**
+     * @return a line for the log, e.g. "12.3 s paused, 1534 KB and 840 ms of decoding saved"
+     */
+    public String describe(long nowMs) {
+        return String.format(Locale.US, "%.1f s paused, %d KB and %d ms of decoding saved",
+                getPausedMs(nowMs) / 1000.0, getSavedBytes(nowMs) / 1024, getSavedDecodeMs(nowMs));
+    }
+
+    private Stream stream(String id) {
+        Stream stream = mStreams.get(id);
+        if (stream == null) {
+            stream = new Stream();
+            mStreams.put(id, stream);
+        }
+        return stream;
+    }
+
+    private void accrue(Stream stream, long nowMs) {
+        long pausedMs = Math.max(0, nowMs - stream.pausedAtMs);
+        mSavedBytes += stream.bytesPerMs * pausedMs;
+        mSavedDecodeMs += stream.decodeMsPerMs * pausedMs;
+        mPausedMs += pausedMs;
+    }
+
+    private static double smooth(double current, double sample) {
+        return current == 0 ? sample : current + SMOOTHING * (sample - current);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.rtcclient.media;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * How the camera is encoded: the spatial layers, each a fraction of the capture size with its own
+ * bitrate cap, and how many temporal layers each has. The SFU forwards each consumer the layers
+ * its link and tile call for, we encode once for everyone.
+ *
+ * Made from a scalability mode, e.g. "S3T3" for 3 simulcast streams of 3 temporal layers, and a
+ * ladder of "scaleResolutionDownBy:maxKbps" layers lowest first, e.g. "4:100,2:300,1:900". The
+ * mode takes the top layers of the ladder. An "L" mode asks for SVC, spatial layers in one stream
+ */
+public class SimulcastProfile {
+
+    /**
+     * 160x120, 320x240 and 640x480 when capturing at VGA
+     */
+    public static final String DEFAULT_LADDER = "4:100,2:300,1:900";
+    public static final String DEFAULT_MODE = "S3T3";
+
+    private static final Pattern MODE = Pattern.compile("([LS])([1-9])T([1-9])(_KEY)?");
+
+    public static class Layer {
+        public final double scaleResolutionDownBy;
+        public final int maxBitrateBps;
+
+        public Layer(double scaleResolutionDownBy, int maxBitrateBps) {
+            this.scaleResolutionDownBy = scaleResolutionDownBy;
+            this.maxBitrateBps = maxBitrateBps;
+        }
+
+        @Override
+        public String toString() {
+            return "1/" + scaleResolutionDownBy + "@" + (maxBitrateBps / 1000) + "kbps";
+        }
+    }
+
+    private final String mMode;
+    private final boolean mSvc;
+    private final List<Layer> mLayers;
+    private final int mTemporalLayers;
+
+    private SimulcastProfile(String mode, boolean svc, List<Layer> layers, int temporalLayers) {
+        mMode = mode;
+        mSvc = svc;
+        mLayers = Collections.unmodifiableList(layers);
+        mTemporalLayers = temporalLayers;
+    }
+
+    /**
+     * @throws IllegalArgumentException if either is malformed or the mode wants more spatial layers
+     * than the ladder has
+     */
+    public static SimulcastProfile parse(String mode, String ladder) {
+        Matcher matcher = MODE.matcher(mode == null ? "" : mode.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("bad scalability mode: " + mode);
+        }
+        int spatialLayers = Integer.parseInt(matcher.group(2));
+        int temporalLayers = Integer.parseInt(matcher.group(3));
+
+        List<Layer> layers = parseLadder(ladder);
+        if (spatialLayers > layers.size()) {
+            throw new IllegalArgumentException(mode + " needs " + spatialLayers + " layers, the ladder has " + layers.size());
+        }
+
+        return new SimulcastProfile(matcher.group(), matcher.group(1).equals("L"),
+                new ArrayList<>(layers.subList(layers.size() - spatialLayers, layers.size())), temporalLayers);
+    }
+
+    public static SimulcastProfile getDefault() {
+        return parse(DEFAULT_MODE, DEFAULT_LADDER);
+    }
+
+    /**
+     * @return spatial layers, lowest resolution first as the SFU numbers them
+     */
+    public List<Layer> getLayers() {
+        return mLayers;
+    }
+
+    public int getSpatialLayers() {
+        return mLayers.size();
+    }
+
+    public int getTemporalLayers() {
+        return mTemporalLayers;
+    }
+
+    public String getScalabilityMode() {
+        return mMode;
+    }
+
+    /**
+     * @return whether the spatial layers are meant to go in one stream rather than one each
+     */
+    public boolean isSvc() {
+        return mSvc;
+    }
+
+    /**
+     * @return whether there's nothing to layer, one stream of one temporal layer
+     */
+    public boolean isSingleLayer() {
+        return mLayers.size() == 1 && mTemporalLayers == 1;
+    }
+
+    @Override
+    public String toString() {
+        return mMode + " " + mLayers;
+    }
+
+    private static List<Layer> parseLadder(String ladder) {
+        List<Layer> layers = new ArrayList<>();
+        for (String step : (ladder == null ? "" : ladder).split(",")) {
+            String[] parts = step.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("bad layer: " + step);
+            }
+
+            double scale;
+            int maxKbps;
+            try {
+                scale = Double.parseDouble(parts[0].trim());
+                maxKbps = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad layer: " + step, e);
+            }
+            if (scale < 1 || maxKbps <= 0) {
+                throw new IllegalArgumentException("bad layer: " + step);
+            }
+            /**
+             * Each layer is bigger than the one before it
+             */
+            if (!layers.isEmpty() && scale >= layers.get(layers.size() - 1).scaleResolutionDownBy) {
+                throw new IllegalArgumentException("layers must go up in resolution: " + ladder);
+            }
+            layers.add(new Layer(scale, maxKbps * 1000));
+        }
+        return layers;
+    }
+}
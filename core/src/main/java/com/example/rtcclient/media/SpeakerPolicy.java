@@ -0,0 +1,195 @@
+package com.example.rtcclient.media;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Picks the peers whose video we keep resumed: the N loudest speakers. Everyone else's video stays
+ * paused, so downlink and decoding are bounded by N whatever the size of the room
+ *
+ * Levels are dBov, 0 is the loudest and SILENCE_DBOV nothing. They come from wherever we have them
+ * (the server's active speaker notifications, our own receive stats), a peer not heard from in
+ * STALE_MS is taken as silent. To keep the set from flapping a peer stays active for at least the
+ * hold time, and only makes way for a peer that is louder by the margin
+ *
+ * Not thread-safe, used from the worker
+ */
+public class SpeakerPolicy {
+
+    public static final double SILENCE_DBOV = -127;
+    public static final long DEFAULT_HOLD_MS = 3000;
+    public static final double DEFAULT_MARGIN_DB = 6;
+    static final long STALE_MS = 1500;
+    /**
+     * Weight of a new sample. Levels come a few times a second, this rides over single syllables
+     */
+    private static final double SMOOTHING = 0.4;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private static class Speaker {
+        double levelDbov = SILENCE_DBOV;
+        long heardAtMs = NEVER;
+        long activeSinceMs;
+    }
+
+    private final int mMaxActive;
+    private final long mHoldMs;
+    private final double mMarginDb;
+    private final Map<String, Speaker> mSpeakers = new HashMap<>();
+    private final Set<String> mActive = new LinkedHashSet<>();
+
+    public SpeakerPolicy(int maxActive) {
+        this(maxActive, DEFAULT_HOLD_MS, DEFAULT_MARGIN_DB);
+    }
+
+    /**
+     * @param maxActive most videos resumed at once
+     * @param holdMs least time a peer stays active once it is
+     * @param marginDb how much louder than the quietest active peer a peer has to be to replace it
+     */
+    public SpeakerPolicy(int maxActive, long holdMs, double marginDb) {
+        mMaxActive = Math.max(0, maxActive);
+        mHoldMs = holdMs;
+        mMarginDb = marginDb;
+    }
+
+    public void onAudioLevel(String peerId, double levelDbov, long nowMs) {
+        Speaker speaker = speaker(peerId);
+        double level = Math.max(SILENCE_DBOV, Math.min(0, levelDbov));
+        speaker.levelDbov = isStale(speaker, nowMs) ? level : speaker.levelDbov + SMOOTHING * (level - speaker.levelDbov);
+        speaker.heardAtMs = nowMs;
+    }
+
+    /**
+     * The peer left
+     */
+    public void remove(String peerId) {
+        mSpeakers.remove(peerId);
+        mActive.remove(peerId);
+    }
+
+    /**
+     * Work out the active set again
+     * @param candidates peers whose video we could show, in the order to prefer them when equally
+     * loud. Looked up a lot, a Set
+     * @return whether the active set changed
+     */
+    public boolean update(Collection<String> candidates, long nowMs) {
+        boolean changed = false;
+
+        for (Iterator<String> iterator = mActive.iterator(); iterator.hasNext(); ) {
+            if (!candidates.contains(iterator.next())) {
+                iterator.remove();
+                changed = true;
+            }
+        }
+
+        /**
+         * Free slots go to the loudest, or the first candidates in a quiet room
+         */
+        while (mActive.size() < mMaxActive) {
+            String loudest = loudestInactive(candidates, nowMs);
+            if (loudest == null) {
+                break;
+            }
+            activate(loudest, nowMs);
+            changed = true;
+        }
+
+        /**
+         * Each round swaps the quietest active peer that served its hold for the loudest waiting
+         */
+        for (int i = 0; i < mMaxActive; i++) {
+            String loudest = loudestInactive(candidates, nowMs);
+            String quietest = quietestReplaceable(nowMs);
+            if (loudest == null || quietest == null
+                    || level(loudest, nowMs) < level(quietest, nowMs) + mMarginDb) {
+                break;
+            }
+            mActive.remove(quietest);
+            activate(loudest, nowMs);
+            changed = true;
+        }
+        return changed;
+    }
+
+    public boolean isActive(String peerId) {
+        return mActive.contains(peerId);
+    }
+
+    public Set<String> getActive() {
+        return Collections.unmodifiableSet(mActive);
+    }
+
+    public int getMaxActive() {
+        return mMaxActive;
+    }
+
+    /**
+     * @return the smoothed level, SILENCE_DBOV if not heard lately
+     */
+    public double level(String peerId, long nowMs) {
+        Speaker speaker = mSpeakers.get(peerId);
+        return speaker == null || isStale(speaker, nowMs) ? SILENCE_DBOV : speaker.levelDbov;
+    }
+
+    public void clear() {
+        mSpeakers.clear();
+        mActive.clear();
+    }
+
+    private String loudestInactive(Collection<String> candidates, long nowMs) {
+        String loudest = null;
+        double loudestLevel = 0;
+        for (String peerId : candidates) {
+            if (mActive.contains(peerId)) {
+                continue;
+            }
+            double level = level(peerId, nowMs);
+            if (loudest == null || level > loudestLevel) {
+                loudest = peerId;
+                loudestLevel = level;
+            }
+        }
+        return loudest;
+    }
+
+    private String quietestReplaceable(long nowMs) {
+        String quietest = null;
+        double quietestLevel = 0;
+        for (String peerId : mActive) {
+            if (nowMs - speaker(peerId).activeSinceMs < mHoldMs) {
+                continue;
+            }
+            double level = level(peerId, nowMs);
+            if (quietest == null || level < quietestLevel) {
+                quietest = peerId;
+                quietestLevel = level;
+            }
+        }
+        return quietest;
+    }
+
+    private void activate(String peerId, long nowMs) {
+        mActive.add(peerId);
+        speaker(peerId).activeSinceMs = nowMs;
+    }
+
+    private Speaker speaker(String peerId) {
+        Speaker speaker = mSpeakers.get(peerId);
+        if (speaker == null) {
+            speaker = new Speaker();
+            mSpeakers.put(peerId, speaker);
+        }
+        return speaker;
+    }
+
+    private static boolean isStale(Speaker speaker, long nowMs) {
+        return speaker.heardAtMs == NEVER || nowMs - speaker.heardAtMs > STALE_MS;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.rtcclient.media;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A transport's getStats(), parsed once and read by AudioLevels and DecodeCounters. The report is
+ * an array of stats, or an object of them keyed by id
+ */
+public class StatsReport {
+
+    private final Map<String, JSONObject> mById = new LinkedHashMap<>();
+
+    private StatsReport() {
+    }
+
+    /**
+     * @return the stats, empty if there are none or the report is unreadable
+     */
+    public static StatsReport parse(String report) {
+        StatsReport parsed = new StatsReport();
+        if (report == null || report.isEmpty()) {
+            return parsed;
+        }
+
+        try {
+            if (report.trim().startsWith("[")) {
+                JSONArray stats = new JSONArray(report);
+                for (int i = 0; i < stats.length(); i++) {
+                    JSONObject entry = stats.optJSONObject(i);
+                    if (entry != null) {
+                        parsed.mById.put(entry.optString("id", String.valueOf(i)), entry);
+                    }
+                }
+            } else {
+                JSONObject stats = new JSONObject(report);
+                for (Iterator<String> ids = stats.keys(); ids.hasNext(); ) {
+                    String id = ids.next();
+                    JSONObject entry = stats.optJSONObject(id);
+                    if (entry != null) {
+                        parsed.mById.put(id, entry);
+                    }
+                }
+            }
+        } catch (JSONException e) {
+            parsed.mById.clear();
+        }
+        return parsed;
+    }
+
+    public Collection<JSONObject> getStats() {
+        return Collections.unmodifiableCollection(mById.values());
+    }
+
+    /**
+     * @return the stats with that id, null if there are none
+     */
+    public JSONObject get(String id) {
+        return mById.get(id);
+    }
+
+    public boolean isEmpty() {
+        return mById.isEmpty();
+    }
+
+    /**
+     * Older WebRTC names the track on the "track" stats that inbound-rtp points to with trackId,
+     * newer puts trackIdentifier on inbound-rtp itself
+     * @return the track id the stats are about, null if they name none
+     */
+    public String trackIdentifier(JSONObject stats) {
+        if (stats.has("trackIdentifier")) {
+            return stats.optString("trackIdentifier");
+        }
+
+        JSONObject track = mById.get(stats.optString("trackId"));
+        if (track == null || !track.has("trackIdentifier")) {
+            return null;
+        }
+        return track.optString("trackIdentifier");
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.rtcclient.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Decides which peers we consume video and audio from, so decoders, memory and downlink grow with
+ * the budget rather than with the room. A peer keeps its slot for as long as it sends, the free
+ * slots go to the peers that joined first. Pinned peers (the active speakers) always get a video
+ * slot. Not thread-safe, used from the worker
+ */
+public class ConsumerBudget {
+
+    private final int mMaxVideo;
+    private final int mMaxAudio;
+    private final Set<String> mVideo = new LinkedHashSet<>();
+    private final Set<String> mAudio = new LinkedHashSet<>();
+
+    /**
+     * @param maxVideo most video consumers at once, i.e. video decoders
+     * @param maxAudio most audio consumers at once
+     */
+    public ConsumerBudget(int maxVideo, int maxAudio) {
+        mMaxVideo = Math.max(0, maxVideo);
+        mMaxAudio = Math.max(0, maxAudio);
+    }
+
+    /**
+     * Hand out the slots again after the roster changed
+     * @param peers in the order they joined
+     * @return whether anyone got or lost a slot
+     */
+    public boolean update(Collection<Roster.Peer> peers) {
+        return update(peers, Collections.<String>emptySet());
+    }
+
+    /**
+     * @param pinned peers that get a video slot if they send video. When there's none free they take
+     * the one last handed to a peer that isn't pinned
+     */
+    public boolean update(Collection<Roster.Peer> peers, Set<String> pinned) {
+        boolean changed = release(mVideo, peers, true);
+        changed |= release(mAudio, peers, false);
+
+        for (Roster.Peer peer : peers) {
+            String peerId = peer.getId();
+            if (!pinned.contains(peerId) || !peer.isSendingVideo() || mVideo.contains(peerId)) {
+                continue;
+            }
+            if (mVideo.size() >= mMaxVideo) {
+                String unpinned = lastUnpinned(pinned);
+                if (unpinned == null) {
+                    continue;
+                }
+                mVideo.remove(unpinned);
+            }
+            mVideo.add(peerId);
+            changed = true;
+        }
+
+        for (Roster.Peer peer : peers) {
+            if (mVideo.size() < mMaxVideo && peer.isSendingVideo()) {
+                changed |= mVideo.add(peer.getId());
+            }
+            if (mAudio.size() < mMaxAudio && peer.isSendingAudio()) {
+                changed |= mAudio.add(peer.getId());
+            }
+        }
+        return changed;
+    }
+
+    public boolean hasVideo(String peerId) {
+        return mVideo.contains(peerId);
+    }
+
+    public boolean hasAudio(String peerId) {
+        return mAudio.contains(peerId);
+    }
+
+    /**
+     * @return peers holding a video slot, in the order they got it
+     */
+    public Set<String> getVideo() {
+        return Collections.unmodifiableSet(mVideo);
+    }
+
+    public Set<String> getAudio() {
+        return Collections.unmodifiableSet(mAudio);
+    }
+
+    public int getMaxVideo() {
+        return mMaxVideo;
+    }
+
+    public int getMaxAudio() {
+        return mMaxAudio;
+    }
+
+    public void clear() {
+        mVideo.clear();
+        mAudio.clear();
+    }
+
+    private String lastUnpinned(Set<String> pinned) {
+        String last = null;
+        for (String peerId : mVideo) {
+            if (!pinned.contains(peerId)) {
+                last = peerId;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Take the slot back from peers that left or stopped sending that kind
+     */
+    private static boolean release(Set<String> slots, Collection<Roster.Peer> peers, boolean video) {
+        if (slots.isEmpty()) {
+            return false;
+        }
+
+        Set<String> keep = new LinkedHashSet<>();
+        for (Roster.Peer peer : peers) {
+            if (slots.contains(peer.getId()) && (video ? peer.isSendingVideo() : peer.isSendingAudio())) {
+                keep.add(peer.getId());
+            }
+        }
+
+        boolean changed = false;
+        for (Iterator<String> iterator = slots.iterator(); iterator.hasNext(); ) {
+            if (!keep.contains(iterator.next())) {
+                iterator.remove();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.rtcclient.model;
+
+import java.security.SecureRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Peer ids in the format the mediasoup demo's client.js uses
+ */
+public final class PeerIds {
+
+    private PeerIds() {
+    }
+
+    /**
+     * Ported from client.js
+     * @return
+     */
+    public static String uuidv4() {
+        Pattern pattern = Pattern.compile("[018]");
+        Matcher matcher = pattern.matcher("111-111-1111");
+        StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            SecureRandom random = new SecureRandom();
+            byte[] bytes = new byte[1];
+            random.nextBytes(bytes);
+            matcher.appendReplacement(buffer, Integer.toString(bytes[0] & 15, 16));
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+}
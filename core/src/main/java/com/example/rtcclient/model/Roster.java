@@ -0,0 +1,187 @@
+package com.example.rtcclient.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Roster is our local copy of who is in the room and what they are sending. It is fed the "sync"
+ * replies (parsed by RosterParser) and reports what changed so the caller only does work for those peers
+ *
+ * A reply is one of
+ * - {"version": n, "unchanged": true} nothing to do
+ * - {"version": n, "delta": {"joined": {peerId: peer}, "updated": {peerId: peer}, "left": [peerId]}}
+ *   applied in O(changes)
+ * - {"version": n, "peers": {peerId: peer}} the full roster. Diffed against what we have, which is
+ *   also how servers that don't support deltas are handled
+ */
+public class Roster {
+
+    public static final String CAM_VIDEO = "cam-video";
+    public static final String CAM_AUDIO = "cam-audio";
+
+    public static class Peer {
+
+        private final String mId;
+        private boolean mSendingVideo;
+        private boolean mSendingAudio;
+        /**
+         * Last snapshot the peer was seen in
+         */
+        private int mSnapshot;
+
+        Peer(String id) {
+            mId = id;
+        }
+
+        public String getId() {
+            return mId;
+        }
+
+        public boolean isSendingVideo() {
+            return mSendingVideo;
+        }
+
+        public boolean isSendingAudio() {
+            return mSendingAudio;
+        }
+
+        public boolean isSending() {
+            return mSendingVideo || mSendingAudio;
+        }
+
+        /**
+         * @return true if the media changed
+         */
+        boolean update(boolean sendingVideo, boolean sendingAudio) {
+            boolean changed = mSendingVideo != sendingVideo || mSendingAudio != sendingAudio;
+            mSendingVideo = sendingVideo;
+            mSendingAudio = sendingAudio;
+            return changed;
+        }
+    }
+
+    public interface Listener {
+        void onPeerJoined(Peer peer);
+
+        void onPeerLeft(Peer peer);
+
+        void onPeerMediaChanged(Peer peer);
+    }
+
+    private final String mMyPeerId;
+    /**
+     * In the order they joined, which is the order the grid and the consumer budget go by
+     */
+    private final Map<String, Peer> mPeers = new LinkedHashMap<>();
+    private int mSnapshot;
+
+    /**
+     * @param myPeerId our own entry is never reported
+     */
+    public Roster(String myPeerId) {
+        mMyPeerId = myPeerId;
+    }
+
+    public Peer get(String peerId) {
+        return mPeers.get(peerId);
+    }
+
+    /**
+     * @return in the order they joined
+     */
+    public Collection<Peer> getPeers() {
+        return Collections.unmodifiableCollection(mPeers.values());
+    }
+
+    public void clear() {
+        mPeers.clear();
+    }
+
+    /**
+     * Apply a sync reply and report the changes to the listener
+     */
+    public void apply(RosterUpdate update, Listener listener) {
+        if (update == null) {
+            return;
+        }
+
+        switch (update.getKind()) {
+            case DELTA:
+                for (int i = 0; i < update.getLeftCount(); i++) {
+                    remove(update.getLeftId(i), listener);
+                }
+                for (int i = 0; i < update.getPeerCount(); i++) {
+                    put(update, i, listener);
+                }
+                break;
+            case SNAPSHOT:
+                applySnapshot(update, listener);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void applySnapshot(RosterUpdate update, Listener listener) {
+        int snapshot = ++mSnapshot;
+
+        for (int i = 0; i < update.getPeerCount(); i++) {
+            Peer peer = put(update, i, listener);
+            if (peer != null) {
+                peer.mSnapshot = snapshot;
+            }
+        }
+
+        List<String> left = null;
+        for (Peer peer : mPeers.values()) {
+            if (peer.mSnapshot != snapshot) {
+                if (left == null) {
+                    left = new ArrayList<>();
+                }
+                left.add(peer.mId);
+            }
+        }
+        if (left != null) {
+            for (String peerId : left) {
+                remove(peerId, listener);
+            }
+        }
+    }
+
+    /**
+     * Add or update a peer. A "joined" for a peer we already have (i.e. it left and came back
+     * between two syncs) is treated as an update
+     * @return the peer, null for our own entry
+     */
+    private Peer put(RosterUpdate update, int index, Listener listener) {
+        String peerId = update.getPeerId(index);
+        if (peerId.equals(mMyPeerId)) {
+            return null;
+        }
+
+        boolean sendingVideo = update.isSendingVideo(index);
+        boolean sendingAudio = update.isSendingAudio(index);
+
+        Peer peer = mPeers.get(peerId);
+        if (peer == null) {
+            peer = new Peer(peerId);
+            peer.update(sendingVideo, sendingAudio);
+            mPeers.put(peerId, peer);
+            listener.onPeerJoined(peer);
+        } else if (peer.update(sendingVideo, sendingAudio)) {
+            listener.onPeerMediaChanged(peer);
+        }
+        return peer;
+    }
+
+    private void remove(String peerId, Listener listener) {
+        Peer peer = mPeers.remove(peerId);
+        if (peer != null) {
+            listener.onPeerLeft(peer);
+        }
+    }
+}
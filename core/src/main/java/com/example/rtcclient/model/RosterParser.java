@@ -0,0 +1,420 @@
+package com.example.rtcclient.model;
+
+import org.json.JSONException;
+
+import java.nio.charset.Charset;
+
+/**
+ * RosterParser reads a sync reply (see Roster) straight from the response bytes into a RosterUpdate
+ * in one forward pass. No tree is built: keys are compared in place, values we don't use are skipped
+ * and our own peer is dropped before its id is ever turned into a String. Peer ids of the peers in
+ * the reply are the only allocations
+ *
+ * Not thread-safe. Use one parser per thread (or per request)
+ */
+public class RosterParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] VERSION = bytes("version");
+    private static final byte[] UNCHANGED = bytes("unchanged");
+    private static final byte[] DELTA = bytes("delta");
+    private static final byte[] PEERS = bytes("peers");
+    private static final byte[] JOINED = bytes("joined");
+    private static final byte[] UPDATED = bytes("updated");
+    private static final byte[] LEFT = bytes("left");
+    private static final byte[] MEDIA = bytes("media");
+    private static final byte[] CAM_VIDEO = bytes(Roster.CAM_VIDEO);
+    private static final byte[] CAM_AUDIO = bytes(Roster.CAM_AUDIO);
+
+    private final byte[] mMyPeerId;
+
+    private byte[] mData;
+    private int mPos;
+    private int mEnd;
+    /**
+     * Bounds of the last string read, quotes excluded
+     */
+    private int mStringStart;
+    private int mStringEnd;
+    private boolean mStringEscaped;
+    private boolean mSendingVideo;
+    private boolean mSendingAudio;
+
+    /**
+     * @param myPeerId our own entry is skipped
+     */
+    public RosterParser(String myPeerId) {
+        mMyPeerId = bytes(myPeerId);
+    }
+
+    /**
+     * @param into cleared first
+     * @throws JSONException on malformed input. into is left half filled
+     */
+    public void parse(byte[] data, int offset, int length, RosterUpdate into) throws JSONException {
+        mData = data;
+        mPos = offset;
+        mEnd = offset + length;
+        into.clear();
+        into.setSizeBytes(length);
+
+        try {
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    readString();
+                    expect(':');
+
+                    if (keyIs(VERSION)) {
+                        into.setVersion(readLong());
+                    } else if (keyIs(DELTA) && peek() == '{') {
+                        into.setKind(RosterUpdate.Kind.DELTA);
+                        readDelta(into);
+                    } else if (keyIs(PEERS) && peek() == '{') {
+                        into.setKind(RosterUpdate.Kind.SNAPSHOT);
+                        readPeers(into);
+                    } else {
+                        /**
+                         * "unchanged" included, it is the default Kind
+                         */
+                        skipValue();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+        } finally {
+            mData = null;
+        }
+    }
+
+    private void readDelta(RosterUpdate into) throws JSONException {
+        expect('{');
+        if (consume('}')) {
+            return;
+        }
+
+        do {
+            readString();
+            expect(':');
+
+            if ((keyIs(JOINED) || keyIs(UPDATED)) && peek() == '{') {
+                readPeers(into);
+            } else if (keyIs(LEFT) && peek() == '[') {
+                readLeft(into);
+            } else {
+                skipValue();
+            }
+        } while (consume(','));
+        expect('}');
+    }
+
+    /**
+     * {peerId: {"media": {...}, ...}, ...}
+     */
+    private void readPeers(RosterUpdate into) throws JSONException {
+        expect('{');
+        if (consume('}')) {
+            return;
+        }
+
+        do {
+            readString();
+            expect(':');
+
+            if (isMe()) {
+                skipValue();
+                continue;
+            }
+
+            String peerId = stringValue();
+            readPeer();
+            into.addPeer(peerId, mSendingVideo, mSendingAudio);
+        } while (consume(','));
+        expect('}');
+    }
+
+    private void readPeer() throws JSONException {
+        mSendingVideo = false;
+        mSendingAudio = false;
+
+        if (peek() != '{') {
+            skipValue();
+            return;
+        }
+
+        expect('{');
+        if (consume('}')) {
+            return;
+        }
+
+        do {
+            readString();
+            expect(':');
+
+            if (keyIs(MEDIA) && peek() == '{') {
+                readMedia();
+            } else {
+                skipValue();
+            }
+        } while (consume(','));
+        expect('}');
+    }
+
+    /**
+     * A track counts as sent when its tag maps to an object, same as Roster always did
+     */
+    private void readMedia() throws JSONException {
+        expect('{');
+        if (consume('}')) {
+            return;
+        }
+
+        do {
+            readString();
+            expect(':');
+
+            boolean video = keyIs(CAM_VIDEO);
+            boolean audio = !video && keyIs(CAM_AUDIO);
+            boolean isObject = peek() == '{';
+            skipValue();
+
+            if (video) {
+                mSendingVideo = isObject;
+            } else if (audio) {
+                mSendingAudio = isObject;
+            }
+        } while (consume(','));
+        expect('}');
+    }
+
+    private void readLeft(RosterUpdate into) throws JSONException {
+        expect('[');
+        if (consume(']')) {
+            return;
+        }
+
+        do {
+            if (peek() != '"') {
+                skipValue();
+                continue;
+            }
+            readString();
+            if (!isMe()) {
+                into.addLeft(stringValue());
+            }
+        } while (consume(','));
+        expect(']');
+    }
+
+    //region Tokens
+
+    private byte peek() throws JSONException {
+        skipWhitespace();
+        if (mPos >= mEnd) {
+            throw syntaxError("unexpected end");
+        }
+        return mData[mPos];
+    }
+
+    private boolean consume(char c) throws JSONException {
+        if (peek() == c) {
+            mPos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) throws JSONException {
+        if (!consume(c)) {
+            throw syntaxError("expected '" + c + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (mPos < mEnd) {
+            byte b = mData[mPos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            mPos++;
+        }
+    }
+
+    /**
+     * Finds the string's bounds without decoding it
+     */
+    private void readString() throws JSONException {
+        expect('"');
+        mStringStart = mPos;
+        mStringEscaped = false;
+
+        while (mPos < mEnd) {
+            byte b = mData[mPos];
+            if (b == '"') {
+                mStringEnd = mPos++;
+                return;
+            }
+            if (b == '\\') {
+                mStringEscaped = true;
+                mPos++;
+            }
+            mPos++;
+        }
+
+        throw syntaxError("unterminated string");
+    }
+
+    private boolean keyIs(byte[] key) {
+        if (mStringEscaped) {
+            return stringValue().equals(new String(key, UTF_8));
+        }
+        return spanEquals(key);
+    }
+
+    private boolean isMe() {
+        return keyIs(mMyPeerId);
+    }
+
+    private boolean spanEquals(byte[] bytes) {
+        if (mStringEnd - mStringStart != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (mData[mStringStart + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the last string read, decoded
+     */
+    private String stringValue() {
+        if (!mStringEscaped) {
+            return new String(mData, mStringStart, mStringEnd - mStringStart, UTF_8);
+        }
+
+        /**
+         * Rare enough (ids are uuids) that the slow path can allocate
+         */
+        StringBuilder builder = new StringBuilder();
+        int start = mStringStart;
+        int i = mStringStart;
+
+        while (i < mStringEnd) {
+            if (mData[i] != '\\') {
+                i++;
+                continue;
+            }
+
+            builder.append(new String(mData, start, i - start, UTF_8));
+            byte escaped = mData[i + 1];
+            i += 2;
+
+            switch (escaped) {
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'n': builder.append('\n'); break;
+                case 'r': builder.append('\r'); break;
+                case 't': builder.append('\t'); break;
+                case 'u':
+                    builder.append((char) Integer.parseInt(new String(mData, i, 4, UTF_8), 16));
+                    i += 4;
+                    break;
+                default: builder.append((char) escaped); break;
+            }
+            start = i;
+        }
+
+        builder.append(new String(mData, start, mStringEnd - start, UTF_8));
+        return builder.toString();
+    }
+
+    private long readLong() throws JSONException {
+        skipWhitespace();
+
+        boolean negative = mPos < mEnd && mData[mPos] == '-';
+        if (negative) {
+            mPos++;
+        }
+
+        int start = mPos;
+        long value = 0;
+        while (mPos < mEnd && mData[mPos] >= '0' && mData[mPos] <= '9') {
+            value = value * 10 + (mData[mPos++] - '0');
+        }
+
+        if (mPos == start) {
+            throw syntaxError("expected a number");
+        }
+        if (mPos < mEnd && (mData[mPos] == '.' || mData[mPos] == 'e' || mData[mPos] == 'E')) {
+            /**
+             * Versions are integers. Ignore a fraction rather than fail
+             */
+            skipValue();
+        }
+
+        return negative ? -value : value;
+    }
+
+    private void skipValue() throws JSONException {
+        byte b = peek();
+
+        if (b == '"') {
+            readString();
+        } else if (b == '{' || b == '[') {
+            skipNested();
+        } else {
+            /**
+             * Number, true, false or null
+             */
+            int start = mPos;
+            while (mPos < mEnd) {
+                b = mData[mPos];
+                if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                    break;
+                }
+                mPos++;
+            }
+            if (mPos == start) {
+                throw syntaxError("expected a value");
+            }
+        }
+    }
+
+    /**
+     * Skips an object or array by counting brackets, strings are stepped over so brackets inside them
+     * don't count
+     */
+    private void skipNested() throws JSONException {
+        int depth = 0;
+
+        while (mPos < mEnd) {
+            byte b = mData[mPos];
+            if (b == '"') {
+                readString();
+                continue;
+            }
+            mPos++;
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && --depth == 0) {
+                return;
+            }
+        }
+
+        throw syntaxError("unterminated " + (depth > 0 ? "object or array" : "value"));
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at " + mPos);
+    }
+
+    //endregion Tokens
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(UTF_8);
+    }
+}
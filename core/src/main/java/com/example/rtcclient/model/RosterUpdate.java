@@ -0,0 +1,199 @@
+package com.example.rtcclient.model;
+
+/**
+ * RosterUpdate is a parsed sync reply, flattened to what Roster needs: the version plus, per peer, its
+ * id and whether it sends video/audio. Instances are pooled like android.os.Message. obtain() one,
+ * fill it and recycle() it once applied so steady polling doesn't allocate
+ *
+ * Joined and updated peers of a delta are not told apart, Roster treats both as upserts
+ */
+public class RosterUpdate {
+
+    public enum Kind {
+        /**
+         * Nothing changed since the version we sent
+         */
+        UNCHANGED,
+        /**
+         * Only the peers that changed
+         */
+        DELTA,
+        /**
+         * The whole roster
+         */
+        SNAPSHOT
+    }
+
+    public static final long NO_VERSION = -1;
+
+    private static final int MAX_POOL_SIZE = 4;
+    private static final Object sPoolLock = new Object();
+    private static RosterUpdate sPool;
+    private static int sPoolSize;
+
+    private RosterUpdate mNext;
+
+    private Kind mKind = Kind.UNCHANGED;
+    private long mVersion = NO_VERSION;
+    private int mSizeBytes = -1;
+    private String[] mPeerIds = new String[8];
+    private boolean[] mSendingVideo = new boolean[8];
+    private boolean[] mSendingAudio = new boolean[8];
+    private int mPeerCount;
+    private String[] mLeft = new String[4];
+    private int mLeftCount;
+
+    /**
+     * @return an empty update, from the pool when possible
+     */
+    public static RosterUpdate obtain() {
+        synchronized (sPoolLock) {
+            if (sPool != null) {
+                RosterUpdate update = sPool;
+                sPool = update.mNext;
+                update.mNext = null;
+                sPoolSize--;
+                return update;
+            }
+        }
+        return new RosterUpdate();
+    }
+
+    /**
+     * Hand the update back to the pool. It must not be used afterwards
+     */
+    public void recycle() {
+        clear();
+        synchronized (sPoolLock) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                mNext = sPool;
+                sPool = this;
+                sPoolSize++;
+            }
+        }
+    }
+
+    public void clear() {
+        mKind = Kind.UNCHANGED;
+        mVersion = NO_VERSION;
+        mSizeBytes = -1;
+        /**
+         * Drop the ids so a pooled update doesn't keep them alive. The arrays stay
+         */
+        for (int i = 0; i < mPeerCount; i++) {
+            mPeerIds[i] = null;
+        }
+        for (int i = 0; i < mLeftCount; i++) {
+            mLeft[i] = null;
+        }
+        mPeerCount = 0;
+        mLeftCount = 0;
+    }
+
+    public Kind getKind() {
+        return mKind;
+    }
+
+    public void setKind(Kind kind) {
+        mKind = kind;
+    }
+
+    /**
+     * @return NO_VERSION if the server doesn't version its roster
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public boolean hasVersion() {
+        return mVersion != NO_VERSION;
+    }
+
+    public void setVersion(long version) {
+        mVersion = version;
+    }
+
+    /**
+     * @return length of the reply it was parsed from, -1 if unknown
+     */
+    public int getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    public void setSizeBytes(int sizeBytes) {
+        mSizeBytes = sizeBytes;
+    }
+
+    public int getPeerCount() {
+        return mPeerCount;
+    }
+
+    public String getPeerId(int index) {
+        return mPeerIds[index];
+    }
+
+    public boolean isSendingVideo(int index) {
+        return mSendingVideo[index];
+    }
+
+    public boolean isSendingAudio(int index) {
+        return mSendingAudio[index];
+    }
+
+    public int getLeftCount() {
+        return mLeftCount;
+    }
+
+    public String getLeftId(int index) {
+        return mLeft[index];
+    }
+
+    /**
+     * @return the same for two updates listing the same peers sending the same media, in any order
+     */
+    public int contentHash() {
+        int hash = mKind.ordinal();
+        for (int i = 0; i < mPeerCount; i++) {
+            hash += mPeerIds[i].hashCode() * 4 + (mSendingVideo[i] ? 2 : 0) + (mSendingAudio[i] ? 1 : 0);
+        }
+        for (int i = 0; i < mLeftCount; i++) {
+            hash += 31 * mLeft[i].hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * A peer that joined, changed or, for a SNAPSHOT, is in the room
+     */
+    public void addPeer(String peerId, boolean sendingVideo, boolean sendingAudio) {
+        if (mPeerCount == mPeerIds.length) {
+            int capacity = mPeerCount * 2;
+            mPeerIds = copyOf(mPeerIds, capacity);
+            mSendingVideo = copyOf(mSendingVideo, capacity);
+            mSendingAudio = copyOf(mSendingAudio, capacity);
+        }
+        mPeerIds[mPeerCount] = peerId;
+        mSendingVideo[mPeerCount] = sendingVideo;
+        mSendingAudio[mPeerCount] = sendingAudio;
+        mPeerCount++;
+    }
+
+    public void addLeft(String peerId) {
+        if (mLeftCount == mLeft.length) {
+            mLeft = copyOf(mLeft, mLeftCount * 2);
+        }
+        mLeft[mLeftCount++] = peerId;
+    }
+
+    private static String[] copyOf(String[] array, int capacity) {
+        String[] copy = new String[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static boolean[] copyOf(boolean[] array, int capacity) {
+        boolean[] copy = new boolean[capacity];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+}
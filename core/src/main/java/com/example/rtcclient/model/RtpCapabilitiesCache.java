@@ -0,0 +1,100 @@
+package com.example.rtcclient.model;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The router RTP capabilities each server answered the last join with. They hardly ever change,
+ * so the Device can be loaded from here while join-as-new-peer is in flight and only reloaded if
+ * the answer differs. Entries carry a SHA-256 of the capabilities, a truncated or mangled one is
+ * treated as missing
+ */
+public class RtpCapabilitiesCache {
+
+    /**
+     * Where entries are kept, e.g. SharedPreferences
+     */
+    public interface Store {
+
+        /**
+         * @return null if there's nothing under key
+         */
+        String get(String key);
+
+        void put(String key, String value);
+
+        void remove(String key);
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char SEPARATOR = '\n';
+
+    private final Store mStore;
+
+    public RtpCapabilitiesCache(Store store) {
+        mStore = store;
+    }
+
+    /**
+     * @param host the signaling server, capabilities belong to its router
+     * @return null if none were stored or the entry is damaged
+     */
+    public String get(String host) {
+        String entry = mStore.get(host);
+        if (entry == null) {
+            return null;
+        }
+
+        int separator = entry.indexOf(SEPARATOR);
+        if (separator < 0) {
+            mStore.remove(host);
+            return null;
+        }
+
+        String capabilities = entry.substring(separator + 1);
+        if (!entry.substring(0, separator).equals(digest(capabilities))) {
+            mStore.remove(host);
+            return null;
+        }
+        return capabilities;
+    }
+
+    /**
+     * Writes only when they changed
+     * @return true if they differ from what was stored for host
+     */
+    public boolean put(String host, String capabilities) {
+        String digest = digest(capabilities);
+        String entry = mStore.get(host);
+        if (entry != null && entry.startsWith(digest + SEPARATOR)) {
+            return false;
+        }
+
+        mStore.put(host, digest + SEPARATOR + capabilities);
+        return true;
+    }
+
+    public void remove(String host) {
+        mStore.remove(host);
+    }
+
+    /**
+     * @return hex SHA-256 of the UTF-8 bytes
+     */
+    static String digest(String capabilities) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(capabilities.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            /**
+             * Every JVM and Android version has SHA-256
+             */
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.rtcclient.network;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BatchRequest groups several signaling operations so they go out in one round trip. The server
+ * runs them in the order they were added and answers each one at the same position, so an
+ * operation may depend on one added before it (i.e. create-transport after join-as-new-peer)
+ *
+ * On the wire
+ * - request  {"requests": [{"path": "create-transport", "params": {...}}, ...]}
+ * - response {"responses": [{"data": {...}}, {"error": "reason"}, ...]}
+ */
+public class BatchRequest {
+
+    public static final String PATH = "batch";
+    /**
+     * Stands in for a failed operation inside Rx streams, which don't allow nulls
+     */
+    public static final JSONObject FAILED = new JSONObject();
+
+    private final List<String> mPaths = new ArrayList<>();
+    private final List<JSONObject> mParams = new ArrayList<>();
+
+    public BatchRequest add(String path, JSONObject params) {
+        mPaths.add(path);
+        mParams.add(params);
+        return this;
+    }
+
+    public int size() {
+        return mPaths.size();
+    }
+
+    public String getPath(int index) {
+        return mPaths.get(index);
+    }
+
+    public JSONObject getParams(int index) {
+        return mParams.get(index);
+    }
+
+    public JSONObject toJson() {
+        JSONArray requests = new JSONArray();
+        JSONObject body = new JSONObject();
+
+        try {
+            for (int i = 0; i < size(); i++) {
+                requests.put(new JSONObject().put("path", mPaths.get(i)).put("params", mParams.get(i)));
+            }
+            body.put("requests", requests);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        return body;
+    }
+
+    /**
+     * Demultiplex a batch response
+     * @param response the server's answer, null if the whole batch failed
+     * @return one entry per operation in order. null for operations that failed
+     */
+    public List<JSONObject> parseResponses(JSONObject response) {
+        List<JSONObject> results = new ArrayList<>(size());
+        JSONArray responses = response != null ? response.optJSONArray("responses") : null;
+
+        for (int i = 0; i < size(); i++) {
+            JSONObject entry = responses != null ? responses.optJSONObject(i) : null;
+            results.add(entry != null && !entry.has("error") ? entry.optJSONObject("data") : null);
+        }
+
+        return results;
+    }
+
+    /**
+     * @return the responses with FAILED replaced by null
+     */
+    public static List<JSONObject> withNulls(List<JSONObject> responses) {
+        List<JSONObject> results = new ArrayList<>(responses.size());
+        for (JSONObject response : responses) {
+            results.add(response == FAILED ? null : response);
+        }
+        return results;
+    }
+
+    /**
+     * @return as many nulls as there are operations, for when the batch couldn't be sent at all
+     */
+    public List<JSONObject> failed() {
+        return parseResponses(null);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.rtcclient.network;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Parameters of the requests RoomClient sends, built the same way whatever the transport. Kept out
+ * of RoomClient so they can be built (and benchmarked) without Android or mediasoup
+ */
+public final class SignalingRequests {
+
+    public static final String SEND_TRACK = "send-track";
+    public static final String RECV_TRACK = "recv-track";
+    public static final String CONNECT_TRANSPORT = "connect-transport";
+
+    private SignalingRequests() {
+    }
+
+    /**
+     * @param rtpParameters as the send transport hands them over
+     */
+    public static JSONObject sendTrack(String transportId, String kind, String rtpParameters) throws JSONException {
+        JSONObject params = new JSONObject();
+        params.putOpt("transportId", transportId);
+        params.putOpt("kind", kind);
+        params.putOpt("rtpParameters", new JSONObject(rtpParameters));
+        params.putOpt("paused", false);
+        params.putOpt("appData", new JSONObject().put("mediaTag", kind.equals("video") ? "cam-video" : "cam-audio"));
+        return params;
+    }
+
+    public static JSONObject connectTransport(String transportId, String dtlsParameters) throws JSONException {
+        JSONObject params = new JSONObject();
+        params.putOpt("transportId", transportId);
+        params.putOpt("dtlsParameters", new JSONObject(dtlsParameters));
+        return params;
+    }
+
+    public static JSONObject recvTrack(JSONObject rtpCapabilities, String mediaTag, String mediaPeerId) throws JSONException {
+        JSONObject params = new JSONObject();
+        params.putOpt("rtpCapabilities", rtpCapabilities);
+        params.putOpt("mediaTag", mediaTag);
+        params.putOpt("mediaPeerId", mediaPeerId);
+        return params;
+    }
+
+    /**
+     * All signaling should send peer id
+     * @return data
+     */
+    public static JSONObject withPeerId(JSONObject data, String peerId) {
+        try {
+            data.putOpt("peerId", peerId);
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return data;
+    }
+
+    /**
+     * withPeerId() for every operation in the batch
+     * @return batch
+     */
+    public static BatchRequest withPeerId(BatchRequest batch, String peerId) {
+        for (int i = 0; i < batch.size(); i++) {
+            withPeerId(batch.getParams(i), peerId);
+        }
+        return batch;
+    }
+}
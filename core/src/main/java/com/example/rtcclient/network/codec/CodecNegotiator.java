@@ -0,0 +1,27 @@
+package com.example.rtcclient.network.codec;
+
+/**
+ * Remembers which codec an HTTP server answers in so request bodies can follow. Starts with JSON,
+ * which any server can read
+ */
+public class CodecNegotiator {
+
+    private volatile SignalingCodec mCodec = SignalingCodecs.JSON;
+
+    /**
+     * @return the codec to encode the next request body with
+     */
+    public SignalingCodec getRequestCodec() {
+        return mCodec;
+    }
+
+    /**
+     * @param contentType of a successful response
+     * @return the codec to decode that response with
+     */
+    public SignalingCodec onResponse(String contentType) {
+        SignalingCodec codec = SignalingCodecs.forContentType(contentType);
+        mCodec = codec;
+        return codec;
+    }
+}
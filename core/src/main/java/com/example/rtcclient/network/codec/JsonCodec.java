@@ -0,0 +1,39 @@
+package com.example.rtcclient.network.codec;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+
+/**
+ * Plain JSON text, what every server understands
+ */
+public class JsonCodec implements SignalingCodec {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override
+    public String getContentType() {
+        return "application/json";
+    }
+
+    @Override
+    public String getSubprotocol() {
+        return "protoo";
+    }
+
+    @Override
+    public boolean isBinary() {
+        return false;
+    }
+
+    @Override
+    public byte[] encode(JSONObject message) {
+        return message.toString().getBytes(UTF_8);
+    }
+
+    @Override
+    public JSONObject decode(byte[] data, int offset, int length) throws JSONException {
+        return new JSONObject(new String(data, offset, length, UTF_8));
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.rtcclient.network.codec;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * MessagePack (https://msgpack.org) for the JSON subset signaling uses: maps with string keys, arrays,
+ * strings, integers, doubles, booleans and null. Integers take the smallest encoding that fits, so
+ * ssrcs, payload types and the like are 1 to 5 bytes instead of their decimal digits plus separators
+ *
+ * Stateless, one instance can be shared between threads
+ */
+public class MessagePackCodec implements SignalingCodec {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override
+    public String getContentType() {
+        return "application/msgpack";
+    }
+
+    @Override
+    public String getSubprotocol() {
+        return "protoo.msgpack";
+    }
+
+    @Override
+    public boolean isBinary() {
+        return true;
+    }
+
+    @Override
+    public byte[] encode(JSONObject message) throws JSONException {
+        Writer writer = new Writer();
+        writer.writeValue(message);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public JSONObject decode(byte[] data, int offset, int length) throws JSONException {
+        Reader reader = new Reader(data, offset, offset + length);
+        Object value = reader.readValue();
+
+        if (!(value instanceof JSONObject)) {
+            throw new JSONException("expected a map at the top level");
+        }
+        if (reader.mPos != reader.mEnd) {
+            throw new JSONException("trailing bytes at " + reader.mPos);
+        }
+        return (JSONObject) value;
+    }
+
+    //region Encoding
+
+    private static class Writer {
+
+        private byte[] mBuffer = new byte[256];
+        private int mSize;
+
+        void writeValue(Object value) throws JSONException {
+            if (value == null || value == JSONObject.NULL) {
+                writeByte(0xc0);
+            } else if (value instanceof JSONObject) {
+                writeMap((JSONObject) value);
+            } else if (value instanceof JSONArray) {
+                writeArray((JSONArray) value);
+            } else if (value instanceof String) {
+                writeString((String) value);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? 0xc3 : 0xc2);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                writeLong(((Number) value).longValue());
+            } else if (value instanceof Number) {
+                writeDouble(((Number) value).doubleValue());
+            } else {
+                writeString(value.toString());
+            }
+        }
+
+        private void writeMap(JSONObject map) throws JSONException {
+            int size = map.length();
+            if (size < 16) {
+                writeByte(0x80 | size);
+            } else if (size < 0x10000) {
+                writeByte(0xde);
+                writeShort(size);
+            } else {
+                writeByte(0xdf);
+                writeInt(size);
+            }
+
+            for (Iterator<String> it = map.keys(); it.hasNext(); ) {
+                String key = it.next();
+                writeString(key);
+                writeValue(map.get(key));
+            }
+        }
+
+        private void writeArray(JSONArray array) throws JSONException {
+            int size = array.length();
+            if (size < 16) {
+                writeByte(0x90 | size);
+            } else if (size < 0x10000) {
+                writeByte(0xdc);
+                writeShort(size);
+            } else {
+                writeByte(0xdd);
+                writeInt(size);
+            }
+
+            for (int i = 0; i < size; i++) {
+                writeValue(array.get(i));
+            }
+        }
+
+        private void writeString(String string) {
+            byte[] bytes = string.getBytes(UTF_8);
+            int size = bytes.length;
+
+            if (size < 32) {
+                writeByte(0xa0 | size);
+            } else if (size < 0x100) {
+                writeByte(0xd9);
+                writeByte(size);
+            } else if (size < 0x10000) {
+                writeByte(0xda);
+                writeShort(size);
+            } else {
+                writeByte(0xdb);
+                writeInt(size);
+            }
+
+            ensure(size);
+            System.arraycopy(bytes, 0, mBuffer, mSize, size);
+            mSize += size;
+        }
+
+        private void writeLong(long value) {
+            if (value >= 0) {
+                if (value < 0x80) {
+                    writeByte((int) value);
+                } else if (value < 0x100) {
+                    writeByte(0xcc);
+                    writeByte((int) value);
+                } else if (value < 0x10000) {
+                    writeByte(0xcd);
+                    writeShort((int) value);
+                } else if (value < 0x100000000L) {
+                    writeByte(0xce);
+                    writeInt((int) value);
+                } else {
+                    writeByte(0xcf);
+                    writeInt((int) (value >>> 32));
+                    writeInt((int) value);
+                }
+            } else {
+                if (value >= -32) {
+                    writeByte((int) value & 0xff);
+                } else if (value >= Byte.MIN_VALUE) {
+                    writeByte(0xd0);
+                    writeByte((int) value & 0xff);
+                } else if (value >= Short.MIN_VALUE) {
+                    writeByte(0xd1);
+                    writeShort((int) value);
+                } else if (value >= Integer.MIN_VALUE) {
+                    writeByte(0xd2);
+                    writeInt((int) value);
+                } else {
+                    writeByte(0xd3);
+                    writeInt((int) (value >>> 32));
+                    writeInt((int) value);
+                }
+            }
+        }
+
+        private void writeDouble(double value) {
+            long bits = Double.doubleToLongBits(value);
+            writeByte(0xcb);
+            writeInt((int) (bits >>> 32));
+            writeInt((int) bits);
+        }
+
+        private void writeByte(int b) {
+            ensure(1);
+            mBuffer[mSize++] = (byte) b;
+        }
+
+        private void writeShort(int s) {
+            ensure(2);
+            mBuffer[mSize++] = (byte) (s >>> 8);
+            mBuffer[mSize++] = (byte) s;
+        }
+
+        private void writeInt(int i) {
+            ensure(4);
+            mBuffer[mSize++] = (byte) (i >>> 24);
+            mBuffer[mSize++] = (byte) (i >>> 16);
+            mBuffer[mSize++] = (byte) (i >>> 8);
+            mBuffer[mSize++] = (byte) i;
+        }
+
+        private void ensure(int extra) {
+            if (mSize + extra > mBuffer.length) {
+                mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mSize + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBuffer, mSize);
+        }
+    }
+
+    //endregion Encoding
+
+    //region Decoding
+
+    private static class Reader {
+
+        private final byte[] mData;
+        private final int mEnd;
+        private int mPos;
+
+        Reader(byte[] data, int offset, int end) {
+            mData = data;
+            mPos = offset;
+            mEnd = end;
+        }
+
+        Object readValue() throws JSONException {
+            int b = readByte();
+
+            if (b <= 0x7f) {
+                return b;
+            }
+            if (b >= 0xe0) {
+                return (int) (byte) b;
+            }
+            if ((b & 0xf0) == 0x80) {
+                return readMap(b & 0x0f);
+            }
+            if ((b & 0xf0) == 0x90) {
+                return readArray(b & 0x0f);
+            }
+            if ((b & 0xe0) == 0xa0) {
+                return readString(b & 0x1f);
+            }
+
+            switch (b) {
+                case 0xc0: return JSONObject.NULL;
+                case 0xc2: return false;
+                case 0xc3: return true;
+                case 0xca: return (double) Float.intBitsToFloat(readInt());
+                case 0xcb: return Double.longBitsToDouble(readLong());
+                case 0xcc: return readByte();
+                case 0xcd: return readShort();
+                case 0xce: return number(readInt() & 0xffffffffL);
+                case 0xcf: return number(readLong());
+                case 0xd0: return (int) (byte) readByte();
+                case 0xd1: return (int) (short) readShort();
+                case 0xd2: return readInt();
+                case 0xd3: return number(readLong());
+                case 0xd9: return readString(readByte());
+                case 0xda: return readString(readShort());
+                case 0xdb: return readString(readLength());
+                case 0xdc: return readArray(readShort());
+                case 0xdd: return readArray(readLength());
+                case 0xde: return readMap(readShort());
+                case 0xdf: return readMap(readLength());
+                default:
+                    /**
+                     * bin and ext have no JSON counterpart
+                     */
+                    throw new JSONException("unsupported type 0x" + Integer.toHexString(b) + " at " + (mPos - 1));
+            }
+        }
+
+        private JSONObject readMap(int size) throws JSONException {
+            JSONObject map = new JSONObject();
+            for (int i = 0; i < size; i++) {
+                Object key = readValue();
+                if (!(key instanceof String)) {
+                    throw new JSONException("map keys must be strings");
+                }
+                map.put((String) key, readValue());
+            }
+            return map;
+        }
+
+        private JSONArray readArray(int size) throws JSONException {
+            JSONArray array = new JSONArray();
+            for (int i = 0; i < size; i++) {
+                array.put(readValue());
+            }
+            return array;
+        }
+
+        private String readString(int size) throws JSONException {
+            require(size);
+            String string = new String(mData, mPos, size, UTF_8);
+            mPos += size;
+            return string;
+        }
+
+        /**
+         * Same types org.json gives for parsed integers
+         */
+        private static Object number(long value) {
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        }
+
+        private int readLength() throws JSONException {
+            int length = readInt();
+            if (length < 0) {
+                throw new JSONException("length too large at " + mPos);
+            }
+            return length;
+        }
+
+        private int readByte() throws JSONException {
+            require(1);
+            return mData[mPos++] & 0xff;
+        }
+
+        private int readShort() throws JSONException {
+            require(2);
+            int s = ((mData[mPos] & 0xff) << 8) | (mData[mPos + 1] & 0xff);
+            mPos += 2;
+            return s;
+        }
+
+        private int readInt() throws JSONException {
+            require(4);
+            int i = ((mData[mPos] & 0xff) << 24) | ((mData[mPos + 1] & 0xff) << 16)
+                    | ((mData[mPos + 2] & 0xff) << 8) | (mData[mPos + 3] & 0xff);
+            mPos += 4;
+            return i;
+        }
+
+        private long readLong() throws JSONException {
+            long high = readInt() & 0xffffffffL;
+            long low = readInt() & 0xffffffffL;
+            return (high << 32) | low;
+        }
+
+        private void require(int size) throws JSONException {
+            if (size > mEnd - mPos) {
+                throw new JSONException("unexpected end at " + mPos);
+            }
+        }
+    }
+
+    //endregion Decoding
+}
@@ -0,0 +1,30 @@
+package com.example.rtcclient.network.codec;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * How signaling messages are put on the wire. Messages stay JSONObjects in the app, a codec only
+ * changes their encoding. See SignalingCodecs for the ones we have and how they are negotiated
+ */
+public interface SignalingCodec {
+
+    /**
+     * @return the HTTP Content-Type, i.e. "application/json"
+     */
+    String getContentType();
+
+    /**
+     * @return the WebSocket sub-protocol, i.e. "protoo"
+     */
+    String getSubprotocol();
+
+    /**
+     * @return true if frames must go out as binary WebSocket frames
+     */
+    boolean isBinary();
+
+    byte[] encode(JSONObject message) throws JSONException;
+
+    JSONObject decode(byte[] data, int offset, int length) throws JSONException;
+}
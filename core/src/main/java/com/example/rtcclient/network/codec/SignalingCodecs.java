@@ -0,0 +1,81 @@
+package com.example.rtcclient.network.codec;
+
+/**
+ * The codecs we speak, most preferred first, and how the server picks one
+ * - HTTP: requests carry "Accept" with every codec. The first request body is JSON, once a response
+ *   comes back in another codec the following requests are sent in it too (see CodecNegotiator)
+ * - WebSocket: every codec's sub-protocol is offered in "Sec-WebSocket-Protocol" and the one the server
+ *   accepts is used for the life of the socket
+ *
+ * A server that knows nothing about this answers in JSON / accepts "protoo" and nothing changes
+ */
+public final class SignalingCodecs {
+
+    public static final SignalingCodec JSON = new JsonCodec();
+    public static final SignalingCodec MSGPACK = new MessagePackCodec();
+
+    private static final SignalingCodec[] OFFERED = {MSGPACK, JSON};
+
+    private SignalingCodecs() {
+    }
+
+    /**
+     * @return the "Accept" header value
+     */
+    public static String accept() {
+        StringBuilder accept = new StringBuilder();
+        for (SignalingCodec codec : OFFERED) {
+            if (accept.length() > 0) {
+                accept.append(", ");
+            }
+            accept.append(codec.getContentType());
+        }
+        return accept.toString();
+    }
+
+    /**
+     * @return the "Sec-WebSocket-Protocol" header value
+     */
+    public static String subprotocols() {
+        StringBuilder protocols = new StringBuilder();
+        for (SignalingCodec codec : OFFERED) {
+            if (protocols.length() > 0) {
+                protocols.append(", ");
+            }
+            protocols.append(codec.getSubprotocol());
+        }
+        return protocols.toString();
+    }
+
+    /**
+     * @param contentType a response's Content-Type, parameters (i.e. charset) allowed
+     * @return JSON for anything we don't know
+     */
+    public static SignalingCodec forContentType(String contentType) {
+        if (contentType != null) {
+            int end = contentType.indexOf(';');
+            String mimeType = (end >= 0 ? contentType.substring(0, end) : contentType).trim();
+            for (SignalingCodec codec : OFFERED) {
+                if (codec.getContentType().equalsIgnoreCase(mimeType)) {
+                    return codec;
+                }
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * @param subprotocol the sub-protocol the server accepted
+     * @return JSON for anything we don't know
+     */
+    public static SignalingCodec forSubprotocol(String subprotocol) {
+        if (subprotocol != null) {
+            for (SignalingCodec codec : OFFERED) {
+                if (codec.getSubprotocol().equals(subprotocol.trim())) {
+                    return codec;
+                }
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.rtcclient.network.metrics;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, payload sizes and outcomes of the calls to one signaling endpoint
+ */
+public class EndpointMetrics {
+
+    /**
+     * Latencies are kept in microseconds up to an hour, sizes in bytes up to 16MB
+     */
+    static final long MAX_LATENCY_US = TimeUnit.HOURS.toMicros(1);
+    static final long MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+    private final String mPath;
+    private final Histogram mLatencyUs = new Histogram(MAX_LATENCY_US);
+    private final Histogram mRequestBytes = new Histogram(MAX_PAYLOAD_BYTES);
+    private final Histogram mResponseBytes = new Histogram(MAX_PAYLOAD_BYTES);
+    private final AtomicLong mCalls = new AtomicLong();
+    private final AtomicLong mErrors = new AtomicLong();
+    private final AtomicLong mTimeouts = new AtomicLong();
+    private final AtomicLong mCancelled = new AtomicLong();
+    private final AtomicInteger mInFlight = new AtomicInteger();
+    private final AtomicInteger mMaxInFlight = new AtomicInteger();
+
+    EndpointMetrics(String path) {
+        mPath = path;
+    }
+
+    public String getPath() {
+        return mPath;
+    }
+
+    /**
+     * @param requestBytes -1 if unknown, nothing is recorded then
+     * @return ends exactly once, whatever is called on it after that is ignored
+     */
+    public Call start(long nowNs, int requestBytes) {
+        mCalls.incrementAndGet();
+        int inFlight = mInFlight.incrementAndGet();
+
+        while (true) {
+            int max = mMaxInFlight.get();
+            if (inFlight <= max || mMaxInFlight.compareAndSet(max, inFlight)) {
+                break;
+            }
+        }
+
+        if (requestBytes >= 0) {
+            mRequestBytes.record(requestBytes);
+        }
+        return new Call(nowNs);
+    }
+
+    /**
+     * Counts and histograms back to zero. Calls in flight still end in the new counts
+     */
+    public void reset() {
+        mLatencyUs.reset();
+        mRequestBytes.reset();
+        mResponseBytes.reset();
+        mCalls.set(0);
+        mErrors.set(0);
+        mTimeouts.set(0);
+        mCancelled.set(0);
+        mMaxInFlight.set(mInFlight.get());
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(mPath, mCalls.get(), mErrors.get(), mTimeouts.get(), mCancelled.get(),
+                mInFlight.get(), mMaxInFlight.get(),
+                mLatencyUs.snapshot(), mRequestBytes.snapshot(), mResponseBytes.snapshot());
+    }
+
+    /**
+     * One call to the endpoint
+     */
+    public class Call {
+
+        private final long mStartNs;
+        private final AtomicBoolean mEnded = new AtomicBoolean();
+
+        Call(long startNs) {
+            mStartNs = startNs;
+        }
+
+        /**
+         * @param responseBytes -1 if unknown, nothing is recorded then
+         */
+        public void succeed(long nowNs, int responseBytes) {
+            if (end(nowNs)) {
+                if (responseBytes >= 0) {
+                    mResponseBytes.record(responseBytes);
+                }
+            }
+        }
+
+        /**
+         * @param timedOut the deadline passed, as opposed to the server or the transport failing
+         */
+        public void fail(long nowNs, boolean timedOut) {
+            if (end(nowNs)) {
+                (timedOut ? mTimeouts : mErrors).incrementAndGet();
+            }
+        }
+
+        /**
+         * The caller stopped waiting. Not a latency sample, the call didn't finish
+         */
+        public void cancel() {
+            if (mEnded.compareAndSet(false, true)) {
+                mInFlight.decrementAndGet();
+                mCancelled.incrementAndGet();
+            }
+        }
+
+        private boolean end(long nowNs) {
+            if (!mEnded.compareAndSet(false, true)) {
+                return false;
+            }
+            mInFlight.decrementAndGet();
+            mLatencyUs.record(TimeUnit.NANOSECONDS.toMicros(nowNs - mStartNs));
+            return true;
+        }
+    }
+
+    /**
+     * An endpoint's metrics at one point in time. Latencies include failed calls
+     */
+    public static class Snapshot {
+
+        private final String mPath;
+        private final long mCalls;
+        private final long mErrors;
+        private final long mTimeouts;
+        private final long mCancelled;
+        private final int mInFlight;
+        private final int mMaxInFlight;
+        private final Histogram.Snapshot mLatencyUs;
+        private final Histogram.Snapshot mRequestBytes;
+        private final Histogram.Snapshot mResponseBytes;
+
+        Snapshot(String path, long calls, long errors, long timeouts, long cancelled, int inFlight, int maxInFlight,
+                 Histogram.Snapshot latencyUs, Histogram.Snapshot requestBytes, Histogram.Snapshot responseBytes) {
+            mPath = path;
+            mCalls = calls;
+            mErrors = errors;
+            mTimeouts = timeouts;
+            mCancelled = cancelled;
+            mInFlight = inFlight;
+            mMaxInFlight = maxInFlight;
+            mLatencyUs = latencyUs;
+            mRequestBytes = requestBytes;
+            mResponseBytes = responseBytes;
+        }
+
+        public String getPath() {
+            return mPath;
+        }
+
+        /**
+         * @return calls started, including the ones still in flight
+         */
+        public long getCalls() {
+            return mCalls;
+        }
+
+        /**
+         * @return calls the server or the transport failed, timeouts not included
+         */
+        public long getErrors() {
+            return mErrors;
+        }
+
+        public long getTimeouts() {
+            return mTimeouts;
+        }
+
+        /**
+         * @return calls the caller gave up on before they ended
+         */
+        public long getCancelled() {
+            return mCancelled;
+        }
+
+        public int getInFlight() {
+            return mInFlight;
+        }
+
+        /**
+         * @return most calls in flight at once since the last reset
+         */
+        public int getMaxInFlight() {
+            return mMaxInFlight;
+        }
+
+        public Histogram.Snapshot getLatencyUs() {
+            return mLatencyUs;
+        }
+
+        public Histogram.Snapshot getRequestBytes() {
+            return mRequestBytes;
+        }
+
+        public Histogram.Snapshot getResponseBytes() {
+            return mResponseBytes;
+        }
+
+        /**
+         * For shipping to a metrics backend
+         */
+        public JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                    .put("path", mPath)
+                    .put("calls", mCalls)
+                    .put("errors", mErrors)
+                    .put("timeouts", mTimeouts)
+                    .put("cancelled", mCancelled)
+                    .put("inFlight", mInFlight)
+                    .put("maxInFlight", mMaxInFlight)
+                    .put("latencyUs", toJson(mLatencyUs))
+                    .put("requestBytes", toJson(mRequestBytes))
+                    .put("responseBytes", toJson(mResponseBytes));
+        }
+
+        private static JSONObject toJson(Histogram.Snapshot histogram) throws JSONException {
+            return new JSONObject()
+                    .put("count", histogram.getCount())
+                    .put("mean", histogram.getMean())
+                    .put("p50", histogram.getPercentile(50))
+                    .put("p90", histogram.getPercentile(90))
+                    .put("p99", histogram.getPercentile(99))
+                    .put("max", histogram.getMax());
+        }
+
+        @Override
+        public String toString() {
+            return mPath + ": calls=" + mCalls + " errors=" + mErrors + " timeouts=" + mTimeouts
+                    + " cancelled=" + mCancelled + " inFlight=" + mInFlight + "(max=" + mMaxInFlight + ")"
+                    + " latencyUs(" + mLatencyUs + ") requestBytes(" + mRequestBytes + ")"
+                    + " responseBytes(" + mResponseBytes + ")";
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.rtcclient.network.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-precision histogram in the style of HdrHistogram: values below 32 get a bucket each and
+ * every power of two above that is split into 16 buckets, so any value is reported within 1/16 of
+ * what was recorded while everything up to 2^32 fits in under 500 buckets. record() is a couple
+ * of atomic adds and never allocates, so it can sit on any thread
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    private final long mMaxValue;
+    private final AtomicLongArray mCounts;
+    private final AtomicLong mSum = new AtomicLong();
+
+    /**
+     * @param maxValue anything larger is recorded as maxValue
+     */
+    public Histogram(long maxValue) {
+        mMaxValue = maxValue;
+        mCounts = new AtomicLongArray(indexOf(maxValue) + 1);
+    }
+
+    /**
+     * Negative values are recorded as 0
+     */
+    public void record(long value) {
+        long clamped = Math.min(Math.max(value, 0), mMaxValue);
+        mCounts.incrementAndGet(indexOf(clamped));
+        mSum.addAndGet(clamped);
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+        }
+        mSum.set(0);
+    }
+
+    /**
+     * Copies the counts, recording isn't held up. Values recorded meanwhile may or may not be in it
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[mCounts.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+        return new Snapshot(counts, total, mSum.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int top = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF + (top - HALF);
+    }
+
+    /**
+     * @return the largest value that lands in the bucket
+     */
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long top = (index - SUB_BUCKETS) % HALF + HALF;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * @return the smallest value that lands in the bucket
+     */
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        long top = (index - SUB_BUCKETS) % HALF + HALF;
+        return top << shift;
+    }
+
+    /**
+     * A histogram's counts at one point in time
+     */
+    public static class Snapshot {
+
+        private final long[] mCounts;
+        private final long mCount;
+        private final long mSum;
+
+        Snapshot(long[] counts, long count, long sum) {
+            mCounts = counts;
+            mCount = count;
+            mSum = sum;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return 0 when empty
+         */
+        public long getMean() {
+            return mCount == 0 ? 0 : mSum / mCount;
+        }
+
+        /**
+         * @return the smallest value recorded, rounded down to its bucket. 0 when empty
+         */
+        public long getMin() {
+            for (int i = 0; i < mCounts.length; i++) {
+                if (mCounts[i] > 0) {
+                    return lowestValueAt(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return the largest value recorded, rounded up to its bucket. 0 when empty
+         */
+        public long getMax() {
+            for (int i = mCounts.length - 1; i >= 0; i--) {
+                if (mCounts[i] > 0) {
+                    return highestValueAt(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @param percentile 0 to 100
+         * @return the value that percentile of the recorded values are at or below, rounded up to its
+         * bucket. 0 when empty
+         */
+        public long getPercentile(double percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * mCount));
+            long seen = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                seen += mCounts[i];
+                if (seen >= rank) {
+                    return highestValueAt(i);
+                }
+            }
+            return getMax();
+        }
+
+        @Override
+        public String toString() {
+            return "n=" + mCount + " p50=" + getPercentile(50) + " p90=" + getPercentile(90)
+                    + " p99=" + getPercentile(99) + " max=" + getMax();
+        }
+    }
+}
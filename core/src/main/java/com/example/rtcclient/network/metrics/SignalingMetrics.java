@@ -0,0 +1,53 @@
+package com.example.rtcclient.network.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-endpoint metrics for a signaling client, created the first time an endpoint is called.
+ * Recording is lock-free and snapshots copy a few kilobytes per endpoint, so the app can poll it
+ * as often as it likes
+ */
+public class SignalingMetrics {
+
+    private final ConcurrentMap<String, EndpointMetrics> mEndpoints = new ConcurrentHashMap<>();
+
+    public EndpointMetrics endpoint(String path) {
+        EndpointMetrics endpoint = mEndpoints.get(path);
+        if (endpoint == null) {
+            /**
+             * No computeIfAbsent() before API 24
+             */
+            EndpointMetrics created = new EndpointMetrics(path);
+            endpoint = mEndpoints.putIfAbsent(path, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    /**
+     * @return every endpoint called so far, by path
+     */
+    public List<EndpointMetrics.Snapshot> snapshot() {
+        List<EndpointMetrics.Snapshot> snapshots = new ArrayList<>(mEndpoints.size());
+        for (EndpointMetrics endpoint : mEndpoints.values()) {
+            snapshots.add(endpoint.snapshot());
+        }
+        Collections.sort(snapshots, (a, b) -> a.getPath().compareTo(b.getPath()));
+        return snapshots;
+    }
+
+    /**
+     * e.g. after exporting a snapshot, so the next one only covers what happened since
+     */
+    public void reset() {
+        for (EndpointMetrics endpoint : mEndpoints.values()) {
+            endpoint.reset();
+        }
+    }
+}
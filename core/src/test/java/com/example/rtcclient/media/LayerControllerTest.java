@@ -0,0 +1,104 @@
+package com.example.rtcclient.media;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LayerControllerTest {
+
+    private static final long PLENTY = Long.MAX_VALUE;
+
+    @Test
+    public void smallTileGetsTheLayerThatCoversIt() {
+        LayerController layers = new LayerController(PLENTY);
+        layers.add("c1", 3);
+        layers.setTile("c1", 300, 200);
+
+        // Nothing to go on before the first frame
+        assertTrue(layers.update().isEmpty());
+
+        layers.onFrameSize("c1", 640, 480);
+        assertEquals(Collections.singletonMap("c1", 1), layers.update());
+        assertTrue(layers.update().isEmpty());
+
+        // 160x120 is too small for either side
+        layers.setTile("c1", 150, 130);
+        assertTrue(layers.update().isEmpty());
+        assertEquals(1, layers.getPreferred("c1"));
+        layers.setTile("c1", 150, 100);
+        assertEquals(Collections.singletonMap("c1", 0), layers.update());
+
+        layers.setTile("c1", 1080, 720);
+        assertEquals(Collections.singletonMap("c1", 2), layers.update());
+    }
+
+    @Test
+    public void portraitSendersAreMatchedToPortraitTiles() {
+        LayerController layers = new LayerController(PLENTY);
+        layers.add("c1", 3);
+        layers.setTile("c1", 200, 300);
+
+        layers.onFrameSize("c1", 480, 640);
+        assertEquals(Collections.singletonMap("c1", 1), layers.update());
+    }
+
+    @Test
+    public void lowerLayersDontShrinkTheSendersSize() {
+        LayerController layers = new LayerController(PLENTY);
+        layers.add("c1", 3);
+        layers.setTile("c1", 300, 200);
+        layers.onFrameSize("c1", 640, 480);
+        layers.update();
+
+        // Layer 1 frames come in now, the sender is still 640x480
+        layers.onFrameSize("c1", 320, 240);
+        assertTrue(layers.update().isEmpty());
+        assertEquals(1, layers.getPreferred("c1"));
+    }
+
+    @Test
+    public void decoderBudgetStepsTheBiggestDown() {
+        LayerController layers = new LayerController(2 * 640 * 480);
+        for (String id : new String[] {"a", "b", "c"}) {
+            layers.add(id, 3);
+            layers.setTile(id, 600, 400);
+            layers.onFrameSize(id, 640, 480);
+        }
+
+        // All three want 640x480, the budget is two of those
+        Map<String, Integer> preferred = layers.update();
+        assertEquals(3, preferred.size());
+        assertEquals(1, layers.getPreferred("a"));
+        assertEquals(1, layers.getPreferred("b"));
+        assertEquals(2, layers.getPreferred("c"));
+
+        // Paused streams don't decode, their share goes to the others
+        layers.setPlaying("a", false);
+        assertEquals(Collections.singletonMap("b", 2), layers.update());
+        assertEquals(1, layers.getPreferred("a"));
+    }
+
+    @Test
+    public void singleLayerProducersAreLeftAlone() {
+        LayerController layers = new LayerController(PLENTY);
+        layers.add("c1", 1);
+        layers.setTile("c1", 100, 100);
+        layers.onFrameSize("c1", 640, 480);
+
+        assertTrue(layers.update().isEmpty());
+        assertEquals(LayerController.NONE, layers.getPreferred("c1"));
+    }
+
+    @Test
+    public void layersAreReadFromTheRtpParameters() {
+        assertEquals(3, LayerController.spatialLayersOf("{\"encodings\": [{\"ssrc\": 1, \"scalabilityMode\": \"S3T3\"}]}"));
+        assertEquals(2, LayerController.spatialLayersOf("{\"encodings\": [{\"ssrc\": 1}, {\"ssrc\": 2}]}"));
+        assertEquals(1, LayerController.spatialLayersOf("{\"encodings\": [{\"ssrc\": 1, \"scalabilityMode\": \"L1T3\"}]}"));
+        assertEquals(1, LayerController.spatialLayersOf("{}"));
+        assertEquals(1, LayerController.spatialLayersOf("{not json"));
+    }
+}
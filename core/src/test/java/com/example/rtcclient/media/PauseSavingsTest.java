@@ -0,0 +1,79 @@
+package com.example.rtcclient.media;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PauseSavingsTest {
+
+    @Test
+    public void pauseSavesWhatTheStreamCostBefore() {
+        PauseSavings savings = new PauseSavings();
+
+        // 100 KB/s and 5 ms of decoding a second
+        for (long nowMs = 0; nowMs <= 2000; nowMs += 500) {
+            savings.onStats("c1", new DecodeCounters(nowMs * 100, nowMs * 0.005, nowMs / 33), nowMs);
+        }
+        savings.setPaused("c1", true, 2000);
+
+        // Counters stand still while paused, that's not a new rate
+        savings.onStats("c1", new DecodeCounters(200000, 10, 60), 3000);
+        assertEquals(100000, savings.getSavedBytes(3000));
+        assertEquals(5, savings.getSavedDecodeMs(3000));
+
+        savings.setPaused("c1", false, 12000);
+        assertEquals(1000000, savings.getSavedBytes(20000));
+        assertEquals(50, savings.getSavedDecodeMs(20000));
+        assertEquals(10000, savings.getPausedMs(20000));
+    }
+
+    @Test
+    public void resumedStreamStartsANewBaseline() {
+        PauseSavings savings = new PauseSavings();
+        savings.onStats("c1", new DecodeCounters(0, 0, 0), 0);
+        savings.onStats("c1", new DecodeCounters(1000, 1, 30), 1000);
+        savings.setPaused("c1", true, 1000);
+        savings.setPaused("c1", false, 2000);
+
+        // Had the baseline been kept, a second of pause would halve the rate
+        savings.onStats("c1", new DecodeCounters(1000, 1, 30), 2000);
+        savings.onStats("c1", new DecodeCounters(2000, 2, 60), 3000);
+        savings.setPaused("c1", true, 3000);
+        assertEquals(1000 + 1000, savings.getSavedBytes(4000));
+    }
+
+    @Test
+    public void closedStreamsKeepTheirSavings() {
+        PauseSavings savings = new PauseSavings();
+        savings.onStats("c1", new DecodeCounters(0, Double.NaN, 0), 0);
+        savings.onStats("c1", new DecodeCounters(500, Double.NaN, 0), 500);
+        savings.setPaused("c1", true, 500);
+
+        savings.remove("c1", 1500);
+        assertEquals(1000, savings.getSavedBytes(5000));
+        assertEquals(0, savings.getSavedDecodeMs(5000));
+        assertEquals(1000, savings.getPausedMs(5000));
+        assertTrue(savings.describe(5000).contains("1.0 s paused"));
+    }
+
+    @Test
+    public void countersAreReadPerVideoTrack() {
+        // Older WebRTC names the track through trackId
+        String report = "{\"RTCInboundRTPVideoStream_1\": {\"id\": \"RTCInboundRTPVideoStream_1\", \"type\": \"inbound-rtp\", \"kind\": \"video\","
+                + " \"trackId\": \"RTCMediaStreamTrack_receiver_3\", \"bytesReceived\": 4096, \"framesDecoded\": 90, \"totalDecodeTime\": 0.25},"
+                + "\"RTCMediaStreamTrack_receiver_3\": {\"type\": \"track\", \"kind\": \"video\", \"trackIdentifier\": \"v1\", \"remoteSource\": true},"
+                + "\"RTCInboundRTPVideoStream_2\": {\"type\": \"inbound-rtp\", \"kind\": \"video\", \"trackIdentifier\": \"v2\", \"bytesReceived\": 10},"
+                + "\"RTCInboundRTPAudioStream_3\": {\"type\": \"inbound-rtp\", \"kind\": \"audio\", \"trackIdentifier\": \"a1\", \"bytesReceived\": 10}}";
+
+        Map<String, DecodeCounters> counters = DecodeCounters.fromStats(StatsReport.parse(report));
+        assertEquals(2, counters.size());
+        assertEquals(4096, counters.get("v1").bytesReceived);
+        assertEquals(250, counters.get("v1").decodeMs, 0.001);
+        assertEquals(90, counters.get("v1").framesDecoded);
+        assertTrue(Double.isNaN(counters.get("v2").decodeMs));
+        assertTrue(StatsReport.parse("{not json").isEmpty());
+    }
+}
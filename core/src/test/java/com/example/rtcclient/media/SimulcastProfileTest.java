@@ -0,0 +1,56 @@
+package com.example.rtcclient.media;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SimulcastProfileTest {
+
+    @Test
+    public void defaultIsThreeSimulcastLayers() {
+        SimulcastProfile profile = SimulcastProfile.getDefault();
+
+        assertEquals(3, profile.getSpatialLayers());
+        assertEquals(3, profile.getTemporalLayers());
+        assertFalse(profile.isSvc());
+        assertEquals(4, profile.getLayers().get(0).scaleResolutionDownBy, 0);
+        assertEquals(100000, profile.getLayers().get(0).maxBitrateBps);
+        assertEquals(1, profile.getLayers().get(2).scaleResolutionDownBy, 0);
+        assertEquals(900000, profile.getLayers().get(2).maxBitrateBps);
+    }
+
+    @Test
+    public void modeTakesTheTopOfTheLadder() {
+        SimulcastProfile profile = SimulcastProfile.parse("S2T1", "4:100,2:300,1:900");
+        assertEquals(2, profile.getSpatialLayers());
+        assertEquals(300000, profile.getLayers().get(0).maxBitrateBps);
+        assertEquals(900000, profile.getLayers().get(1).maxBitrateBps);
+
+        SimulcastProfile single = SimulcastProfile.parse("L1T1", SimulcastProfile.DEFAULT_LADDER);
+        assertTrue(single.isSingleLayer());
+        assertFalse(SimulcastProfile.parse("L1T3", SimulcastProfile.DEFAULT_LADDER).isSingleLayer());
+        assertTrue(SimulcastProfile.parse("L3T3_KEY", SimulcastProfile.DEFAULT_LADDER).isSvc());
+    }
+
+    @Test
+    public void badSettingsAreRejected() {
+        String[][] bad = {
+                {"S3", SimulcastProfile.DEFAULT_LADDER},
+                {"S4T3", SimulcastProfile.DEFAULT_LADDER},
+                {"S1T1", "1:900,2:300"},
+                {"S1T1", "0.5:900"},
+                {"S1T1", "1:fast"},
+                {null, SimulcastProfile.DEFAULT_LADDER},
+        };
+        for (String[] settings : bad) {
+            try {
+                SimulcastProfile.parse(settings[0], settings[1]);
+                fail(settings[0] + " " + settings[1]);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.rtcclient.media;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpeakerPolicyTest {
+
+    private static final Set<String> ROOM = new LinkedHashSet<>(Arrays.asList("a", "b", "c", "d", "e"));
+
+    @Test
+    public void quietRoomShowsTheFirstCandidates() {
+        SpeakerPolicy policy = new SpeakerPolicy(2);
+
+        assertTrue(policy.update(ROOM, 1000));
+        assertEquals(set("a", "b"), policy.getActive());
+        assertFalse(policy.update(ROOM, 1500));
+    }
+
+    @Test
+    public void louderSpeakerTakesOverAfterTheHold() {
+        SpeakerPolicy policy = new SpeakerPolicy(2, 3000, 6);
+        long nowMs = 1000;
+        policy.update(ROOM, nowMs);
+
+        // d talks right away, a and b are still within their hold
+        for (; nowMs < 3500; nowMs += 250) {
+            policy.onAudioLevel("d", -20, nowMs);
+            policy.onAudioLevel("a", -40, nowMs);
+            assertFalse(policy.update(ROOM, nowMs));
+        }
+
+        for (; nowMs < 4500; nowMs += 250) {
+            policy.onAudioLevel("d", -20, nowMs);
+            policy.onAudioLevel("a", -40, nowMs);
+            policy.update(ROOM, nowMs);
+        }
+        assertEquals(set("a", "d"), policy.getActive());
+    }
+
+    @Test
+    public void closeLevelsDontFlap() {
+        SpeakerPolicy policy = new SpeakerPolicy(1, 0, 6);
+        long nowMs = 1000;
+        policy.update(ROOM, nowMs);
+
+        // b is a bit louder than a most of the time, never by the margin
+        Map<String, Double> levels = new HashMap<>();
+        int changes = 0;
+        for (int i = 0; i < 200; i++, nowMs += 200) {
+            levels.put("a", -30.0 + (i % 3));
+            levels.put("b", -28.0 - (i % 2));
+            for (Map.Entry<String, Double> level : levels.entrySet()) {
+                policy.onAudioLevel(level.getKey(), level.getValue(), nowMs);
+            }
+            if (policy.update(ROOM, nowMs)) {
+                changes++;
+            }
+        }
+        assertEquals(0, changes);
+        assertEquals(set("a"), policy.getActive());
+    }
+
+    @Test
+    public void silencedSpeakerGoesStale() {
+        SpeakerPolicy policy = new SpeakerPolicy(1, 0, 6);
+        policy.onAudioLevel("c", -10, 1000);
+        policy.update(ROOM, 1000);
+        assertEquals(set("c"), policy.getActive());
+
+        policy.onAudioLevel("e", -35, 1000 + SpeakerPolicy.STALE_MS + 1);
+        assertEquals(SpeakerPolicy.SILENCE_DBOV, policy.level("c", 1000 + SpeakerPolicy.STALE_MS + 1), 0);
+        assertTrue(policy.update(ROOM, 1000 + SpeakerPolicy.STALE_MS + 1));
+        assertEquals(set("e"), policy.getActive());
+    }
+
+    @Test
+    public void leftPeersMakeRoom() {
+        SpeakerPolicy policy = new SpeakerPolicy(2);
+        policy.update(ROOM, 1000);
+
+        policy.remove("a");
+        Set<String> room = new LinkedHashSet<>(ROOM);
+        room.remove("a");
+        assertTrue(policy.update(room, 1000));
+        assertEquals(set("b", "c"), policy.getActive());
+    }
+
+    @Test
+    public void statsLevelsAreReadPerTrack() {
+        String report = "[{\"type\": \"track\", \"kind\": \"audio\", \"trackIdentifier\": \"t1\", \"remoteSource\": true, \"audioLevel\": 0.5},"
+                + "{\"type\": \"track\", \"kind\": \"audio\", \"trackIdentifier\": \"mic\", \"remoteSource\": false, \"audioLevel\": 0.9},"
+                + "{\"type\": \"inbound-rtp\", \"kind\": \"video\", \"trackIdentifier\": \"v1\"},"
+                + "{\"type\": \"inbound-rtp\", \"kind\": \"audio\", \"trackIdentifier\": \"t2\", \"audioLevel\": 0}]";
+
+        Map<String, Double> levels = AudioLevels.fromStats(report);
+        assertEquals(new HashSet<>(Arrays.asList("t1", "t2")), levels.keySet());
+        assertEquals(-6.02, AudioLevels.toDbov(levels.get("t1")), 0.01);
+        assertEquals(SpeakerPolicy.SILENCE_DBOV, AudioLevels.toDbov(levels.get("t2")), 0);
+        assertTrue(AudioLevels.fromStats("{not json").isEmpty());
+    }
+
+    private static Set<String> set(String... peerIds) {
+        return new HashSet<>(Arrays.asList(peerIds));
+    }
+}
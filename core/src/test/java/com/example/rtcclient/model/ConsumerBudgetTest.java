@@ -0,0 +1,97 @@
+package com.example.rtcclient.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConsumerBudgetTest {
+
+    @Test
+    public void slotsGoToThePeersThatJoinedFirst() {
+        List<Roster.Peer> peers = room(50);
+        ConsumerBudget budget = new ConsumerBudget(4, 9);
+
+        assertTrue(budget.update(peers));
+        assertEquals(Arrays.asList("p0", "p1", "p2", "p3"), new ArrayList<>(budget.getVideo()));
+        assertEquals(9, budget.getAudio().size());
+        assertFalse(budget.hasVideo("p4"));
+        assertTrue(budget.hasAudio("p8"));
+
+        assertFalse(budget.update(peers));
+    }
+
+    @Test
+    public void slotHoldersKeepTheirSlot() {
+        List<Roster.Peer> peers = room(6);
+        ConsumerBudget budget = new ConsumerBudget(3, 3);
+        budget.update(peers);
+
+        // p1 stops its camera, p3 is next in line
+        peers.get(1).update(false, true);
+        assertTrue(budget.update(peers));
+        assertEquals(Arrays.asList("p0", "p2", "p3"), new ArrayList<>(budget.getVideo()));
+        assertTrue(budget.hasAudio("p1"));
+
+        // p1 comes back, everyone is still there so it waits
+        peers.get(1).update(true, true);
+        assertFalse(budget.update(peers));
+        assertFalse(budget.hasVideo("p1"));
+
+        // p0 leaves, p1 is first in line again
+        peers.remove(0);
+        assertTrue(budget.update(peers));
+        assertEquals(Arrays.asList("p2", "p3", "p1"), new ArrayList<>(budget.getVideo()));
+        assertEquals(Arrays.asList("p1", "p2", "p3"), new ArrayList<>(budget.getAudio()));
+    }
+
+    @Test
+    public void silentPeersTakeNoSlot() {
+        List<Roster.Peer> peers = room(3);
+        peers.get(0).update(false, false);
+        peers.get(1).update(false, true);
+
+        ConsumerBudget budget = new ConsumerBudget(2, 0);
+        budget.update(peers);
+
+        assertEquals(Arrays.asList("p2"), new ArrayList<>(budget.getVideo()));
+        assertTrue(budget.getAudio().isEmpty());
+    }
+
+    @Test
+    public void pinnedPeersTakeTheLastSlotHandedOut() {
+        List<Roster.Peer> peers = room(10);
+        ConsumerBudget budget = new ConsumerBudget(3, 3);
+        budget.update(peers);
+
+        Set<String> pinned = new HashSet<>(Arrays.asList("p7", "p1"));
+        assertTrue(budget.update(peers, pinned));
+        assertEquals(Arrays.asList("p0", "p1", "p7"), new ArrayList<>(budget.getVideo()));
+
+        // More pinned than slots, the first ones in join order win
+        pinned.addAll(Arrays.asList("p8", "p9"));
+        budget.update(peers, pinned);
+        assertEquals(Arrays.asList("p1", "p7", "p8"), new ArrayList<>(budget.getVideo()));
+        assertEquals(Arrays.asList("p0", "p1", "p2"), new ArrayList<>(budget.getAudio()));
+    }
+
+    /**
+     * @return peers sending both kinds, in join order
+     */
+    private static List<Roster.Peer> room(int size) {
+        List<Roster.Peer> peers = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Roster.Peer peer = new Roster.Peer("p" + i);
+            peer.update(true, true);
+            peers.add(peer);
+        }
+        return peers;
+    }
+}
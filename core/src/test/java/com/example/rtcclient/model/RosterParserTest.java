@@ -0,0 +1,182 @@
+package com.example.rtcclient.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RosterParserTest {
+
+    private static final int ROOM_SIZE = 200;
+    private static final int ITERATIONS = 500;
+
+    @Test
+    public void parsesSnapshotAndSkipsOwnPeer() throws Exception {
+        RosterUpdate update = parse("{\"version\": 7, \"peers\": {"
+                + "\"me\": {\"media\": {\"cam-video\": {}}},"
+                + "\"a\": {\"joinTs\": 1, \"media\": {\"cam-video\": {\"paused\": false, \"encodings\": [{\"ssrc\": 1}]}, \"cam-audio\": null}},"
+                + "\"b\": {\"media\": {\"cam-audio\": {}}, \"consumerLayers\": {\"x\": \"}]\"}}"
+                + "}}");
+
+        assertEquals(RosterUpdate.Kind.SNAPSHOT, update.getKind());
+        assertEquals(7, update.getVersion());
+        assertEquals(2, update.getPeerCount());
+        assertEquals("a", update.getPeerId(0));
+        assertTrue(update.isSendingVideo(0));
+        assertFalse(update.isSendingAudio(0));
+        assertEquals("b", update.getPeerId(1));
+        assertFalse(update.isSendingVideo(1));
+        assertTrue(update.isSendingAudio(1));
+    }
+
+    @Test
+    public void parsesDelta() throws Exception {
+        RosterUpdate update = parse("{\"delta\": {\"left\": [\"gone\", \"me\"], \"joined\": {\"new\": {\"media\": {}}},"
+                + " \"updated\": {\"x\\u0031\": {\"media\": {\"cam-video\": {}}}}}, \"version\": 12}");
+
+        assertEquals(RosterUpdate.Kind.DELTA, update.getKind());
+        assertEquals(12, update.getVersion());
+        assertEquals(1, update.getLeftCount());
+        assertEquals("gone", update.getLeftId(0));
+        assertEquals(2, update.getPeerCount());
+        assertEquals("new", update.getPeerId(0));
+        assertEquals("x1", update.getPeerId(1));
+        assertTrue(update.isSendingVideo(1));
+    }
+
+    @Test
+    public void parsesUnchangedAndUnversioned() throws Exception {
+        RosterUpdate unchanged = parse("{\"version\": 3, \"unchanged\": true}");
+        assertEquals(RosterUpdate.Kind.UNCHANGED, unchanged.getKind());
+        assertEquals(3, unchanged.getVersion());
+        assertEquals("{\"version\": 3, \"unchanged\": true}".length(), unchanged.getSizeBytes());
+
+        RosterUpdate legacy = parse("{\"peers\": {}}");
+        assertEquals(RosterUpdate.Kind.SNAPSHOT, legacy.getKind());
+        assertFalse(legacy.hasVersion());
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsTruncatedBody() throws Exception {
+        parse("{\"version\": 3, \"peers\": {\"a\": {\"media\"");
+    }
+
+    @Test
+    public void rosterAppliesParsedUpdates() throws Exception {
+        Roster roster = new Roster("me");
+        int[] events = new int[3];
+        Roster.Listener listener = new Roster.Listener() {
+            @Override
+            public void onPeerJoined(Roster.Peer peer) {
+                events[0]++;
+            }
+
+            @Override
+            public void onPeerLeft(Roster.Peer peer) {
+                events[1]++;
+            }
+
+            @Override
+            public void onPeerMediaChanged(Roster.Peer peer) {
+                events[2]++;
+            }
+        };
+
+        roster.apply(parse("{\"version\": 1, \"peers\": {\"a\": {}, \"b\": {\"media\": {\"cam-audio\": {}}}}}"), listener);
+        roster.apply(parse("{\"version\": 2, \"peers\": {\"b\": {\"media\": {\"cam-audio\": {}, \"cam-video\": {}}}}}"), listener);
+
+        assertEquals(2, events[0]);
+        assertEquals(1, events[1]);
+        assertEquals(1, events[2]);
+        assertTrue(roster.get("b").isSendingVideo());
+    }
+
+    /**
+     * Bytes allocated per sync reply of a large room, JSONObject tree (what Volley's JsonObjectRequest
+     * and the old pollAndUpdate did) vs RosterParser into a recycled RosterUpdate
+     */
+    @Test
+    public void streamingParseAllocatesFarLess() throws Exception {
+        byte[] body = largeSnapshot().getBytes(StandardCharsets.UTF_8);
+
+        long tree = allocatedPerIteration(() -> {
+            JSONObject response = new JSONObject(new String(body, StandardCharsets.UTF_8));
+            JSONObject peers = response.getJSONObject("peers");
+            int sending = 0;
+            for (Iterator<String> it = peers.keys(); it.hasNext(); ) {
+                JSONObject media = peers.getJSONObject(it.next()).optJSONObject("media");
+                if (media != null && (media.opt(Roster.CAM_VIDEO) instanceof JSONObject || media.opt(Roster.CAM_AUDIO) instanceof JSONObject)) {
+                    sending++;
+                }
+            }
+            return sending;
+        });
+
+        RosterParser parser = new RosterParser("me");
+        long streaming = allocatedPerIteration(() -> {
+            RosterUpdate update = RosterUpdate.obtain();
+            parser.parse(body, 0, body.length, update);
+            int sending = update.getPeerCount();
+            update.recycle();
+            return sending;
+        });
+
+        System.out.println(ROOM_SIZE + " peers, " + body.length + " bytes/reply. JSONObject: " + tree
+                + " bytes allocated/reply, RosterParser: " + streaming + " bytes allocated/reply");
+
+        assertTrue(streaming * 5 < tree);
+    }
+
+    private interface Work {
+        int run() throws Exception;
+    }
+
+    private static long allocatedPerIteration(Work work) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        int sink = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += work.run();
+        }
+
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += work.run();
+        }
+        long after = threads.getThreadAllocatedBytes(id);
+
+        assertTrue(sink > 0);
+        return (after - before) / ITERATIONS;
+    }
+
+    private static String largeSnapshot() {
+        StringBuilder body = new StringBuilder("{\"version\": 42, \"peers\": {");
+        for (int i = 0; i < ROOM_SIZE; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("\"3f2504e0-4f89-11d3-9a0c-").append(String.format("%012d", i)).append("\": {")
+                    .append("\"joinTs\": 1612345678901, \"lastSeenTs\": 1612345679901, ")
+                    .append("\"media\": {")
+                    .append("\"cam-video\": {\"paused\": false, \"encodings\": [{\"ssrc\": 1234, \"maxBitrate\": 500000}]},")
+                    .append("\"cam-audio\": {\"paused\": false, \"encodings\": [{\"ssrc\": 5678}]}")
+                    .append("}, \"consumerLayers\": {}, \"stats\": {}}");
+        }
+        return body.append("}}").toString();
+    }
+
+    private static RosterUpdate parse(String body) throws JSONException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        RosterUpdate update = new RosterUpdate();
+        new RosterParser("me").parse(bytes, 0, bytes.length, update);
+        return update;
+    }
+}
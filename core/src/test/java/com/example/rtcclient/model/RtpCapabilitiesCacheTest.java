@@ -0,0 +1,74 @@
+package com.example.rtcclient.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RtpCapabilitiesCacheTest {
+
+    private static final String HOST = "https://10.0.2.2";
+    private static final String CAPABILITIES = "{\"codecs\":[{\"mimeType\":\"video/VP8\",\"clockRate\":90000}],\"headerExtensions\":[]}";
+
+    private final MemoryStore mStore = new MemoryStore();
+    private final RtpCapabilitiesCache mCache = new RtpCapabilitiesCache(mStore);
+
+    @Test
+    public void returnsWhatWasPut() {
+        assertNull(mCache.get(HOST));
+        assertTrue(mCache.put(HOST, CAPABILITIES));
+        assertEquals(CAPABILITIES, mCache.get(HOST));
+        assertNull(mCache.get("https://elsewhere"));
+    }
+
+    @Test
+    public void unchangedCapabilitiesAreNotWrittenAgain() {
+        mCache.put(HOST, CAPABILITIES);
+        assertFalse(mCache.put(HOST, CAPABILITIES));
+        assertEquals(1, mStore.mWrites);
+
+        assertTrue(mCache.put(HOST, CAPABILITIES.replace("VP8", "H264")));
+        assertEquals(2, mStore.mWrites);
+    }
+
+    @Test
+    public void damagedEntriesAreDropped() {
+        mCache.put(HOST, CAPABILITIES);
+        String entry = mStore.mEntries.get(HOST);
+
+        mStore.mEntries.put(HOST, entry.substring(0, entry.length() - 10));
+        assertNull(mCache.get(HOST));
+        assertFalse(mStore.mEntries.containsKey(HOST));
+
+        mStore.mEntries.put(HOST, CAPABILITIES);
+        assertNull(mCache.get(HOST));
+        assertFalse(mStore.mEntries.containsKey(HOST));
+    }
+
+    private static class MemoryStore implements RtpCapabilitiesCache.Store {
+
+        final Map<String, String> mEntries = new HashMap<>();
+        int mWrites;
+
+        @Override
+        public String get(String key) {
+            return mEntries.get(key);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            mWrites++;
+            mEntries.put(key, value);
+        }
+
+        @Override
+        public void remove(String key) {
+            mEntries.remove(key);
+        }
+    }
+}
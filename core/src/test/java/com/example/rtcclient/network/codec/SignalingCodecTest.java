@@ -0,0 +1,249 @@
+package com.example.rtcclient.network.codec;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MessagePackCodec round trips plus a size and encode/decode time comparison against JSON on the
+ * payloads that dominate signaling: router capabilities on join and RTP parameters on send-track
+ */
+public class SignalingCodecTest {
+
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 5000;
+
+    @Test
+    public void messagePackRoundTripsEveryJsonType() throws Exception {
+        JSONObject message = new JSONObject()
+                .put("fixint", 5)
+                .put("negative", -7)
+                .put("int8", -100)
+                .put("uint8", 200)
+                .put("uint16", 60000)
+                .put("int32", -2000000000)
+                .put("uint32", 4000000000L)
+                .put("int64", Long.MIN_VALUE)
+                .put("double", 0.5)
+                .put("true", true)
+                .put("false", false)
+                .put("null", JSONObject.NULL)
+                .put("short", "abc")
+                .put("str8", repeat('x', 200))
+                .put("str16", repeat('y', 70000))
+                .put("unicode", "p\u00e9er \u263a")
+                .put("array", new JSONArray().put(1).put("two").put(new JSONObject()))
+                .put("bigArray", range(40))
+                .put("nested", new JSONObject().put("a", new JSONObject().put("b", new JSONArray())));
+
+        MessagePackCodec codec = new MessagePackCodec();
+        byte[] encoded = codec.encode(message);
+
+        assertEquals(canonical(message), canonical(codec.decode(encoded, 0, encoded.length)));
+    }
+
+    @Test(expected = JSONException.class)
+    public void messagePackRejectsTruncatedFrames() throws Exception {
+        MessagePackCodec codec = new MessagePackCodec();
+        byte[] encoded = codec.encode(routerRtpCapabilities());
+        codec.decode(encoded, 0, encoded.length - 3);
+    }
+
+    @Test
+    public void negotiationFallsBackToJson() {
+        assertSame(SignalingCodecs.MSGPACK, SignalingCodecs.forContentType("application/msgpack"));
+        assertSame(SignalingCodecs.JSON, SignalingCodecs.forContentType("application/json; charset=utf-8"));
+        assertSame(SignalingCodecs.JSON, SignalingCodecs.forContentType("text/html"));
+        assertSame(SignalingCodecs.JSON, SignalingCodecs.forContentType(null));
+        assertSame(SignalingCodecs.MSGPACK, SignalingCodecs.forSubprotocol("protoo.msgpack"));
+        assertSame(SignalingCodecs.JSON, SignalingCodecs.forSubprotocol("protoo"));
+        assertEquals("protoo.msgpack, protoo", SignalingCodecs.subprotocols());
+
+        CodecNegotiator negotiator = new CodecNegotiator();
+        assertSame(SignalingCodecs.JSON, negotiator.getRequestCodec());
+        negotiator.onResponse("application/msgpack");
+        assertSame(SignalingCodecs.MSGPACK, negotiator.getRequestCodec());
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        report("routerRtpCapabilities", routerRtpCapabilities());
+        report("send-track", sendTrack());
+    }
+
+    private static void report(String name, JSONObject message) throws Exception {
+        long jsonSize = SignalingCodecs.JSON.encode(message).length;
+        long msgpackSize = SignalingCodecs.MSGPACK.encode(message).length;
+
+        System.out.println(name + ": json " + jsonSize + " bytes, encode " + encodeNs(SignalingCodecs.JSON, message)
+                + "ns, decode " + decodeNs(SignalingCodecs.JSON, message) + "ns | msgpack " + msgpackSize
+                + " bytes, encode " + encodeNs(SignalingCodecs.MSGPACK, message) + "ns, decode "
+                + decodeNs(SignalingCodecs.MSGPACK, message) + "ns");
+
+        assertTrue(msgpackSize < jsonSize);
+    }
+
+    private static long encodeNs(SignalingCodec codec, JSONObject message) throws Exception {
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += codec.encode(message).length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += codec.encode(message).length;
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return elapsed / ITERATIONS;
+    }
+
+    private static long decodeNs(SignalingCodec codec, JSONObject message) throws Exception {
+        byte[] encoded = codec.encode(message);
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += codec.decode(encoded, 0, encoded.length).length();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += codec.decode(encoded, 0, encoded.length).length();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertTrue(sink > 0);
+        return elapsed / ITERATIONS;
+    }
+
+    /**
+     * Close to what mediasoup's default router config returns
+     */
+    private static JSONObject routerRtpCapabilities() throws JSONException {
+        JSONArray codecs = new JSONArray()
+                .put(codec("audio", "audio/opus", 100, 48000, 2, new JSONObject().put("useinbandfec", 1)))
+                .put(codec("video", "video/VP8", 101, 90000, 0, new JSONObject()))
+                .put(codec("video", "video/rtx", 102, 90000, 0, new JSONObject().put("apt", 101)))
+                .put(codec("video", "video/VP9", 103, 90000, 0, new JSONObject().put("profile-id", 2)))
+                .put(codec("video", "video/rtx", 104, 90000, 0, new JSONObject().put("apt", 103)))
+                .put(codec("video", "video/H264", 105, 90000, 0, new JSONObject()
+                        .put("packetization-mode", 1).put("profile-level-id", "4d0032").put("level-asymmetry-allowed", 1)))
+                .put(codec("video", "video/rtx", 106, 90000, 0, new JSONObject().put("apt", 105)));
+
+        String[][] extensions = {
+                {"audio", "urn:ietf:params:rtp-hdrext:sdes:mid", "1"},
+                {"video", "urn:ietf:params:rtp-hdrext:sdes:mid", "1"},
+                {"video", "urn:ietf:params:rtp-hdrext:sdes:rtp-stream-id", "2"},
+                {"video", "urn:ietf:params:rtp-hdrext:sdes:repaired-rtp-stream-id", "3"},
+                {"audio", "http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time", "4"},
+                {"video", "http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time", "4"},
+                {"video", "http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01", "5"},
+                {"audio", "urn:ietf:params:rtp-hdrext:ssrc-audio-level", "10"},
+                {"video", "urn:3gpp:video-orientation", "11"},
+                {"video", "urn:ietf:params:rtp-hdrext:toffset", "12"},
+        };
+        JSONArray headerExtensions = new JSONArray();
+        for (String[] extension : extensions) {
+            headerExtensions.put(new JSONObject()
+                    .put("kind", extension[0])
+                    .put("uri", extension[1])
+                    .put("preferredId", Integer.parseInt(extension[2]))
+                    .put("preferredEncrypt", false)
+                    .put("direction", "sendrecv"));
+        }
+
+        return new JSONObject().put("routerRtpCapabilities", new JSONObject()
+                .put("codecs", codecs)
+                .put("headerExtensions", headerExtensions));
+    }
+
+    private static JSONObject codec(String kind, String mimeType, int payloadType, int clockRate, int channels,
+                                    JSONObject parameters) throws JSONException {
+        JSONObject codec = new JSONObject()
+                .put("kind", kind)
+                .put("mimeType", mimeType)
+                .put("preferredPayloadType", payloadType)
+                .put("clockRate", clockRate)
+                .put("parameters", parameters)
+                .put("rtcpFeedback", new JSONArray()
+                        .put(new JSONObject().put("type", "nack").put("parameter", ""))
+                        .put(new JSONObject().put("type", "transport-cc").put("parameter", "")));
+        if (channels > 0) {
+            codec.put("channels", channels);
+        }
+        return codec;
+    }
+
+    private static JSONObject sendTrack() throws JSONException {
+        JSONObject rtpParameters = new JSONObject()
+                .put("mid", "0")
+                .put("codecs", new JSONArray().put(new JSONObject()
+                        .put("mimeType", "video/VP8")
+                        .put("payloadType", 96)
+                        .put("clockRate", 90000)
+                        .put("parameters", new JSONObject())
+                        .put("rtcpFeedback", new JSONArray()
+                                .put(new JSONObject().put("type", "goog-remb").put("parameter", ""))
+                                .put(new JSONObject().put("type", "nack").put("parameter", "pli")))))
+                .put("headerExtensions", new JSONArray()
+                        .put(new JSONObject().put("uri", "urn:ietf:params:rtp-hdrext:sdes:mid").put("id", 4).put("encrypt", false).put("parameters", new JSONObject())))
+                .put("encodings", new JSONArray()
+                        .put(new JSONObject().put("ssrc", 2846283646L).put("rtx", new JSONObject().put("ssrc", 1386201478L)).put("dtx", false)))
+                .put("rtcp", new JSONObject().put("cname", "kJ3mYvQ0/wPp5sE7").put("reducedSize", true));
+
+        return new JSONObject()
+                .put("peerId", "3f2504e0-4f89-11d3-9a0c-0305e82c3301")
+                .put("transportId", "e1b0a0b4-6c4a-4b5b-8f0a-37c3c5f0b3a2")
+                .put("kind", "video")
+                .put("rtpParameters", rtpParameters)
+                .put("paused", false)
+                .put("appData", new JSONObject().put("mediaTag", "cam-video"));
+    }
+
+    /**
+     * toString() with sorted keys, JSONObject doesn't keep insertion order
+     */
+    private static String canonical(Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            TreeSet<String> keys = new TreeSet<>();
+            for (Iterator<String> it = object.keys(); it.hasNext(); ) {
+                keys.add(it.next());
+            }
+            StringBuilder builder = new StringBuilder("{");
+            for (String key : keys) {
+                builder.append(JSONObject.quote(key)).append(':').append(canonical(object.get(key))).append(',');
+            }
+            return builder.append('}').toString();
+        }
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            StringBuilder builder = new StringBuilder("[");
+            for (int i = 0; i < array.length(); i++) {
+                builder.append(canonical(array.get(i))).append(',');
+            }
+            return builder.append(']').toString();
+        }
+        return value.getClass().getSimpleName() + ":" + value;
+    }
+
+    private static JSONArray range(int size) {
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            array.put(i * 1000);
+        }
+        return array;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.rtcclient.network.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        for (long value = 0; value < 100_000; value++) {
+            int index = Histogram.indexOf(value);
+            assertTrue(Histogram.lowestValueAt(index) <= value);
+            assertTrue(Histogram.highestValueAt(index) >= value);
+        }
+        for (int index = 1; index < Histogram.indexOf(Long.MAX_VALUE / 2); index++) {
+            assertEquals(Histogram.highestValueAt(index - 1) + 1, Histogram.lowestValueAt(index));
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinASixteenth() {
+        Histogram histogram = new Histogram(EndpointMetrics.MAX_LATENCY_US);
+        Random random = new Random(42);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal, the way latencies look
+            values[i] = (long) Math.exp(10 + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        for (double percentile : new double[]{50, 90, 99, 99.9, 100}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = snapshot.getPercentile(percentile);
+            assertTrue(percentile + ": " + reported + " vs " + exact, reported >= exact && reported <= exact + exact / 16 + 1);
+        }
+        assertTrue(snapshot.getMin() <= values[0]);
+        assertEquals(snapshot.getPercentile(100), snapshot.getMax());
+    }
+
+    @Test
+    public void clampsAndResets() {
+        Histogram histogram = new Histogram(1000);
+        histogram.record(-5);
+        histogram.record(1_000_000);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertTrue(snapshot.getMax() >= 1000 && snapshot.getMax() < 1000 + 1000 / 16);
+        assertEquals(500, snapshot.getMean());
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentile(99));
+    }
+
+    @Test
+    public void callsEndOnce() {
+        EndpointMetrics endpoint = new SignalingMetrics().endpoint("sync");
+
+        EndpointMetrics.Call ok = endpoint.start(0, 10);
+        EndpointMetrics.Call timedOut = endpoint.start(0, 10);
+        EndpointMetrics.Call cancelled = endpoint.start(0, 10);
+        assertEquals(3, endpoint.snapshot().getInFlight());
+
+        ok.succeed(2_000_000, 100);
+        ok.fail(3_000_000, false);
+        timedOut.fail(5_000_000, true);
+        timedOut.cancel();
+        cancelled.cancel();
+        cancelled.succeed(9_000_000, 100);
+
+        EndpointMetrics.Snapshot snapshot = endpoint.snapshot();
+        assertEquals(3, snapshot.getCalls());
+        assertEquals(0, snapshot.getErrors());
+        assertEquals(1, snapshot.getTimeouts());
+        assertEquals(1, snapshot.getCancelled());
+        assertEquals(0, snapshot.getInFlight());
+        assertEquals(3, snapshot.getMaxInFlight());
+        assertEquals(2, snapshot.getLatencyUs().getCount());
+        assertEquals(2000, snapshot.getLatencyUs().getMin(), 2000 / 16);
+        assertEquals(5000, snapshot.getLatencyUs().getMax(), 5000 / 16);
+        assertEquals(3, snapshot.getRequestBytes().getCount());
+        assertEquals(1, snapshot.getResponseBytes().getCount());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.rtcclient.mockserver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * What the stand-in servers do to a request before answering it: hold it for a while, fail it with
+ * a status, or drop it without an answer. Rules are per path, ANY applies to every path that has
+ * none of its own. Seeded so a run can be replayed
+ *
+ * StandInSignalingServer.setFaults() is the deterministic every-nth variant, this one is random
+ */
+public class FaultScript {
+
+    public static final String ANY = "*";
+
+    /**
+     * What happens to one request
+     */
+    public static class Fault {
+
+        public static final Fault NONE = new Fault(0, 0, false);
+
+        /**
+         * Held this long before anything else happens
+         */
+        public final long delayMs;
+        /**
+         * Answered with this status instead of the response, 0 for the response
+         */
+        public final int status;
+        /**
+         * Connection closed (HTTP) or request never answered (protoo)
+         */
+        public final boolean drop;
+
+        Fault(long delayMs, int status, boolean drop) {
+            this.delayMs = delayMs;
+            this.status = status;
+            this.drop = drop;
+        }
+    }
+
+    private static class Rule {
+        long minDelayMs;
+        long maxDelayMs;
+        double failProbability;
+        int failStatus;
+        double dropProbability;
+    }
+
+    private final Map<String, Rule> mRules = new HashMap<>();
+    private final Random mRandom;
+
+    public FaultScript(long seed) {
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * Every request to path is held a uniformly random time in [minMs, maxMs]
+     */
+    public synchronized FaultScript latency(String path, long minMs, long maxMs) {
+        Rule rule = rule(path);
+        rule.minDelayMs = minMs;
+        rule.maxDelayMs = maxMs;
+        return this;
+    }
+
+    /**
+     * Requests to path fail with status this often, e.g. 503 for an overloaded server
+     */
+    public synchronized FaultScript fail(String path, double probability, int status) {
+        Rule rule = rule(path);
+        rule.failProbability = probability;
+        rule.failStatus = status;
+        return this;
+    }
+
+    /**
+     * Requests to path go unanswered this often, like a connection lost mid-request
+     */
+    public synchronized FaultScript drop(String path, double probability) {
+        rule(path).dropProbability = probability;
+        return this;
+    }
+
+    /**
+     * The servers call this once per request
+     */
+    public synchronized Fault next(String path) {
+        Rule rule = mRules.get(path);
+        if (rule == null) {
+            rule = mRules.get(ANY);
+        }
+        if (rule == null) {
+            return Fault.NONE;
+        }
+
+        long delayMs = rule.minDelayMs + (long) (mRandom.nextDouble() * (rule.maxDelayMs - rule.minDelayMs));
+        boolean drop = mRandom.nextDouble() < rule.dropProbability;
+        int status = !drop && mRandom.nextDouble() < rule.failProbability ? rule.failStatus : 0;
+        return delayMs == 0 && status == 0 && !drop ? Fault.NONE : new Fault(delayMs, status, drop);
+    }
+
+    private Rule rule(String path) {
+        Rule rule = mRules.get(path);
+        if (rule == null) {
+            rule = new Rule();
+            mRules.put(path, rule);
+        }
+        return rule;
+    }
+}
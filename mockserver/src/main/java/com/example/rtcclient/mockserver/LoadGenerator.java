@@ -0,0 +1,172 @@
+package com.example.rtcclient.mockserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Virtual peers churning a StandInSignalingServer room: joining, leaving and turning their camera
+ * and microphone on and off, either at a steady rate in the background or as fast as the room
+ * takes it. The client under test sees them like any other peers, over HTTP or the socket
+ *
+ * Seeded, so two runs make the same changes in the same order
+ */
+public class LoadGenerator {
+
+    public static final String PEER_PREFIX = "load-";
+    private static final String[] MEDIA_TAGS = {"cam-video", "cam-audio"};
+
+    private final StandInSignalingServer mRoom;
+    private final Random mRandom;
+    /**
+     * Media each virtual peer sends, null while it's out of the room
+     */
+    private final List<Set<String>> mPeers = new ArrayList<>();
+    /**
+     * Guards the peers. Not the generator's own monitor, stop() holds that while it waits for the
+     * background task
+     */
+    private final Object mLock = new Object();
+    private final AtomicLong mEvents = new AtomicLong();
+    private double mLeaveProbability = 0.2;
+    private ScheduledExecutorService mExecutor;
+    private ScheduledFuture<?> mTask;
+
+    /**
+     * @param peers how many virtual peers there are, in the room or not
+     */
+    public LoadGenerator(StandInSignalingServer room, int peers, long seed) {
+        mRoom = room;
+        mRandom = new Random(seed);
+        for (int i = 0; i < peers; i++) {
+            mPeers.add(null);
+        }
+    }
+
+    /**
+     * How often a peer that is in the room leaves rather than toggles a track. Peers that are out
+     * always join
+     */
+    public LoadGenerator setLeaveProbability(double probability) {
+        synchronized (mLock) {
+            mLeaveProbability = probability;
+        }
+        return this;
+    }
+
+    /**
+     * Bring count peers in at once with both tracks on, so the room starts out busy
+     */
+    public void populate(int count) {
+        synchronized (mLock) {
+            for (int i = 0; i < mPeers.size() && count > 0; i++) {
+                if (mPeers.get(i) == null) {
+                    join(i, MEDIA_TAGS);
+                    count--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Make count changes back to back on the calling thread
+     */
+    public void run(int count) {
+        for (int i = 0; i < count; i++) {
+            step();
+        }
+    }
+
+    /**
+     * Make changes at a steady rate in the background until stop()
+     */
+    public synchronized void start(double eventsPerSecond) {
+        stop();
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        long periodUs = Math.max(1, (long) (TimeUnit.SECONDS.toMicros(1) / eventsPerSecond));
+        mTask = mExecutor.scheduleAtFixedRate(this::step, 0, periodUs, TimeUnit.MICROSECONDS);
+    }
+
+    public synchronized void stop() {
+        if (mExecutor == null) {
+            return;
+        }
+        mTask.cancel(false);
+        mExecutor.shutdown();
+        try {
+            mExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mExecutor = null;
+        mTask = null;
+    }
+
+    /**
+     * @return changes made so far
+     */
+    public long getEventCount() {
+        return mEvents.get();
+    }
+
+    /**
+     * @return the virtual peers in the room
+     */
+    public int getPresentCount() {
+        synchronized (mLock) {
+            int present = 0;
+            for (Set<String> media : mPeers) {
+                if (media != null) {
+                    present++;
+                }
+            }
+            return present;
+        }
+    }
+
+    private void step() {
+        synchronized (mLock) {
+            int i = mRandom.nextInt(mPeers.size());
+            Set<String> media = mPeers.get(i);
+
+            if (media == null) {
+                List<String> tags = new ArrayList<>();
+                for (String mediaTag : MEDIA_TAGS) {
+                    if (mRandom.nextBoolean()) {
+                        tags.add(mediaTag);
+                    }
+                }
+                join(i, tags.toArray(new String[0]));
+            } else if (mRandom.nextDouble() < mLeaveProbability) {
+                mPeers.set(i, null);
+                mRoom.leave(PEER_PREFIX + i);
+            } else {
+                String mediaTag = MEDIA_TAGS[mRandom.nextInt(MEDIA_TAGS.length)];
+                boolean sending = !media.contains(mediaTag);
+                if (sending) {
+                    media.add(mediaTag);
+                } else {
+                    media.remove(mediaTag);
+                }
+                mRoom.setMedia(PEER_PREFIX + i, mediaTag, sending);
+            }
+            mEvents.incrementAndGet();
+        }
+    }
+
+    private void join(int i, String... mediaTags) {
+        Set<String> media = new LinkedHashSet<>();
+        for (String mediaTag : mediaTags) {
+            media.add(mediaTag);
+        }
+        mPeers.set(i, media);
+        mRoom.join(PEER_PREFIX + i, mediaTags);
+    }
+}
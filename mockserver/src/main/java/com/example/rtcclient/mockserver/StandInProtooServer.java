@@ -0,0 +1,174 @@
+package com.example.rtcclient.mockserver;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * The protoo side of StandInSignalingServer, over the same room. Socket requests are answered by the
+ * HTTP endpoints and every roster change is pushed to all sockets as a notification, the way
+ * SocketClient expects (see RosterFeed)
+ *
+ * The room's FaultScript applies to socket requests too: a failure is an error response with the
+ * status as errorCode and a drop is a request that never gets one
+ */
+public class StandInProtooServer implements StandInSignalingServer.RoomListener {
+
+    private final StandInSignalingServer mRoom;
+    private final MockWebServer mServer = new MockWebServer();
+    private final CopyOnWriteArrayList<WebSocket> mSockets = new CopyOnWriteArrayList<>();
+    /**
+     * Requests are answered here so a slow one doesn't hold up the socket's other messages
+     */
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    public StandInProtooServer(StandInSignalingServer room) {
+        mRoom = room;
+        mRoom.addRoomListener(this);
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setHeader("Sec-WebSocket-Protocol", "protoo")
+                        .withWebSocketUpgrade(mSocketListener);
+            }
+        });
+    }
+
+    public void start() throws IOException {
+        mServer.start();
+    }
+
+    public void stop() throws IOException {
+        for (WebSocket socket : mSockets) {
+            socket.close(1000, null);
+        }
+        mServer.shutdown();
+        mExecutor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "ws://127.0.0.1:" + mServer.getPort() + "/";
+    }
+
+    //region Room
+
+    @Override
+    public void onJoined(String peerId, Set<String> mediaTags) {
+        try {
+            JSONObject media = new JSONObject();
+            for (String mediaTag : mediaTags) {
+                media.put(mediaTag, new JSONObject());
+            }
+            broadcast("peerJoined", new JSONObject().put("peerId", peerId).put("media", media));
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void onLeft(String peerId) {
+        try {
+            broadcast("peerLeft", new JSONObject().put("peerId", peerId));
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void onMediaChanged(String peerId, String mediaTag, boolean sending) {
+        try {
+            broadcast(sending ? "producerAdded" : "producerClosed",
+                    new JSONObject().put("peerId", peerId).put("mediaTag", mediaTag));
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void broadcast(String method, JSONObject data) throws JSONException {
+        String notification = new JSONObject()
+                .put("notification", true)
+                .put("method", method)
+                .put("data", data)
+                .toString();
+
+        for (WebSocket socket : mSockets) {
+            socket.send(notification);
+        }
+    }
+
+    //endregion Room
+
+    private void answer(WebSocket webSocket, String text) {
+        try {
+            JSONObject request = new JSONObject(text);
+            if (!request.optBoolean("request")) {
+                return;
+            }
+
+            String method = request.getString("method");
+            JSONObject response = new JSONObject()
+                    .put("response", true)
+                    .put("id", request.getLong("id"));
+
+            FaultScript.Fault fault = mRoom.nextFault(method);
+            Thread.sleep(fault.delayMs);
+            if (fault.drop) {
+                return;
+            }
+            if (fault.status != 0) {
+                webSocket.send(response.put("ok", false).put("errorCode", fault.status)
+                        .put("errorReason", "scripted failure").toString());
+                return;
+            }
+
+            JSONObject data = mRoom.dispatch(method, request.optJSONObject("data") != null
+                    ? request.getJSONObject("data") : new JSONObject());
+
+            if (data != null) {
+                response.put("ok", true).put("data", data);
+            } else {
+                response.put("ok", false).put("errorCode", 404).put("errorReason", "unknown method");
+            }
+            webSocket.send(response.toString());
+        } catch (JSONException | InterruptedException e) {
+            webSocket.close(1011, e.getMessage());
+        }
+    }
+
+    private final WebSocketListener mSocketListener = new WebSocketListener() {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            mSockets.add(webSocket);
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            mExecutor.execute(() -> answer(webSocket, text));
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            mSockets.remove(webSocket);
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            mSockets.remove(webSocket);
+        }
+    };
+}
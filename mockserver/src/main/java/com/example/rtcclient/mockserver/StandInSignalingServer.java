@@ -0,0 +1,406 @@
+package com.example.rtcclient.mockserver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for the mediasoup signaling server. It only keeps the room roster (who is in
+ * the room and what media they send) which is all the "sync" endpoint needs. Tests drive remote
+ * peers directly through join()/leave()/setMedia()
+ *
+ * Every change bumps the roster version. Each peer remembers the version it joined and last changed
+ * at, and peers that left leave a tombstone, so a delta since any version can be worked out
+ *
+ * Changes are also reported to RoomListeners, which is what StandInProtooServer pushes to sockets
+ */
+public class StandInSignalingServer {
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final Map<String, PeerEntry> mPeers = new LinkedHashMap<>();
+    /**
+     * peerId -> version the peer left at
+     */
+    private final Map<String, Long> mLeft = new LinkedHashMap<>();
+    private final List<RoomListener> mRoomListeners = new CopyOnWriteArrayList<>();
+    private long mVersion;
+    private int mSyncCount;
+    private volatile long mRecvTrackDelayMs;
+    private final AtomicInteger mRecvTrackCount = new AtomicInteger();
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private volatile int mDropEvery;
+    private volatile int mSlowEvery;
+    private volatile long mSlowMs;
+    private volatile FaultScript mFaultScript;
+    private volatile boolean mBatchSupported = true;
+
+    /**
+     * Called with the room locked, in the order things happened
+     */
+    public interface RoomListener {
+        void onJoined(String peerId, Set<String> mediaTags);
+
+        void onLeft(String peerId);
+
+        void onMediaChanged(String peerId, String mediaTag, boolean sending);
+    }
+
+    private static class PeerEntry {
+        final Set<String> media = new LinkedHashSet<>();
+        long joinedVersion;
+        long changedVersion;
+    }
+
+    static {
+        // Otherwise Nagle holds every response back for the client's delayed ACK (~40ms)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    public StandInSignalingServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/signaling/", this::handle);
+        // Long-polls park their thread so every request needs its own
+        mServer.setExecutor(mExecutor);
+    }
+
+    public void start() {
+        mServer.start();
+    }
+
+    public void stop() {
+        synchronized (this) {
+            notifyAll();
+        }
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the base URL, the equivalent of API.getHost()
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/signaling/";
+    }
+
+    //region Room
+
+    public void addRoomListener(RoomListener listener) {
+        mRoomListeners.add(listener);
+    }
+
+    public synchronized void join(String peerId, String... mediaTags) {
+        changed();
+        PeerEntry peer = new PeerEntry();
+        Collections.addAll(peer.media, mediaTags);
+        peer.joinedVersion = mVersion;
+        peer.changedVersion = mVersion;
+        mPeers.put(peerId, peer);
+        mLeft.remove(peerId);
+        for (RoomListener listener : mRoomListeners) {
+            listener.onJoined(peerId, Collections.unmodifiableSet(peer.media));
+        }
+    }
+
+    public synchronized void leave(String peerId) {
+        if (mPeers.remove(peerId) != null) {
+            changed();
+            mLeft.put(peerId, mVersion);
+            for (RoomListener listener : mRoomListeners) {
+                listener.onLeft(peerId);
+            }
+        }
+    }
+
+    public synchronized void setMedia(String peerId, String mediaTag, boolean sending) {
+        PeerEntry peer = mPeers.get(peerId);
+        if (peer == null) {
+            return;
+        }
+        changed();
+        if (sending) {
+            peer.media.add(mediaTag);
+        } else {
+            peer.media.remove(mediaTag);
+        }
+        peer.changedVersion = mVersion;
+        for (RoomListener listener : mRoomListeners) {
+            listener.onMediaChanged(peerId, mediaTag, sending);
+        }
+    }
+
+    /**
+     * @return peerId -> media tags sent, a copy of the roster as it is now
+     */
+    public synchronized Map<String, Set<String>> getPeers() {
+        Map<String, Set<String>> peers = new LinkedHashMap<>();
+        for (Map.Entry<String, PeerEntry> peer : mPeers.entrySet()) {
+            peers.put(peer.getKey(), new LinkedHashSet<>(peer.getValue().media));
+        }
+        return peers;
+    }
+
+    /**
+     * @return how many sync requests were answered, i.e. to compare request counts between modes
+     */
+    public synchronized int getSyncCount() {
+        return mSyncCount;
+    }
+
+    /**
+     * Makes recv-track as slow as a loaded server, so tests can update the roster while it's in flight
+     */
+    public void setRecvTrackDelayMs(long delayMs) {
+        mRecvTrackDelayMs = delayMs;
+    }
+
+    /**
+     * @return recv-track requests received, answered or not yet
+     */
+    public int getRecvTrackCount() {
+        return mRecvTrackCount.get();
+    }
+
+    /**
+     * Every dropEvery-th request has its connection closed without an answer and every slowEvery-th
+     * one is held slowMs first (both when they coincide). Counted across all endpoints, 0 turns it off.
+     * Deterministic so tests know which attempt fails
+     */
+    public void setFaults(int dropEvery, int slowEvery, long slowMs) {
+        mDropEvery = dropEvery;
+        mSlowEvery = slowEvery;
+        mSlowMs = slowMs;
+    }
+
+    /**
+     * Random latency and failures per path, on top of setFaults(). Applies to protoo requests as well
+     * @param script null for none
+     */
+    public void setFaultScript(FaultScript script) {
+        mFaultScript = script;
+    }
+
+    /**
+     * @param supported false to answer "batch" like an older server without it, 404 over HTTP
+     */
+    public void setBatchSupported(boolean supported) {
+        mBatchSupported = supported;
+    }
+
+    /**
+     * @return what the script has in store for the next request to path
+     */
+    FaultScript.Fault nextFault(String path) {
+        FaultScript script = mFaultScript;
+        return script != null ? script.next(path) : FaultScript.Fault.NONE;
+    }
+
+    /**
+     * @return HTTP requests received, dropped ones included
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    private void changed() {
+        mVersion++;
+        notifyAll();
+    }
+
+    //endregion Room
+
+    //region Endpoints
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().substring("/signaling/".length());
+        int n = mRequestCount.incrementAndGet();
+
+        try {
+            if (mSlowEvery > 0 && n % mSlowEvery == 0) {
+                Thread.sleep(mSlowMs);
+            }
+            if (mDropEvery > 0 && n % mDropEvery == 0) {
+                exchange.close();
+                return;
+            }
+
+            FaultScript.Fault fault = nextFault(path);
+            Thread.sleep(fault.delayMs);
+            if (fault.drop) {
+                exchange.close();
+                return;
+            }
+            if (fault.status != 0) {
+                respond(exchange, fault.status, new JSONObject().put("error", "scripted failure"));
+                return;
+            }
+
+            JSONObject response = dispatch(path, new JSONObject(read(exchange.getRequestBody())));
+
+            if (response == null) {
+                respond(exchange, 404, new JSONObject().put("error", "unknown path " + path));
+                return;
+            }
+
+            respond(exchange, 200, response);
+        } catch (JSONException | InterruptedException e) {
+            respond(exchange, 500, new JSONObject());
+        }
+    }
+
+    /**
+     * The endpoints without HTTP, StandInProtooServer answers socket requests with it
+     *
+     * @return null for unknown paths
+     */
+    public JSONObject dispatch(String path, JSONObject request) throws JSONException, InterruptedException {
+        String peerId = request.optString("peerId");
+
+        switch (path) {
+            case "join-as-new-peer":
+                join(peerId);
+                return new JSONObject().put("routerRtpCapabilities", new JSONObject());
+            case "leave":
+                leave(peerId);
+                return new JSONObject();
+            case "send-track":
+                setMedia(peerId, request.getJSONObject("appData").getString("mediaTag"), true);
+                return new JSONObject().put("id", peerId + "-" + request.optString("kind"));
+            case "recv-track":
+                return recvTrack(request.getString("mediaPeerId"), request.getString("mediaTag"));
+            case "sync":
+                return sync(request.optLong("version", -1), request.optLong("wait", 0), request.optBoolean("delta"));
+            case "batch":
+                return mBatchSupported ? batch(request.getJSONArray("requests")) : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * A consumer for the track, with nothing a real one would need
+     */
+    private JSONObject recvTrack(String mediaPeerId, String mediaTag) throws JSONException, InterruptedException {
+        int n = mRecvTrackCount.incrementAndGet();
+        Thread.sleep(mRecvTrackDelayMs);
+
+        return new JSONObject()
+                .put("id", mediaPeerId + "-" + mediaTag + "-" + n)
+                .put("producerId", mediaPeerId + "-" + mediaTag)
+                .put("kind", mediaTag.endsWith("video") ? "video" : "audio")
+                .put("rtpParameters", new JSONObject());
+    }
+
+    /**
+     * Runs the operations in order and answers each one at the same position
+     */
+    private JSONObject batch(JSONArray requests) throws JSONException, InterruptedException {
+        JSONArray responses = new JSONArray();
+
+        for (int i = 0; i < requests.length(); i++) {
+            JSONObject request = requests.getJSONObject(i);
+            JSONObject data = dispatch(request.getString("path"), request.getJSONObject("params"));
+            responses.put(data != null ? new JSONObject().put("data", data) : new JSONObject().put("error", "unknown path"));
+        }
+
+        return new JSONObject().put("responses", responses);
+    }
+
+    /**
+     * Answers right away unless the client already has the current version and is willing to wait.
+     * Clients that can take a delta get "unchanged" or only what changed since their version
+     */
+    private synchronized JSONObject sync(long version, long wait, boolean delta) throws JSONException, InterruptedException {
+        long deadline = System.currentTimeMillis() + wait;
+        long remaining = wait;
+
+        while (version == mVersion && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+
+        mSyncCount++;
+        JSONObject response = new JSONObject().put("version", mVersion);
+
+        if (!delta || version < 0 || version > mVersion) {
+            JSONObject peers = new JSONObject();
+            for (Map.Entry<String, PeerEntry> peer : mPeers.entrySet()) {
+                peers.put(peer.getKey(), toJson(peer.getValue()));
+            }
+            return response.put("peers", peers);
+        }
+
+        if (version == mVersion) {
+            return response.put("unchanged", true);
+        }
+
+        JSONObject joined = new JSONObject();
+        JSONObject updated = new JSONObject();
+        JSONArray left = new JSONArray();
+
+        for (Map.Entry<String, PeerEntry> peer : mPeers.entrySet()) {
+            if (peer.getValue().joinedVersion > version) {
+                joined.put(peer.getKey(), toJson(peer.getValue()));
+            } else if (peer.getValue().changedVersion > version) {
+                updated.put(peer.getKey(), toJson(peer.getValue()));
+            }
+        }
+        for (Map.Entry<String, Long> peer : mLeft.entrySet()) {
+            if (peer.getValue() > version) {
+                left.put(peer.getKey());
+            }
+        }
+
+        return response.put("delta", new JSONObject().put("joined", joined).put("updated", updated).put("left", left));
+    }
+
+    private static JSONObject toJson(PeerEntry peer) throws JSONException {
+        JSONObject media = new JSONObject();
+        for (String mediaTag : peer.media) {
+            media.put(mediaTag, new JSONObject());
+        }
+        return new JSONObject().put("media", media);
+    }
+
+    //endregion Endpoints
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        String body = out.toString(StandardCharsets.UTF_8.name());
+        return body.isEmpty() ? "{}" : body;
+    }
+
+    private static void respond(HttpExchange exchange, int status, JSONObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
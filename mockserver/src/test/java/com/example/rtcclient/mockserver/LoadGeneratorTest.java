@@ -0,0 +1,51 @@
+package com.example.rtcclient.mockserver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void sameSeedSameRoom() throws Exception {
+        StandInSignalingServer first = new StandInSignalingServer();
+        StandInSignalingServer second = new StandInSignalingServer();
+
+        try {
+            new LoadGenerator(first, 50, 3).run(1000);
+            LoadGenerator load = new LoadGenerator(second, 50, 3);
+            load.run(1000);
+
+            assertEquals(first.getPeers(), second.getPeers());
+            assertEquals(load.getPresentCount(), second.getPeers().size());
+            assertEquals(1000, load.getEventCount());
+        } finally {
+            first.stop();
+            second.stop();
+        }
+    }
+
+    @Test
+    public void scriptedFaultsFollowTheirRates() {
+        FaultScript script = new FaultScript(1)
+                .latency(FaultScript.ANY, 10, 20)
+                .fail("sync", 0.25, 503)
+                .drop("leave", 1);
+
+        int failed = 0;
+        for (int i = 0; i < 1000; i++) {
+            FaultScript.Fault fault = script.next("sync");
+            // Has a rule of its own, ANY's latency doesn't apply
+            assertEquals(0, fault.delayMs);
+            if (fault.status == 503) {
+                failed++;
+            }
+        }
+        assertTrue("failed " + failed, failed > 200 && failed < 300);
+
+        FaultScript.Fault fault = script.next("join-as-new-peer");
+        assertTrue(fault.delayMs >= 10 && fault.delayMs <= 20 && fault.status == 0 && !fault.drop);
+        assertTrue(script.next("leave").drop);
+    }
+}